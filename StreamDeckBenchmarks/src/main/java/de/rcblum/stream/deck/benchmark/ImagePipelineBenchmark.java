@@ -0,0 +1,186 @@
+package de.rcblum.stream.deck.benchmark;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.rcblum.stream.deck.animation.AnimationStack;
+import de.rcblum.stream.deck.util.IconHelper;
+import de.rcblum.stream.deck.util.JpegBudget;
+import de.rcblum.stream.deck.util.SDImage;
+
+/**
+ * Throughput of the image pipeline of {@link IconHelper} for the icon sizes of
+ * all known decks and the 800x100 touch screen strip of the Stream Deck +.
+ * <br>
+ * Run with the GC profiler to get the allocation rate of each operation:
+ * <pre>
+ * java -jar target/benchmarks.jar ImagePipelineBenchmark -prof gc
+ * </pre>
+ * or with {@link RunBenchmarks}, which adds the profiler itself.
+ *
+ * @author Roland von Werden
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ImagePipelineBenchmark {
+
+	/**
+	 * Key used for {@link IconHelper#cacheImage(String, BufferedImage)}, the
+	 * same entry is overwritten by every invocation
+	 */
+	private static final String CACHE_KEY = "temp://BENCHMARK_IMAGE";
+
+	private static final String TEXT = "Benchmark";
+
+	private static final String ROLLING_TEXT = "Rolling text benchmark";
+
+	/**
+	 * Budget of one page per key image, down to a quality of 50%
+	 */
+	private static final JpegBudget ONE_PAGE = new JpegBudget(1, 0.5f);
+
+	/**
+	 * Target size, either the edge length of a square icon or
+	 * <code>WIDTHxHEIGHT</code>
+	 */
+	@Param({ "72", "80", "96", "120", "800x100" })
+	public String size;
+
+	private Dimension dimension;
+
+	/**
+	 * Image twice the target size, as loaded from disk before it is fitted to
+	 * the deck
+	 */
+	private BufferedImage source;
+
+	/**
+	 * Image in the target size
+	 */
+	private BufferedImage image;
+
+	/**
+	 * Converted image in the target size
+	 */
+	private SDImage sdImage;
+
+	/**
+	 * Converted image twice the target size, variants are requested from it
+	 */
+	private SDImage largeImage;
+
+	@Setup
+	public void setup() {
+		this.dimension = parseSize(this.size);
+		this.source = createImage(this.dimension.width * 2, this.dimension.height * 2);
+		this.image = createImage(this.dimension.width, this.dimension.height);
+		this.sdImage = IconHelper.convertImage(this.image, this.dimension);
+		this.largeImage = IconHelper.convertImage(this.source, new Dimension(this.source.getWidth(), this.source.getHeight()));
+	}
+
+	@Benchmark
+	public SDImage convertImage() {
+		return IconHelper.convertImage(this.source, this.dimension);
+	}
+
+	@Benchmark
+	public SDImage cacheImage() {
+		return IconHelper.cacheImage(CACHE_KEY, this.image);
+	}
+
+	@Benchmark
+	public SDImage addText() {
+		return IconHelper.addText(this.image, TEXT, IconHelper.TEXT_BOTTOM);
+	}
+
+	@Benchmark
+	public AnimationStack createRollingTextAnimation() {
+		return IconHelper.createRollingTextAnimation(this.sdImage, ROLLING_TEXT, IconHelper.TEXT_BOTTOM);
+	}
+
+	@Benchmark
+	public BufferedImage createResizedCopy() {
+		return IconHelper.createResizedCopy(this.source, true, this.dimension);
+	}
+
+	@Benchmark
+	public ByteArrayOutputStream writeToByteArrayOutputStreamAsJpeg85() throws IOException {
+		return IconHelper.writeToByteArrayOutputStreamAsJpeg85(this.image);
+	}
+
+	/**
+	 * Searches quality and chroma subsampling so that the image fits into one
+	 * page, compare with {@link #writeToByteArrayOutputStreamAsJpeg85()}
+	 */
+	@Benchmark
+	public byte[] encodeWithinOnePage() throws IOException {
+		return ONE_PAGE.encode(this.image);
+	}
+
+	/**
+	 * Variant that has already been created, the common case while a page is
+	 * drawn repeatedly
+	 */
+	@Benchmark
+	public SDImage getVariantCached() {
+		return this.largeImage.getVariant(this.dimension);
+	}
+
+	/**
+	 * Variant that has to be converted first, the case for each new image
+	 */
+	@Benchmark
+	public SDImage getVariantConverted() {
+		SDImage fresh = new SDImage(this.largeImage.sdImage, this.largeImage.sdImageJpeg, this.largeImage.image);
+		return fresh.getVariant(this.dimension);
+	}
+
+	static Dimension parseSize(String size) {
+		int separator = size.indexOf('x');
+		if (separator < 0) {
+			int edge = Integer.parseInt(size);
+			return new Dimension(edge, edge);
+		}
+		return new Dimension(Integer.parseInt(size.substring(0, separator)), Integer.parseInt(size.substring(separator + 1)));
+	}
+
+	/**
+	 * Creates an image with a gradient and some shapes, so that the JPEG
+	 * encoder has to work like for a real icon
+	 */
+	static BufferedImage createImage(int width, int height) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		g.setPaint(new GradientPaint(0, 0, Color.BLUE, width, height, Color.ORANGE));
+		g.fillRect(0, 0, width, height);
+		g.setColor(Color.WHITE);
+		g.fillOval(width / 4, height / 4, width / 2, height / 2);
+		g.setColor(Color.RED);
+		g.drawLine(0, height, width, 0);
+		g.dispose();
+		return image;
+	}
+}
@@ -0,0 +1,116 @@
+package de.rcblum.stream.deck.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.rcblum.stream.deck.device.StreamDeck;
+import de.rcblum.stream.deck.device.descriptor.DeckDescriptor;
+import de.rcblum.stream.deck.device.loopback.LoopbackHidDevice;
+
+/**
+ * Latency from an input report arriving at {@link StreamDeck#onInputReport}
+ * until a key listener or a raw listener received the event. The reports are handed to the
+ * stream deck directly, so the time covers parsing, the hand over to the
+ * event dispatcher and the dispatch itself. The sample time mode reports the
+ * percentiles of the latency:
+ * <pre>
+ * java -jar target/benchmarks.jar InputLatencyBenchmark
+ * </pre>
+ *
+ * @author Roland von Werden
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class InputLatencyBenchmark {
+
+	/**
+	 * <code>key</code> alternates between pressing and releasing the first
+	 * key, <code>dial</code> rotates the first dial
+	 */
+	@Param({ "key", "dial" })
+	public String input;
+
+	/**
+	 * <code>key</code> registers a key listener receiving {@link de.rcblum.stream.deck.event.KeyEvent}s,
+	 * <code>raw</code> a raw listener receiving the primitive values
+	 */
+	@Param({ "key", "raw" })
+	public String listener;
+
+	private LoopbackHidDevice device;
+
+	private StreamDeck streamDeck;
+
+	private byte[][] reports;
+
+	private int next = 0;
+
+	/**
+	 * Number of events received by the listener, written by the event
+	 * dispatcher only
+	 */
+	private volatile long received = 0;
+
+	@Setup
+	public void setup() {
+		DeckDescriptor descriptor = DeckDescriptor.getDescriptors().stream().filter(d -> d.deviceName.equals("Stream Deck Plus")).findFirst().get();
+		this.device = new LoopbackHidDevice(descriptor);
+		this.device.setDecodeImages(false);
+		this.streamDeck = new StreamDeck(descriptor, this.device, 50);
+		if ("raw".equals(this.listener))
+			this.streamDeck.addRawKeyListener((deviceId, keyId, type, nanos, value1, value2) -> this.received++);
+		else
+			this.streamDeck.addKeyListener(e -> this.received++);
+		if ("dial".equals(this.input)) {
+			this.reports = new byte[][] { report(descriptor.inputReportDials, 0x01, 0x01) };
+		}
+		else {
+			this.reports = new byte[][] {
+				report(descriptor.inputReportKeys, 0x01),
+				report(descriptor.inputReportKeys, 0x00)
+			};
+		}
+	}
+
+	private static byte[] report(byte[] prefix, int... data) {
+		byte[] report = new byte[511];
+		System.arraycopy(prefix, 0, report, 0, prefix.length);
+		for (int i = 0; i < data.length; i++)
+			report[prefix.length + i] = (byte) data[i];
+		return report;
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.streamDeck.stop();
+	}
+
+	@Benchmark
+	public long reportToListener() {
+		long expected = this.received + 1;
+		byte[] report = this.reports[this.next++ % this.reports.length];
+		this.streamDeck.onInputReport(this.device, (byte) 0x01, report, report.length);
+		// Parking here would add the wake up time of this thread, yielding
+		// leaves the core to the dispatcher on machines with few cores
+		while (this.received < expected)
+			Thread.yield();
+		return expected;
+	}
+}
@@ -0,0 +1,84 @@
+package de.rcblum.stream.deck.benchmark;
+
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.rcblum.stream.deck.device.StreamDeck;
+import de.rcblum.stream.deck.device.descriptor.DeckDescriptor;
+import de.rcblum.stream.deck.device.general.MirrorStreamDeck;
+import de.rcblum.stream.deck.device.loopback.LoopbackHidDevice;
+import de.rcblum.stream.deck.util.IconHelper;
+import de.rcblum.stream.deck.util.SDImage;
+
+/**
+ * Cost of drawing a new image on a {@link MirrorStreamDeck} depending on the
+ * number of decks in the group. The decks are loopback devices without timing
+ * emulation, so the time is spent converting the image, generating the reports
+ * and handing them to the devices. Each invocation draws a new image object,
+ * alternating between two contents so that no image is skipped as already
+ * displayed.
+ *
+ * @author Roland von Werden
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class MirrorBenchmark {
+
+	@Param({ "1", "2", "4", "8" })
+	public int decks;
+
+	private MirrorStreamDeck mirror;
+
+	private SDImage[] sources;
+
+	private int next = 0;
+
+	@Setup
+	public void setup() {
+		DeckDescriptor descriptor = DeckDescriptor.getDescriptors().stream().filter(d -> d.deviceName.equals("Stream Deck Classic Rev2")).findFirst().get();
+		List<StreamDeck> streamDecks = new ArrayList<>();
+		for (int i = 0; i < this.decks; i++) {
+			LoopbackHidDevice device = new LoopbackHidDevice(descriptor);
+			device.setDecodeImages(false);
+			streamDecks.add(new StreamDeck(descriptor, device, 50));
+		}
+		this.mirror = new MirrorStreamDeck(streamDecks);
+		Dimension size = new Dimension(144, 144);
+		this.sources = new SDImage[] {
+				IconHelper.convertImage(ImagePipelineBenchmark.createImage(144, 144), size),
+				IconHelper.convertImage(IconHelper.flipHoriz(ImagePipelineBenchmark.createImage(144, 144)), size)
+		};
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.mirror.stop();
+	}
+
+	@Benchmark
+	public void drawNewImage() throws Exception {
+		SDImage source = this.sources[this.next++ & 1];
+		SDImage image = new SDImage(source.sdImage, source.sdImageJpeg, source.image);
+		this.mirror.drawImageAsync(0, image).get(10, TimeUnit.SECONDS);
+	}
+}
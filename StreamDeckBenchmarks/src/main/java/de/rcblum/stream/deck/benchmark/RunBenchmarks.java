@@ -0,0 +1,27 @@
+package de.rcblum.stream.deck.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of this module with the GC profiler, so that the
+ * throughput is reported together with the allocation rate
+ * (<code>gc.alloc.rate.norm</code> is the allocation per operation).<br>
+ * An optional argument restricts the benchmarks by a regular expression.
+ *
+ * @author Roland von Werden
+ *
+ */
+public class RunBenchmarks {
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(args.length > 0 ? args[0] : RunBenchmarks.class.getPackage().getName() + ".*")
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -1,6 +1,8 @@
 package de.rcblum.stream.deck;
 
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -11,6 +13,7 @@ import de.rcblum.stream.deck.device.components.DialKey;
 import de.rcblum.stream.deck.device.components.TouchScreen;
 import de.rcblum.stream.deck.device.descriptor.KeyType;
 import de.rcblum.stream.deck.device.general.IStreamDeck;
+import de.rcblum.stream.deck.device.worker.BrightnessRamp.Easing;
 import de.rcblum.stream.deck.event.KeyEvent;
 import de.rcblum.stream.deck.event.KeyEvent.Type;
 import de.rcblum.stream.deck.event.StreamKeyListener;
@@ -79,9 +82,10 @@ public class StreamDeckController implements StreamKeyListener, IconUpdateListen
 	private SDImage back = null;
 
 	/**
-	 * Time, the last time a key was releaed, is used for the key dead zone
+	 * Arrival time of the last key event as {@link System#nanoTime()}, is used
+	 * for the key dead zone
 	 */
-	private long lastKeyReleasedEvent = System.currentTimeMillis();
+	private long lastKeyReleasedEvent = System.nanoTime();
 
 	/**
 	 * Proxy for interacting with the ESD
@@ -208,7 +212,7 @@ public class StreamDeckController implements StreamKeyListener, IconUpdateListen
 	private synchronized void onKeyEvent(KeyEvent event, boolean useDeadzone) {
 		LOGGER.debug(String.format("New Key event: Key-ID: %s, Type: %s", event.getKeyId(), event.getType()));
 		if (event.getType() == Type.RELEASED_CLICKED
-				&& System.currentTimeMillis() - lastKeyReleasedEvent < keyDeadZone && useDeadzone)
+				&& event.getCreatedNanos() - lastKeyReleasedEvent < TimeUnit.MILLISECONDS.toNanos(keyDeadZone) && useDeadzone)
 			return;
 		StreamItem[] children = this.currentDir.getChildren();
 		int id = event.getKeyId();
@@ -223,7 +227,7 @@ public class StreamDeckController implements StreamKeyListener, IconUpdateListen
 				this.animators[id].onKeyEvent(event);
 			}
 		}
-		lastKeyReleasedEvent = System.currentTimeMillis();
+		lastKeyReleasedEvent = event.getCreatedNanos();
 	}
 
 	/**
@@ -362,8 +366,15 @@ public class StreamDeckController implements StreamKeyListener, IconUpdateListen
 	private void updateDisplay(boolean updateAnimators) {
 		StreamItem[] children = this.currentDir.getChildren();
 		if (children != null) {
-			for (int i = 0; i < children.length; i++) {
-				this.updateKey(i, updateAnimators);
+			// Collect all keys, so they can be sent as one image
+			this.streamDeck.beginBatch();
+			try {
+				for (int i = 0; i < children.length; i++) {
+					this.updateKey(i, updateAnimators);
+				}
+			}
+			finally {
+				this.streamDeck.endBatch();
 			}
 		}
 	}
@@ -416,6 +427,19 @@ public class StreamDeckController implements StreamKeyListener, IconUpdateListen
 		this.streamDeck.setBrightness(brightness);
 	}
 
+	/**
+	 * Wrapper to fade the brightness of stream deck, e.g. to dim an idle deck
+	 * or to wake it up on a key press
+	 * 
+	 * @param brightness     Target brightness in percent 0 - 100 %
+	 * @param durationMillis Duration of the fade in ms
+	 * @param easing         Curve of the fade
+	 * @return Future completed when the target brightness was written
+	 */
+	public CompletableFuture<Void> rampBrightness(int brightness, long durationMillis, Easing easing) {
+		return this.streamDeck.rampBrightness(brightness, durationMillis, easing);
+	}
+
 	/**
 	 * Resets stream deck and updates display of keys
 	 */
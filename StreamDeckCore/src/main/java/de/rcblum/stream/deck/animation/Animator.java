@@ -14,6 +14,7 @@ import org.apache.logging.log4j.Logger;
 
 import de.rcblum.stream.deck.animation.listener.AnimationListener;
 import de.rcblum.stream.deck.device.general.IStreamDeck;
+import de.rcblum.stream.deck.device.worker.DeckUpdater.Priority;
 import de.rcblum.stream.deck.event.KeyEvent;
 import de.rcblum.stream.deck.event.KeyEvent.Type;
 import de.rcblum.stream.deck.event.StreamKeyListener;
@@ -214,7 +215,7 @@ public class Animator implements StreamKeyListener, Runnable {
 		if (this.framePos >= 0 && this.framePos < frameCount) {
 			frame = this.animation.getFrame(framePos);
 			// Draw frame
-			this.streamDeck.drawImage(this.keyIndex, frame);
+			this.streamDeck.drawImage(this.keyIndex, frame, Priority.ANIMATION);
 		}
 		// Handle normal frame advance
 		if (this.framePos + this.frameAdvance >= 0 && this.framePos + this.frameAdvance < frameCount) {
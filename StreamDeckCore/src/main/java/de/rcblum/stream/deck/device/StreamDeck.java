@@ -2,14 +2,18 @@ package de.rcblum.stream.deck.device;
 
 import java.awt.Dimension;
 import java.awt.Point;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -20,12 +24,32 @@ import de.rcblum.stream.deck.device.descriptor.DeckDescriptor;
 import de.rcblum.stream.deck.device.descriptor.KeyType;
 import de.rcblum.stream.deck.device.descriptor.hidfunctions.DrawImageInterface;
 import de.rcblum.stream.deck.device.descriptor.hidfunctions.DrawTouchscreenInterface;
+import de.rcblum.stream.deck.device.descriptor.hidfunctions.FeatureReportIntegerInterface;
+import de.rcblum.stream.deck.device.descriptor.hidfunctions.FeatureReportInterface;
 import de.rcblum.stream.deck.device.general.IStreamDeck;
+import de.rcblum.stream.deck.device.encoder.DeckEncoder;
+import de.rcblum.stream.deck.device.metrics.DeckMetrics;
+import de.rcblum.stream.deck.device.metrics.InputTrace;
+import de.rcblum.stream.deck.device.report.InputReportParser;
+import de.rcblum.stream.deck.device.report.ReportBuffer;
+import de.rcblum.stream.deck.device.report.ReportTranscript;
+import de.rcblum.stream.deck.device.worker.BrightnessRamp;
+import de.rcblum.stream.deck.device.worker.BrightnessRamp.Easing;
+import de.rcblum.stream.deck.device.worker.DeckCommandStore;
+import de.rcblum.stream.deck.device.worker.DeckCommandStore.Policy;
+import de.rcblum.stream.deck.device.worker.DeckCommandStore.Status;
+import de.rcblum.stream.deck.device.worker.DeckScheduler;
+import de.rcblum.stream.deck.device.worker.DeckShadow;
 import de.rcblum.stream.deck.device.worker.DeckWorker;
 import de.rcblum.stream.deck.device.worker.EventDispatcher;
+import de.rcblum.stream.deck.device.worker.RawEventRing;
+import de.rcblum.stream.deck.device.worker.ListenerExecutor;
+import de.rcblum.stream.deck.device.worker.PanelComposer;
 import de.rcblum.stream.deck.device.worker.DeckUpdater;
+import de.rcblum.stream.deck.device.worker.DeckUpdater.Priority;
 import de.rcblum.stream.deck.event.KeyEvent;
 import de.rcblum.stream.deck.event.KeyEvent.Type;
+import de.rcblum.stream.deck.event.RawKeyListener;
 import de.rcblum.stream.deck.event.StreamKeyListener;
 import de.rcblum.stream.deck.items.StreamItem;
 import de.rcblum.stream.deck.util.IconHelper;
@@ -47,8 +71,9 @@ import purejavahidapi.InputReportListener;
  * is done by 1.) resetting it, 2) setting the brightness of the device. <br>
  * <br>
  * All processing is don asynchronous, meaning anything sent to the deck is put
- * in a queue and processed in another thread. Processing is done at a tick rate
- * of 100 (100 updates per second max).
+ * in a queue and processed in another thread. The thread sleeps while nothing
+ * is queued, commands are paced as defined by
+ * {@link DeckDescriptor#reportPacingNanos}.
  * 
  * <br>
  * <br>
@@ -90,6 +115,21 @@ import purejavahidapi.InputReportListener;
 public class StreamDeck implements InputReportListener, IStreamDeck {
 	
 	private static final Logger LOGGER = LogManager.getLogger(StreamDeck.class);
+
+	/**
+	 * Source of the IDs of the stream decks
+	 */
+	private static final AtomicInteger DEVICE_IDS = new AtomicInteger();
+
+	/**
+	 * Returns a new ID for a stream deck, shared by all implementations of
+	 * {@link IStreamDeck} so the IDs are unique within the JVM
+	 * 
+	 * @return ID for {@link IStreamDeck#getDeviceId()}
+	 */
+	public static int nextDeviceId() {
+		return DEVICE_IDS.incrementAndGet();
+	}
 	
 	private String uid = UUID.randomUUID().toString().substring(0,4);
 	
@@ -107,6 +147,11 @@ public class StreamDeck implements InputReportListener, IStreamDeck {
 	 * Brightness command for this instance.
 	 */
 	private int brightness = 70;
+
+	/**
+	 * Fades the brightness on the shared {@link DeckScheduler}
+	 */
+	private BrightnessRamp brightnessRamp = null;
 	
 	/**
 	 * Keys set to be displayed on the StreamDeck
@@ -114,9 +159,15 @@ public class StreamDeck implements InputReportListener, IStreamDeck {
 	private StreamItem[] keys = new StreamItem[15];
 	
 	/**
-	 * current values if a key on a certain index is pressed or not
+	 * Parses the input reports and keeps the pressed state of the keys
+	 */
+	private InputReportParser inputParser = null;
+
+	/**
+	 * {@link System#nanoTime()} when the input report being parsed arrived,
+	 * only used by the input report thread
 	 */
-	private boolean[] keysPressed = new boolean[15];
+	private long reportNanos = 0;
 	
 	/**
 	 * Object representing the dials on the stream deck, if it has any
@@ -129,30 +180,76 @@ public class StreamDeck implements InputReportListener, IStreamDeck {
 	private TouchScreen touchScreen = null;
 	
 	/**
-	 * current values if one of the special keys on a certain index is pressed or not
+	 * Latest-wins store for commands to be sent to the ESD
 	 */
-	private boolean[] specialKeysPressed = new boolean[15];
-	
+	private DeckCommandStore sendPool = null;
+
+	/**
+	 * Shadow of the images currently displayed by the ESD
+	 */
+	private DeckShadow shadow = null;
+
+	/**
+	 * Composes full images if most keys change in one batch
+	 */
+	private PanelComposer composer = null;
+
+	/**
+	 * Key images collected while a batch is open, indexed by key index
+	 */
+	private DeckUpdater[] batch = null;
+
+	/**
+	 * Number of open batches, guarded by {@link #shadow}
+	 */
+	private int batchDepth = 0;
+
 	/**
-	 * Queue for commands to be sent to the ESD
+	 * Encoder of this device, owns the buffers and the lock for the HID reports
 	 */
-	private Queue<DeckUpdater> sendPool = new ConcurrentLinkedQueue<>();
+	private DeckEncoder encoder = null;
+
+	/**
+	 * Metrics of the send and receive path
+	 */
+	private DeckMetrics metrics = null;
+
+	private DrawImageInterface drawImageInterface = null;
+
+	private DrawTouchscreenInterface drawTouchScreenInterface = null;
+
+	private DrawImageInterface drawFullImageInterface = null;
+
+	private FeatureReportInterface resetInterface = null;
+
+	private FeatureReportIntegerInterface brightnessInterface = null;
 	
 	/**
 	 * Queue for {@link KeyEvent}s that are triggered by the ESD
 	 */
-	private Queue<KeyEvent> recievePool = new ConcurrentLinkedQueue<>();
+	private RawEventRing recievePool = new RawEventRing();
 	
 	/**
 	 * Daemon that send commands to the ESD
 	 */
 	private Thread sendWorker = null;
 	
+	/**
+	 * Worker running on {@link #sendWorker}
+	 */
+	private DeckWorker deckWorker = null;
+	
 	/**
 	 * Daemon that sends received {@link KeyEvent}s  to the affected listeners.
 	 */
 	private Thread eventDispatcher = null;
 	
+	/**
+	 * Runs the listeners when dispatching asynchronously, <code>null</code> if
+	 * the {@link #eventDispatcher} calls the listeners itself
+	 */
+	private volatile ListenerExecutor listenerExecutor = null;
+	
 	/**
 	 * Intended state of the daemons
 	 */
@@ -163,6 +260,17 @@ public class StreamDeck implements InputReportListener, IStreamDeck {
 	 */
 	private List<StreamKeyListener> listerners = new CopyOnWriteArrayList<>();
 	
+	/**
+	 * Registered raw listeners, replaced on every change so the dispatcher
+	 * can iterate them without allocating
+	 */
+	private volatile RawKeyListener[] rawListeners = new RawKeyListener[0];
+	
+	/**
+	 * ID of the stream deck passed to the {@link RawKeyListener}s
+	 */
+	private final int deviceId = nextDeviceId();
+	
 	/**
 	 * Creates a wrapper for the Stream Deck HID
 	 * 
@@ -175,28 +283,45 @@ public class StreamDeck implements InputReportListener, IStreamDeck {
 		super();
 		this.descriptor = descriptor;
 		this.keys = new StreamItem[this.getKeySize()];
-		this.keysPressed = new boolean[descriptor.getKeySize()];
-		this.specialKeysPressed = new boolean[descriptor.getSpecialKeySize()];
+		this.sendPool = new DeckCommandStore(descriptor.getKeySize() + descriptor.drawImageKeyOffset);
+		this.shadow = new DeckShadow(descriptor.getKeySize() + descriptor.drawImageKeyOffset);
+		this.sendPool.setEvictionListener(this.shadow::failed);
+		this.composer = new PanelComposer(descriptor);
+		this.batch = new DeckUpdater[descriptor.getKeySize() + descriptor.drawImageKeyOffset];
 		if (descriptor.getTouchScreenIndex() >= 0) {
 			this.touchScreen = new TouchScreen(descriptor.getTouchScreenIndex(), this);
 			//this.addKeyListener(this.touchScreen);
 		}
-		List<DialKey> dialList = new LinkedList<DialKey>();
-		for(int i = this.descriptor.getSpecialKeyOffset(); i < this.descriptor.getTotalKeySize(); i++) {
-			if (this.descriptor.getKey(i) == KeyType.ROTARY_ENCODER) {
-				DialKey dial = new DialKey(i, this);
-				dialList.add(dial);
-				//this.addKeyListener(dial);
-			}
-		}
-		this.dials = dialList.toArray(new DialKey[dialList.size()]);
+		this.dials = new DialKey[descriptor.getDialCount()];
+		for (int i = 0; i < this.dials.length; i++)
+			this.dials[i] = new DialKey(descriptor.getDialKeyId(i), this);
+		this.inputParser = new InputReportParser(descriptor, new InputHandler());
 		this.hidDevice = streamDeck;
 		this.hidDevice.setInputReportListener(this);
+		if (descriptor.encoderFactory != null) {
+			this.encoder = DeckEncoder.forDevice(streamDeck, descriptor.encoderFactory);
+			this.drawImageInterface = this.encoder.asDrawImageInterface();
+			this.drawTouchScreenInterface = descriptor.drawTouchScreenInterface != null ? this.encoder.asDrawTouchScreenInterface() : null;
+			this.drawFullImageInterface = descriptor.drawFullImageInterface != null ? this.encoder.asDrawFullImageInterface() : null;
+			this.resetInterface = this.encoder.asResetInterface();
+			this.brightnessInterface = this.encoder.asBrightnessInterface();
+		}
+		else {
+			this.drawImageInterface = descriptor.drawImageInterface;
+			this.drawTouchScreenInterface = descriptor.drawTouchScreenInterface;
+			this.drawFullImageInterface = descriptor.drawFullImageInterface;
+			this.resetInterface = descriptor.resetInterface;
+			this.brightnessInterface = descriptor.brightnessInterface;
+		}
 		this.brightness = brightness;
-		this.sendWorker = new Thread(new DeckWorker(this));
+		this.brightnessRamp = new BrightnessRamp(DeckScheduler.get(), this::sendBrightness, descriptor.reportPacingNanos);
+		this.metrics = new DeckMetrics(this);
+		this.metrics.register(descriptor.deviceName + "-" + this.uid);
+		this.deckWorker = new DeckWorker(this);
+		this.sendWorker = new Thread(this.deckWorker, "DeckWorker-" + this.uid);
 		this.sendWorker.setDaemon(true);
 		this.sendWorker.start();
-		this.eventDispatcher = new Thread(new EventDispatcher(this));
+		this.eventDispatcher = new Thread(new EventDispatcher(this), "EventDispatcher-" + this.uid);
 		this.eventDispatcher.setDaemon(true);
 		this.eventDispatcher.start();
 	}
@@ -224,7 +349,7 @@ public class StreamDeck implements InputReportListener, IStreamDeck {
 			catch (Exception e) {
 				LOGGER.error("Error sending out KeyEvents", e);
 			}
-			queue(new DeckUpdater(this.hidDevice, this.descriptor.drawImageInterface, keyId + this.getDescriptor().drawImageKeyOffset, item.getIcon(), this.descriptor.iconSize));
+			queue(new DeckUpdater(this.hidDevice, this.drawImageInterface, keyId + this.getDescriptor().drawImageKeyOffset, item.getIcon(), this.descriptor.iconSize));
 		}
 	}
 	
@@ -246,6 +371,47 @@ public class StreamDeck implements InputReportListener, IStreamDeck {
 		return this.listerners.remove(listener);
 	}
 	
+	@Override
+	public synchronized boolean addRawKeyListener(RawKeyListener listener) {
+		RawKeyListener[] listeners = this.rawListeners;
+		for (RawKeyListener l : listeners)
+			if (l == listener)
+				return false;
+		RawKeyListener[] added = Arrays.copyOf(listeners, listeners.length + 1);
+		added[listeners.length] = listener;
+		this.rawListeners = added;
+		return true;
+	}
+	
+	@Override
+	public synchronized boolean removeRawKeyListener(RawKeyListener listener) {
+		RawKeyListener[] listeners = this.rawListeners;
+		for (int i = 0; i < listeners.length; i++) {
+			if (listeners[i] == listener) {
+				RawKeyListener[] removed = new RawKeyListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, removed, 0, i);
+				System.arraycopy(listeners, i + 1, removed, i, removed.length - i);
+				this.rawListeners = removed;
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns the registered raw listeners. The array must not be modified.
+	 * 
+	 * @return Raw listeners
+	 */
+	public RawKeyListener[] getRawListeners() {
+		return this.rawListeners;
+	}
+	
+	@Override
+	public int getDeviceId() {
+		return this.deviceId;
+	}
+	
 	/* (non-Javadoc)
 	 * @see de.rcblum.stream.deck.IStreamDeck#drawImage(int, de.rcblum.stream.deck.util.SDImage)
 	 */
@@ -259,23 +425,72 @@ public class StreamDeck implements InputReportListener, IStreamDeck {
 	 */
 	@Override
 	public void drawImage(int keyIndex, SDImage imgData, Dimension overrideSize) {
-		DrawImageInterface dI = this.descriptor.drawImageInterface;
-		DrawTouchscreenInterface dT = this.descriptor.drawTouchScreenInterface;
+		drawImage(keyIndex, imgData, overrideSize, defaultPriority());
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.rcblum.stream.deck.IStreamDeck#drawImage(int, de.rcblum.stream.deck.util.SDImage, de.rcblum.stream.deck.device.worker.DeckUpdater.Priority)
+	 */
+	@Override
+	public void drawImage(int keyIndex, SDImage imgData, Priority priority) {
+		drawImage(keyIndex, imgData, this.getDescriptor().getKey(keyIndex).getDimension(), priority);
+	}
+	
+	/**
+	 * Creates a Job to send the give icon to the ESD in the given lane
+	 * @param keyIndex  Index on the ESD as defined by {@link DeckDescriptor}
+	 * @param imgData	Image to be displayed
+	 * @param overrideSize Overrides the default icon size of the given streamdeck
+	 * @param priority Lane the image is sent in
+	 */
+	public void drawImage(int keyIndex, SDImage imgData, Dimension overrideSize, Priority priority) {
+		queue(this.createDrawCommand(keyIndex, imgData, overrideSize, priority));
+	}
+
+	/* (non-Javadoc)
+	 * @see de.rcblum.stream.deck.IStreamDeck#drawImageAsync(int, de.rcblum.stream.deck.util.SDImage)
+	 */
+	@Override
+	public CompletableFuture<Void> drawImageAsync(int keyIndex, SDImage imgData) {
+		return queueAsync(this.createDrawCommand(keyIndex, imgData, this.getDescriptor().getKey(keyIndex).getDimension(), defaultPriority()));
+	}
+
+	private DeckUpdater createDrawCommand(int keyIndex, SDImage imgData, Dimension overrideSize, Priority priority) {
+		DrawImageInterface dI = this.drawImageInterface;
+		DrawTouchscreenInterface dT = this.drawTouchScreenInterface;
 		
-		if (this.getDescriptor().getKey(keyIndex) != null && this.getDescriptor().getKey(keyIndex).equals(KeyType.TOUCH_SCREEN))  {
-			queue(new DeckUpdater(this.hidDevice, dT, new Point(0, 0), imgData, overrideSize));
+		if (this.getDescriptor().getComponentType(keyIndex) == KeyType.TOUCH_SCREEN_T)  {
+			return new DeckUpdater(this.hidDevice, dT, new Point(0, 0), imgData, overrideSize).withPriority(priority);
 		}
 		else {
-			queue(new DeckUpdater(this.hidDevice, dI, keyIndex + this.getDescriptor().drawImageKeyOffset, imgData, overrideSize));
+			return new DeckUpdater(this.hidDevice, dI, keyIndex + this.getDescriptor().drawImageKeyOffset, imgData, overrideSize).withPriority(priority);
 		}
 	}
 	
+	/**
+	 * Images drawn while a {@link KeyEvent} is handled are feedback to the user
+	 * and are sent before all other images.
+	 * 
+	 * @return Priority for images without an explicit priority
+	 */
+	private Priority defaultPriority() {
+		return Thread.currentThread() == this.eventDispatcher || ListenerExecutor.isRunningListener() ? Priority.INTERACTIVE : Priority.STATIC;
+	}
+	
 	/* (non-Javadoc)
 	 * @see de.rcblum.stream.deck.IStreamDeck#drawImage(int, de.rcblum.stream.deck.util.SDImage)
 	 */
 	@Override
 	public void drawFullImage(SDImage imgData) {
-		queue(new DeckUpdater(this.hidDevice, this.descriptor.drawFullImageInterface, 0, imgData, this.descriptor.fullDisplaySize));
+		queue(new DeckUpdater(this.hidDevice, this.drawFullImageInterface, 0, imgData, this.descriptor.fullDisplaySize, DeckUpdater.Type.FULL_IMAGE).withPriority(defaultPriority()));
+	}
+
+	/* (non-Javadoc)
+	 * @see de.rcblum.stream.deck.IStreamDeck#drawFullImageAsync(de.rcblum.stream.deck.util.SDImage)
+	 */
+	@Override
+	public CompletableFuture<Void> drawFullImageAsync(SDImage imgData) {
+		return queueAsync(new DeckUpdater(this.hidDevice, this.drawFullImageInterface, 0, imgData, this.descriptor.fullDisplaySize, DeckUpdater.Type.FULL_IMAGE).withPriority(defaultPriority()));
 	}
 	
 	@Override
@@ -300,7 +515,8 @@ public class StreamDeck implements InputReportListener, IStreamDeck {
 	
 	@Override
 	public DialKey getDial(int keyIndex) {
-		return Arrays.stream(this.dials).filter(d -> d.keyId == keyIndex).findFirst().orElse(null);
+		int dialIndex = this.descriptor.getDialIndex(keyIndex);
+		return dialIndex >= 0 ? this.dials[dialIndex] : null;
 	}
 	
 	@Override
@@ -310,21 +526,74 @@ public class StreamDeck implements InputReportListener, IStreamDeck {
 	
 	@Override
 	public void drawTouchScreenImage(Point startPoint, SDImage imgData) {
-		queue(new DeckUpdater(this.hidDevice, this.descriptor.drawTouchScreenInterface, startPoint, imgData, imgData.imageSize));
+		queue(new DeckUpdater(this.hidDevice, this.drawTouchScreenInterface, startPoint, imgData, imgData.imageSize).withPriority(defaultPriority()));
+	}
+	
+	@Override
+	public CompletableFuture<Void> drawTouchScreenImageAsync(Point startPoint, SDImage imgData) {
+		return queueAsync(new DeckUpdater(this.hidDevice, this.drawTouchScreenInterface, startPoint, imgData, imgData.imageSize).withPriority(defaultPriority()));
 	}
    
    public synchronized boolean sendOutputReport(byte[] report) {
-	   int result = this.hidDevice.setOutputReport(report[0], Arrays.copyOfRange(report, 1, report.length), report.length - 1);
-	   return result >= 0;
+	   if (this.encoder != null)
+		   return this.encoder.sendOutputReport(report);
+	   return sendOutputReport(new ReportBuffer(report.length).load(report));
    }
 
-	private void fireKeyChangedEvent(int i, boolean keyPressed) {
-		KeyEvent event = new KeyEvent(this, i, keyPressed ? Type.PRESSED : Type.RELEASED_CLICKED);
-		this.recievePool.add(event);
+   /**
+    * Sends the report to the stream deck without copying it.
+    * 
+    * @param report Report to be sent, the report ID is kept outside of the payload
+    * @return <code>true</code> if the report was sent
+    */
+   public synchronized boolean sendOutputReport(ReportBuffer report) {
+	   if (this.encoder != null)
+		   return this.encoder.sendOutputReport(report);
+	   return report.sendOutputReport(this.hidDevice) >= 0;
+   }
+
+   /**
+    * Starts recording all reports sent to the stream deck in a transcript, see
+    * {@link ReportTranscript}. A running recording is stopped.
+    * 
+    * @param file File the transcript is written to
+    * @return The transcript being recorded
+    * @throws IOException if the file could not be created
+    */
+   public ReportTranscript startTranscript(Path file) throws IOException {
+	   if (this.encoder == null)
+		   throw new IllegalStateException("Reports of " + this.descriptor.deviceName + " cannot be recorded");
+	   ReportTranscript transcript = new ReportTranscript(file);
+	   ReportTranscript previous = this.encoder.getTranscript();
+	   this.encoder.setTranscript(transcript);
+	   if (previous != null)
+		   previous.close();
+	   return transcript;
+   }
+
+   /**
+    * Stops recording the reports and closes the transcript
+    */
+   public void stopTranscript() {
+	   if (this.encoder == null)
+		   return;
+	   ReportTranscript transcript = this.encoder.getTranscript();
+	   this.encoder.setTranscript(null);
+	   if (transcript != null)
+		   transcript.close();
+   }
+
+	private void fireKeyChangedEvent(int i, boolean keyPressed, long nanos) {
+		this.fireKeyEvent(i, keyPressed ? Type.PRESSED : Type.RELEASED_CLICKED, nanos, 0, 0);
 	}
 
-	private void fireKeyEvent(KeyEvent event) {
-		this.recievePool.add(event);
+	/**
+	 * Queues the event for the {@link EventDispatcher}, see
+	 * {@link RawKeyListener} for the values
+	 */
+	private void fireKeyEvent(int keyId, Type type, long nanos, int value1, int value2) {
+		if (!this.recievePool.put(keyId, type.ordinal(), nanos, value1, value2))
+			LOGGER.warn("[{}] KeyEvent dropped: {} {}", this.uid, keyId, type);
 	}
 
 	/* (non-Javadoc)
@@ -335,152 +604,38 @@ public class StreamDeck implements InputReportListener, IStreamDeck {
 		return hidDevice;
 	}
 
-    @Override
-    public void onInputReport(HidDevice source, byte reportID, byte[] reportData, int reportLength) {
-        int byteOffset = StreamDeck.this.descriptor.keyEventInputReportOffset;
-        LOGGER.debug("");
-        LOGGER.debug(String.format("[" + uid + "] Type: 0x%02X 0x%02X 0x%02X", Byte.valueOf(reportData[0]), Byte.valueOf(reportData[1]), Byte.valueOf(reportData[2])));
-        //LOGGER.debug(String.format("Type: %4s %4s %4s", Byte.valueOf(reportData[0]), Byte.valueOf(reportData[1]), Byte.valueOf(reportData[2])));
-        //LOGGER.debug(String.format("Legnth: %4s", reportLength));
-        int lastNonZero = 0;
-        String data1 = "[" + uid + "] Data:";
-        String data2 = "[" + uid + "]      ";
-        String data3 = "[" + uid + "]      ";
-        String data4 = "[" + uid + "]      ";
-        String formatString = " 0x%02X";
-        //formatString = " %4s";
-        for (int i = 0; i < reportData.length; i++) {
-			if (reportData[i] != 0)
-				lastNonZero = i;
-			if (i < 8) {
-				data1 += String.format(formatString, reportData[i]);
-			}
-			else if (i < 16) {
-				data2 += String.format(formatString, reportData[i]);
-			}
-			else if (i < 24) {
-				data3 += String.format(formatString,  reportData[i]);
-			}
-			else if (i < 32) {
-				data4 += String.format(formatString, reportData[i]);
-			}
-		}
-        LOGGER.debug(data1);
-        LOGGER.debug(data2);
-        //LOGGER.debug(String.format("Reverse  [4, 5][6, 7]: %4s %4s", value1rev, value2rev));
-        //LOGGER.debug(data3);
-        //LOGGER.debug(data4);
-    	// Check what report was sent
-    	int reportType = StreamDeck.getInputReportType(this.descriptor, reportData);
-        if (reportID == 1 && reportType == 1) {
-            processKeyEvents(reportData, reportLength, byteOffset);
-        }
-        else if (reportID == 1 && reportType == 2) {
-            processTouchEvents(reportData, reportLength, byteOffset);
-        }
-        else if (reportID == 1 && reportType == 3) {
-            processDialEvents(reportData, reportLength, byteOffset);
-        }
-    }
-
-	private void processDialEvents(byte[] reportData, int reportLength, int byteOffset) {
-		boolean isRotation = reportData[byteOffset] == 1;
-		byteOffset += 1;
-		int keyReportOffset = descriptor.getSpecialKeyOffset();
-		int firstDialKeyIndex = 0;
-		KeyType[] sKeys = descriptor.getSpecialKeys();
-		// Determine the first Dial Key
-		for (int i = 0; i < sKeys.length; i++) {
-			if (sKeys[i].equals(KeyType.ROTARY_ENCODER)) {
-				firstDialKeyIndex = i;
-				break;
-			}
-		}
-		// Generate events
-		for (int i = byteOffset; i < + descriptor.getSpecialKeySize() - firstDialKeyIndex + byteOffset && i < reportLength; i++) {
-			int keyIndex = i - byteOffset + firstDialKeyIndex;
-			if (!isRotation && specialKeysPressed[keyIndex] != (reportData[i] == 0x01)) {
-		        fireKeyChangedEvent(keyIndex+descriptor.getSpecialKeyOffset(), reportData[i] == 0x01);
-		        specialKeysPressed[keyIndex] = reportData[i] == 0x01;
-		    }
-			else if (isRotation && reportData[i] != 0x00){
-		        fireKeyEvent(new KeyEvent(this, keyIndex+descriptor.getSpecialKeyOffset(), reportData[i] < 0 ? Type.ROTATE_LEFT : Type.ROTATE_RIGHT, 0, Math.abs(reportData[i])));
-		    }
-		}
+	@Override
+	public void onInputReport(HidDevice source, byte reportID, byte[] reportData, int reportLength) {
+		if (LOGGER.isTraceEnabled())
+			LOGGER.trace(InputReportParser.appendHex(new StringBuilder().append('[').append(uid).append("] Report 0x").append(Integer.toHexString(reportID & 0xFF)).append(":\n"), reportData, 32));
+		this.reportNanos = System.nanoTime();
+		this.inputParser.parse(reportID, reportData, reportLength);
 	}
 
-	private void processTouchEvents(byte[] reportData, int reportLength, int byteOffset) {
-		boolean isSimpleTouch = reportData[byteOffset] == 0x01;
-		boolean isLongTouch   = reportData[byteOffset] == 0x02;
-		boolean isGesture     = reportData[byteOffset] == 0x03;
-
-        int startX = ((reportData[6] & 0xFF) << 8) | (reportData[5] & 0xFF);
-        int startY = (reportData[7] & 0xFF);
-        
-        int endX = ((reportData[10] & 0xFF) << 8) | (reportData[9] & 0xFF);
-        int endY = (reportData[11] & 0xFF);
-
-		int keyReportOffset = descriptor.getSpecialKeyOffset();
-		KeyType[] sKeys = descriptor.getSpecialKeys();
-		// Determine the touch screen index
-		for (int i = 0; i < sKeys.length; i++) {
-			if (sKeys[i].equals(KeyType.TOUCH_SCREEN)) {
-				keyReportOffset += i;
-				break;
-			}
+	/**
+	 * Turns the changes found by the {@link InputReportParser} into
+	 * {@link KeyEvent}s
+	 */
+	private final class InputHandler implements InputReportParser.Handler {
+
+		@Override
+		public void keyChanged(int keyId, boolean pressed) {
+			fireKeyChangedEvent(keyId, pressed, reportNanos);
 		}
-        if(isSimpleTouch) {
-        	fireKeyEvent(new KeyEvent( this, keyReportOffset, Type.TOUCHED, null, new Point(startX, startY)));
-        }
-        else if(isLongTouch) {
-        	fireKeyEvent(new KeyEvent( this, keyReportOffset, Type.TOUCHED_LONG, null, new Point(startX, startY)));
-        }
-        else if(isGesture) {
-	        Type type = Type.SWIPED;
-	        if (startX <= 30 && endX > startX && Math.abs(startX - endX) > Math.abs(startY - endY))
-	        	type = Type.SWIPE_LEFT;
-	        else if (startX >= 770 && endX < startX && Math.abs(startX - endX) > Math.abs(startY - endY))
-	        	type = Type.SWIPE_RIGHT;
-	        if (startX <= 30 && endX > startX && Math.abs(startX - endX) > Math.abs(startY - endY))
-	        	type = Type.SWIPE_LEFT;
-	        else if (endY < startY && Math.abs(startX - endX) < Math.abs(startY - endY))
-	        	type = Type.SWIPE_UP;
-	        else if (endY > startY && Math.abs(startX - endX) < Math.abs(startY - endY))
-	        	type = Type.SWIPE_DOWN;
-        	fireKeyEvent(new KeyEvent( this, keyReportOffset, type, new Point(startX, startY), new Point(endX, endY)));
-        }
-		
-	}
 
-	private void processKeyEvents(byte[] reportData, int reportLength, int byteOffset) {
-		for (int i = byteOffset; i < StreamDeck.this.getKeySize() + byteOffset && i < reportLength; i++) {
-		    int keyIndex = i - byteOffset;
-		    if (keysPressed[keyIndex] != (reportData[i] == 0x01)) {
-		        fireKeyChangedEvent(keyIndex, reportData[i] == 0x01);
-		        keysPressed[keyIndex] = reportData[i] == 0x01;
-		    }
+		@Override
+		public void dialRotated(int keyId, int ticks) {
+			fireKeyEvent(keyId, ticks < 0 ? Type.ROTATE_LEFT : Type.ROTATE_RIGHT, reportNanos, 0, Math.abs(ticks));
+		}
+
+		@Override
+		public void touched(int keyId, Type type, int startX, int startY, int endX, int endY) {
+			if (type == Type.TOUCHED || type == Type.TOUCHED_LONG)
+				fireKeyEvent(keyId, type, reportNanos, RawKeyListener.NO_POINT, RawKeyListener.packPoint(startX, startY));
+			else
+				fireKeyEvent(keyId, type, reportNanos, RawKeyListener.packPoint(startX, startY), RawKeyListener.packPoint(endX, endY));
 		}
 	}
-    
-    private static int getInputReportType(DeckDescriptor d, byte[] reportData) {
-    	int type = 1;
-    	if (Arrays.mismatch(
-	    			d.inputReportKeys, 0, d.inputReportKeys.length, 
-	    			reportData,        0, d.inputReportKeys.length
-	    	) == -1)
-    		type = 1;
-    	else if (d.inputReportTouchScreen != null && Arrays.mismatch(
-	    			d.inputReportTouchScreen, 0, d.inputReportTouchScreen.length, 
-	    			reportData,        0, d.inputReportTouchScreen.length
-	    	) == -1)
-			type = 2;
-    	else if (d.inputReportDials != null && Arrays.mismatch(
-	    			d.inputReportDials, 0, d.inputReportDials.length, 
-	    			reportData,        0, d.inputReportDials.length
-	    	) == -1)
-			type = 3;
-    	return type;
-    }
 
 	/* (non-Javadoc)
 	 * @see de.rcblum.stream.deck.IStreamDeck#removeKey(int)
@@ -495,7 +650,7 @@ public class StreamDeck implements InputReportListener, IStreamDeck {
 				LOGGER.error("Error sending out KeyEvents", e);
 			}
 			this.keys[keyId] = null;
-			queue(new DeckUpdater(this.hidDevice, this.descriptor.drawImageInterface, keyId, StreamDeckConstants.BLACK_ICON, this.descriptor.iconSize));
+			queue(new DeckUpdater(this.hidDevice, this.drawImageInterface, keyId, StreamDeckConstants.BLACK_ICON, this.descriptor.iconSize));
 		}
 	}
 
@@ -504,15 +659,22 @@ public class StreamDeck implements InputReportListener, IStreamDeck {
 	 */
 	@Override
 	public void reset() {
-		this.queue(new DeckUpdater(this.hidDevice, this.descriptor.resetInterface));
-		for (int i = 0; i < keys.length; i++) {
-			if (keys[i] != null)
-				this.queue(new DeckUpdater(this.hidDevice, this.descriptor.drawImageInterface, i + this.getDescriptor().drawImageKeyOffset, keys[i].getIcon(), this.descriptor.iconSize));
-			else
-				this.queue(new DeckUpdater(this.hidDevice, this.descriptor.drawImageInterface, i + this.getDescriptor().drawImageKeyOffset, StreamDeckConstants.BLACK_ICON, this.descriptor.iconSize));
-		}
+		this.queue(new DeckUpdater(this.hidDevice, this.resetInterface));
 		if(this.hasTouchScreen()) {
 			this.drawTouchScreenImage(IconHelper.BLACK_TOUCH_SCREEN);
+			this.touchScreen.invalidateSurface();
+		}
+		this.beginBatch();
+		try {
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] != null)
+					this.queue(new DeckUpdater(this.hidDevice, this.drawImageInterface, i + this.getDescriptor().drawImageKeyOffset, keys[i].getIcon(), this.descriptor.iconSize));
+				else
+					this.queue(new DeckUpdater(this.hidDevice, this.drawImageInterface, i + this.getDescriptor().drawImageKeyOffset, StreamDeckConstants.BLACK_ICON, this.descriptor.iconSize));
+			}
+		}
+		finally {
+			this.endBatch();
 		}
 	}
 
@@ -521,14 +683,299 @@ public class StreamDeck implements InputReportListener, IStreamDeck {
 	 */
 	@Override
 	public void setBrightness(int brightness) {
+		this.brightnessRamp.cancel();
 		brightness = brightness > 99 ? 99 : brightness < 0 ? 0 : brightness;
 		this.brightness = brightness;
-		this.queue(new DeckUpdater(this.hidDevice, this.descriptor.brightnessInterface, this.brightness));
+		this.queue(new DeckUpdater(this.hidDevice, this.brightnessInterface, this.brightness));
+	}
+
+	/* (non-Javadoc)
+	 * @see de.rcblum.stream.deck.IStreamDeck#setBrightnessAsync(int)
+	 */
+	@Override
+	public CompletableFuture<Void> setBrightnessAsync(int brightness) {
+		this.brightnessRamp.cancel();
+		brightness = brightness > 99 ? 99 : brightness < 0 ? 0 : brightness;
+		this.brightness = brightness;
+		return this.queueAsync(new DeckUpdater(this.hidDevice, this.brightnessInterface, this.brightness));
+	}
+
+	/* (non-Javadoc)
+	 * @see de.rcblum.stream.deck.IStreamDeck#rampBrightness(int, long, Easing)
+	 */
+	@Override
+	public CompletableFuture<Void> rampBrightness(int brightness, long durationMillis, Easing easing) {
+		return this.brightnessRamp.start(this.brightness, brightness, durationMillis, easing);
+	}
+
+	/**
+	 * Queues one level of the brightness ramp. Waiting levels are merged by the
+	 * send pool.
+	 */
+	private CompletableFuture<Void> sendBrightness(int level, boolean last) {
+		this.brightness = level;
+		DeckUpdater command = new DeckUpdater(this.hidDevice, this.brightnessInterface, level);
+		if (last)
+			return this.queueAsync(command);
+		this.queue(command);
+		return null;
+	}
+
+	/**
+	 * Resets the stream deck and redraws all keys. The future completes when
+	 * the reset and every command queued before were written.
+	 * 
+	 * @return Future completed after the reset was written
+	 */
+	@Override
+	public CompletableFuture<Void> resetAsync() {
+		this.reset();
+		return this.flush();
+	}
+
+	/**
+	 * Returns a future that completes when every command queued before was
+	 * written to the stream deck or superseded. Key images of a batch that is
+	 * still open are only sent when the batch ends.
+	 * 
+	 * @return Future completed when all queued commands are done
+	 */
+	@Override
+	public CompletableFuture<Void> flush() {
+		List<CompletableFuture<Void>> completions = new ArrayList<>();
+		synchronized (this.shadow) {
+			for (DeckUpdater command : this.sendPool.pending())
+				completions.add(command.getCompletion());
+			for (DeckUpdater command : this.batch) {
+				if (command != null)
+					completions.add(command.getCompletion());
+			}
+		}
+		return CompletableFuture.allOf(completions.toArray(new CompletableFuture<?>[completions.size()]));
+	}
+
+	private Status queue(DeckUpdater payload) {
+		// Commands queued while handling an input event are traced back to it
+		if (payload.getInputArrivalNanos() == 0 && InputTrace.getArrivalNanos() != 0)
+			payload.withInputTrace(InputTrace.getArrivalNanos(), InputTrace.getDispatchedNanos());
+		if(!this.running) {
+			this.metrics.commandDropped();
+			payload.fail(new CancellationException("Stream deck was stopped"));
+			return Status.REJECTED;
+		}
+		if (this.sendPool.getPolicy() == Policy.BLOCK && !this.isBatching(payload))
+			this.awaitCapacity(payload);
+		// Shadow and send pool have to agree on the newest command for each key
+		synchronized (this.shadow) {
+			if (this.isBatching(payload)) {
+				if (this.batch[payload.keyIndex] != null)
+					this.batch[payload.keyIndex].complete();
+				this.batch[payload.keyIndex] = payload;
+				return Status.QUEUED;
+			}
+			else if (this.shadow.accept(payload)) {
+				return this.offer(payload);
+			}
+			else {
+				payload.complete();
+				return Status.SKIPPED;
+			}
+		}
+	}
+
+	/**
+	 * Offers a command accepted by the shadow to the send pool. If the send pool
+	 * does not take it, the shadow forgets the command.
+	 */
+	private Status offer(DeckUpdater payload) {
+		Status status = this.sendPool.offer(payload);
+		if (status != Status.QUEUED) {
+			this.shadow.failed(payload);
+			if (status == Status.REJECTED)
+				payload.fail(new RejectedExecutionException("Send queue of the StreamDeck is full"));
+		}
+		return status;
+	}
+
+	private boolean isBatching(DeckUpdater payload) {
+		synchronized (this.shadow) {
+			return this.batchDepth > 0 && payload.type == DeckUpdater.Type.KEY_IMAGE 
+					&& payload.keyIndex >= 0 && payload.keyIndex < this.batch.length;
+		}
+	}
+
+	/**
+	 * Waits until the send pool has room for the command, must not be called
+	 * while holding the lock of the shadow.
+	 */
+	private void awaitCapacity(DeckUpdater payload) {
+		try {
+			while (this.running && !this.sendPool.awaitCapacity(payload, 100))
+				;
+		} catch (InterruptedException e) {
+			LOGGER.error("Waiting for the send queue was interrupted", e);
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Sets the capacity of the send queue and what happens to commands that
+	 * would exceed it.
+	 * 
+	 * @param policy   Behavior if the queue is full
+	 * @param capacity Maximum number of waiting commands
+	 */
+	@Override
+	public void setQueuePolicy(Policy policy, int capacity) {
+		this.sendPool.setPolicy(policy, capacity);
+	}
+
+	public Policy getQueuePolicy() {
+		return this.sendPool.getPolicy();
 	}
 
-	private void queue(DeckUpdater payload) {
-		if(this.running)
-			this.sendPool.add(payload);
+	public int getQueueCapacity() {
+		return this.sendPool.getCapacity();
+	}
+
+	/* (non-Javadoc)
+	 * @see de.rcblum.stream.deck.IStreamDeck#tryDrawImage(int, de.rcblum.stream.deck.util.SDImage)
+	 */
+	@Override
+	public Status tryDrawImage(int keyIndex, SDImage imgData) {
+		return this.queue(this.createDrawCommand(keyIndex, imgData, this.getDescriptor().getKey(keyIndex).getDimension(), defaultPriority()));
+	}
+
+	private CompletableFuture<Void> queueAsync(DeckUpdater payload) {
+		CompletableFuture<Void> completion = payload.getCompletion();
+		this.queue(payload);
+		return completion;
+	}
+
+	/**
+	 * Starts collecting key images instead of queuing them one by one. Batches
+	 * can be nested, the images are queued when the outermost batch ends.
+	 */
+	@Override
+	public void beginBatch() {
+		synchronized (this.shadow) {
+			this.batchDepth++;
+		}
+	}
+
+	/**
+	 * Ends a batch. If the outermost batch ends and most keys got a new image,
+	 * all keys are sent as one full image if the stream deck supports it.
+	 * Otherwise the changed keys are queued one by one.
+	 */
+	@Override
+	public void endBatch() {
+		synchronized (this.shadow) {
+			if (this.batchDepth == 0 || --this.batchDepth > 0)
+				return;
+			int offset = this.descriptor.drawImageKeyOffset;
+			int changed = 0;
+			for (int i = 0; i < this.batch.length; i++) {
+				if (this.batch[i] != null && this.shadow.isDisplayed(this.batch[i])) {
+					this.batch[i].complete();
+					this.batch[i] = null;
+				}
+				else if (this.batch[i] != null)
+					changed++;
+			}
+			if (this.running && this.composer.isWorthComposing(changed)) {
+				DeckUpdater[] keyImages = new DeckUpdater[this.getKeySize()];
+				for (int keyId = 0; keyId < keyImages.length; keyId++) {
+					DeckUpdater keyImage = this.batch[keyId + offset];
+					if (keyImage == null)
+						keyImage = this.shadow.getExpected(keyId + offset);
+					if (keyImage == null)
+						keyImage = new DeckUpdater(this.hidDevice, this.drawImageInterface, keyId + offset, StreamDeckConstants.BLACK_ICON, this.descriptor.iconSize);
+					keyImages[keyId] = keyImage;
+				}
+				DeckUpdater fullImage = this.composer.compose(this.hidDevice, this.drawFullImageInterface, keyImages, this.shadow.getExpectedTouchScreen());
+				// The full image shows the earliest input of the batch
+				for (DeckUpdater keyImage : this.batch) {
+					if (keyImage != null && keyImage.getInputArrivalNanos() != 0
+							&& (fullImage.getInputArrivalNanos() == 0 || keyImage.getInputArrivalNanos() - fullImage.getInputArrivalNanos() < 0))
+						fullImage.withInputTrace(keyImage.getInputArrivalNanos(), keyImage.getInputDispatchedNanos());
+				}
+				if (this.shadow.accept(fullImage))
+					this.offer(fullImage);
+			}
+			else {
+				for (DeckUpdater keyImage : this.batch) {
+					if (keyImage == null)
+						continue;
+					if (!this.running) {
+						this.metrics.commandDropped();
+						keyImage.fail(new CancellationException("Stream deck was stopped"));
+					}
+					else if (this.shadow.accept(keyImage))
+						this.offer(keyImage);
+					else
+						keyImage.complete();
+				}
+			}
+			Arrays.fill(this.batch, null);
+		}
+	}
+
+	/**
+	 * Resends the images of all keys and the touch screen, even if the shadow
+	 * says they are already displayed. Use this if the content of the stream
+	 * deck was changed from outside of this instance.
+	 */
+	@Override
+	public void resync() {
+		synchronized (this.shadow) {
+			for (DeckUpdater command : this.shadow.invalidateAndCollect()) {
+				DeckUpdater copy = command.copy();
+				if (this.running && this.shadow.accept(copy))
+					this.offer(copy);
+			}
+		}
+	}
+
+	/**
+	 * Forgets what the keys and the touch screen show, the next image for each
+	 * of them will be sent to the stream deck.
+	 */
+	public void invalidateShadow() {
+		this.shadow.invalidate();
+	}
+
+	/**
+	 * Called by the {@link DeckWorker} after the command was written to the ESD
+	 * 
+	 * @param command Command that was written
+	 */
+	public void commandWritten(DeckUpdater command) {
+		this.shadow.written(command);
+		this.sendPool.done(command);
+		command.complete();
+	}
+
+	/**
+	 * Called by the {@link DeckWorker} if the command could not be written to the ESD
+	 * 
+	 * @param command Command that failed
+	 * @param cause   Reason the command failed
+	 */
+	public void commandFailed(DeckUpdater command, Throwable cause) {
+		this.shadow.failed(command);
+		this.sendPool.done(command);
+		command.fail(cause);
+	}
+
+	/**
+	 * Returns the number of commands that were not sent, because the image was
+	 * already displayed on the key
+	 * 
+	 * @return Number of skipped commands
+	 */
+	public long getSkippedCount() {
+		return this.shadow.getSkippedCount();
 	}
 
 	/* (non-Javadoc)
@@ -536,7 +983,14 @@ public class StreamDeck implements InputReportListener, IStreamDeck {
 	 */
 	@Override
 	public void stop() {
+		this.brightnessRamp.cancel();
+		this.stopTranscript();
 		this.running = false;
+		this.sendPool.wakeUp();
+		this.recievePool.close();
+		this.metrics.unregister();
+		if (this.encoder != null)
+			DeckEncoder.release(this.hidDevice);
 	}
 
 	/* (non-Javadoc)
@@ -544,18 +998,13 @@ public class StreamDeck implements InputReportListener, IStreamDeck {
 	 */
 	@Override
 	public void waitForCompletion() {
-		long time = 0;
-		while (this.sendPool.isEmpty()) {
-			try {
-				Thread.sleep(50);
-				time += 50;
-				if (time > 2_000)
-					return;
-			} catch (InterruptedException e) {
-
-				LOGGER.error("StreamDeck was interrupted", e);
-				Thread.currentThread().interrupt();
-			}
+		try {
+			this.flush().get();
+		} catch (ExecutionException e) {
+			LOGGER.error("Command could not be sent to the StreamDeck", e.getCause());
+		} catch (InterruptedException e) {
+			LOGGER.error("StreamDeck was interrupted", e);
+			Thread.currentThread().interrupt();
 		}
 	}
 
@@ -564,7 +1013,7 @@ public class StreamDeck implements InputReportListener, IStreamDeck {
 	 */
 	@Override
 	public void clearButton(int i) {
-		queue(new DeckUpdater(this.hidDevice, this.descriptor.drawImageInterface, i + this.getDescriptor().drawImageKeyOffset, StreamDeckConstants.BLACK_ICON, this.descriptor.iconSize));
+		queue(new DeckUpdater(this.hidDevice, this.drawImageInterface, i + this.getDescriptor().drawImageKeyOffset, StreamDeckConstants.BLACK_ICON, this.descriptor.iconSize));
 	}
 
 	public StreamItem[] getItems() {
@@ -594,8 +1043,7 @@ public class StreamDeck implements InputReportListener, IStreamDeck {
 	public void pushButton(int no) {
 		LOGGER.debug(String.format("Virtual button pushed: Key-ID: %d", no));
 		no = no > 14 ? 14 : no < 0 ? 0 : no;
-		KeyEvent evnt = new KeyEvent(this, no, Type.RELEASED_CLICKED);
-		recievePool.add(evnt);
+		this.fireKeyEvent(no, Type.RELEASED_CLICKED, System.nanoTime(), 0, 0);
 	}
 
 	/**
@@ -608,8 +1056,7 @@ public class StreamDeck implements InputReportListener, IStreamDeck {
 	public void pressButton(int no) {
 		LOGGER.debug(String.format("Virtual button pressed: Key-ID: %d", no));
 		no = no > 14 ? 14 : no < 0 ? 0 : no;
-		KeyEvent evnt = new KeyEvent(this, no, Type.PRESSED);
-		recievePool.add(evnt);
+		this.fireKeyEvent(no, Type.PRESSED, System.nanoTime(), 0, 0);
 	}
 
 	/**
@@ -632,14 +1079,51 @@ public class StreamDeck implements InputReportListener, IStreamDeck {
 		return i >= 0 && i < this.keys.length ? this.keys[i] : null;
 	}
 
-	public KeyEvent pollRecievePool() {
-		return this.recievePool.poll();
+	/**
+	 * Passes the next received event to the listener, waiting until one
+	 * arrives. Used by the {@link EventDispatcher}.
+	 * 
+	 * @param listener Listener receiving the event
+	 * @return <code>false</code> if the stream deck was stopped and all events
+	 *         were taken
+	 */
+	public boolean takeRecievePool(RawKeyListener listener) {
+		return this.recievePool.take(this.deviceId, listener);
 	}
 
 	public List<StreamKeyListener> getListeners() {
 		return this.listerners;
 	}
 
+	/**
+	 * Sets if the listeners are run on the {@link ListenerExecutor} instead of
+	 * the thread dispatching the events. Events of the same key and of the
+	 * same listener keep their order either way.
+	 * 
+	 * @param async <code>true</code> to run the listeners asynchronously
+	 */
+	public synchronized void setAsyncDispatch(boolean async) {
+		if (async && this.listenerExecutor == null)
+			this.listenerExecutor = new ListenerExecutor(this.descriptor.getTotalKeySize(), this.metrics);
+		else if (!async)
+			this.listenerExecutor = null;
+	}
+
+	public boolean isAsyncDispatch() {
+		return this.listenerExecutor != null;
+	}
+
+	/**
+	 * Returns the executor running the listeners, e.g. to configure the
+	 * timeouts
+	 * 
+	 * @return Executor or <code>null</code> if the listeners are not run
+	 *         asynchronously
+	 */
+	public ListenerExecutor getListenerExecutor() {
+		return this.listenerExecutor;
+	}
+
 	public boolean isSendPoolEmpty() {
 		return this.sendPool.isEmpty();
 	}
@@ -652,7 +1136,70 @@ public class StreamDeck implements InputReportListener, IStreamDeck {
 		return this.sendPool.poll();
 	}
 
+	/**
+	 * Polls the next command, waits for one to be queued if there is none.
+	 * 
+	 * @param timeoutMillis Maximum time to wait in ms
+	 * @return The next command or <code>null</code> if none was queued in time
+	 * @throws InterruptedException if the calling thread was interrupted
+	 */
+	public DeckUpdater takeSendPool(long timeoutMillis) throws InterruptedException {
+		return this.sendPool.take(timeoutMillis);
+	}
+
+	/**
+	 * Returns the metrics of the send and receive path, also registered as MBean
+	 * 
+	 * @return Metrics of this stream deck
+	 */
+	public DeckMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	/**
+	 * Returns the encoder that creates the HID reports for this stream deck
+	 * 
+	 * @return Encoder of this stream deck, <code>null</code> if the descriptor has none
+	 */
+	public DeckEncoder getEncoder() {
+		return this.encoder;
+	}
+
+	/**
+	 * Returns the worker that sends the queued commands to the ESD
+	 * 
+	 * @return Worker of this stream deck
+	 */
+	public DeckWorker getDeckWorker() {
+		return this.deckWorker;
+	}
+
+	/**
+	 * Queues a command like the draw methods do, it is skipped if the image is
+	 * already displayed and recorded in the shadow otherwise.
+	 * 
+	 * @param task Command to be sent to the ESD
+	 */
 	public void addToSendPool(DeckUpdater task) {
-		this.sendPool.add(task);
+		this.queue(task);
+	}
+
+	/**
+	 * Returns the store of the commands waiting to be sent
+	 * 
+	 * @return Send queue of this stream deck
+	 */
+	public DeckCommandStore getSendPool() {
+		return this.sendPool;
+	}
+
+	/**
+	 * Returns the number of commands that were replaced by a newer command for
+	 * the same key before being sent to the ESD.
+	 * 
+	 * @return Number of superseded commands
+	 */
+	public long getSupersededCount() {
+		return this.sendPool.getSupersededCount();
 	}
 }
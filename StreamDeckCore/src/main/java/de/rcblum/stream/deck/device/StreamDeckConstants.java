@@ -5,15 +5,15 @@ import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.image.BufferedImage;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import de.rcblum.stream.deck.device.descriptor.DeckDescriptor;
 import de.rcblum.stream.deck.device.general.IStreamDeck;
+import de.rcblum.stream.deck.device.encoder.DeckEncoder;
+import de.rcblum.stream.deck.device.encoder.Rev1Encoder;
+import de.rcblum.stream.deck.device.encoder.Rev2Encoder;
 import de.rcblum.stream.deck.util.IconHelper;
 import de.rcblum.stream.deck.util.SDImage;
 import purejavahidapi.HidDevice;
@@ -41,28 +41,6 @@ public class StreamDeckConstants {
             0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
     };
 
-    /**
-     * Header for all pages of the image command to update a single key
-     */
-    private static final byte[] IMAGE_PAGE_HEADER_REV2 = new byte[]{
-    		0x02, 0x07, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00
-    };
-    
-    /**
-     * Header for all pages of the image command to update the touch screen
-     */
-    private static final byte[] TOUCH_SCREEN_PAGE_HEADER_REV2 = new byte[]{
-    		0x02, 0x0C, 0x00, 0x00, 0x00, 0x00, 0x20, 0x03, 0x64, 0x00, 0x00, 0x00, 0x00, (byte)0xF0, 0x03, 0x00
-    	 // 0x02, 0x0C, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00
-    };
-
-    /**
-     * Header for all pages of the image command to update all keys with one image
-     */
-    private static final byte[] IMAGE_PAGE_HEADER_ALL_REV2 = new byte[]{
-    		0x02, 0x08, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00
-    };
-
     /**
      * Page size that can be sent to the ESD at once
      */
@@ -91,23 +69,6 @@ public class StreamDeckConstants {
     
     // REV1 Data
     
-	/**
-	 * Header for Page 1 of the image command
-	 */
-	private static final byte[] PAGE_1_HEADER_REV1 = new byte[] { 0x01, 0x01, 0x00, 0x00, 0x06, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
-			0x00, 0x00, 0x00, 0x00, 0x42, 0x4D, (byte) 0xF6, 0x3C, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x36, 0x00, 0x00,
-			0x00, 0x28, 0x00, 0x00, 0x00, 0x48, 0x00, 0x00, 0x00, 0x48, 0x00, 0x00, 0x00, 0x01, 0x00, 0x18, 0x00, 0x00,
-			0x00, 0x00, 0x00, (byte) 0xC0, 0x3C, 0x00, 0x00, (byte) 0xC4, 0x0E, 0x00, 0x00, (byte) 0xC4, 0x0E, 0x00,
-			0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00 };
-
-	/**
-	 * Header for Page 2 of the image command
-	 */
-	private static final byte[] PAGE_2_HEADER_REV1 = new byte[] { 
-			0x01, 0x02, 0x00, 0x01, 0x06, 0x00, 0x00, 0x00, 
-			0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00 
-	};
-
 	/**
 	 * Brightness command
 	 */
@@ -165,6 +126,16 @@ public class StreamDeckConstants {
 	public static final int ROW_COUNT = 3;
 
 
+	/**
+	 * Protocol revision of the first generation stream decks (Classic Rev1, Mini)
+	 */
+	public static final int PROTOCOL_REV1 = 1;
+
+	/**
+	 * Protocol revision of the second generation stream decks (Classic Rev2, XL, Plus)
+	 */
+	public static final int PROTOCOL_REV2 = 2;
+
 	public static final DeckDescriptor DEFAULT_STREAM_DECK_DESCRIPTOR = StreamDeckDevices.getStreamDeckDescriptor();
 	
 	/**
@@ -182,11 +153,6 @@ public class StreamDeckConstants {
 	 */
 	public static final SDImage BLACK_ICON = createBlackIcon("temp://BLACK_ICON");
 	
-	/**
-	 * Cache for image data output reports to prevent unnecessary object creation
-	 */
-	private static Map<String, byte[][]> PAGE_CACHE = new HashMap<String, byte[][]>(); 
-
 	/**
 	 * Creates a black 72x72 image and caches it for the given path
 	 * @param path path under which the image is cached
@@ -205,24 +171,21 @@ public class StreamDeckConstants {
 	 * Sends reset-command to ESD REV2
 	 */
 	public static void internalResetRev2(HidDevice hidDevice) {
-		hidDevice.setFeatureReport(RESET_DATA_REV2[0], Arrays.copyOfRange(RESET_DATA_REV2, 1, RESET_DATA_REV2.length), RESET_DATA_REV2.length-1);
+		rev2(hidDevice).reset();
 	}
 
 	/**
 	 * Sends brightness-command to ESD REV2
 	 */
 	public static void internalUpdateBrightnessRev2(HidDevice hidDevice, int brightnessValue) {
-		byte[] brightness = BRIGHTNES_DATA_REV2;
-		brightnessValue = brightnessValue > 99 ? 99 : brightnessValue < 0 ? 0 : brightnessValue;
-		brightness[2] = (byte) brightnessValue;
-		hidDevice.setFeatureReport(brightness[0], Arrays.copyOfRange(brightness, 1, brightness.length), brightness.length-1);
+		rev2(hidDevice).setBrightness(brightnessValue);
 	}
 
-    public static synchronized void internalDrawImageRev2(HidDevice hidDevice, int keyIndex, Dimension iconSize, SDImage imgData) {
-    	internalDrawImageRev2(hidDevice, keyIndex, iconSize, imgData, IMAGE_PAGE_HEADER_REV2);
+    public static void internalDrawImageRev2(HidDevice hidDevice, int keyIndex, Dimension iconSize, SDImage imgData) {
+    	rev2(hidDevice).drawImage(keyIndex, iconSize, imgData);
     }
     
-    public static synchronized byte[] updateTouchScreenHeader(byte[] header,Point imageStart, Dimension imageSize, int chunkNo, boolean lastChunk, int payLoadLength) {
+    public static byte[] updateTouchScreenHeader(byte[] header,Point imageStart, Dimension imageSize, int chunkNo, boolean lastChunk, int payLoadLength) {
 
     	header[2] = (byte) 0;
     	// X-coord start
@@ -248,163 +211,43 @@ public class StreamDeckConstants {
     	return header;
     }
 
-    public static synchronized void internalDrawTouchScreenRev2(HidDevice hidDevice, Point imageStart, Dimension imageSize, SDImage imgData) {
-    	byte[] pageHeader = TOUCH_SCREEN_PAGE_HEADER_REV2;
-    	imgData = imgData.getVariant(imageSize);
-		if (PAGE_CACHE.get(hidDevice.getHidDeviceInfo().getPath()) == null) {
-			PAGE_CACHE.put(hidDevice.getHidDeviceInfo().getPath(), new byte[][]{
-					new byte[PAGE_PACKET_SIZE_REV2]
-			});
-		}
-        int pageLength = PAGE_PACKET_SIZE_REV2 - pageHeader.length;
-        int pages = (int) Math.ceil(((float) imgData.sdImageJpeg.length) / pageLength);
-        byte[] report = PAGE_CACHE.get(hidDevice.getHidDeviceInfo().getPath())[0];
-        for (int i = 0; i < pageHeader.length; i++) {
-            report[i] = pageHeader[i];
-        }
-        // Send Image in split reports
-        for (int pageNo = 0; pageNo < pages; pageNo++) {
-        	int byteFrom = pageNo * pageLength;
-        	int byteTo = Math.min(((pageNo + 1) * pageLength), imgData.sdImageJpeg.length);
-        	int payloadLength = byteTo - byteFrom;
-            //byte[] page = Arrays.copyOfRange(imgData.sdImageJpeg, pageNo * pageLength, Math.min(((pageNo + 1) * pageLength), imgData.sdImageJpeg.length));
-            for (int j = 0; j < byteTo - byteFrom; j++) {
-                report[pageHeader.length + j] = imgData.sdImageJpeg[j + byteFrom];
-            }
-            updateTouchScreenHeader(report, imageStart, imageSize, pageNo, pageNo < pages - 1, payloadLength);
-
-            int result = hidDevice.setOutputReport((byte) report[0], Arrays.copyOfRange(report, 1, report.length), report.length - 1);
-            if (result < 0) {
-                break;
-            }
-        }
-    }
-
-    public static synchronized void internalDrawFullImageRev2(HidDevice hidDevice, int keyIndex, Dimension iconSize, SDImage imgData) {
-    	internalDrawImageRev2(hidDevice, keyIndex, iconSize, imgData, IMAGE_PAGE_HEADER_ALL_REV2);
+    public static void internalDrawTouchScreenRev2(HidDevice hidDevice, Point imageStart, Dimension imageSize, SDImage imgData) {
+    	rev2(hidDevice).drawTouchScreen(imageStart, imageSize, imgData);
     }
 
-    public static synchronized void internalDrawImageRev2(HidDevice hidDevice, int keyIndex, Dimension iconSize, SDImage imgData, byte[] pageHeader) {
-		imgData = imgData.getVariant(iconSize);
-		if (PAGE_CACHE.get(hidDevice.getHidDeviceInfo().getPath()) == null) {
-			PAGE_CACHE.put(hidDevice.getHidDeviceInfo().getPath(), new byte[][]{
-					new byte[PAGE_PACKET_SIZE_REV2]
-			});
-		}
-        int pageLength = PAGE_PACKET_SIZE_REV2 - pageHeader.length;
-        int pages = (int) Math.ceil(((float) imgData.sdImageJpeg.length) / pageLength);
-        byte[] report = PAGE_CACHE.get(hidDevice.getHidDeviceInfo().getPath())[0];
-        for (int i = 0; i < pageHeader.length; i++) {
-            report[i] = pageHeader[i];
-        }
-        // Send Image in split reports
-        for (int pageNo = 0; pageNo < pages; pageNo++) {
-        	int byteFrom = pageNo * pageLength;
-        	int byteTo = Math.min(((pageNo + 1) * pageLength), imgData.sdImageJpeg.length);
-        	int payloadLength = byteTo - byteFrom;
-            //byte[] page = Arrays.copyOfRange(imgData.sdImageJpeg, pageNo * pageLength, Math.min(((pageNo + 1) * pageLength), imgData.sdImageJpeg.length));
-            for (int j = 0; j < byteTo - byteFrom; j++) {
-                report[pageHeader.length + j] = imgData.sdImageJpeg[j + byteFrom];
-            }
-            // Key to be updated
-
-            report[2] = (byte) keyIndex;
-            // 0 = More pages are beeing sent, 1 = this is the last page of the image
-            report[3] = pageNo < pages - 1 ? (byte) 0x00 : (byte) 0x01;
-            // Length of the payload sent
-            report[4] = (byte) (payloadLength & 0xff);
-            report[5] = (byte) ((payloadLength >> 8) & 0xff);
-            // Number of the page sent
-            report[6] = (byte) (pageNo & 0xff);
-            report[7] = (byte) ((pageNo >> 8) & 0xff);
-
-            int result = hidDevice.setOutputReport((byte) report[0], Arrays.copyOfRange(report, 1, report.length), report.length - 1);
-            //LOGGER.debug("key " + keyIndex + ", frame " + pageNo + " => " + result);
-            if (result < 0) {
-                break;
-            }
-        }
-        //LOGGER.debug("Image Length: " + imgData.sdImageJpeg.length);
-        //System.out.println("total bytes: " + totalBytes);
+    public static void internalDrawFullImageRev2(HidDevice hidDevice, int keyIndex, Dimension iconSize, SDImage imgData) {
+    	rev2(hidDevice).drawFullImage(keyIndex, iconSize, imgData);
     }
 
 	/**
 	 * Sends reset-command to ESD REV1
 	 */
 	public static void internalResetRev1(HidDevice hidDevice) {
-		hidDevice.setFeatureReport(RESET_DATA_REV1[0], Arrays.copyOfRange(RESET_DATA_REV1, 1, RESET_DATA_REV1.length), RESET_DATA_REV1.length-1);
+		rev1(hidDevice).reset();
 	}
 
 	/**
 	 * Sends brightness-command to ESD REV1
 	 */
 	public static void internalUpdateBrightnessRev1(HidDevice hidDevice, int brightnessValue) {
-		byte[] brightness = BRIGHTNES_DATA_REV1;
-		brightnessValue = brightnessValue > 99 ? 99 : brightnessValue < 0 ? 0 : brightnessValue;
-		brightness[5] = (byte) brightnessValue;
-		hidDevice.setFeatureReport(brightness[0], Arrays.copyOfRange(brightness, 1, brightness.length), brightness.length-1);
+		rev1(hidDevice).setBrightness(brightnessValue);
 	}
 
-	public static synchronized void internalDrawImageRev1(HidDevice hidDevice, int keyIndex, Dimension iconSize, SDImage imgData) {
-		imgData = imgData.getVariant(iconSize);
-		if (PAGE_CACHE.get(hidDevice.getHidDeviceInfo().getPath()) == null) {
-			PAGE_CACHE.put(hidDevice.getHidDeviceInfo().getPath(), new byte[][]{
-					new byte[PAGE_PACKET_SIZE_REV1],
-					new byte[PAGE_PACKET_SIZE_REV1]
-			});
-		}
-		// Reverse the key order for rev 1 devices
-		if (hidDevice.getHidDeviceInfo().getProductId() == 96)
-			keyIndex = 1 + (15 - keyIndex);
-		if (hidDevice.getHidDeviceInfo().getProductId() == 99)
-			keyIndex = 0 + (6 - keyIndex);
-		byte[] page1 = generatePage1(keyIndex, PAGE_CACHE.get(hidDevice.getHidDeviceInfo().getPath())[0], imgData.sdImage);
-		byte[] page2 = generatePage2(keyIndex, PAGE_CACHE.get(hidDevice.getHidDeviceInfo().getPath())[1], imgData.sdImage);
-		hidDevice.setOutputReport((byte) 0x02, page1, page1.length);
-		hidDevice.setOutputReport((byte) 0x02, page2, page2.length);
+	public static void internalDrawImageRev1(HidDevice hidDevice, int keyIndex, Dimension iconSize, SDImage imgData) {
+		rev1(hidDevice).drawImage(keyIndex, iconSize, imgData);
 	}
 
 	/**
-	 * Generates HID-Report Page 1/2 to update an image of one stream deck key
-	 * 
-	 * @param keyId
-	 *            Id of the key to be updated
-	 * @param imgData
-	 *            image data in the bgr-format
-	 * @return HID-Report in byte format ready to be send to the stream deck
+	 * Returns the REV2 encoder of the device, each device has its own encoder
 	 */
-	private static byte[] generatePage1(int keyId, byte[] page1, byte[] imgData) {
-		for (int i = 0; i < PAGE_1_HEADER_REV1.length; i++) {
-			page1[i] = PAGE_1_HEADER_REV1[i];
-		}
-		if (imgData != null) {
-			for (int i = 0; i < imgData.length && i < NUM_FIRST_PAGE_PIXELS_REV1 * 3; i++) {
-				page1[PAGE_1_HEADER_REV1.length + i] = imgData[i];
-			}
-		}
-		page1[4] = (byte) (keyId + 1);
-		return page1;
+	private static DeckEncoder rev2(HidDevice hidDevice) {
+		return DeckEncoder.forDevice(hidDevice, Rev2Encoder::new);
 	}
 
 	/**
-	 * Generates HID-Report Page 2/2 to update an image of one stream deck key
-	 * 
-	 * @param keyId
-	 *            Id of the key to be updated
-	 * @param imgData
-	 *            image data in the bgr-format
-	 * @return HID-Report in byte format ready to be send to the stream deck
+	 * Returns the REV1 encoder of the device, each device has its own encoder
 	 */
-	private static byte[] generatePage2(int keyId, byte[] page2, byte[] imgData) {
-		for (int i = 0; i < PAGE_2_HEADER_REV1.length; i++) {
-			page2[i] = PAGE_2_HEADER_REV1[i];
-		}
-		if (imgData != null) {
-			for (int i = 0; i < NUM_SECOND_PAGE_PIXELS_REV1 * 3 && i < imgData.length; i++) {
-				page2[PAGE_2_HEADER_REV1.length + i] = imgData[(NUM_FIRST_PAGE_PIXELS_REV1 * 3) + i];
-			}
-		}
-		page2[4] = (byte) (keyId + 1);
-		return page2;
+	private static DeckEncoder rev1(HidDevice hidDevice) {
+		return DeckEncoder.forDevice(hidDevice, Rev1Encoder::new);
 	}
 }
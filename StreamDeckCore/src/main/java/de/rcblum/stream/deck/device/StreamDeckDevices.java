@@ -11,8 +11,6 @@ import org.apache.logging.log4j.Logger;
 import de.rcblum.stream.deck.device.descriptor.DeckDescriptor;
 import de.rcblum.stream.deck.device.general.IStreamDeck;
 import de.rcblum.stream.deck.device.general.SoftStreamDeck;
-import de.rcblum.stream.deck.util.IconHelper;
-import de.rcblum.stream.deck.util.SDImage;
 import purejavahidapi.HidDevice;
 import purejavahidapi.HidDeviceInfo;
 import purejavahidapi.PureJavaHidApi;
@@ -51,11 +49,6 @@ public class StreamDeckDevices {
 	
 	private static final Logger LOGGER = LogManager.getLogger(StreamDeckDevices.class);
 	
-	static {
-		deckDevices = new ArrayList<>(10);
-		SDImage a = IconHelper.BLACK_ICON;
-	}
-	
 	/**
 	 * Flag for enabling the software stream deck GUI. <code>true</code> Stream Deck
 	 * devices will be wrapped in a software SD, <code>false</code> the StreamDeck
@@ -90,7 +83,14 @@ public class StreamDeckDevices {
 		if (deckInfos == null) {
 			deckInfos = new ArrayList<>(5);
 			LOGGER.info("Scanning for devices");
-			List<HidDeviceInfo> devList = PureJavaHidApi.enumerateDevices();
+			List<HidDeviceInfo> devList;
+			try {
+				devList = PureJavaHidApi.enumerateDevices();
+			} catch (RuntimeException | LinkageError e) {
+				// No HID support on this system, e.g. in a container
+				LOGGER.warn("HID devices could not be enumerated", e);
+				devList = new ArrayList<>(0);
+			}
 			for (HidDeviceInfo info : devList) {
 				LOGGER.debug("Vendor-ID: " + info.getVendorId() + ", Product-ID: " + info.getProductId());
 				if (DeckDescriptor.getDescriptor(info.getVendorId(), info.getProductId()) != null) {
@@ -139,11 +139,20 @@ public class StreamDeckDevices {
 		}
 	}
 
+	/**
+	 * Returns the descriptor of the first connected stream deck. Without a
+	 * connected stream deck the descriptor of the software stream deck is
+	 * returned, so the library can be used without hardware.
+	 * 
+	 * @return Descriptor of the first stream deck
+	 */
 	public static DeckDescriptor getStreamDeckDescriptor() {
 		if (decks == null || decks.isEmpty()) {
 			HidDevice hidDevice = getStreamDeckDevice();
-			DeckDescriptor descriptor = DeckDescriptor.getDescriptor(hidDevice.getHidDeviceInfo().getVendorId(), hidDevice.getHidDeviceInfo().getProductId());
-			return descriptor;
+			DeckDescriptor descriptor = hidDevice != null 
+					? DeckDescriptor.getDescriptor(hidDevice.getHidDeviceInfo().getVendorId(), hidDevice.getHidDeviceInfo().getProductId())
+					: null;
+			return descriptor != null ? descriptor : DeckDescriptor.SOFT_STREAM_DECK;
 		}
 		else
 		return decks.get(0).getDescriptor();
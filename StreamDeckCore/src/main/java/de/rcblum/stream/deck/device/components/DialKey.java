@@ -7,10 +7,12 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import de.rcblum.stream.deck.device.general.IStreamDeck;
+import de.rcblum.stream.deck.device.metrics.InputTrace;
 import de.rcblum.stream.deck.event.KeyEvent;
+import de.rcblum.stream.deck.event.RawKeyListener;
 import de.rcblum.stream.deck.event.StreamKeyListener;
 
-public class DialKey implements StreamKeyListener {
+public class DialKey implements StreamKeyListener, RawKeyListener {
 	
 	private static final Logger LOGGER = LogManager.getLogger(DialKey.class);
 	
@@ -23,7 +25,7 @@ public class DialKey implements StreamKeyListener {
 	
 	private java.util.List<StreamKeyListener> listeners = new CopyOnWriteArrayList<StreamKeyListener>();
 	
-	private KeyEvent lastEvent = null;
+	private volatile boolean pressed = false;
 
 	public DialKey(int keyId, IStreamDeck streamDeck) {
 		super();
@@ -32,17 +34,41 @@ public class DialKey implements StreamKeyListener {
 	}
 
 	public boolean isPressed() {
-		return this.lastEvent != null && this.lastEvent.getType() == KeyEvent.Type.PRESSED;
+		return this.pressed;
 	}
 	
 	public boolean addListener(StreamKeyListener listener) {
 		return this.listeners.add(listener);
 	}
+	
+	/**
+	 * @return <code>true</code> if listeners are registered on the dial
+	 */
+	public boolean hasListeners() {
+		return !this.listeners.isEmpty();
+	}
+
+	/**
+	 * Updates the state of the dial and creates a {@link KeyEvent} for the
+	 * listeners only if there are any, so rotating an unused dial produces no
+	 * garbage.
+	 */
+	@Override
+	public void onRawKeyEvent(int deviceId, int keyId, int type, long nanos, int value1, int value2) {
+		if (keyId != this.keyId)
+			return;
+		this.pressed = type == KeyEvent.Type.PRESSED.ordinal();
+		if (this.hasListeners()) {
+			KeyEvent event = KeyEvent.fromRaw(this.streamDeck, keyId, type, nanos, value1, value2);
+			event.setDispatchedNanos(InputTrace.getDispatchedNanos());
+			this.onKeyEvent(event);
+		}
+	}
 
 	@Override
 	public void onKeyEvent(KeyEvent event) {
 		if (event.getKeyId() == this.keyId) {
-			this.lastEvent = event;
+			this.pressed = event.getType() == KeyEvent.Type.PRESSED;
 			for (Iterator<StreamKeyListener> iterator = listeners.iterator(); iterator.hasNext();) {
 				try {
 					iterator.next().onKeyEvent(event);
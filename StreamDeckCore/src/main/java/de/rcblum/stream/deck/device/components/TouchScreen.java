@@ -1,6 +1,7 @@
 package de.rcblum.stream.deck.device.components;
 
 import java.awt.Point;
+import java.awt.image.BufferedImage;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
@@ -12,6 +13,7 @@ import org.apache.logging.log4j.Logger;
 import de.rcblum.stream.deck.animation.AnimationStack;
 import de.rcblum.stream.deck.animation.Animator;
 import de.rcblum.stream.deck.animation.listener.AnimationListener;
+import de.rcblum.stream.deck.device.StreamDeckConstants;
 import de.rcblum.stream.deck.device.general.IStreamDeck;
 import de.rcblum.stream.deck.event.KeyEvent;
 import de.rcblum.stream.deck.event.StreamKeyListener;
@@ -29,6 +31,11 @@ public class TouchScreen implements StreamKeyListener, AnimationListener {
 	
 	private Animator animator = null;
 
+	/**
+	 * Frame buffer for sending only the changed parts of frames, created on first use
+	 */
+	private TouchScreenSurface surface = null;
+
 	private final IStreamDeck streamDeck;
 	
 	private java.util.List<StreamKeyListener> listeners = new CopyOnWriteArrayList<StreamKeyListener>();
@@ -105,12 +112,52 @@ public class TouchScreen implements StreamKeyListener, AnimationListener {
 		if (this.streamDeck.hasTouchScreen()) {
 			this.image = image;
 			this.streamDeck.drawTouchScreenImage(image);
+			this.surfaceDisplayed(new Point(0, 0), image);
 		}
 	}
 	
 	public void drawTouchScreenSection(Point coordinates, SDImage image) {
-		if (this.streamDeck.hasTouchScreen())
+		if (this.streamDeck.hasTouchScreen()) {
 			this.streamDeck.drawTouchScreenImage(coordinates, image);
+			this.surfaceDisplayed(coordinates, image);
+		}
+	}
+
+	/**
+	 * Draws a frame for the whole touch screen, only the parts that changed
+	 * since the last frame are sent to the stream deck.
+	 * 
+	 * @param frame Frame to be drawn
+	 * @return Number of regions sent to the stream deck
+	 */
+	public int drawTouchScreenFrame(BufferedImage frame) {
+		if (!this.streamDeck.hasTouchScreen())
+			return 0;
+		return this.getSurface().drawFrame(frame);
+	}
+
+	/**
+	 * Returns the frame buffer of the touch screen
+	 * 
+	 * @return Frame buffer sending only changed regions
+	 */
+	public synchronized TouchScreenSurface getSurface() {
+		if (this.surface == null)
+			this.surface = new TouchScreenSurface(this.streamDeck, StreamDeckConstants.TOUCH_SCREEN_SIZE);
+		return this.surface;
+	}
+
+	/**
+	 * Forgets what the touch screen shows, the next frame is sent completely.
+	 */
+	public synchronized void invalidateSurface() {
+		if (this.surface != null)
+			this.surface.invalidate();
+	}
+
+	private synchronized void surfaceDisplayed(Point coordinates, SDImage image) {
+		if (this.surface != null && image != null && image.image != null)
+			this.surface.displayed(coordinates, image.image);
 	}
 
 	@Override
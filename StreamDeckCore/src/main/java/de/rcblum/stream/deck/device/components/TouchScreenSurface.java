@@ -0,0 +1,280 @@
+package de.rcblum.stream.deck.device.components;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.rcblum.stream.deck.device.general.IStreamDeck;
+import de.rcblum.stream.deck.util.IconHelper;
+import de.rcblum.stream.deck.util.SDImage;
+
+/**
+ * Frame buffer of the touch screen that only sends the parts of a frame that
+ * changed.
+ * <br><br>
+ * Each new frame is compared with the frame currently displayed in tiles of
+ * {@link #TILE_SIZE} pixels. The changed tiles are merged into at most
+ * {@link #MAX_REGIONS} rectangles, each sent as its own image with the start
+ * point and size supported by the touch screen protocol. A value readout that
+ * changes under one dial only sends the area of that readout instead of the
+ * whole strip.
+ *
+ * @author Roland von Werden
+ *
+ */
+public class TouchScreenSurface {
+
+	/**
+	 * Edge length of the tiles that are compared, in pixels
+	 */
+	public static final int TILE_SIZE = 16;
+
+	/**
+	 * Maximum number of regions sent for one frame
+	 */
+	public static final int MAX_REGIONS = 4;
+
+	/**
+	 * Cost of sending one more region, counted in tiles. Regions are merged if
+	 * the merged region costs less than both regions sent on their own.
+	 */
+	private static final int REGION_OVERHEAD_TILES = 4;
+
+	private final IStreamDeck streamDeck;
+
+	private final Dimension size;
+
+	/**
+	 * Frame currently displayed by the touch screen
+	 */
+	private final BufferedImage displayed;
+
+	private final int[] displayedPixels;
+
+	/**
+	 * Frame being drawn
+	 */
+	private final BufferedImage next;
+
+	private final int[] nextPixels;
+
+	/**
+	 * If the content of the touch screen is known
+	 */
+	private boolean known = false;
+
+	/**
+	 * Creates a surface for the touch screen of the stream deck
+	 *
+	 * @param streamDeck Stream deck the frames are sent to
+	 * @param size       Size of the touch screen
+	 */
+	public TouchScreenSurface(IStreamDeck streamDeck, Dimension size) {
+		this.streamDeck = streamDeck;
+		this.size = new Dimension(size);
+		this.displayed = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+		this.displayedPixels = ((DataBufferInt) this.displayed.getRaster().getDataBuffer()).getData();
+		this.next = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+		this.nextPixels = ((DataBufferInt) this.next.getRaster().getDataBuffer()).getData();
+	}
+
+	/**
+	 * Draws a complete frame, sending only the regions that changed.
+	 *
+	 * @param frame Frame for the whole touch screen, scaled if it has a different size
+	 * @return Number of regions sent to the stream deck
+	 */
+	public synchronized int drawFrame(BufferedImage frame) {
+		Graphics2D g = this.next.createGraphics();
+		try {
+			g.drawImage(frame, 0, 0, this.size.width, this.size.height, null);
+		}
+		finally {
+			g.dispose();
+		}
+		return this.sendChanges();
+	}
+
+	/**
+	 * Draws an image on a part of the touch screen, sending only the regions
+	 * that changed.
+	 *
+	 * @param origin Position of the image on the touch screen
+	 * @param image  Image to be drawn
+	 * @return Number of regions sent to the stream deck
+	 */
+	public synchronized int drawSection(Point origin, BufferedImage image) {
+		System.arraycopy(this.displayedPixels, 0, this.nextPixels, 0, this.nextPixels.length);
+		Graphics2D g = this.next.createGraphics();
+		try {
+			g.drawImage(image, origin.x, origin.y, null);
+		}
+		finally {
+			g.dispose();
+		}
+		return this.sendChanges();
+	}
+
+	/**
+	 * Records that an image was drawn on the touch screen without this surface,
+	 * e.g. with {@link IStreamDeck#drawTouchScreenImage(Point, SDImage)}.
+	 *
+	 * @param origin Position of the image on the touch screen
+	 * @param image  Image that was drawn
+	 */
+	public synchronized void displayed(Point origin, BufferedImage image) {
+		Graphics2D g = this.displayed.createGraphics();
+		try {
+			g.drawImage(image, origin.x, origin.y, null);
+		}
+		finally {
+			g.dispose();
+		}
+	}
+
+	/**
+	 * Forgets the content of the touch screen, the next frame is sent completely.
+	 */
+	public synchronized void invalidate() {
+		this.known = false;
+	}
+
+	/**
+	 * Returns the size of the touch screen
+	 *
+	 * @return Size of the touch screen
+	 */
+	public Dimension getSize() {
+		return new Dimension(this.size);
+	}
+
+	private int sendChanges() {
+		List<Rectangle> regions = this.known
+				? findChangedRegions(this.displayedPixels, this.nextPixels, this.size.width, this.size.height, MAX_REGIONS)
+				: new ArrayList<>(1);
+		if (!this.known)
+			regions.add(new Rectangle(this.size));
+		for (Rectangle region : regions) {
+			BufferedImage section = this.next.getSubimage(region.x, region.y, region.width, region.height);
+			SDImage image = IconHelper.convertImage(section, region.getSize());
+			this.streamDeck.drawTouchScreenImage(region.getLocation(), image);
+		}
+		System.arraycopy(this.nextPixels, 0, this.displayedPixels, 0, this.nextPixels.length);
+		this.known = true;
+		return regions.size();
+	}
+
+	/**
+	 * Compares two frames tile by tile and returns the changed areas, merged into
+	 * at most <code>maxRegions</code> rectangles.
+	 *
+	 * @param current    Pixels of the displayed frame
+	 * @param next       Pixels of the new frame
+	 * @param width      Width of the frames
+	 * @param height     Height of the frames
+	 * @param maxRegions Maximum number of rectangles to be returned
+	 * @return Changed areas in pixels, empty if the frames are equal
+	 */
+	public static List<Rectangle> findChangedRegions(int[] current, int[] next, int width, int height, int maxRegions) {
+		int columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+		int rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+		// Runs of changed tiles in each row, in tile coordinates
+		List<Rectangle> regions = new ArrayList<>();
+		List<Rectangle> previousRow = new ArrayList<>();
+		for (int row = 0; row < rows; row++) {
+			List<Rectangle> currentRow = new ArrayList<>();
+			int runStart = -1;
+			for (int column = 0; column <= columns; column++) {
+				boolean changed = column < columns && isTileChanged(current, next, width, height, column, row);
+				if (changed && runStart < 0) {
+					runStart = column;
+				}
+				else if (!changed && runStart >= 0) {
+					Rectangle run = new Rectangle(runStart, row, column - runStart, 1);
+					// Extend a run with the same columns in the row above
+					Rectangle above = null;
+					for (Rectangle r : previousRow) {
+						if (r.x == run.x && r.width == run.width)
+							above = r;
+					}
+					if (above != null) {
+						above.height++;
+						currentRow.add(above);
+					}
+					else {
+						regions.add(run);
+						currentRow.add(run);
+					}
+					runStart = -1;
+				}
+			}
+			previousRow = currentRow;
+		}
+		mergeRegions(regions, maxRegions);
+		List<Rectangle> pixels = new ArrayList<>(regions.size());
+		Rectangle frame = new Rectangle(width, height);
+		for (Rectangle r : regions)
+			pixels.add(new Rectangle(r.x * TILE_SIZE, r.y * TILE_SIZE, r.width * TILE_SIZE, r.height * TILE_SIZE).intersection(frame));
+		return pixels;
+	}
+
+	/**
+	 * Merges the pair of regions with the least wasted area, until no merge
+	 * saves anything and there are not more than <code>maxRegions</code> regions.
+	 */
+	private static void mergeRegions(List<Rectangle> regions, int maxRegions) {
+		while (regions.size() > 1) {
+			int bestA = -1;
+			int bestB = -1;
+			long bestWaste = Long.MAX_VALUE;
+			for (int a = 0; a < regions.size(); a++) {
+				for (int b = a + 1; b < regions.size(); b++) {
+					Rectangle ra = regions.get(a);
+					Rectangle rb = regions.get(b);
+					Rectangle union = ra.union(rb);
+					long waste = area(union) - area(ra) - area(rb);
+					if (waste < bestWaste) {
+						bestWaste = waste;
+						bestA = a;
+						bestB = b;
+					}
+				}
+			}
+			if (regions.size() <= maxRegions && bestWaste >= REGION_OVERHEAD_TILES)
+				return;
+			Rectangle union = regions.get(bestA).union(regions.get(bestB));
+			regions.remove(bestB);
+			regions.set(bestA, union);
+			// Drop regions that are covered by the merged region
+			for (int i = regions.size() - 1; i >= 0; i--) {
+				if (i != bestA && union.contains(regions.get(i))) {
+					regions.remove(i);
+					if (i < bestA)
+						bestA--;
+				}
+			}
+		}
+	}
+
+	private static long area(Rectangle r) {
+		return (long) r.width * r.height;
+	}
+
+	private static boolean isTileChanged(int[] current, int[] next, int width, int height, int column, int row) {
+		int xEnd = Math.min(width, (column + 1) * TILE_SIZE);
+		int yEnd = Math.min(height, (row + 1) * TILE_SIZE);
+		for (int y = row * TILE_SIZE; y < yEnd; y++) {
+			int offset = y * width;
+			for (int x = column * TILE_SIZE; x < xEnd; x++) {
+				if (((current[offset + x] ^ next[offset + x]) & 0xFFFFFF) != 0)
+					return true;
+			}
+		}
+		return false;
+	}
+}
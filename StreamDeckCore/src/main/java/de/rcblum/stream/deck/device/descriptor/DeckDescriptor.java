@@ -1,15 +1,22 @@
 package de.rcblum.stream.deck.device.descriptor;
 
 import java.awt.Dimension;
+import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Function;
 
 import de.rcblum.stream.deck.device.StreamDeckConstants;
 import de.rcblum.stream.deck.device.descriptor.hidfunctions.DrawImageInterface;
 import de.rcblum.stream.deck.device.descriptor.hidfunctions.DrawTouchscreenInterface;
 import de.rcblum.stream.deck.device.descriptor.hidfunctions.FeatureReportIntegerInterface;
 import de.rcblum.stream.deck.device.descriptor.hidfunctions.FeatureReportInterface;
+import de.rcblum.stream.deck.device.encoder.DeckEncoder;
+import de.rcblum.stream.deck.device.encoder.Rev1Encoder;
+import de.rcblum.stream.deck.device.encoder.Rev2Encoder;
+import purejavahidapi.HidDevice;
 
 /**
  * Descriptor for the different stream decks.
@@ -44,6 +51,21 @@ import de.rcblum.stream.deck.device.descriptor.hidfunctions.FeatureReportInterfa
  */
 public class DeckDescriptor {
 
+	/**
+	 * Input report with the state of the keys
+	 */
+	public static final int INPUT_REPORT_KEYS = 1;
+
+	/**
+	 * Input report of a touch or swipe on the touch screen
+	 */
+	public static final int INPUT_REPORT_TOUCH_SCREEN = 2;
+
+	/**
+	 * Input report with the rotation or the state of the dials
+	 */
+	public static final int INPUT_REPORT_DIALS = 3;
+
 	public static DeckDescriptor getDescriptor(short vendorId, short productid) {
 		return DESCRIPTORS.stream().filter(d -> d.deviceVendor == vendorId && d.productId == productid).findFirst().orElse(null);
 	}
@@ -51,6 +73,26 @@ public class DeckDescriptor {
 	public static DeckDescriptor getDescriptorByKeySize(int keys) {
 		return DESCRIPTORS.stream().filter(d -> d.getKeySize() == keys).findFirst().orElse(null);
 	}
+
+	/**
+	 * Returns the descriptor of the stream deck with the given name
+	 *
+	 * @param name Device name of the stream deck, e.g. "Stream Deck Plus"
+	 * @return Descriptor of the stream deck or <code>null</code> if no stream
+	 *         deck has the name
+	 */
+	public static DeckDescriptor getDescriptorByName(String name) {
+		return DESCRIPTORS.stream().filter(d -> d.deviceName.equals(name)).findFirst().orElse(null);
+	}
+
+	/**
+	 * Returns the descriptors of all supported stream decks
+	 * 
+	 * @return Descriptors of the stream decks, without the software stream deck
+	 */
+	public static List<DeckDescriptor> getDescriptors() {
+		return Collections.unmodifiableList(DESCRIPTORS);
+	}
 	
 	public static final DeckDescriptor SOFT_STREAM_DECK;
 	
@@ -78,9 +120,12 @@ public class DeckDescriptor {
 				null,                                                 // Function to send a full image to the stream deck for the complete streamdeck
 				null,                                                 // Function to reset the stream deck
 				null,                                                 // Function to update the brightness of the stream deck
+				null,                                                 // Encoder creating the HID reports for the stream deck
 				null,                                                 // Input Report for normal keys
 				null,                                                 // Input Report for touch screens
-				null                                                  // Input Report for dials			
+				null,                                                 // Input Report for dials
+				0,                                                    // Minimum time between two commands sent to the stream deck in nanoseconds
+				0                                                     // Estimated bytes per second, calibrated at runtime, 0 for no limit
 		);
 		
 		DESCRIPTORS = new ArrayList<DeckDescriptor>(5);
@@ -106,9 +151,12 @@ public class DeckDescriptor {
 					null,                                                 // Function to send a full image to the stream deck for the complete streamdeck
 					StreamDeckConstants::internalResetRev1,               // Function to reset the stream deck
 					StreamDeckConstants::internalUpdateBrightnessRev1,    // Function to update the brightness of the stream deck
+					Rev1Encoder::new,                                     // Encoder creating the HID reports for the stream deck
 					StreamDeckConstants.INPUT_REPORT_IMAGE_KEY_REV1,      // Input Report for normal keys
 					StreamDeckConstants.INPUT_REPORT_TOUCH_SCREEN_REV1,   // Input Report for touch screens
-					StreamDeckConstants.INPUT_REPORT_DIAL_REV1            // Input Report for dials			
+					StreamDeckConstants.INPUT_REPORT_DIAL_REV1,           // Input Report for dials
+					2_000,                                                // Minimum time between two commands sent to the stream deck in nanoseconds
+					600_000                                               // Estimated bytes per second, calibrated at runtime, 0 for no limit
 			)
 		);
 		DESCRIPTORS.add(
@@ -132,9 +180,12 @@ public class DeckDescriptor {
 					null,                                                 // Function to send a full image to the stream deck for the complete streamdeck
 					StreamDeckConstants::internalResetRev1,               // Function to reset the stream deck
 					StreamDeckConstants::internalUpdateBrightnessRev1,    // Function to update the brightness of the stream deck
+					Rev1Encoder::new,                                     // Encoder creating the HID reports for the stream deck
 					StreamDeckConstants.INPUT_REPORT_IMAGE_KEY_REV1,      // Input Report for normal keys
 					StreamDeckConstants.INPUT_REPORT_TOUCH_SCREEN_REV1,   // Input Report for touch screens
-					StreamDeckConstants.INPUT_REPORT_DIAL_REV1            // Input Report for dials		
+					StreamDeckConstants.INPUT_REPORT_DIAL_REV1,           // Input Report for dials
+					2_000,                                                // Minimum time between two commands sent to the stream deck in nanoseconds
+					600_000                                               // Estimated bytes per second, calibrated at runtime, 0 for no limit
 			)
 		);
 		DESCRIPTORS.add(
@@ -159,9 +210,12 @@ public class DeckDescriptor {
 					null,                                                 // Function to send a full image to the stream deck for the complete stream deck
 					StreamDeckConstants::internalResetRev2,               // Function to reset the stream deck
 					StreamDeckConstants::internalUpdateBrightnessRev2,    // Function to update the brightness of the stream deck
+					Rev2Encoder::new,                                     // Encoder creating the HID reports for the stream deck
 					StreamDeckConstants.INPUT_REPORT_IMAGE_KEY_REV2,      // Input Report for normal keys
 					StreamDeckConstants.INPUT_REPORT_TOUCH_SCREEN_REV2,   // Input Report for touch screens
-					StreamDeckConstants.INPUT_REPORT_DIAL_REV2            // Input Report for dials		
+					StreamDeckConstants.INPUT_REPORT_DIAL_REV2,           // Input Report for dials
+					2_000,                                                // Minimum time between two commands sent to the stream deck in nanoseconds
+					2_000_000                                             // Estimated bytes per second, calibrated at runtime, 0 for no limit
 			)
 		);
 		DESCRIPTORS.add(
@@ -186,9 +240,12 @@ public class DeckDescriptor {
 					null,                                                 // Function to send a full image to the stream deck for the complete stream deck
 					StreamDeckConstants::internalResetRev2, 
 					StreamDeckConstants::internalUpdateBrightnessRev2,
+					Rev2Encoder::new,                                     // Encoder creating the HID reports for the stream deck
 					StreamDeckConstants.INPUT_REPORT_IMAGE_KEY_REV2,      // Input Report for normal keys
 					StreamDeckConstants.INPUT_REPORT_TOUCH_SCREEN_REV2,   // Input Report for touch screens
-					StreamDeckConstants.INPUT_REPORT_DIAL_REV2            // Input Report for dials		
+					StreamDeckConstants.INPUT_REPORT_DIAL_REV2,           // Input Report for dials
+					2_000,                                                // Minimum time between two commands sent to the stream deck in nanoseconds
+					1_000_000                                             // Estimated bytes per second, calibrated at runtime, 0 for no limit
 			)
 		);
 		DESCRIPTORS.add(
@@ -214,9 +271,12 @@ public class DeckDescriptor {
 						StreamDeckConstants::internalDrawFullImageRev2,       // Function to send a full image to the stream deck for the complete stream deck
 						StreamDeckConstants::internalResetRev2,               // Function to reset the stream deck
 						StreamDeckConstants::internalUpdateBrightnessRev2,    // Function to update the brightness of the stream deck
+						Rev2Encoder::new,                                     // Encoder creating the HID reports for the stream deck
 						StreamDeckConstants.INPUT_REPORT_IMAGE_KEY_REV2,      // Input Report for normal keys
 						StreamDeckConstants.INPUT_REPORT_TOUCH_SCREEN_REV2,   // Input Report for touch screens
-						StreamDeckConstants.INPUT_REPORT_DIAL_REV2            // Input Report for dials	
+						StreamDeckConstants.INPUT_REPORT_DIAL_REV2,           // Input Report for dials
+						2_000,                                                // Minimum time between two commands sent to the stream deck in nanoseconds
+						2_000_000                                             // Estimated bytes per second, calibrated at runtime, 0 for no limit
 				)
 			);
 		
@@ -264,10 +324,60 @@ public class DeckDescriptor {
 	
 	public final FeatureReportIntegerInterface brightnessInterface;
 	
+	/**
+	 * Creates the encoder for a device of this type, <code>null</code> if the
+	 * deck is not a HID device
+	 */
+	public final Function<HidDevice, DeckEncoder> encoderFactory;
+	
+	/**
+	 * Minimum time between two commands sent to the stream deck in nanoseconds
+	 */
+	public final long reportPacingNanos;
+	
+	/**
+	 * Estimated number of bytes per second the stream deck accepts, 0 for no
+	 * limit. This is only the initial budget, the actual budget is calibrated
+	 * from the measured throughput of the device and may be higher or lower,
+	 * see {@link de.rcblum.stream.deck.device.worker.UsbPacer}.
+	 */
+	public final long maxBytesPerSecond;
+	
+	/**
+	 * Type of the component for each key ID, see {@link KeyType#getType()}
+	 */
+	private final int[] componentTypes;
+	
+	/**
+	 * Key ID of each dial
+	 */
+	private final int[] dialKeyIds;
+	
+	/**
+	 * Index of the dial for each key ID, -1 for keys that are no dial
+	 */
+	private final int[] dialIndices;
+	
+	/**
+	 * Key ID of the touch screen, -1 if there is none
+	 */
+	private final int touchScreenKeyId;
+	
+	/**
+	 * Prefix of the input report starting with each byte, <code>null</code> if
+	 * no report starts with the byte
+	 */
+	private final byte[][] inputReportPrefixes = new byte[256][];
+	
+	/**
+	 * Type of the input report starting with each byte
+	 */
+	private final int[] inputReportTypes = new int[256];
+	
 	private DeckDescriptor(
 			int deviceVendor, int productId, String deviceName, Dimension iconSize, int defaultFontSize, Dimension fullDisplaySize, KeyType [] keys, int drawImageKeyOffset, int rows, int columns, int keyEventInputReportOffset, 
-			DrawImageInterface drawIface, DrawTouchscreenInterface drawTouchScreenIface, DrawImageInterface drawFullImageIface, FeatureReportInterface resetIface, FeatureReportIntegerInterface brightnessIface,
-			byte [] inputReportKeys, byte [] inputReportTouchScreen, byte [] inputReportDials) {
+			DrawImageInterface drawIface, DrawTouchscreenInterface drawTouchScreenIface, DrawImageInterface drawFullImageIface, FeatureReportInterface resetIface, FeatureReportIntegerInterface brightnessIface, Function<HidDevice, DeckEncoder> encoderFactory,
+			byte [] inputReportKeys, byte [] inputReportTouchScreen, byte [] inputReportDials, long reportPacingNanos, long maxBytesPerSecond) {
 		this.deviceVendor = (short)deviceVendor;
 		this.productId = (short)productId;
 		this.deviceName = deviceName;
@@ -296,12 +406,116 @@ public class DeckDescriptor {
 		this.drawFullImageInterface = drawFullImageIface;
 		this.resetInterface = resetIface;
 		this.brightnessInterface = brightnessIface;
+		this.encoderFactory = encoderFactory;
 		this.rows = rows;
 		this.columns = columns;
 		this.keyEventInputReportOffset = keyEventInputReportOffset;
 		this.inputReportKeys = inputReportKeys;
 		this.inputReportTouchScreen = inputReportTouchScreen;
 		this.inputReportDials = inputReportDials;
+		this.reportPacingNanos = reportPacingNanos;
+		this.maxBytesPerSecond = maxBytesPerSecond;
+		int totalKeys = this.getTotalKeySize();
+		this.componentTypes = new int[totalKeys];
+		this.dialIndices = new int[totalKeys];
+		int[] dials = new int[totalKeys];
+		int dialCount = 0;
+		int touchScreenKeyId = -1;
+		for (int keyId = 0; keyId < totalKeys; keyId++) {
+			KeyType key = this.getKey(keyId);
+			this.componentTypes[keyId] = key.getType();
+			this.dialIndices[keyId] = -1;
+			if (key.getType() == KeyType.ROTARY_ENCODER_T) {
+				this.dialIndices[keyId] = dialCount;
+				dials[dialCount++] = keyId;
+			}
+			else if (key.getType() == KeyType.TOUCH_SCREEN_T && touchScreenKeyId < 0) {
+				touchScreenKeyId = keyId;
+			}
+		}
+		this.dialKeyIds = Arrays.copyOf(dials, dialCount);
+		this.touchScreenKeyId = touchScreenKeyId;
+		// Reports are checked in the order keys, touch screen, dials. An empty
+		// prefix for the keys makes every report a key report.
+		if (inputReportKeys == null || inputReportKeys.length > 0) {
+			this.addInputReport(inputReportKeys, INPUT_REPORT_KEYS);
+			this.addInputReport(inputReportTouchScreen, INPUT_REPORT_TOUCH_SCREEN);
+			this.addInputReport(inputReportDials, INPUT_REPORT_DIALS);
+		}
+	}
+	
+	private void addInputReport(byte[] prefix, int type) {
+		if (prefix == null || prefix.length == 0)
+			return;
+		int first = prefix[0] & 0xFF;
+		if (this.inputReportPrefixes[first] != null)
+			throw new IllegalArgumentException("Input reports of " + this.deviceName + " start with the same byte: " + first);
+		this.inputReportPrefixes[first] = prefix.clone();
+		this.inputReportTypes[first] = type;
+	}
+	
+	/**
+	 * Returns the type of the input report by its prefix. Reports matching no
+	 * prefix are treated as key reports.
+	 * 
+	 * @param reportData   Data of the report without the report ID
+	 * @param reportLength Number of valid bytes in <code>reportData</code>
+	 * @return {@link #INPUT_REPORT_KEYS}, {@link #INPUT_REPORT_TOUCH_SCREEN} or
+	 *         {@link #INPUT_REPORT_DIALS}
+	 */
+	public int getInputReportType(byte[] reportData, int reportLength) {
+		if (reportLength <= 0)
+			return INPUT_REPORT_KEYS;
+		int first = reportData[0] & 0xFF;
+		byte[] prefix = this.inputReportPrefixes[first];
+		if (prefix == null || reportLength < prefix.length)
+			return INPUT_REPORT_KEYS;
+		for (int i = 1; i < prefix.length; i++)
+			if (reportData[i] != prefix[i])
+				return INPUT_REPORT_KEYS;
+		return this.inputReportTypes[first];
+	}
+	
+	/**
+	 * Returns the type of the component with the key ID
+	 * 
+	 * @param keyId ID of the key
+	 * @return {@link KeyType#BUTTON_T}, {@link KeyType#IMAGE_BUTTON_T},
+	 *         {@link KeyType#ROTARY_ENCODER_T}, {@link KeyType#TOUCH_SCREEN_T}
+	 *         or 0 for unknown key IDs
+	 */
+	public int getComponentType(int keyId) {
+		return keyId >= 0 && keyId < this.componentTypes.length ? this.componentTypes[keyId] : 0;
+	}
+	
+	/**
+	 * @return Number of dials
+	 */
+	public int getDialCount() {
+		return this.dialKeyIds.length;
+	}
+	
+	/**
+	 * @param dialIndex Index of the dial, 0 for the leftmost dial
+	 * @return Key ID of the dial
+	 */
+	public int getDialKeyId(int dialIndex) {
+		return this.dialKeyIds[dialIndex];
+	}
+	
+	/**
+	 * @param keyId ID of the key
+	 * @return Index of the dial with the key ID, -1 if the key is no dial
+	 */
+	public int getDialIndex(int keyId) {
+		return keyId >= 0 && keyId < this.dialIndices.length ? this.dialIndices[keyId] : -1;
+	}
+	
+	/**
+	 * @return Key ID of the touch screen, -1 if there is none
+	 */
+	public int getTouchScreenKeyId() {
+		return this.touchScreenKeyId;
 	}
 	
 	public int getKeySize() {
@@ -338,6 +552,44 @@ public class DeckDescriptor {
 		return this.specialKeys;
 	}
 
+	/**
+	 * Returns the area of the key on the full display. The keys are distributed
+	 * evenly over the part of the display above the touch screen.
+	 * 
+	 * @param keyId Index of the key, without the offset for sending images
+	 * @return Area of the key or <code>null</code> if the stream deck has no full display
+	 */
+	public Rectangle getKeyBounds(int keyId) {
+		if (this.fullDisplaySize == null || keyId < 0 || keyId >= this.getKeySize())
+			return null;
+		int keyColumns = (this.getKeySize() + this.rows - 1) / this.rows;
+		int keyAreaHeight = this.fullDisplaySize.height;
+		if (this.touchScreenIndex >= 0)
+			keyAreaHeight -= this.getKey(this.touchScreenIndex).getDimension().height;
+		int cellWidth = this.fullDisplaySize.width / keyColumns;
+		int cellHeight = keyAreaHeight / this.rows;
+		int column = keyId % keyColumns;
+		int row = keyId / keyColumns;
+		return new Rectangle(
+				column * cellWidth + (cellWidth - this.iconSize.width) / 2, 
+				row * cellHeight + (cellHeight - this.iconSize.height) / 2, 
+				this.iconSize.width, 
+				this.iconSize.height
+		);
+	}
+
+	/**
+	 * Returns the area of the touch screen on the full display
+	 * 
+	 * @return Area of the touch screen or <code>null</code> if the stream deck has no touch screen or no full display
+	 */
+	public Rectangle getTouchScreenBounds() {
+		if (this.fullDisplaySize == null || this.touchScreenIndex < 0)
+			return null;
+		Dimension touchScreen = this.getKey(this.touchScreenIndex).getDimension();
+		return new Rectangle(0, this.fullDisplaySize.height - touchScreen.height, touchScreen.width, touchScreen.height);
+	}
+
 	public int getTouchScreenIndex() {
 		// TODO Auto-generated method stub
 		return this.touchScreenIndex;
@@ -30,6 +30,14 @@ public class KeyType {
 		this.rowless = rowless;
 	}
 
+	/**
+	 * @return Type of the key, {@link #BUTTON_T}, {@link #IMAGE_BUTTON_T},
+	 *         {@link #ROTARY_ENCODER_T} or {@link #TOUCH_SCREEN_T}
+	 */
+	public int getType() {
+		return type;
+	}
+
 	public int getDimensionX() {
 		return dimensionX;
 	}
@@ -0,0 +1,388 @@
+package de.rcblum.stream.deck.device.encoder;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Function;
+
+import de.rcblum.stream.deck.device.descriptor.hidfunctions.DrawImageInterface;
+import de.rcblum.stream.deck.device.descriptor.hidfunctions.DrawTouchscreenInterface;
+import de.rcblum.stream.deck.device.descriptor.hidfunctions.FeatureReportIntegerInterface;
+import de.rcblum.stream.deck.device.descriptor.hidfunctions.FeatureReportInterface;
+import de.rcblum.stream.deck.device.report.ReportBuffer;
+import de.rcblum.stream.deck.device.report.ReportBufferPool;
+import de.rcblum.stream.deck.device.report.ReportTranscript;
+import de.rcblum.stream.deck.util.SDImage;
+import purejavahidapi.HidDevice;
+
+/**
+ * Translates the commands for one stream deck into HID reports of its protocol
+ * revision and sends them to the device.
+ * <br><br>
+ * Every device has its own encoder with its own buffers and its own lock, so
+ * several stream decks can be drawn on in parallel. All reports are sent
+ * through {@link #writeOutput(ReportBuffer)} and
+ * {@link #writeFeature(byte, byte[], int)}.
+ *
+ * @author Roland von Werden
+ *
+ */
+public abstract class DeckEncoder {
+
+	/**
+	 * Encoders of the open devices, shared by the {@link de.rcblum.stream.deck.device.StreamDeck}
+	 * and the static draw methods. The encoder references its device, so an
+	 * entry stays until it is removed with {@link #release(HidDevice)}.
+	 */
+	private static final Map<HidDevice, DeckEncoder> ENCODERS = new WeakHashMap<>();
+
+	/**
+	 * Returns the encoder registered for the device. If no encoder is registered
+	 * yet, a new one is created with the given factory.
+	 *
+	 * @param hidDevice Device the encoder sends to
+	 * @param factory   Creates the encoder if the device has none
+	 * @return Encoder for the device
+	 */
+	public static DeckEncoder forDevice(HidDevice hidDevice, Function<HidDevice, ? extends DeckEncoder> factory) {
+		synchronized (ENCODERS) {
+			DeckEncoder encoder = ENCODERS.get(hidDevice);
+			if (encoder == null) {
+				encoder = factory.apply(hidDevice);
+				ENCODERS.put(hidDevice, encoder);
+			}
+			return encoder;
+		}
+	}
+
+	/**
+	 * Removes the encoder registered for the device, called when the device is
+	 * not used anymore
+	 *
+	 * @param hidDevice Device the encoder sends to
+	 */
+	public static void release(HidDevice hidDevice) {
+		synchronized (ENCODERS) {
+			ENCODERS.remove(hidDevice);
+		}
+	}
+
+	/**
+	 * Device the reports are sent to
+	 */
+	protected final HidDevice hidDevice;
+
+	/**
+	 * Reusable buffers for the reports of this device
+	 */
+	protected final ReportBufferPool buffers = new ReportBufferPool();
+
+	/**
+	 * Number of output report bytes sent to the device, including the report IDs
+	 */
+	private volatile long bytesWritten = 0;
+
+	/**
+	 * Number of output reports sent to the device
+	 */
+	private volatile long pagesWritten = 0;
+
+	/**
+	 * Number of images sent to the device
+	 */
+	private volatile long framesWritten = 0;
+
+	/**
+	 * Number of output reports the images were sent in
+	 */
+	private volatile long framePagesWritten = 0;
+
+	/**
+	 * Pages of the last image sent to the device
+	 */
+	private volatile int lastFramePages = 0;
+
+	/**
+	 * Time spent in {@link HidDevice#setOutputReport(byte, byte[], int)} in ns
+	 */
+	private volatile long writeNanos = 0;
+
+	/**
+	 * Transcript all reports are recorded in, <code>null</code> if not recording
+	 */
+	private volatile ReportTranscript transcript = null;
+
+	protected DeckEncoder(HidDevice hidDevice) {
+		this.hidDevice = hidDevice;
+	}
+
+	/**
+	 * Returns the protocol revision the encoder produces reports for
+	 *
+	 * @return {@link de.rcblum.stream.deck.device.StreamDeckConstants#PROTOCOL_REV1}
+	 *         or {@link de.rcblum.stream.deck.device.StreamDeckConstants#PROTOCOL_REV2}
+	 */
+	public abstract int getProtocolRevision();
+
+	/**
+	 * Draws the image on one key
+	 *
+	 * @param keyIndex Index of the key, including the offset of the descriptor
+	 * @param iconSize Size of the image on the key
+	 * @param imgData  Image to be drawn
+	 */
+	public abstract void drawImage(int keyIndex, Dimension iconSize, SDImage imgData);
+
+	/**
+	 * Converts the image to the icon size and generates its reports for a key
+	 * without sending them. Drawing the image afterwards only has to patch the
+	 * key into the cached reports, so several devices can share the work for
+	 * one image.
+	 *
+	 * @param iconSize Size of the image on the key
+	 * @param imgData  Image to be prepared
+	 */
+	public void prepareImage(Dimension iconSize, SDImage imgData) {
+		imgData.getVariant(iconSize);
+	}
+
+	/**
+	 * Draws one image over all keys
+	 *
+	 * @param keyIndex Not used by the stream decks
+	 * @param iconSize Size of the full display
+	 * @param imgData  Image to be drawn
+	 */
+	public void drawFullImage(int keyIndex, Dimension iconSize, SDImage imgData) {
+		throw new UnsupportedOperationException("Full images are not supported by protocol revision " + this.getProtocolRevision());
+	}
+
+	/**
+	 * Draws the image on the touch screen
+	 *
+	 * @param imageStart Position of the image on the touch screen
+	 * @param imageSize  Size of the image on the touch screen
+	 * @param imgData    Image to be drawn
+	 */
+	public void drawTouchScreen(Point imageStart, Dimension imageSize, SDImage imgData) {
+		throw new UnsupportedOperationException("Touch screens are not supported by protocol revision " + this.getProtocolRevision());
+	}
+
+	/**
+	 * Resets the stream deck
+	 */
+	public abstract void reset();
+
+	/**
+	 * Sets the brightness of the stream deck
+	 *
+	 * @param brightness Brightness from 0 .. 99
+	 */
+	public abstract void setBrightness(int brightness);
+
+	/**
+	 * Sends a complete report, the first byte being the report ID.
+	 *
+	 * @param report Report to be sent
+	 * @return <code>true</code> if the report was sent
+	 */
+	public synchronized boolean sendOutputReport(byte[] report) {
+		ReportBuffer buffer = this.buffers.acquire(report.length);
+		try {
+			return this.writeOutput(buffer.load(report)) >= 0;
+		}
+		finally {
+			this.buffers.release(buffer);
+		}
+	}
+
+	/**
+	 * Sends the buffer as output report without copying it
+	 *
+	 * @param report Report to be sent
+	 * @return <code>true</code> if the report was sent
+	 */
+	public synchronized boolean sendOutputReport(ReportBuffer report) {
+		return this.writeOutput(report) >= 0;
+	}
+
+	/**
+	 * Sends the buffer as output report to the device
+	 *
+	 * @param report Report to be sent
+	 * @return Result of the device, negative on error
+	 */
+	protected int writeOutput(ReportBuffer report) {
+		return this.writeOutput(report.getReportId(), report.getPayload(), report.getLength());
+	}
+
+	/**
+	 * Sends an output report to the device
+	 *
+	 * @param reportId ID of the report
+	 * @param payload  Payload without the report ID
+	 * @param length   Number of payload bytes to be sent
+	 * @return Result of the device, negative on error
+	 */
+	protected int writeOutput(byte reportId, byte[] payload, int length) {
+		long start = System.nanoTime();
+		ReportTranscript t = this.transcript;
+		if (t != null)
+			t.record(ReportTranscript.OUTPUT_REPORT, start, reportId, payload, length);
+		int result = this.hidDevice.setOutputReport(reportId, payload, length);
+		this.writeNanos += System.nanoTime() - start;
+		this.bytesWritten += length + 1;
+		this.pagesWritten++;
+		return result;
+	}
+
+	/**
+	 * Records an image that was sent to the device, called with the lock of the
+	 * encoder held
+	 *
+	 * @param pages Output reports the image was sent in
+	 */
+	protected void frameWritten(int pages) {
+		this.framesWritten++;
+		this.framePagesWritten += pages;
+		this.lastFramePages = pages;
+	}
+
+	/**
+	 * Sends a feature report to the device
+	 *
+	 * @param reportId ID of the report
+	 * @param payload  Payload without the report ID
+	 * @param length   Number of payload bytes to be sent
+	 * @return Result of the device, negative on error
+	 */
+	protected int writeFeature(byte reportId, byte[] payload, int length) {
+		ReportTranscript t = this.transcript;
+		if (t != null)
+			t.record(ReportTranscript.FEATURE_REPORT, System.nanoTime(), reportId, payload, length);
+		return this.hidDevice.setFeatureReport(reportId, payload, length);
+	}
+
+	/**
+	 * Records all reports sent from now on in the transcript
+	 *
+	 * @param transcript Transcript the reports are recorded in, <code>null</code>
+	 *                   to stop recording
+	 */
+	public void setTranscript(ReportTranscript transcript) {
+		this.transcript = transcript;
+	}
+
+	public ReportTranscript getTranscript() {
+		return this.transcript;
+	}
+
+	public HidDevice getHidDevice() {
+		return this.hidDevice;
+	}
+
+	/**
+	 * Returns the number of output report bytes sent to the device, including
+	 * the report IDs.
+	 *
+	 * @return Bytes sent since the encoder was created
+	 */
+	public long getBytesWritten() {
+		return this.bytesWritten;
+	}
+
+	/**
+	 * Returns the number of output reports sent to the device
+	 *
+	 * @return Reports sent since the encoder was created
+	 */
+	public long getPagesWritten() {
+		return this.pagesWritten;
+	}
+
+	/**
+	 * Returns the number of images sent to the device, one for every key image,
+	 * full image or touch screen image
+	 *
+	 * @return Images sent since the encoder was created
+	 */
+	public long getFramesWritten() {
+		return this.framesWritten;
+	}
+
+	/**
+	 * Returns the number of output reports the images were sent in
+	 *
+	 * @return Image reports sent since the encoder was created
+	 */
+	public long getFramePagesWritten() {
+		return this.framePagesWritten;
+	}
+
+	/**
+	 * Returns the number of output reports of the last image
+	 *
+	 * @return Pages of the last image, 0 if no image was sent yet
+	 */
+	public int getLastFramePages() {
+		return this.lastFramePages;
+	}
+
+	/**
+	 * Returns the time spent sending output reports to the device
+	 *
+	 * @return Time in ns since the encoder was created
+	 */
+	public long getWriteNanos() {
+		return this.writeNanos;
+	}
+
+	/**
+	 * Returns an {@link DrawImageInterface} drawing keys with this encoder
+	 *
+	 * @return Draw function bound to this encoder
+	 */
+	public DrawImageInterface asDrawImageInterface() {
+		return (hidDevice, keyIndex, iconSize, imgData) -> this.drawImage(keyIndex, iconSize, imgData);
+	}
+
+	/**
+	 * Returns an {@link DrawImageInterface} drawing full images with this encoder
+	 *
+	 * @return Draw function bound to this encoder
+	 */
+	public DrawImageInterface asDrawFullImageInterface() {
+		return (hidDevice, keyIndex, iconSize, imgData) -> this.drawFullImage(keyIndex, iconSize, imgData);
+	}
+
+	/**
+	 * Returns an {@link DrawTouchscreenInterface} drawing the touch screen with
+	 * this encoder
+	 *
+	 * @return Draw function bound to this encoder
+	 */
+	public DrawTouchscreenInterface asDrawTouchScreenInterface() {
+		return (hidDevice, imageStart, imageSize, imgData) -> this.drawTouchScreen(imageStart, imageSize, imgData);
+	}
+
+	/**
+	 * Returns an {@link FeatureReportInterface} resetting the deck with this
+	 * encoder
+	 *
+	 * @return Reset function bound to this encoder
+	 */
+	public FeatureReportInterface asResetInterface() {
+		return hidDevice -> this.reset();
+	}
+
+	/**
+	 * Returns an {@link FeatureReportIntegerInterface} setting the brightness
+	 * with this encoder
+	 *
+	 * @return Brightness function bound to this encoder
+	 */
+	public FeatureReportIntegerInterface asBrightnessInterface() {
+		return (hidDevice, brightness) -> this.setBrightness(brightness);
+	}
+}
@@ -0,0 +1,152 @@
+package de.rcblum.stream.deck.device.encoder;
+
+import java.awt.Dimension;
+import java.util.Arrays;
+import java.util.function.Function;
+
+import de.rcblum.stream.deck.device.StreamDeckConstants;
+import de.rcblum.stream.deck.device.report.ReportBuffer;
+import de.rcblum.stream.deck.util.SDImage;
+import purejavahidapi.HidDevice;
+
+/**
+ * Encoder for the first generation stream decks (Classic Rev1, Mini). Images
+ * are sent as BGR bitmap in two pages, both being the payload of the report
+ * <code>0x02</code>.
+ *
+ * @author Roland von Werden
+ *
+ */
+public class Rev1Encoder extends DeckEncoder {
+
+	/**
+	 * Header for Page 1 of the image command
+	 */
+	private static final byte[] PAGE_1_HEADER = new byte[] { 0x01, 0x01, 0x00, 0x00, 0x06, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+			0x00, 0x00, 0x00, 0x00, 0x42, 0x4D, (byte) 0xF6, 0x3C, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x36, 0x00, 0x00,
+			0x00, 0x28, 0x00, 0x00, 0x00, 0x48, 0x00, 0x00, 0x00, 0x48, 0x00, 0x00, 0x00, 0x01, 0x00, 0x18, 0x00, 0x00,
+			0x00, 0x00, 0x00, (byte) 0xC0, 0x3C, 0x00, 0x00, (byte) 0xC4, 0x0E, 0x00, 0x00, (byte) 0xC4, 0x0E, 0x00,
+			0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00 };
+
+	/**
+	 * Header for Page 2 of the image command
+	 */
+	private static final byte[] PAGE_2_HEADER = new byte[] {
+			0x01, 0x02, 0x00, 0x01, 0x06, 0x00, 0x00, 0x00,
+			0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00
+	};
+
+	/**
+	 * Report ID the image pages are sent with
+	 */
+	private static final byte IMAGE_REPORT_ID = 0x02;
+
+	/**
+	 * Payload of the reset command without the report ID, never modified
+	 */
+	private static final byte[] RESET_PAYLOAD = Arrays.copyOfRange(StreamDeckConstants.RESET_DATA_REV1, 1, StreamDeckConstants.RESET_DATA_REV1.length);
+
+	private static final int PAGE_SIZE = StreamDeckConstants.PAGE_PACKET_SIZE_REV1;
+
+	/**
+	 * Generates the pages for key images
+	 */
+	private static final Function<SDImage, byte[][]> KEY_PAGES = i -> new byte[][] {
+		generatePage1(0, new byte[PAGE_SIZE], i.sdImage),
+		generatePage2(0, new byte[PAGE_SIZE], i.sdImage)
+	};
+
+	public Rev1Encoder(HidDevice hidDevice) {
+		super(hidDevice);
+	}
+
+	@Override
+	public int getProtocolRevision() {
+		return StreamDeckConstants.PROTOCOL_REV1;
+	}
+
+	@Override
+	public void prepareImage(Dimension iconSize, SDImage imgData) {
+		imgData.getVariant(iconSize).getReports(StreamDeckConstants.PROTOCOL_REV1, PAGE_1_HEADER[0], PAGE_SIZE, iconSize, KEY_PAGES);
+	}
+
+	@Override
+	public synchronized void drawImage(int keyIndex, Dimension iconSize, SDImage imgData) {
+		imgData = imgData.getVariant(iconSize);
+		// Reverse the key order for rev 1 devices
+		if (this.hidDevice.getHidDeviceInfo().getProductId() == 96)
+			keyIndex = 1 + (15 - keyIndex);
+		if (this.hidDevice.getHidDeviceInfo().getProductId() == 99)
+			keyIndex = 0 + (6 - keyIndex);
+		byte[][] pages = imgData.getReports(StreamDeckConstants.PROTOCOL_REV1, PAGE_1_HEADER[0], PAGE_SIZE, iconSize, KEY_PAGES);
+		// The page header is part of the payload
+		ReportBuffer report = this.buffers.acquire(PAGE_SIZE + 1);
+		byte[] payload = report.getPayload();
+		try {
+			for (int i = 0; i < pages.length; i++) {
+				System.arraycopy(pages[i], 0, payload, 0, PAGE_SIZE);
+				payload[4] = (byte) (keyIndex + 1);
+				this.writeOutput(IMAGE_REPORT_ID, payload, PAGE_SIZE);
+			}
+		}
+		finally {
+			this.buffers.release(report);
+			this.frameWritten(pages.length);
+		}
+	}
+
+	@Override
+	public synchronized void reset() {
+		this.writeFeature(StreamDeckConstants.RESET_DATA_REV1[0], RESET_PAYLOAD, RESET_PAYLOAD.length);
+	}
+
+	@Override
+	public synchronized void setBrightness(int brightness) {
+		brightness = brightness > 99 ? 99 : brightness < 0 ? 0 : brightness;
+		byte[] command = StreamDeckConstants.BRIGHTNES_DATA_REV1;
+		ReportBuffer report = this.buffers.acquire(command.length);
+		report.load(command).patch(5, (byte) brightness);
+		this.writeFeature(report.getReportId(), report.getPayload(), report.getLength());
+		this.buffers.release(report);
+	}
+
+	/**
+	 * Generates HID-Report Page 1/2 to update an image of one stream deck key
+	 *
+	 * @param keyId
+	 *            Id of the key to be updated
+	 * @param imgData
+	 *            image data in the bgr-format
+	 * @return HID-Report in byte format ready to be send to the stream deck
+	 */
+	private static byte[] generatePage1(int keyId, byte[] page1, byte[] imgData) {
+		System.arraycopy(PAGE_1_HEADER, 0, page1, 0, PAGE_1_HEADER.length);
+		if (imgData != null) {
+			int length = Math.min(imgData.length, StreamDeckConstants.NUM_FIRST_PAGE_PIXELS_REV1 * 3);
+			System.arraycopy(imgData, 0, page1, PAGE_1_HEADER.length, length);
+		}
+		page1[4] = (byte) (keyId + 1);
+		return page1;
+	}
+
+	/**
+	 * Generates HID-Report Page 2/2 to update an image of one stream deck key
+	 *
+	 * @param keyId
+	 *            Id of the key to be updated
+	 * @param imgData
+	 *            image data in the bgr-format
+	 * @return HID-Report in byte format ready to be send to the stream deck
+	 */
+	private static byte[] generatePage2(int keyId, byte[] page2, byte[] imgData) {
+		System.arraycopy(PAGE_2_HEADER, 0, page2, 0, PAGE_2_HEADER.length);
+		if (imgData != null) {
+			int offset = StreamDeckConstants.NUM_FIRST_PAGE_PIXELS_REV1 * 3;
+			int length = Math.min(StreamDeckConstants.NUM_SECOND_PAGE_PIXELS_REV1 * 3, imgData.length - offset);
+			if (length > 0)
+				System.arraycopy(imgData, offset, page2, PAGE_2_HEADER.length, length);
+		}
+		page2[4] = (byte) (keyId + 1);
+		return page2;
+	}
+}
@@ -0,0 +1,213 @@
+package de.rcblum.stream.deck.device.encoder;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.function.Function;
+
+import de.rcblum.stream.deck.device.StreamDeckConstants;
+import de.rcblum.stream.deck.device.report.ReportBuffer;
+import de.rcblum.stream.deck.util.SDImage;
+import purejavahidapi.HidDevice;
+
+/**
+ * Encoder for the second generation stream decks (Classic Rev2, XL, Plus).
+ * Images are sent as JPEG in pages of
+ * {@link StreamDeckConstants#PAGE_PACKET_SIZE_REV2} bytes.
+ *
+ * @author Roland von Werden
+ *
+ */
+public class Rev2Encoder extends DeckEncoder {
+
+	/**
+	 * Header for all pages of the image command to update a single key
+	 */
+	private static final byte[] IMAGE_PAGE_HEADER = new byte[] {
+			0x02, 0x07, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00
+	};
+
+	/**
+	 * Header for all pages of the image command to update all keys with one image
+	 */
+	private static final byte[] IMAGE_PAGE_HEADER_ALL = new byte[] {
+			0x02, 0x08, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00
+	};
+
+	/**
+	 * Header for all pages of the image command to update the touch screen
+	 */
+	private static final byte[] TOUCH_SCREEN_PAGE_HEADER = new byte[] {
+			0x02, 0x0C, 0x00, 0x00, 0x00, 0x00, 0x20, 0x03, 0x64, 0x00, 0x00, 0x00, 0x00, (byte) 0xF0, 0x03, 0x00
+	};
+
+	/**
+	 * Payload of the reset command without the report ID, never modified
+	 */
+	private static final byte[] RESET_PAYLOAD = Arrays.copyOfRange(StreamDeckConstants.RESET_DATA_REV2, 1, StreamDeckConstants.RESET_DATA_REV2.length);
+
+	private static final int PAGE_SIZE = StreamDeckConstants.PAGE_PACKET_SIZE_REV2;
+
+	/**
+	 * Bytes of the JPEG data carried by one page of a key image
+	 */
+	public static final int KEY_PAGE_PAYLOAD = PAGE_SIZE - IMAGE_PAGE_HEADER.length;
+
+	/**
+	 * Generates the pages for key images
+	 */
+	private static final Function<SDImage, byte[][]> KEY_PAGES = i -> generateImagePages(i, IMAGE_PAGE_HEADER);
+
+	/**
+	 * Generates the pages for full display images
+	 */
+	private static final Function<SDImage, byte[][]> FULL_PAGES = i -> generateImagePages(i, IMAGE_PAGE_HEADER_ALL);
+
+	/**
+	 * Generates the pages for touch screen images
+	 */
+	private static final Function<SDImage, byte[][]> TOUCH_SCREEN_PAGES = i -> generateTouchScreenPages(i, i.imageSize);
+
+	public Rev2Encoder(HidDevice hidDevice) {
+		super(hidDevice);
+	}
+
+	@Override
+	public int getProtocolRevision() {
+		return StreamDeckConstants.PROTOCOL_REV2;
+	}
+
+	@Override
+	public void drawImage(int keyIndex, Dimension iconSize, SDImage imgData) {
+		this.drawImage(keyIndex, iconSize, imgData, IMAGE_PAGE_HEADER, KEY_PAGES);
+	}
+
+	@Override
+	public void prepareImage(Dimension iconSize, SDImage imgData) {
+		imgData.getVariant(iconSize).getReports(StreamDeckConstants.PROTOCOL_REV2, IMAGE_PAGE_HEADER[1], PAGE_SIZE, iconSize, KEY_PAGES);
+	}
+
+	@Override
+	public void drawFullImage(int keyIndex, Dimension iconSize, SDImage imgData) {
+		this.drawImage(keyIndex, iconSize, imgData, IMAGE_PAGE_HEADER_ALL, FULL_PAGES);
+	}
+
+	private synchronized void drawImage(int keyIndex, Dimension iconSize, SDImage imgData, byte[] pageHeader, Function<SDImage, byte[][]> generator) {
+		imgData = imgData.getVariant(iconSize);
+		byte[][] pages = imgData.getReports(StreamDeckConstants.PROTOCOL_REV2, pageHeader[1], PAGE_SIZE, iconSize, generator);
+		ReportBuffer report = this.buffers.acquire(PAGE_SIZE);
+		int pageNo = 0;
+		try {
+			// Send Image in split reports
+			for (; pageNo < pages.length; pageNo++) {
+				report.load(pages[pageNo]);
+				// Key to be updated
+				report.patch(2, (byte) keyIndex);
+				if (this.writeOutput(report) < 0)
+					break;
+			}
+		}
+		finally {
+			this.buffers.release(report);
+			this.frameWritten(pageNo);
+		}
+	}
+
+	@Override
+	public synchronized void drawTouchScreen(Point imageStart, Dimension imageSize, SDImage imgData) {
+		imgData = imgData.getVariant(imageSize);
+		byte[][] pages = imgData.getReports(StreamDeckConstants.PROTOCOL_REV2, TOUCH_SCREEN_PAGE_HEADER[1], PAGE_SIZE, imageSize, TOUCH_SCREEN_PAGES);
+		ReportBuffer report = this.buffers.acquire(PAGE_SIZE);
+		int x = (int) imageStart.getX();
+		int y = (int) imageStart.getY();
+		int pageNo = 0;
+		try {
+			// Send Image in split reports
+			for (; pageNo < pages.length; pageNo++) {
+				report.load(pages[pageNo]);
+				// X-coord start
+				report.patch(2, (byte) (x & 0xff));
+				report.patch(3, (byte) ((x >> 8) & 0xff));
+				// Y-coord start
+				report.patch(4, (byte) (y & 0xff));
+				report.patch(5, (byte) ((y >> 8) & 0xff));
+				if (this.writeOutput(report) < 0)
+					break;
+			}
+		}
+		finally {
+			this.buffers.release(report);
+			this.frameWritten(pageNo);
+		}
+	}
+
+	@Override
+	public synchronized void reset() {
+		this.writeFeature(StreamDeckConstants.RESET_DATA_REV2[0], RESET_PAYLOAD, RESET_PAYLOAD.length);
+	}
+
+	@Override
+	public synchronized void setBrightness(int brightness) {
+		brightness = brightness > 99 ? 99 : brightness < 0 ? 0 : brightness;
+		byte[] command = StreamDeckConstants.BRIGHTNES_DATA_REV2;
+		ReportBuffer report = this.buffers.acquire(command.length);
+		report.load(command).patch(2, (byte) brightness);
+		this.writeFeature(report.getReportId(), report.getPayload(), report.getLength());
+		this.buffers.release(report);
+	}
+
+	/**
+	 * Generates all HID-Reports to draw the given image for the key 0.
+	 * The key index has to be patched into byte 2 before sending.
+	 *
+	 * @param imgData    Image to be drawn
+	 * @param pageHeader Header for each report
+	 * @return HID-Reports ready to be send to the stream deck
+	 */
+	private static byte[][] generateImagePages(SDImage imgData, byte[] pageHeader) {
+		int pageLength = PAGE_SIZE - pageHeader.length;
+		int pages = (int) Math.ceil(((float) imgData.sdImageJpeg.length) / pageLength);
+		byte[][] reports = new byte[pages][PAGE_SIZE];
+		for (int pageNo = 0; pageNo < pages; pageNo++) {
+			byte[] report = reports[pageNo];
+			int byteFrom = pageNo * pageLength;
+			int payloadLength = Math.min(pageLength, imgData.sdImageJpeg.length - byteFrom);
+			System.arraycopy(pageHeader, 0, report, 0, pageHeader.length);
+			System.arraycopy(imgData.sdImageJpeg, byteFrom, report, pageHeader.length, payloadLength);
+			// 0 = More pages are beeing sent, 1 = this is the last page of the image
+			report[3] = pageNo < pages - 1 ? (byte) 0x00 : (byte) 0x01;
+			// Length of the payload sent
+			report[4] = (byte) (payloadLength & 0xff);
+			report[5] = (byte) ((payloadLength >> 8) & 0xff);
+			// Number of the page sent
+			report[6] = (byte) (pageNo & 0xff);
+			report[7] = (byte) ((pageNo >> 8) & 0xff);
+		}
+		return reports;
+	}
+
+	/**
+	 * Generates all HID-Reports to draw the given image on the touch screen at the position 0, 0.
+	 * The start position has to be patched into bytes 2 - 5 before sending.
+	 *
+	 * @param imgData   Image to be drawn
+	 * @param imageSize Size of the image on the touch screen
+	 * @return HID-Reports ready to be send to the stream deck
+	 */
+	private static byte[][] generateTouchScreenPages(SDImage imgData, Dimension imageSize) {
+		byte[] pageHeader = TOUCH_SCREEN_PAGE_HEADER;
+		int pageLength = PAGE_SIZE - pageHeader.length;
+		int pages = (int) Math.ceil(((float) imgData.sdImageJpeg.length) / pageLength);
+		byte[][] reports = new byte[pages][PAGE_SIZE];
+		Point origin = new Point(0, 0);
+		for (int pageNo = 0; pageNo < pages; pageNo++) {
+			byte[] report = reports[pageNo];
+			int byteFrom = pageNo * pageLength;
+			int payloadLength = Math.min(pageLength, imgData.sdImageJpeg.length - byteFrom);
+			System.arraycopy(pageHeader, 0, report, 0, pageHeader.length);
+			System.arraycopy(imgData.sdImageJpeg, byteFrom, report, pageHeader.length, payloadLength);
+			StreamDeckConstants.updateTouchScreenHeader(report, origin, imageSize, pageNo, pageNo < pages - 1, payloadLength);
+		}
+		return reports;
+	}
+}
@@ -2,10 +2,16 @@ package de.rcblum.stream.deck.device.general;
 
 import java.awt.Dimension;
 import java.awt.Point;
+import java.util.concurrent.CompletableFuture;
 
 import de.rcblum.stream.deck.device.components.DialKey;
 import de.rcblum.stream.deck.device.components.TouchScreen;
 import de.rcblum.stream.deck.device.descriptor.DeckDescriptor;
+import de.rcblum.stream.deck.device.worker.BrightnessRamp.Easing;
+import de.rcblum.stream.deck.device.worker.DeckCommandStore.Policy;
+import de.rcblum.stream.deck.device.worker.DeckCommandStore.Status;
+import de.rcblum.stream.deck.device.worker.DeckUpdater.Priority;
+import de.rcblum.stream.deck.event.RawKeyListener;
 import de.rcblum.stream.deck.event.StreamKeyListener;
 import de.rcblum.stream.deck.items.StreamItem;
 import de.rcblum.stream.deck.util.SDImage;
@@ -61,6 +67,36 @@ public interface IStreamDeck {
 	 */
 	boolean removeKeyListener(StreamKeyListener listener);
 
+	/**
+	 * Adds a listener receiving the events of the ESD as primitive values,
+	 * without creating {@link de.rcblum.stream.deck.event.KeyEvent}s. The
+	 * default implementation does not support raw listeners.
+	 * @param listener	Listener to be added
+	 * @return	<code>true</code> if listener was added, <code>false</code> if listener is already registered or raw listeners are not supported.
+	 */
+	public default boolean addRawKeyListener(RawKeyListener listener) {
+		return false;
+	}
+
+	/**
+	 * Removes a raw listener from the ESD.
+	 * @param listener	Listener to be removed
+	 * @return	<code>true</code> if listener was removed, <code>false</code> if listener is not registered.
+	 */
+	public default boolean removeRawKeyListener(RawKeyListener listener) {
+		return false;
+	}
+
+	/**
+	 * Returns the ID of the ESD passed to the {@link RawKeyListener}s.
+	 * The default is the identity hash code, which is not guaranteed to be
+	 * unique, implementations should draw their ID from {@link de.rcblum.stream.deck.device.StreamDeck#nextDeviceId()}
+	 * @return ID of the ESD
+	 */
+	public default int getDeviceId() {
+		return System.identityHashCode(this);
+	}
+
 	/**
 	 * Creates a Job to send the give icon to the ESD to be displayed on the given keyxIndex
 	 * @param keyIndex  Index on the ESD as defined by {@link DeckDescriptor}
@@ -123,6 +159,17 @@ public interface IStreamDeck {
 	 */
 	void drawImage(int keyIndex, SDImage imgData, Dimension overrideSize);
 
+	/**
+	 * Creates a Job to send the give icon to the ESD to be displayed on the given keyxIndex. 
+	 * Images of a more urgent priority are sent before images of a less urgent priority.
+	 * @param keyIndex  Index on the ESD as defined by {@link DeckDescriptor}
+	 * @param imgData	Image to be displayed
+	 * @param priority	Lane the image is sent in
+	 */
+	public default void drawImage(int keyIndex, SDImage imgData, Priority priority) {
+		drawImage(keyIndex, imgData);
+	}
+
 	/**
 	 * Returns the Hid Devices representation the stream deck.
 	 * 
@@ -150,6 +197,47 @@ public interface IStreamDeck {
 	 */
 	void reset();
 
+	/**
+	 * Resends all images that should be displayed, even if the stream deck
+	 * is known to display them already.
+	 */
+	public default void resync() {}
+
+	/**
+	 * Sets the capacity of the send queue and what happens to commands that
+	 * would exceed it.
+	 * 
+	 * @param policy   Behavior if the queue is full
+	 * @param capacity Maximum number of waiting commands
+	 */
+	public default void setQueuePolicy(Policy policy, int capacity) {}
+
+	/**
+	 * Queues the image for the key like {@link #drawImage(int, SDImage)} and
+	 * returns if the image was accepted by the send queue.
+	 * 
+	 * @param keyIndex Index of the key
+	 * @param imgData  Image to be displayed
+	 * @return {@link Status#QUEUED} if the image will be sent
+	 */
+	public default Status tryDrawImage(int keyIndex, SDImage imgData) {
+		this.drawImage(keyIndex, imgData);
+		return Status.QUEUED;
+	}
+
+	/**
+	 * Starts a batch of key images that belong to the same update, e.g. a new
+	 * folder being displayed. The images may be sent together when the batch
+	 * ends.
+	 */
+	public default void beginBatch() {}
+
+	/**
+	 * Ends a batch started with {@link #beginBatch()} and sends the collected
+	 * images.
+	 */
+	public default void endBatch() {}
+
 	/**
 	 * Sets the desired brightness from 0 - 100 % and queues the change.
 	 * 
@@ -167,6 +255,89 @@ public interface IStreamDeck {
 	 */
 	void waitForCompletion();
 
+	/**
+	 * Returns a future that completes when all commands queued before were
+	 * written to the stream deck or superseded by newer commands.
+	 * 
+	 * @return Future completed when the queued commands are done
+	 */
+	public default CompletableFuture<Void> flush() {
+		this.waitForCompletion();
+		return CompletableFuture.completedFuture(null);
+	}
+
+	/**
+	 * Queues the image for the key like {@link #drawImage(int, SDImage)}.
+	 * 
+	 * @param keyIndex Index of the key
+	 * @param imgData  Image to be displayed
+	 * @return Future completed when the image was written or superseded
+	 */
+	public default CompletableFuture<Void> drawImageAsync(int keyIndex, SDImage imgData) {
+		this.drawImage(keyIndex, imgData);
+		return this.flush();
+	}
+
+	/**
+	 * Queues the image for the touch screen like
+	 * {@link #drawTouchScreenImage(Point, SDImage)}.
+	 * 
+	 * @param startPoint Position of the image on the touch screen
+	 * @param imgData    Image to be displayed
+	 * @return Future completed when the image was written or superseded
+	 */
+	public default CompletableFuture<Void> drawTouchScreenImageAsync(Point startPoint, SDImage imgData) {
+		this.drawTouchScreenImage(startPoint, imgData);
+		return this.flush();
+	}
+
+	/**
+	 * Queues the image for the full display like {@link #drawFullImage(SDImage)}.
+	 * 
+	 * @param imgData Image to be displayed
+	 * @return Future completed when the image was written or superseded
+	 */
+	public default CompletableFuture<Void> drawFullImageAsync(SDImage imgData) {
+		this.drawFullImage(imgData);
+		return this.flush();
+	}
+
+	/**
+	 * Queues the brightness like {@link #setBrightness(int)}.
+	 * 
+	 * @param brightness Brightness in percentile
+	 * @return Future completed when the brightness was written or superseded
+	 */
+	public default CompletableFuture<Void> setBrightnessAsync(int brightness) {
+		this.setBrightness(brightness);
+		return this.flush();
+	}
+
+	/**
+	 * Fades the brightness to the target level over the given time. A running
+	 * fade is stopped, calling {@link #setBrightness(int)} stops the fade as
+	 * well. The default implementation sets the target level at once.
+	 * 
+	 * @param brightness     Target brightness in percentile
+	 * @param durationMillis Duration of the fade in ms
+	 * @param easing         Curve of the fade
+	 * @return Future completed when the target brightness was written,
+	 *         cancelled if the fade was stopped
+	 */
+	public default CompletableFuture<Void> rampBrightness(int brightness, long durationMillis, Easing easing) {
+		return this.setBrightnessAsync(brightness);
+	}
+
+	/**
+	 * Resets the stream deck like {@link #reset()}.
+	 * 
+	 * @return Future completed when the reset and the redrawn images were written
+	 */
+	public default CompletableFuture<Void> resetAsync() {
+		this.reset();
+		return this.flush();
+	}
+
 	void clearButton(int i);
 	
 	/**
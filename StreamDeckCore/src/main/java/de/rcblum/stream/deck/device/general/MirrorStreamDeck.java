@@ -0,0 +1,417 @@
+package de.rcblum.stream.deck.device.general;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import de.rcblum.stream.deck.device.StreamDeck;
+import de.rcblum.stream.deck.device.components.DialKey;
+import de.rcblum.stream.deck.device.components.TouchScreen;
+import de.rcblum.stream.deck.device.descriptor.DeckDescriptor;
+import de.rcblum.stream.deck.device.descriptor.KeyType;
+import de.rcblum.stream.deck.device.encoder.DeckEncoder;
+import de.rcblum.stream.deck.device.worker.BrightnessRamp.Easing;
+import de.rcblum.stream.deck.device.worker.DeckCommandStore.Policy;
+import de.rcblum.stream.deck.device.worker.DeckCommandStore.Status;
+import de.rcblum.stream.deck.device.worker.DeckUpdater.Priority;
+import de.rcblum.stream.deck.event.RawKeyListener;
+import de.rcblum.stream.deck.event.StreamKeyListener;
+import de.rcblum.stream.deck.items.StreamItem;
+import de.rcblum.stream.deck.util.SDImage;
+import purejavahidapi.HidDevice;
+
+/**
+ * Shows the same content on several stream decks. Every command is passed on
+ * to all decks of the group, key events of all decks are sent to the
+ * listeners of the group.
+ * <br><br>
+ * Images are converted once for every icon size in the group and the reports
+ * are generated once for every protocol revision and size, before the image
+ * is queued to the decks. The worker of each deck then only patches the key
+ * into the shared reports and writes them, all decks in parallel. Adding a
+ * deck with the same descriptor adds no conversion work.
+ * <br><br>
+ * Information about the device, like the descriptor or the touch screen, is
+ * taken from the first deck of the group.
+ *
+ * @author Roland von Werden
+ *
+ */
+public class MirrorStreamDeck implements IStreamDeck {
+
+	/**
+	 * Decks of the group, the first one is the primary deck
+	 */
+	private final IStreamDeck[] decks;
+
+	/**
+	 * Encoders of the decks, <code>null</code> for decks without an encoder
+	 */
+	private final DeckEncoder[] encoders;
+
+	/**
+	 * Creates a group of stream decks showing the same content
+	 *
+	 * @param decks Decks of the group, the first one is the primary deck
+	 */
+	public MirrorStreamDeck(IStreamDeck... decks) {
+		if (decks.length == 0)
+			throw new IllegalArgumentException("A mirror group needs at least one stream deck");
+		this.decks = decks.clone();
+		this.encoders = new DeckEncoder[decks.length];
+		for (int i = 0; i < decks.length; i++)
+			this.encoders[i] = decks[i] instanceof StreamDeck ? ((StreamDeck) decks[i]).getEncoder() : null;
+	}
+
+	/**
+	 * Creates a group of stream decks showing the same content
+	 *
+	 * @param decks Decks of the group, the first one is the primary deck
+	 */
+	public MirrorStreamDeck(List<? extends IStreamDeck> decks) {
+		this(decks.toArray(new IStreamDeck[decks.size()]));
+	}
+
+	/**
+	 * @return Decks of the group, the first one is the primary deck
+	 */
+	public List<IStreamDeck> getDecks() {
+		return Collections.unmodifiableList(Arrays.asList(this.decks));
+	}
+
+	/**
+	 * Returns the image for each deck of the group. The image is converted
+	 * once for each size, the reports once for each protocol revision and
+	 * size.
+	 *
+	 * @param keyIndex     Index of the key
+	 * @param imgData      Image to be displayed
+	 * @param overrideSize Size of the image on all decks, <code>null</code> for
+	 *                     the size of the key on each deck
+	 * @return Images in the order of the decks
+	 */
+	private SDImage[] prepare(int keyIndex, SDImage imgData, Dimension overrideSize) {
+		SDImage[] images = new SDImage[this.decks.length];
+		Dimension[] sizes = new Dimension[this.decks.length];
+		for (int i = 0; i < this.decks.length; i++) {
+			KeyType key = this.decks[i].getDescriptor().getKey(keyIndex);
+			sizes[i] = overrideSize != null ? overrideSize : key != null ? key.getDimension() : this.decks[i].getDescriptor().iconSize;
+			int same = indexOfSize(sizes, i);
+			images[i] = same >= 0 ? images[same] : imgData.getVariant(sizes[i]);
+			if (this.encoders[i] != null && !KeyType.TOUCH_SCREEN.equals(key) && !this.isPrepared(sizes, i))
+				this.encoders[i].prepareImage(sizes[i], images[i]);
+		}
+		return images;
+	}
+
+	/**
+	 * Returns the first deck before <code>index</code> with the same size
+	 */
+	private static int indexOfSize(Dimension[] sizes, int index) {
+		for (int i = 0; i < index; i++)
+			if (sizes[i].equals(sizes[index]))
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Returns if the reports were generated for a deck before
+	 * <code>index</code> with the same size and protocol revision
+	 */
+	private boolean isPrepared(Dimension[] sizes, int index) {
+		int revision = this.encoders[index].getProtocolRevision();
+		for (int i = 0; i < index; i++)
+			if (this.encoders[i] != null && this.encoders[i].getProtocolRevision() == revision && sizes[i].equals(sizes[index]))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Combines the futures of all decks
+	 */
+	private CompletableFuture<Void> all(Function<IStreamDeck, CompletableFuture<Void>> command) {
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[this.decks.length];
+		for (int i = 0; i < this.decks.length; i++)
+			futures[i] = command.apply(this.decks[i]);
+		return CompletableFuture.allOf(futures);
+	}
+
+	@Override
+	public void addKey(int keyId, StreamItem item) {
+		if (item.getIcon() != null)
+			this.prepare(keyId, item.getIcon(), null);
+		for (IStreamDeck deck : this.decks)
+			deck.addKey(keyId, item);
+	}
+
+	@Override
+	public boolean addKeyListener(StreamKeyListener listener) {
+		boolean added = false;
+		for (IStreamDeck deck : this.decks)
+			added |= deck.addKeyListener(listener);
+		return added;
+	}
+
+	@Override
+	public boolean removeKeyListener(StreamKeyListener listener) {
+		boolean removed = false;
+		for (IStreamDeck deck : this.decks)
+			removed |= deck.removeKeyListener(listener);
+		return removed;
+	}
+
+	@Override
+	public boolean addRawKeyListener(RawKeyListener listener) {
+		boolean added = false;
+		for (IStreamDeck deck : this.decks)
+			added |= deck.addRawKeyListener(listener);
+		return added;
+	}
+
+	@Override
+	public boolean removeRawKeyListener(RawKeyListener listener) {
+		boolean removed = false;
+		for (IStreamDeck deck : this.decks)
+			removed |= deck.removeRawKeyListener(listener);
+		return removed;
+	}
+
+	/**
+	 * @return ID of the primary deck
+	 */
+	@Override
+	public int getDeviceId() {
+		return this.decks[0].getDeviceId();
+	}
+
+	@Override
+	public void drawImage(int keyIndex, SDImage imgData) {
+		SDImage[] images = this.prepare(keyIndex, imgData, null);
+		for (int i = 0; i < this.decks.length; i++)
+			this.decks[i].drawImage(keyIndex, images[i]);
+	}
+
+	@Override
+	public void drawImage(int keyIndex, SDImage imgData, Dimension overrideSize) {
+		SDImage[] images = this.prepare(keyIndex, imgData, overrideSize);
+		for (int i = 0; i < this.decks.length; i++)
+			this.decks[i].drawImage(keyIndex, images[i], overrideSize);
+	}
+
+	@Override
+	public void drawImage(int keyIndex, SDImage imgData, Priority priority) {
+		SDImage[] images = this.prepare(keyIndex, imgData, null);
+		for (int i = 0; i < this.decks.length; i++)
+			this.decks[i].drawImage(keyIndex, images[i], priority);
+	}
+
+	@Override
+	public CompletableFuture<Void> drawImageAsync(int keyIndex, SDImage imgData) {
+		SDImage[] images = this.prepare(keyIndex, imgData, null);
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[this.decks.length];
+		for (int i = 0; i < this.decks.length; i++)
+			futures[i] = this.decks[i].drawImageAsync(keyIndex, images[i]);
+		return CompletableFuture.allOf(futures);
+	}
+
+	@Override
+	public Status tryDrawImage(int keyIndex, SDImage imgData) {
+		SDImage[] images = this.prepare(keyIndex, imgData, null);
+		Status result = Status.QUEUED;
+		for (int i = 0; i < this.decks.length; i++) {
+			Status status = this.decks[i].tryDrawImage(keyIndex, images[i]);
+			if (result == Status.QUEUED)
+				result = status;
+		}
+		return result;
+	}
+
+	@Override
+	public void drawTouchScreenImage(Point startPoint, SDImage imgData) {
+		for (IStreamDeck deck : this.decks)
+			if (deck.hasTouchScreen())
+				deck.drawTouchScreenImage(startPoint, imgData);
+	}
+
+	@Override
+	public void drawTouchScreenImage(SDImage imgData) {
+		this.drawTouchScreenImage(new Point(0, 0), imgData);
+	}
+
+	@Override
+	public CompletableFuture<Void> drawTouchScreenImageAsync(Point startPoint, SDImage imgData) {
+		return this.all(d -> d.hasTouchScreen() ? d.drawTouchScreenImageAsync(startPoint, imgData) : CompletableFuture.completedFuture(null));
+	}
+
+	@Override
+	public void drawFullImage(SDImage imgData) {
+		for (IStreamDeck deck : this.decks)
+			deck.drawFullImage(imgData);
+	}
+
+	@Override
+	public CompletableFuture<Void> drawFullImageAsync(SDImage imgData) {
+		return this.all(d -> d.drawFullImageAsync(imgData));
+	}
+
+	@Override
+	public boolean hasTouchScreen() {
+		return this.decks[0].hasTouchScreen();
+	}
+
+	@Override
+	public TouchScreen getTouchScreen() {
+		return this.decks[0].getTouchScreen();
+	}
+
+	@Override
+	public boolean hasDials() {
+		return this.decks[0].hasDials();
+	}
+
+	@Override
+	public DialKey[] getDials() {
+		return this.decks[0].getDials();
+	}
+
+	@Override
+	public DialKey getDial(int keyIndex) {
+		return this.decks[0].getDial(keyIndex);
+	}
+
+	@Override
+	public HidDevice getHidDevice() {
+		return this.decks[0].getHidDevice();
+	}
+
+	@Override
+	public DeckDescriptor getDescriptor() {
+		return this.decks[0].getDescriptor();
+	}
+
+	@Override
+	public void removeKey(int keyId) {
+		for (IStreamDeck deck : this.decks)
+			deck.removeKey(keyId);
+	}
+
+	@Override
+	public void reset() {
+		for (IStreamDeck deck : this.decks)
+			deck.reset();
+	}
+
+	@Override
+	public CompletableFuture<Void> resetAsync() {
+		return this.all(IStreamDeck::resetAsync);
+	}
+
+	@Override
+	public void resync() {
+		for (IStreamDeck deck : this.decks)
+			deck.resync();
+	}
+
+	@Override
+	public void setQueuePolicy(Policy policy, int capacity) {
+		for (IStreamDeck deck : this.decks)
+			deck.setQueuePolicy(policy, capacity);
+	}
+
+	@Override
+	public void beginBatch() {
+		for (IStreamDeck deck : this.decks)
+			deck.beginBatch();
+	}
+
+	@Override
+	public void endBatch() {
+		for (IStreamDeck deck : this.decks)
+			deck.endBatch();
+	}
+
+	@Override
+	public void setBrightness(int brightness) {
+		for (IStreamDeck deck : this.decks)
+			deck.setBrightness(brightness);
+	}
+
+	@Override
+	public CompletableFuture<Void> setBrightnessAsync(int brightness) {
+		return this.all(d -> d.setBrightnessAsync(brightness));
+	}
+
+	@Override
+	public CompletableFuture<Void> rampBrightness(int brightness, long durationMillis, Easing easing) {
+		return this.all(d -> d.rampBrightness(brightness, durationMillis, easing));
+	}
+
+	@Override
+	public void stop() {
+		for (IStreamDeck deck : this.decks)
+			deck.stop();
+	}
+
+	@Override
+	public void waitForCompletion() {
+		for (IStreamDeck deck : this.decks)
+			deck.waitForCompletion();
+	}
+
+	@Override
+	public CompletableFuture<Void> flush() {
+		return this.all(IStreamDeck::flush);
+	}
+
+	@Override
+	public void clearButton(int i) {
+		for (IStreamDeck deck : this.decks)
+			deck.clearButton(i);
+	}
+
+	/**
+	 * @return <code>true</code> if the primary deck is hardware
+	 */
+	@Override
+	public boolean isHardware() {
+		return this.decks[0].isHardware();
+	}
+
+	@Override
+	public int getKeySize() {
+		return this.decks[0].getKeySize();
+	}
+
+	@Override
+	public int getRowSize() {
+		return this.decks[0].getRowSize();
+	}
+
+	@Override
+	public int getColumnSize() {
+		return this.decks[0].getColumnSize();
+	}
+
+	/**
+	 * Pushes the button on the primary deck, the listeners of the group
+	 * receive the events once.
+	 */
+	@Override
+	public void pushButton(int no) {
+		this.decks[0].pushButton(no);
+	}
+
+	@Override
+	public void pressButton(int no) {
+		this.decks[0].pressButton(no);
+	}
+
+	@Override
+	public void releaseButton(int no) {
+		this.decks[0].releaseButton(no);
+	}
+}
@@ -11,9 +11,12 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.swing.ImageIcon;
 import javax.swing.JFrame;
@@ -24,11 +27,18 @@ import javax.swing.event.MouseInputAdapter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import de.rcblum.stream.deck.device.StreamDeck;
 import de.rcblum.stream.deck.device.StreamDeckConstants;
 import de.rcblum.stream.deck.device.components.DialKey;
 import de.rcblum.stream.deck.device.components.TouchScreen;
 import de.rcblum.stream.deck.device.descriptor.DeckDescriptor;
+import de.rcblum.stream.deck.device.worker.BrightnessRamp.Easing;
+import de.rcblum.stream.deck.device.worker.DeckCommandStore;
+import de.rcblum.stream.deck.device.worker.DeckCommandStore.Policy;
+import de.rcblum.stream.deck.device.worker.DeckCommandStore.Status;
+import de.rcblum.stream.deck.device.worker.EventRing;
 import de.rcblum.stream.deck.event.KeyEvent;
+import de.rcblum.stream.deck.event.RawKeyListener;
 import de.rcblum.stream.deck.event.StreamKeyListener;
 import de.rcblum.stream.deck.event.KeyEvent.Type;
 import de.rcblum.stream.deck.items.StreamItem;
@@ -92,6 +102,10 @@ public class SoftStreamDeck implements IStreamDeck {
 	
 	private List<StreamKeyListener> listerners;
 	
+	private List<RawKeyListener> rawListeners = new CopyOnWriteArrayList<>();
+	
+	private final int deviceId = StreamDeck.nextDeviceId();
+	
 	private JFrame frame = null;
 
 	private BufferedImage writeBuffer = null;
@@ -107,10 +121,31 @@ public class SoftStreamDeck implements IStreamDeck {
 	/**
 	 * Queue for {@link KeyEvent}s that are triggered by the ESD
 	 */
-	Queue<KeyEvent> recievePool = new ConcurrentLinkedQueue<>();
+	EventRing<KeyEvent> recievePool = new EventRing<>();
 	
 	private ConcurrentLinkedQueue<IconUpdate> updateQueue = new ConcurrentLinkedQueue<>();
 
+	/**
+	 * Behavior of the {@link #updateQueue} if it is full
+	 */
+	private Policy queuePolicy = Policy.REJECT;
+
+	/**
+	 * Maximum number of waiting icon updates
+	 */
+	private int queueCapacity = DeckCommandStore.DEFAULT_CAPACITY;
+
+	private final AtomicLong blockedCount = new AtomicLong();
+
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	/**
+	 * Number of updates replaced by a newer update of the same key
+	 */
+	private final AtomicLong coalescedCount = new AtomicLong();
+
+	private final AtomicLong rejectedCount = new AtomicLong();
+
 
 	public SoftStreamDeck(String name, IStreamDeck streamDeck) {
 		this(name, streamDeck, streamDeck != null ? streamDeck.getKeySize() : StreamDeckConstants.BUTTON_COUNT, streamDeck != null ? streamDeck.getRowSize() : StreamDeckConstants.ROW_COUNT, true);
@@ -185,7 +220,7 @@ public class SoftStreamDeck implements IStreamDeck {
 	public void addKey(int keyId, StreamItem item) {
 		if (keyId < this.keys.length && keyId >= 0) {
 			this.keys[keyId] = item;
-			this.updateQueue.add(new IconUpdate(keyId, item.getIcon()));
+			this.enqueue(new IconUpdate(keyId, item.getIcon()));
 		}
 		if(streamDeck != null)
 			streamDeck.addKey(keyId, item);
@@ -203,16 +238,33 @@ public class SoftStreamDeck implements IStreamDeck {
 		return streamDeck != null ? streamDeck.removeKeyListener(listener) : removed;
 	}
 
+	@Override
+	public boolean addRawKeyListener(RawKeyListener listener) {
+		boolean added = !this.rawListeners.contains(listener) && this.rawListeners.add(listener);
+		return streamDeck != null ? streamDeck.addRawKeyListener(listener) : added;
+	}
+
+	@Override
+	public boolean removeRawKeyListener(RawKeyListener listener) {
+		boolean removed = this.rawListeners.remove(listener);
+		return streamDeck != null ? streamDeck.removeRawKeyListener(listener) : removed;
+	}
+
+	@Override
+	public int getDeviceId() {
+		return this.deviceId;
+	}
+
 	@Override
 	public void drawImage(int keyId, SDImage imgData) {
-		this.updateQueue.add(new IconUpdate(keyId, imgData));
+		this.enqueue(new IconUpdate(keyId, imgData));
 		if(streamDeck != null)
 			streamDeck.drawImage(keyId, imgData);
 	}
 
 	@Override
 	public void drawImage(int keyId, SDImage imgData, Dimension overrideSize) {
-		this.updateQueue.add(new IconUpdate(keyId, imgData));
+		this.enqueue(new IconUpdate(keyId, imgData));
 		if(streamDeck != null)
 			streamDeck.drawImage(keyId, imgData, overrideSize);
 	}
@@ -285,7 +337,7 @@ public class SoftStreamDeck implements IStreamDeck {
 	public void removeKey(int keyId) {
 		if (keyId < this.keys.length && keyId >= 0 && this.keys[keyId] != null) {
 			this.keys[keyId] = null;
-			this.updateQueue.add(new IconUpdate(keyId, StreamDeckConstants.BLACK_ICON)); 
+			this.enqueue(new IconUpdate(keyId, StreamDeckConstants.BLACK_ICON)); 
 		}
 		if(streamDeck != null)
 			this.streamDeck.removeKey(keyId);
@@ -293,14 +345,18 @@ public class SoftStreamDeck implements IStreamDeck {
 
 	@Override
 	public void reset() {
+		this.redrawKeys();
+		if(streamDeck != null)
+			this.streamDeck.reset();
+	}
+
+	private void redrawKeys() {
 		for (int i = 0; i < keys.length; i++) {
 			if (keys[i] != null)
-				this.updateQueue.add(new IconUpdate(i, keys[i].getIcon()));
+				this.enqueue(new IconUpdate(i, keys[i].getIcon()));
 			else
-				this.updateQueue.add(new IconUpdate(i, StreamDeckConstants.BLACK_ICON));
+				this.enqueue(new IconUpdate(i, StreamDeckConstants.BLACK_ICON));
 		}
-		if(streamDeck != null)
-			this.streamDeck.reset();
 	}
 
 	@Override
@@ -320,6 +376,7 @@ public class SoftStreamDeck implements IStreamDeck {
 
 	private void stopThreads() {
 		this.running = false;
+		this.recievePool.close();
 		this.drawThread.stop();
 	}
 
@@ -329,9 +386,60 @@ public class SoftStreamDeck implements IStreamDeck {
 			this.streamDeck.waitForCompletion();
 	}
 
+	@Override
+	public CompletableFuture<Void> flush() {
+		if(streamDeck != null)
+			return this.streamDeck.flush();
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public CompletableFuture<Void> drawImageAsync(int keyId, SDImage imgData) {
+		this.enqueue(new IconUpdate(keyId, imgData));
+		if(streamDeck != null)
+			return streamDeck.drawImageAsync(keyId, imgData);
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public CompletableFuture<Void> drawTouchScreenImageAsync(Point startPoint, SDImage imgData) {
+		if(streamDeck != null && streamDeck.hasTouchScreen())
+			return streamDeck.drawTouchScreenImageAsync(startPoint, imgData);
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public CompletableFuture<Void> drawFullImageAsync(SDImage imgData) {
+		if(streamDeck != null)
+			return streamDeck.drawFullImageAsync(imgData);
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public CompletableFuture<Void> setBrightnessAsync(int brightness) {
+		if(streamDeck != null)
+			return this.streamDeck.setBrightnessAsync(brightness);
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public CompletableFuture<Void> rampBrightness(int brightness, long durationMillis, Easing easing) {
+		if(streamDeck != null)
+			return this.streamDeck.rampBrightness(brightness, durationMillis, easing);
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public CompletableFuture<Void> resetAsync() {
+		this.redrawKeys();
+		if(streamDeck != null)
+			return this.streamDeck.resetAsync();
+		return CompletableFuture.completedFuture(null);
+	}
+
 	@Override
 	public void clearButton(int keyId) {
-		this.updateQueue.add(new IconUpdate(keyId, StreamDeckConstants.BLACK_ICON));
+		this.enqueue(new IconUpdate(keyId, StreamDeckConstants.BLACK_ICON));
 		if(streamDeck != null)
 			this.streamDeck.clearButton(keyId);
 	}
@@ -360,7 +468,7 @@ public class SoftStreamDeck implements IStreamDeck {
 		LOGGER.debug(String.format("Virtual button pushed: Key-ID: %d", no));
 		//no = no > this.getKeySize()-1 ? this.getKeySize()-1 : no < 0 ? 0 : no;
 		KeyEvent evnt = new KeyEvent(this, no, Type.RELEASED_CLICKED);
-		recievePool.add(evnt);
+		recievePool.put(evnt);
 	}
 
 	/**
@@ -374,7 +482,7 @@ public class SoftStreamDeck implements IStreamDeck {
 		LOGGER.debug(String.format("Virtual button pressed: Key-ID: %d", no));
 		//no = no > this.getKeySize()-1 ? this.getKeySize()-1 : no < 0 ? 0 : no;
 		KeyEvent evnt = new KeyEvent(this, no, Type.PRESSED);
-		recievePool.add(evnt);
+		recievePool.put(evnt);
 	}
 
 	/**
@@ -389,6 +497,97 @@ public class SoftStreamDeck implements IStreamDeck {
 		this.pushButton(no);
 	}
 	
+	@Override
+	public Status tryDrawImage(int keyId, SDImage imgData) {
+		Status status = this.enqueue(new IconUpdate(keyId, imgData));
+		if(streamDeck != null)
+			return streamDeck.tryDrawImage(keyId, imgData);
+		return status;
+	}
+
+	@Override
+	public void setQueuePolicy(Policy policy, int capacity) {
+		if (policy == null)
+			throw new IllegalArgumentException("Queue policy must not be null");
+		synchronized (this.updateQueue) {
+			this.queuePolicy = policy;
+			this.queueCapacity = Math.max(1, capacity);
+			this.updateQueue.notifyAll();
+		}
+		if(streamDeck != null)
+			streamDeck.setQueuePolicy(policy, capacity);
+	}
+
+	public Policy getQueuePolicy() {
+		return this.queuePolicy;
+	}
+
+	public int getQueueCapacity() {
+		return this.queueCapacity;
+	}
+
+	public long getBlockedCount() {
+		return this.blockedCount.get();
+	}
+
+	public long getDroppedCount() {
+		return this.droppedCount.get();
+	}
+
+	public long getCoalescedCount() {
+		return this.coalescedCount.get();
+	}
+
+	public long getRejectedCount() {
+		return this.rejectedCount.get();
+	}
+
+	/**
+	 * Adds the update to the {@link #updateQueue}. Like the send pool of a
+	 * {@link de.rcblum.stream.deck.device.StreamDeck}, a waiting update of the
+	 * same key is replaced under every policy, the queue policy only applies if
+	 * the queue is full. The soft deck has no animation frames, with
+	 * {@link Policy#DROP_OLDEST_ANIMATION} the oldest update is dropped.
+	 * 
+	 * @param update Icon update to be drawn
+	 * @return Status of the update
+	 */
+	private Status enqueue(IconUpdate update) {
+		synchronized (this.updateQueue) {
+			for (Iterator<IconUpdate> it = this.updateQueue.iterator(); it.hasNext();) {
+				if (it.next().keyIndex == update.keyIndex) {
+					it.remove();
+					this.coalescedCount.incrementAndGet();
+					break;
+				}
+			}
+			if (this.updateQueue.size() >= this.queueCapacity) {
+				switch (this.queuePolicy) {
+				case BLOCK:
+					this.blockedCount.incrementAndGet();
+					try {
+						while (this.running && this.updateQueue.size() >= this.queueCapacity)
+							this.updateQueue.wait(1);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						this.rejectedCount.incrementAndGet();
+						return Status.REJECTED;
+					}
+					break;
+				case DROP_OLDEST_ANIMATION:
+					this.updateQueue.poll();
+					this.droppedCount.incrementAndGet();
+					break;
+				default:
+					this.rejectedCount.incrementAndGet();
+					return Status.REJECTED;
+				}
+			}
+			this.updateQueue.add(update);
+			return Status.QUEUED;
+		}
+	}
+
 	private class IconUpdate {
 
 		public final int keyIndex;
@@ -500,7 +699,7 @@ public class SoftStreamDeck implements IStreamDeck {
 			int keyId = getIndex(e.getX(), e.getY());
 			if (keyId >= 0) {
 				KeyEvent evnt = new KeyEvent(SoftStreamDeck.this, keyId, Type.PRESSED);
-				SoftStreamDeck.this.recievePool.add(evnt);
+				SoftStreamDeck.this.recievePool.put(evnt);
 			}
 		}
 
@@ -509,7 +708,7 @@ public class SoftStreamDeck implements IStreamDeck {
 			int keyId = getIndex(e.getX(), e.getY()); 
 			if (keyId >= 0) {
 				KeyEvent evnt = new KeyEvent( SoftStreamDeck.this, keyId, Type.RELEASED_CLICKED);
-				SoftStreamDeck.this.recievePool.add(evnt);
+				SoftStreamDeck.this.recievePool.put(evnt);
 			}
 		}
 
@@ -534,30 +733,26 @@ public class SoftStreamDeck implements IStreamDeck {
 
 		@Override
 		public void run() {
-			while (SoftStreamDeck.this.running || !SoftStreamDeck.this.running && !recievePool.isEmpty()) {
-				if (!SoftStreamDeck.this.recievePool.isEmpty()) {
-					KeyEvent event = SoftStreamDeck.this.recievePool.poll();
-					int i = event.getKeyId();
-					if (i < SoftStreamDeck.this.keys.length && SoftStreamDeck.this.keys[i] != null) {
-						SoftStreamDeck.this.keys[i].onKeyEvent(event);
+			KeyEvent event;
+			while ((event = SoftStreamDeck.this.recievePool.take()) != null) {
+				int i = event.getKeyId();
+				for (RawKeyListener l : SoftStreamDeck.this.rawListeners) {
+					try {
+						l.onRawKeyEvent(SoftStreamDeck.this.getDeviceId(), i, event.getType().ordinal(), event.getCreatedNanos(), 0, 0);
+					} 
+					catch (Exception e) {
+						LOGGER.error("Error sending out raw key events", e);
 					}
-					SoftStreamDeck.this.listerners.stream().forEach(l -> 
-						{
-							try {
-								l.onKeyEvent(event);
-							} 
-							catch (Exception e) {
-								LOGGER.error("Error sending out KeyEvents", e);
-							}
-						}
-					);
 				}
-				if (SoftStreamDeck.this.recievePool.isEmpty()) {
+				if (i < SoftStreamDeck.this.keys.length && SoftStreamDeck.this.keys[i] != null) {
+					SoftStreamDeck.this.keys[i].onKeyEvent(event);
+				}
+				for (StreamKeyListener l : SoftStreamDeck.this.listerners) {
 					try {
-						Thread.sleep(1);
-					} catch (InterruptedException e) {
-						LOGGER.error("EventDispatcher sleep interrupted", e);
-						Thread.currentThread().interrupt();
+						l.onKeyEvent(event);
+					} 
+					catch (Exception e) {
+						LOGGER.error("Error sending out KeyEvents", e);
 					}
 				}
 			}
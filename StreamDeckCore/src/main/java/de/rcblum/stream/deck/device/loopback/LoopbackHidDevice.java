@@ -0,0 +1,552 @@
+package de.rcblum.stream.deck.device.loopback;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.imageio.ImageIO;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.rcblum.stream.deck.device.StreamDeckConstants;
+import de.rcblum.stream.deck.device.descriptor.DeckDescriptor;
+import de.rcblum.stream.deck.device.descriptor.KeyType;
+import purejavahidapi.HidDevice;
+import purejavahidapi.HidDeviceInfo;
+
+/**
+ * Simulated stream deck that can be used instead of a connected device, e.g.
+ * to run the {@link de.rcblum.stream.deck.device.StreamDeck} and the
+ * {@link de.rcblum.stream.deck.StreamDeckController} in tests and benchmarks.
+ * <br><br>
+ * The device accepts the output and feature reports of both protocol
+ * revisions and decodes the image pages back into images of the keys, the
+ * full display and the touch screen. Key presses, dial rotations and touches
+ * are injected as input reports of the format given by the
+ * {@link DeckDescriptor}.
+ * <br><br>
+ * The timing of a real device can be emulated with a latency per page and a
+ * maximum throughput, {@link #setOutputReport(byte, byte[], int)} blocks
+ * until the emulated device accepted the page.
+ *
+ * @author Roland von Werden
+ *
+ */
+public class LoopbackHidDevice extends HidDevice {
+
+	private static final Logger LOGGER = LogManager.getLogger(LoopbackHidDevice.class);
+
+	/**
+	 * Length of the input reports sent by the device
+	 */
+	public static final int INPUT_REPORT_LENGTH = 512;
+
+	/**
+	 * Report header of the first page of a Rev1 key image, without the report ID
+	 */
+	private static final int REV1_PAGE_1_HEADER = 71;
+
+	/**
+	 * Report header of the second page of a Rev1 key image, without the report ID
+	 */
+	private static final int REV1_PAGE_2_HEADER = 17;
+
+	/**
+	 * Report header of Rev2 key and full images, without the report ID
+	 */
+	private static final int REV2_IMAGE_HEADER = 7;
+
+	/**
+	 * Report header of Rev2 touch screen images, without the report ID
+	 */
+	private static final int REV2_TOUCH_SCREEN_HEADER = 15;
+
+	private static final AtomicInteger DEVICE_COUNT = new AtomicInteger();
+
+	private final DeckDescriptor descriptor;
+
+	/**
+	 * Last image of each key, indexed like the commands sent to the device
+	 * (including {@link DeckDescriptor#drawImageKeyOffset})
+	 */
+	private final BufferedImage[] keyImages;
+
+	/**
+	 * JPEG data of the images being received
+	 */
+	private final ByteArrayOutputStream[] pendingImages;
+
+	/**
+	 * Raw pixels of the first page of Rev1 images being received
+	 */
+	private final byte[][] pendingRev1Pages;
+
+	private final ByteArrayOutputStream pendingFullImage = new ByteArrayOutputStream();
+
+	private final ByteArrayOutputStream pendingTouchScreen = new ByteArrayOutputStream();
+
+	private BufferedImage fullImage = null;
+
+	private BufferedImage touchScreenImage = null;
+
+	private final boolean[] keysPressed;
+
+	private boolean decodeImages = true;
+
+	private int brightness = -1;
+
+	private long resets = 0;
+
+	private long outputReports = 0;
+
+	private long featureReports = 0;
+
+	private long bytesReceived = 0;
+
+	private long imagesReceived = 0;
+
+	/**
+	 * Latency of each output report in ns
+	 */
+	private long pageLatencyNanos = 0;
+
+	/**
+	 * Maximum throughput in bytes per second, 0 for no limit
+	 */
+	private long maxBytesPerSecond = 0;
+
+	/**
+	 * Point in time ({@link System#nanoTime()}) the emulated device is busy until
+	 */
+	private long busyUntil = 0;
+
+	/**
+	 * Creates a simulated device for the given stream deck
+	 *
+	 * @param descriptor Descriptor of the simulated stream deck
+	 */
+	public LoopbackHidDevice(DeckDescriptor descriptor) {
+		this.descriptor = descriptor;
+		int slots = descriptor.getKeySize() + descriptor.drawImageKeyOffset;
+		this.keyImages = new BufferedImage[slots];
+		this.pendingImages = new ByteArrayOutputStream[slots];
+		this.pendingRev1Pages = new byte[slots][];
+		this.keysPressed = new boolean[descriptor.getKeySize()];
+		this.m_HidDeviceInfo = new LoopbackDeviceInfo(descriptor, DEVICE_COUNT.incrementAndGet());
+		this.m_Open = true;
+	}
+
+	/**
+	 * Emulates the timing of a real device
+	 *
+	 * @param pageLatencyNanos  Time each output report takes in ns
+	 * @param maxBytesPerSecond Maximum throughput in bytes per second, 0 for no limit
+	 */
+	public synchronized void setTiming(long pageLatencyNanos, long maxBytesPerSecond) {
+		this.pageLatencyNanos = Math.max(0, pageLatencyNanos);
+		this.maxBytesPerSecond = Math.max(0, maxBytesPerSecond);
+	}
+
+	/**
+	 * Enables or disables decoding the images, decoding can be disabled for
+	 * benchmarks of the send path.
+	 *
+	 * @param decodeImages <code>true</code> to decode the images (default)
+	 */
+	public synchronized void setDecodeImages(boolean decodeImages) {
+		this.decodeImages = decodeImages;
+	}
+
+	@Override
+	public int setOutputReport(byte reportId, byte[] data, int length) {
+		long due;
+		synchronized (this) {
+			if (!this.m_Open)
+				return -1;
+			this.outputReports++;
+			this.bytesReceived += length + 1;
+			if (reportId == 0x02 && length > 0)
+				this.decodePage(data, length);
+			due = this.schedule(length + 1);
+		}
+		long remaining;
+		while (due != 0 && (remaining = due - System.nanoTime()) > 0)
+			LockSupport.parkNanos(remaining);
+		return length;
+	}
+
+	@Override
+	public int setFeatureReport(byte reportId, byte[] data, int length) {
+		synchronized (this) {
+			if (!this.m_Open)
+				return -1;
+			this.featureReports++;
+			// Rev2: 0x03 0x02 reset, 0x03 0x08 <level> brightness
+			if (reportId == 0x03 && length > 1 && data[0] == 0x08)
+				this.brightness = data[1];
+			else if (reportId == 0x03 && length > 0 && data[0] == 0x02)
+				this.resets++;
+			// Rev1: 0x05 0x55 0xAA 0xD1 0x01 <level> brightness, 0x0B 0x63 reset
+			else if (reportId == 0x05 && length > 4)
+				this.brightness = data[4];
+			else if (reportId == 0x0B)
+				this.resets++;
+		}
+		return length;
+	}
+
+	@Override
+	@Deprecated
+	public int setFeatureReport(byte[] data, int length) {
+		if (length < 1)
+			return -1;
+		return this.setFeatureReport(data[0], Arrays.copyOfRange(data, 1, length), length - 1);
+	}
+
+	@Override
+	public int getFeatureReport(byte[] data, int length) {
+		return 0;
+	}
+
+	@Override
+	public synchronized void close() {
+		this.m_Open = false;
+	}
+
+	/**
+	 * Returns when the emulated device accepted a report of the given size
+	 */
+	private long schedule(int bytes) {
+		if (this.pageLatencyNanos == 0 && this.maxBytesPerSecond == 0)
+			return 0;
+		long start = Math.max(System.nanoTime(), this.busyUntil);
+		long transfer = this.maxBytesPerSecond > 0 ? bytes * 1_000_000_000L / this.maxBytesPerSecond : 0;
+		this.busyUntil = start + this.pageLatencyNanos + transfer;
+		return this.busyUntil;
+	}
+
+	private void decodePage(byte[] data, int length) {
+		switch (data[0]) {
+		case 0x01:
+			this.decodeRev1Page(data, length);
+			break;
+		case 0x07:
+			// Key, last page flag, payload length (2), page number (2)
+			int key = data[1] & 0xFF;
+			if (key >= this.pendingImages.length)
+				return;
+			if (this.pendingImages[key] == null)
+				this.pendingImages[key] = new ByteArrayOutputStream();
+			BufferedImage image = this.appendPage(this.pendingImages[key], data, length, REV2_IMAGE_HEADER, data[2] == 0x01);
+			if (image != null)
+				this.keyImages[key] = image;
+			break;
+		case 0x08:
+			BufferedImage full = this.appendPage(this.pendingFullImage, data, length, REV2_IMAGE_HEADER, data[2] == 0x01);
+			if (full != null)
+				this.fullImage = full;
+			break;
+		case 0x0C:
+			// x (2), y (2), width (2), height (2), last page flag, page number (2), payload length (2)
+			BufferedImage section = this.appendPage(this.pendingTouchScreen, data, length, REV2_TOUCH_SCREEN_HEADER, data[9] == 0x01);
+			if (section != null)
+				this.drawTouchScreen(section, le(data, 1), le(data, 3));
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Appends the JPEG payload of a Rev2 page and decodes the image after the
+	 * last page.
+	 *
+	 * @return Decoded image, <code>null</code> if more pages follow
+	 */
+	private BufferedImage appendPage(ByteArrayOutputStream jpeg, byte[] data, int length, int header, boolean last) {
+		int payloadLength = header == REV2_IMAGE_HEADER ? le(data, 3) : le(data, 12);
+		jpeg.write(data, header, Math.min(payloadLength, length - header));
+		if (!last)
+			return null;
+		this.imagesReceived++;
+		BufferedImage image = null;
+		if (this.decodeImages) {
+			try {
+				image = ImageIO.read(new ByteArrayInputStream(jpeg.toByteArray()));
+			} catch (IOException e) {
+				LOGGER.warn("Image sent to the loopback device could not be decoded", e);
+			}
+		}
+		jpeg.reset();
+		return image;
+	}
+
+	private void decodeRev1Page(byte[] data, int length) {
+		// 0x01, page number, 0x00, last page flag, key + 1
+		int key = (data[4] & 0xFF) - 1;
+		short productId = this.descriptor.productId;
+		// Undo the reversed key order of the rev 1 devices
+		if (productId == 96)
+			key = 16 - key;
+		else if (productId == 99)
+			key = 6 - key;
+		if (key < 0 || key >= this.pendingRev1Pages.length)
+			return;
+		if (data[1] == 0x01) {
+			int end = Math.min(length, REV1_PAGE_1_HEADER + StreamDeckConstants.NUM_FIRST_PAGE_PIXELS_REV1 * 3);
+			this.pendingRev1Pages[key] = Arrays.copyOfRange(data, REV1_PAGE_1_HEADER, end);
+			return;
+		}
+		byte[] first = this.pendingRev1Pages[key];
+		this.pendingRev1Pages[key] = null;
+		if (first == null)
+			return;
+		this.imagesReceived++;
+		if (!this.decodeImages)
+			return;
+		int width = this.descriptor.iconSize.width;
+		int height = this.descriptor.iconSize.height;
+		byte[] pixels = new byte[width * height * 3];
+		int firstLength = Math.min(first.length, pixels.length);
+		System.arraycopy(first, 0, pixels, 0, firstLength);
+		System.arraycopy(data, REV1_PAGE_2_HEADER, pixels, firstLength, Math.min(length - REV1_PAGE_2_HEADER, pixels.length - firstLength));
+		// Rows are mirrored, each pixel is stored as red, blue, green
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		int i = 0;
+		for (int y = 0; y < height; y++) {
+			for (int x = width - 1; x >= 0; x--) {
+				int r = pixels[i++] & 0xFF;
+				int b = pixels[i++] & 0xFF;
+				int g = pixels[i++] & 0xFF;
+				image.setRGB(x, y, (r << 16) | (g << 8) | b);
+			}
+		}
+		this.keyImages[key] = image;
+	}
+
+	private void drawTouchScreen(BufferedImage section, int x, int y) {
+		if (this.touchScreenImage == null) {
+			int width = Math.max(800, x + section.getWidth());
+			int height = Math.max(100, y + section.getHeight());
+			this.touchScreenImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		}
+		Graphics2D g = this.touchScreenImage.createGraphics();
+		try {
+			g.drawImage(section, x, y, null);
+		}
+		finally {
+			g.dispose();
+		}
+	}
+
+	private static int le(byte[] data, int index) {
+		return (data[index] & 0xFF) | ((data[index + 1] & 0xFF) << 8);
+	}
+
+	/**
+	 * Sends an input report to the listener of the device, like the device
+	 * would do.
+	 *
+	 * @param reportId ID of the report
+	 * @param data     Report data
+	 * @param length   Length of the report data
+	 */
+	public void injectInputReport(byte reportId, byte[] data, int length) {
+		if (this.m_InputReportListener != null)
+			this.m_InputReportListener.onInputReport(this, reportId, data, length);
+	}
+
+	/**
+	 * Presses a key
+	 *
+	 * @param keyId Id of the key
+	 */
+	public void pressKey(int keyId) {
+		this.setKeyPressed(keyId, true);
+	}
+
+	/**
+	 * Releases a key
+	 *
+	 * @param keyId Id of the key
+	 */
+	public void releaseKey(int keyId) {
+		this.setKeyPressed(keyId, false);
+	}
+
+	private void setKeyPressed(int keyId, boolean pressed) {
+		byte[] report = this.createInputReport(this.descriptor.inputReportKeys);
+		synchronized (this) {
+			this.keysPressed[keyId] = pressed;
+			for (int i = 0; i < this.keysPressed.length; i++)
+				report[this.descriptor.keyEventInputReportOffset + i] = (byte) (this.keysPressed[i] ? 0x01 : 0x00);
+		}
+		this.injectInputReport((byte) 0x01, report, report.length);
+	}
+
+	/**
+	 * Rotates a dial
+	 *
+	 * @param dial  Index of the dial, starting with 0 for the first dial
+	 * @param ticks Number of ticks, negative for a rotation to the left
+	 */
+	public void rotateDial(int dial, int ticks) {
+		byte[] report = this.createDialReport(true);
+		report[this.descriptor.keyEventInputReportOffset + 1 + dial] = (byte) ticks;
+		this.injectInputReport((byte) 0x01, report, report.length);
+	}
+
+	/**
+	 * Presses or releases a dial
+	 *
+	 * @param dial    Index of the dial, starting with 0 for the first dial
+	 * @param pressed <code>true</code> to press the dial
+	 */
+	public void pushDial(int dial, boolean pressed) {
+		byte[] report = this.createDialReport(false);
+		report[this.descriptor.keyEventInputReportOffset + 1 + dial] = (byte) (pressed ? 0x01 : 0x00);
+		this.injectInputReport((byte) 0x01, report, report.length);
+	}
+
+	/**
+	 * Touches the touch screen
+	 *
+	 * @param x         X position on the touch screen
+	 * @param y         Y position on the touch screen
+	 * @param longTouch <code>true</code> for a long touch
+	 */
+	public void touch(int x, int y, boolean longTouch) {
+		this.injectTouch(longTouch ? 0x02 : 0x01, x, y, 0, 0);
+	}
+
+	/**
+	 * Swipes over the touch screen
+	 *
+	 * @param startX X position the swipe starts at
+	 * @param startY Y position the swipe starts at
+	 * @param endX   X position the swipe ends at
+	 * @param endY   Y position the swipe ends at
+	 */
+	public void swipe(int startX, int startY, int endX, int endY) {
+		this.injectTouch(0x03, startX, startY, endX, endY);
+	}
+
+	private void injectTouch(int type, int startX, int startY, int endX, int endY) {
+		if (this.descriptor.inputReportTouchScreen == null)
+			throw new UnsupportedOperationException(this.descriptor.deviceName + " has no touch screen");
+		byte[] report = this.createInputReport(this.descriptor.inputReportTouchScreen);
+		report[this.descriptor.keyEventInputReportOffset] = (byte) type;
+		report[5] = (byte) (startX & 0xFF);
+		report[6] = (byte) ((startX >> 8) & 0xFF);
+		report[7] = (byte) startY;
+		report[9] = (byte) (endX & 0xFF);
+		report[10] = (byte) ((endX >> 8) & 0xFF);
+		report[11] = (byte) endY;
+		this.injectInputReport((byte) 0x01, report, report.length);
+	}
+
+	private byte[] createDialReport(boolean rotation) {
+		if (this.descriptor.inputReportDials == null || !Arrays.asList(this.descriptor.getSpecialKeys()).contains(KeyType.ROTARY_ENCODER))
+			throw new UnsupportedOperationException(this.descriptor.deviceName + " has no dials");
+		byte[] report = this.createInputReport(this.descriptor.inputReportDials);
+		report[this.descriptor.keyEventInputReportOffset] = (byte) (rotation ? 0x01 : 0x00);
+		return report;
+	}
+
+	private byte[] createInputReport(byte[] prefix) {
+		byte[] report = new byte[INPUT_REPORT_LENGTH];
+		if (prefix != null)
+			System.arraycopy(prefix, 0, report, 0, prefix.length);
+		return report;
+	}
+
+	public DeckDescriptor getDescriptor() {
+		return this.descriptor;
+	}
+
+	/**
+	 * Returns the last image received for a key
+	 *
+	 * @param keyId Id of the key
+	 * @return Image as sent to the device, <code>null</code> if no image was
+	 *         received or decoding is disabled
+	 */
+	public synchronized BufferedImage getKeyImage(int keyId) {
+		return this.keyImages[keyId + this.descriptor.drawImageKeyOffset];
+	}
+
+	/**
+	 * Returns the last image received for the full display
+	 *
+	 * @return Image as sent to the device, <code>null</code> if none was received
+	 */
+	public synchronized BufferedImage getFullImage() {
+		return this.fullImage;
+	}
+
+	/**
+	 * Returns the content of the touch screen, composed from all images
+	 * received for the touch screen
+	 *
+	 * @return Content of the touch screen, <code>null</code> if nothing was received
+	 */
+	public synchronized BufferedImage getTouchScreenImage() {
+		return this.touchScreenImage;
+	}
+
+	/**
+	 * @return Last brightness received, -1 if none was received
+	 */
+	public synchronized int getBrightness() {
+		return this.brightness;
+	}
+
+	public synchronized long getResetCount() {
+		return this.resets;
+	}
+
+	public synchronized long getOutputReportCount() {
+		return this.outputReports;
+	}
+
+	public synchronized long getFeatureReportCount() {
+		return this.featureReports;
+	}
+
+	/**
+	 * @return Output report bytes received, including the report IDs
+	 */
+	public synchronized long getBytesReceived() {
+		return this.bytesReceived;
+	}
+
+	/**
+	 * @return Number of complete images received for keys, the full display
+	 *         and the touch screen
+	 */
+	public synchronized long getImagesReceived() {
+		return this.imagesReceived;
+	}
+
+	/**
+	 * Device information of a simulated stream deck
+	 */
+	private static class LoopbackDeviceInfo extends HidDeviceInfo {
+
+		LoopbackDeviceInfo(DeckDescriptor descriptor, int number) {
+			this.m_VendorId = descriptor.deviceVendor;
+			this.m_ProductId = descriptor.productId;
+			this.m_ProductString = descriptor.deviceName + " (Loopback)";
+			this.m_ManufactureString = "rcblum";
+			this.m_SerialNumberString = "LOOPBACK" + number;
+			this.m_DeviceId = "loopback-" + number;
+			this.m_Path = "loopback://" + number;
+		}
+	}
+}
@@ -0,0 +1,515 @@
+package de.rcblum.stream.deck.device.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.rcblum.stream.deck.device.StreamDeck;
+import de.rcblum.stream.deck.device.encoder.DeckEncoder;
+
+/**
+ * Metrics of the send and receive path of one stream deck.
+ * <br><br>
+ * The {@link de.rcblum.stream.deck.device.worker.DeckWorker} records the
+ * latency of every command it writes, the
+ * {@link de.rcblum.stream.deck.device.worker.EventDispatcher} records the
+ * latency of every input event. Queue depth and counters of the stream deck
+ * are read when requested. The metrics can be read through this class or
+ * through JMX, see {@link DeckMetricsMXBean}.
+ *
+ * @author Roland von Werden
+ *
+ */
+public class DeckMetrics implements DeckMetricsMXBean {
+
+	private static final Logger LOGGER = LogManager.getLogger(DeckMetrics.class);
+
+	/**
+	 * Domain of the MBeans of the stream decks
+	 */
+	public static final String JMX_DOMAIN = "de.rcblum.stream.deck";
+
+	/**
+	 * Interval the rates are measured over in ns
+	 */
+	private static final long RATE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+	/**
+	 * Stream deck the metrics belong to, may be <code>null</code>
+	 */
+	private final StreamDeck streamDeck;
+
+	/**
+	 * Time from queuing a command until it was written in ns
+	 */
+	private final LatencyHistogram queueLatency = new LatencyHistogram();
+
+	/**
+	 * Time a command spent in setOutputReport in ns
+	 */
+	private final LatencyHistogram outputReportTime = new LatencyHistogram();
+
+	/**
+	 * Time from receiving an input report until the listeners are called in ns
+	 */
+	private final LatencyHistogram inputLatency = new LatencyHistogram();
+
+	/**
+	 * Time the listeners run by the
+	 * {@link de.rcblum.stream.deck.device.worker.ListenerExecutor} took in ns
+	 */
+	private final LatencyHistogram handlerTime = new LatencyHistogram();
+
+	/**
+	 * Time from receiving an input report until an image queued for it was
+	 * written in ns
+	 */
+	private final LatencyHistogram pressToPixel = new LatencyHistogram();
+
+	/**
+	 * Time from dispatching an input event until an image queued for it was
+	 * written in ns
+	 */
+	private final LatencyHistogram dispatchToPixel = new LatencyHistogram();
+
+	private final AtomicLong slowHandlers = new AtomicLong();
+
+	private final AtomicLong handlerTimeouts = new AtomicLong();
+
+	private final AtomicLong commandsWritten = new AtomicLong();
+
+	private final AtomicLong commandsFailed = new AtomicLong();
+
+	private final AtomicLong commandsDropped = new AtomicLong();
+
+	/**
+	 * Start of the current rate interval, only accessed by the worker
+	 */
+	private long rateStart = 0;
+
+	private long ratePages = 0;
+
+	private long rateBytes = 0;
+
+	private volatile double pagesPerSecond = 0;
+
+	private volatile double bytesPerSecond = 0;
+
+	/**
+	 * Name the metrics are registered with, <code>null</code> if not registered
+	 */
+	private ObjectName objectName = null;
+
+	/**
+	 * Creates the metrics for the stream deck
+	 *
+	 * @param streamDeck Stream deck the queue depth and counters are read from,
+	 *                   <code>null</code> to only use the recorded values
+	 */
+	public DeckMetrics(StreamDeck streamDeck) {
+		this.streamDeck = streamDeck;
+	}
+
+	/**
+	 * Records a command that was written to the stream deck
+	 *
+	 * @param queuedNanos      {@link System#nanoTime()} the command was queued
+	 * @param writtenNanos     {@link System#nanoTime()} the command was written
+	 * @param outputReportNanos Time the command spent in setOutputReport
+	 */
+	public void commandWritten(long queuedNanos, long writtenNanos, long outputReportNanos) {
+		this.commandsWritten.incrementAndGet();
+		if (queuedNanos != 0)
+			this.queueLatency.record(writtenNanos - queuedNanos);
+		this.outputReportTime.record(outputReportNanos);
+	}
+
+	/**
+	 * Records a command that could not be written
+	 */
+	public void commandFailed() {
+		this.commandsFailed.incrementAndGet();
+	}
+
+	/**
+	 * Records a command that was dropped without being sent
+	 */
+	public void commandDropped() {
+		this.commandsDropped.incrementAndGet();
+	}
+
+	/**
+	 * Records the time from receiving an input report until the listeners of the
+	 * event are called.
+	 *
+	 * @param latencyNanos Latency in ns
+	 */
+	public void inputDispatched(long latencyNanos) {
+		this.inputLatency.record(latencyNanos);
+	}
+
+	/**
+	 * Records a command that was queued while handling an input event and was
+	 * written
+	 *
+	 * @param arrivalNanos    {@link System#nanoTime()} the input report arrived
+	 * @param dispatchedNanos {@link System#nanoTime()} the event was dispatched
+	 * @param writtenNanos    {@link System#nanoTime()} the command was written
+	 */
+	public void inputDrawn(long arrivalNanos, long dispatchedNanos, long writtenNanos) {
+		this.pressToPixel.record(writtenNanos - arrivalNanos);
+		if (dispatchedNanos != 0)
+			this.dispatchToPixel.record(writtenNanos - dispatchedNanos);
+	}
+
+	/**
+	 * Records a listener that was run asynchronously
+	 *
+	 * @param durationNanos Time the listener took in ns
+	 * @param slow          <code>true</code> if the listener took longer than
+	 *                      the slow threshold
+	 */
+	public void handlerCompleted(long durationNanos, boolean slow) {
+		this.handlerTime.record(durationNanos);
+		if (slow)
+			this.slowHandlers.incrementAndGet();
+	}
+
+	/**
+	 * Records a listener that was still running when its timeout elapsed
+	 */
+	public void handlerTimedOut() {
+		this.handlerTimeouts.incrementAndGet();
+	}
+
+	/**
+	 * Updates the rates, called by the worker regularly. The rates are
+	 * recalculated once per second.
+	 *
+	 * @param now   {@link System#nanoTime()}
+	 * @param pages Output reports sent so far
+	 * @param bytes Output report bytes sent so far
+	 */
+	public void sample(long now, long pages, long bytes) {
+		if (this.rateStart == 0) {
+			this.rateStart = now;
+			this.ratePages = pages;
+			this.rateBytes = bytes;
+			return;
+		}
+		long elapsed = now - this.rateStart;
+		if (elapsed < RATE_INTERVAL)
+			return;
+		this.pagesPerSecond = (pages - this.ratePages) * 1e9 / elapsed;
+		this.bytesPerSecond = (bytes - this.rateBytes) * 1e9 / elapsed;
+		this.rateStart = now;
+		this.ratePages = pages;
+		this.rateBytes = bytes;
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server
+	 *
+	 * @param name Name of the stream deck, unique within the JVM
+	 */
+	public synchronized void register(String name) {
+		if (this.objectName != null)
+			return;
+		try {
+			ObjectName on = new ObjectName(JMX_DOMAIN + ":type=StreamDeck,name=" + ObjectName.quote(name));
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (!server.isRegistered(on)) {
+				server.registerMBean(this, on);
+				this.objectName = on;
+			}
+		} catch (JMException | SecurityException e) {
+			LOGGER.warn("Metrics of the StreamDeck could not be registered", e);
+		}
+	}
+
+	/**
+	 * Removes the metrics from the platform MBean server
+	 */
+	public synchronized void unregister() {
+		if (this.objectName == null)
+			return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+		} catch (JMException | SecurityException e) {
+			LOGGER.warn("Metrics of the StreamDeck could not be unregistered", e);
+		}
+		this.objectName = null;
+	}
+
+	/**
+	 * Returns the name the metrics are registered with
+	 *
+	 * @return Name or <code>null</code> if not registered
+	 */
+	public synchronized ObjectName getObjectName() {
+		return this.objectName;
+	}
+
+	public LatencyHistogram getQueueLatency() {
+		return this.queueLatency;
+	}
+
+	public LatencyHistogram getOutputReportTime() {
+		return this.outputReportTime;
+	}
+
+	public LatencyHistogram getInputLatency() {
+		return this.inputLatency;
+	}
+
+	public LatencyHistogram getHandlerTime() {
+		return this.handlerTime;
+	}
+
+	public LatencyHistogram getPressToPixel() {
+		return this.pressToPixel;
+	}
+
+	public LatencyHistogram getDispatchToPixel() {
+		return this.dispatchToPixel;
+	}
+
+	@Override
+	public int getQueueDepth() {
+		return this.streamDeck != null ? this.streamDeck.getSendPoolSize() : 0;
+	}
+
+	@Override
+	public long getCommandsWritten() {
+		return this.commandsWritten.get();
+	}
+
+	@Override
+	public long getCommandsFailed() {
+		return this.commandsFailed.get();
+	}
+
+	@Override
+	public long getCommandsSuperseded() {
+		return this.streamDeck != null ? this.streamDeck.getSupersededCount() : 0;
+	}
+
+	@Override
+	public long getCommandsSkipped() {
+		return this.streamDeck != null ? this.streamDeck.getSkippedCount() : 0;
+	}
+
+	@Override
+	public long getCommandsDropped() {
+		return this.commandsDropped.get();
+	}
+
+	@Override
+	public int getQueueCapacity() {
+		return this.streamDeck != null ? this.streamDeck.getSendPool().getCapacity() : 0;
+	}
+
+	@Override
+	public String getQueuePolicy() {
+		return this.streamDeck != null ? this.streamDeck.getSendPool().getPolicy().name() : null;
+	}
+
+	@Override
+	public long getProducersBlocked() {
+		return this.streamDeck != null ? this.streamDeck.getSendPool().getBlockedCount() : 0;
+	}
+
+	@Override
+	public long getProducersBlockedMicros() {
+		return this.streamDeck != null ? this.streamDeck.getSendPool().getBlockedNanos() / 1000 : 0;
+	}
+
+	@Override
+	public long getAnimationFramesDropped() {
+		return this.streamDeck != null ? this.streamDeck.getSendPool().getDroppedAnimationFrameCount() : 0;
+	}
+
+	@Override
+	public long getCommandsCoalesced() {
+		return this.streamDeck != null ? this.streamDeck.getSendPool().getCoalescedCount() : 0;
+	}
+
+	@Override
+	public long getCommandsRejected() {
+		return this.streamDeck != null ? this.streamDeck.getSendPool().getRejectedCount() : 0;
+	}
+
+	@Override
+	public long getPagesWritten() {
+		DeckEncoder encoder = this.streamDeck != null ? this.streamDeck.getEncoder() : null;
+		return encoder != null ? encoder.getPagesWritten() : 0;
+	}
+
+	@Override
+	public long getBytesWritten() {
+		DeckEncoder encoder = this.streamDeck != null ? this.streamDeck.getEncoder() : null;
+		return encoder != null ? encoder.getBytesWritten() : 0;
+	}
+
+	@Override
+	public long getFramesWritten() {
+		DeckEncoder encoder = this.streamDeck != null ? this.streamDeck.getEncoder() : null;
+		return encoder != null ? encoder.getFramesWritten() : 0;
+	}
+
+	@Override
+	public double getPagesPerFrame() {
+		DeckEncoder encoder = this.streamDeck != null ? this.streamDeck.getEncoder() : null;
+		long frames = encoder != null ? encoder.getFramesWritten() : 0;
+		return frames == 0 ? 0 : (double) encoder.getFramePagesWritten() / frames;
+	}
+
+	@Override
+	public int getLastFramePages() {
+		DeckEncoder encoder = this.streamDeck != null ? this.streamDeck.getEncoder() : null;
+		return encoder != null ? encoder.getLastFramePages() : 0;
+	}
+
+	@Override
+	public double getPagesPerSecond() {
+		return this.pagesPerSecond;
+	}
+
+	@Override
+	public double getBytesPerSecond() {
+		return this.bytesPerSecond;
+	}
+
+	@Override
+	public long getByteBudgetPerSecond() {
+		return this.streamDeck != null && this.streamDeck.getDeckWorker() != null ? this.streamDeck.getDeckWorker().getPacer().getBytesPerSecond() : 0;
+	}
+
+	@Override
+	public double getQueueLatencyMeanMicros() {
+		return this.queueLatency.getMean() / 1000.0;
+	}
+
+	@Override
+	public long getQueueLatencyP50Micros() {
+		return this.queueLatency.getValueAtPercentile(50) / 1000;
+	}
+
+	@Override
+	public long getQueueLatencyP99Micros() {
+		return this.queueLatency.getValueAtPercentile(99) / 1000;
+	}
+
+	@Override
+	public long getQueueLatencyP999Micros() {
+		return this.queueLatency.getValueAtPercentile(99.9) / 1000;
+	}
+
+	@Override
+	public long getQueueLatencyMaxMicros() {
+		return this.queueLatency.getMax() / 1000;
+	}
+
+	@Override
+	public long getOutputReportTotalMicros() {
+		DeckEncoder encoder = this.streamDeck != null ? this.streamDeck.getEncoder() : null;
+		return encoder != null ? encoder.getWriteNanos() / 1000 : 0;
+	}
+
+	@Override
+	public double getOutputReportMeanMicros() {
+		return this.outputReportTime.getMean() / 1000.0;
+	}
+
+	@Override
+	public long getOutputReportP99Micros() {
+		return this.outputReportTime.getValueAtPercentile(99) / 1000;
+	}
+
+	@Override
+	public double getInputLatencyMeanMicros() {
+		return this.inputLatency.getMean() / 1000.0;
+	}
+
+	@Override
+	public long getInputLatencyP99Micros() {
+		return this.inputLatency.getValueAtPercentile(99) / 1000;
+	}
+
+	@Override
+	public long getInputLatencyMaxMicros() {
+		return this.inputLatency.getMax() / 1000;
+	}
+
+	@Override
+	public double getHandlerTimeMeanMicros() {
+		return this.handlerTime.getMean() / 1000.0;
+	}
+
+	@Override
+	public long getHandlerTimeP99Micros() {
+		return this.handlerTime.getValueAtPercentile(99) / 1000;
+	}
+
+	@Override
+	public long getHandlerTimeMaxMicros() {
+		return this.handlerTime.getMax() / 1000;
+	}
+
+	@Override
+	public long getSlowHandlers() {
+		return this.slowHandlers.get();
+	}
+
+	@Override
+	public long getHandlerTimeouts() {
+		return this.handlerTimeouts.get();
+	}
+
+	@Override
+	public double getPressToPixelMeanMicros() {
+		return this.pressToPixel.getMean() / 1000.0;
+	}
+
+	@Override
+	public long getPressToPixelP50Micros() {
+		return this.pressToPixel.getValueAtPercentile(50) / 1000;
+	}
+
+	@Override
+	public long getPressToPixelP99Micros() {
+		return this.pressToPixel.getValueAtPercentile(99) / 1000;
+	}
+
+	@Override
+	public long getPressToPixelMaxMicros() {
+		return this.pressToPixel.getMax() / 1000;
+	}
+
+	@Override
+	public double getDispatchToPixelMeanMicros() {
+		return this.dispatchToPixel.getMean() / 1000.0;
+	}
+
+	@Override
+	public long getDispatchToPixelP99Micros() {
+		return this.dispatchToPixel.getValueAtPercentile(99) / 1000;
+	}
+
+	@Override
+	public void resetHistograms() {
+		this.queueLatency.reset();
+		this.outputReportTime.reset();
+		this.inputLatency.reset();
+		this.handlerTime.reset();
+		this.pressToPixel.reset();
+		this.dispatchToPixel.reset();
+	}
+}
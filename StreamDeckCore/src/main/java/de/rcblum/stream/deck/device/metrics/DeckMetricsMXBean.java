@@ -0,0 +1,241 @@
+package de.rcblum.stream.deck.device.metrics;
+
+/**
+ * Management interface of the {@link DeckMetrics} of one stream deck. Each
+ * connected stream deck is registered with the platform MBean server under
+ * <code>de.rcblum.stream.deck:type=StreamDeck,name=&lt;device&gt;</code>.
+ * <br><br>
+ * Latencies are reported in microseconds.
+ *
+ * @author Roland von Werden
+ *
+ */
+public interface DeckMetricsMXBean {
+
+	/**
+	 * @return Number of commands waiting to be sent
+	 */
+	int getQueueDepth();
+
+	/**
+	 * @return Number of commands written to the stream deck
+	 */
+	long getCommandsWritten();
+
+	/**
+	 * @return Number of commands that could not be written
+	 */
+	long getCommandsFailed();
+
+	/**
+	 * @return Number of commands replaced by a newer command before being sent
+	 */
+	long getCommandsSuperseded();
+
+	/**
+	 * @return Number of commands not sent because the image was already displayed
+	 */
+	long getCommandsSkipped();
+
+	/**
+	 * @return Number of commands dropped without being sent
+	 */
+	long getCommandsDropped();
+
+	/**
+	 * @return Maximum number of waiting commands
+	 */
+	int getQueueCapacity();
+
+	/**
+	 * @return Behavior of the send queue if it is full
+	 */
+	String getQueuePolicy();
+
+	/**
+	 * @return Number of times a producer waited for room in the send queue
+	 */
+	long getProducersBlocked();
+
+	/**
+	 * @return Time producers waited for room in the send queue
+	 */
+	long getProducersBlockedMicros();
+
+	/**
+	 * @return Number of animation frames dropped because the send queue was full
+	 */
+	long getAnimationFramesDropped();
+
+	/**
+	 * @return Number of brightness commands merged into a waiting one
+	 */
+	long getCommandsCoalesced();
+
+	/**
+	 * @return Number of commands rejected because the send queue was full
+	 */
+	long getCommandsRejected();
+
+	/**
+	 * @return Number of output reports sent
+	 */
+	long getPagesWritten();
+
+	/**
+	 * @return Number of output report bytes sent
+	 */
+	long getBytesWritten();
+
+	/**
+	 * @return Number of images sent
+	 */
+	long getFramesWritten();
+
+	/**
+	 * @return Mean number of output reports per image
+	 */
+	double getPagesPerFrame();
+
+	/**
+	 * @return Number of output reports of the last image
+	 */
+	int getLastFramePages();
+
+	/**
+	 * @return Output reports sent per second, measured over the last second
+	 */
+	double getPagesPerSecond();
+
+	/**
+	 * @return Output report bytes sent per second, measured over the last second
+	 */
+	double getBytesPerSecond();
+
+	/**
+	 * @return Current byte budget of the pacer, 0 if not limited
+	 */
+	long getByteBudgetPerSecond();
+
+	/**
+	 * @return Mean time from queuing a command until it was written
+	 */
+	double getQueueLatencyMeanMicros();
+
+	/**
+	 * @return Median time from queuing a command until it was written
+	 */
+	long getQueueLatencyP50Micros();
+
+	/**
+	 * @return 99th percentile of the time from queuing a command until it was written
+	 */
+	long getQueueLatencyP99Micros();
+
+	/**
+	 * @return 99.9th percentile of the time from queuing a command until it was written
+	 */
+	long getQueueLatencyP999Micros();
+
+	/**
+	 * @return Longest time from queuing a command until it was written
+	 */
+	long getQueueLatencyMaxMicros();
+
+	/**
+	 * @return Total time spent in setOutputReport
+	 */
+	long getOutputReportTotalMicros();
+
+	/**
+	 * @return Mean time a command spent in setOutputReport
+	 */
+	double getOutputReportMeanMicros();
+
+	/**
+	 * @return 99th percentile of the time a command spent in setOutputReport
+	 */
+	long getOutputReportP99Micros();
+
+	/**
+	 * @return Mean time from receiving an input report until the listeners are called
+	 */
+	double getInputLatencyMeanMicros();
+
+	/**
+	 * @return 99th percentile of the time from receiving an input report until
+	 *         the listeners are called
+	 */
+	long getInputLatencyP99Micros();
+
+	/**
+	 * @return Longest time from receiving an input report until the listeners are called
+	 */
+	long getInputLatencyMaxMicros();
+
+	/**
+	 * @return Mean time of the listeners run asynchronously
+	 */
+	double getHandlerTimeMeanMicros();
+
+	/**
+	 * @return 99th percentile of the time of the listeners run asynchronously
+	 */
+	long getHandlerTimeP99Micros();
+
+	/**
+	 * @return Longest time of a listener run asynchronously
+	 */
+	long getHandlerTimeMaxMicros();
+
+	/**
+	 * @return Number of listeners that took longer than the slow threshold
+	 */
+	long getSlowHandlers();
+
+	/**
+	 * @return Number of listeners still running when their timeout elapsed
+	 */
+	long getHandlerTimeouts();
+
+	/**
+	 * @return Mean time from receiving an input report until an image drawn
+	 *         for it was written
+	 */
+	double getPressToPixelMeanMicros();
+
+	/**
+	 * @return Median time from receiving an input report until an image drawn
+	 *         for it was written
+	 */
+	long getPressToPixelP50Micros();
+
+	/**
+	 * @return 99th percentile of the time from receiving an input report until
+	 *         an image drawn for it was written
+	 */
+	long getPressToPixelP99Micros();
+
+	/**
+	 * @return Longest time from receiving an input report until an image drawn
+	 *         for it was written
+	 */
+	long getPressToPixelMaxMicros();
+
+	/**
+	 * @return Mean time from dispatching an input event until an image drawn
+	 *         for it was written
+	 */
+	double getDispatchToPixelMeanMicros();
+
+	/**
+	 * @return 99th percentile of the time from dispatching an input event until
+	 *         an image drawn for it was written
+	 */
+	long getDispatchToPixelP99Micros();
+
+	/**
+	 * Forgets the recorded latencies
+	 */
+	void resetHistograms();
+}
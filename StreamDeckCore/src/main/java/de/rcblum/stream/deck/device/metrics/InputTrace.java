@@ -0,0 +1,76 @@
+package de.rcblum.stream.deck.device.metrics;
+
+import de.rcblum.stream.deck.event.KeyEvent;
+
+/**
+ * Time stamps of the input event the current thread is handling.
+ * <br><br>
+ * The {@link de.rcblum.stream.deck.device.worker.EventDispatcher} and the
+ * {@link de.rcblum.stream.deck.device.worker.ListenerExecutor} set the trace
+ * while listeners run. Commands queued by a listener are stamped with the
+ * trace, so the {@link de.rcblum.stream.deck.device.worker.DeckWorker} can
+ * record the time from the input report until the resulting image was
+ * written, see {@link DeckMetrics#inputDrawn(long, long, long)}.<br>
+ * Each thread holds one preallocated trace, setting it allocates nothing.
+ *
+ * @author Roland von Werden
+ *
+ */
+public final class InputTrace {
+
+	/**
+	 * Arrival and dispatch time of the event handled by the thread
+	 */
+	private static final ThreadLocal<long[]> CURRENT = ThreadLocal.withInitial(() -> new long[2]);
+
+	private InputTrace() {
+	}
+
+	/**
+	 * Sets the trace of the current thread
+	 *
+	 * @param arrivalNanos    {@link System#nanoTime()} when the input report
+	 *                        arrived, 0 to clear the trace
+	 * @param dispatchedNanos {@link System#nanoTime()} when the event was
+	 *                        dispatched
+	 */
+	public static void set(long arrivalNanos, long dispatchedNanos) {
+		long[] trace = CURRENT.get();
+		trace[0] = arrivalNanos;
+		trace[1] = dispatchedNanos;
+	}
+
+	/**
+	 * Sets the trace of the current thread to the event if it was dispatched
+	 * from an input report
+	 *
+	 * @param event Event handled by the thread
+	 */
+	public static void set(KeyEvent event) {
+		if (event.getDispatchedNanos() != 0)
+			set(event.getCreatedNanos(), event.getDispatchedNanos());
+	}
+
+	/**
+	 * Clears the trace of the current thread
+	 */
+	public static void clear() {
+		set(0, 0);
+	}
+
+	/**
+	 * @return {@link System#nanoTime()} when the input report handled by the
+	 *         current thread arrived, 0 if the thread handles no input
+	 */
+	public static long getArrivalNanos() {
+		return CURRENT.get()[0];
+	}
+
+	/**
+	 * @return {@link System#nanoTime()} when the event handled by the current
+	 *         thread was dispatched, 0 if the thread handles no input
+	 */
+	public static long getDispatchedNanos() {
+		return CURRENT.get()[1];
+	}
+}
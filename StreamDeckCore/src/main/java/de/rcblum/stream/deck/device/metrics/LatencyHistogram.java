@@ -0,0 +1,142 @@
+package de.rcblum.stream.deck.device.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in the style of an HDR histogram. Values are counted
+ * in buckets growing by powers of two, each split into {@link #SUB_BUCKETS}
+ * linear sub buckets. The relative error of a reported value is below 1/16,
+ * independent of the magnitude of the value.
+ * <br><br>
+ * Recording is lock free and does not allocate, the histogram can be written
+ * by the workers of the stream deck while being read through JMX.
+ *
+ * @author Roland von Werden
+ *
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Number of linear sub buckets for each power of two
+	 */
+	private static final int SUB_BUCKETS = 16;
+
+	/**
+	 * Values below this limit are counted exactly
+	 */
+	private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+
+	/**
+	 * Number of buckets needed for all positive long values
+	 */
+	private static final int BUCKET_COUNT = LINEAR_LIMIT + (63 - 5 + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong sum = new AtomicLong();
+
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records one value
+	 *
+	 * @param value Value to be recorded, negative values are recorded as 0
+	 */
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+		this.buckets.incrementAndGet(indexOf(value));
+		this.count.incrementAndGet();
+		this.sum.addAndGet(value);
+		long m;
+		while (value > (m = this.max.get()) && !this.max.compareAndSet(m, value))
+			;
+	}
+
+	/**
+	 * Returns the number of recorded values
+	 *
+	 * @return Number of values
+	 */
+	public long getCount() {
+		return this.count.get();
+	}
+
+	/**
+	 * Returns the largest recorded value
+	 *
+	 * @return Largest value, 0 if nothing was recorded
+	 */
+	public long getMax() {
+		return this.max.get();
+	}
+
+	/**
+	 * Returns the mean of the recorded values
+	 *
+	 * @return Mean, 0 if nothing was recorded
+	 */
+	public double getMean() {
+		long c = this.count.get();
+		return c == 0 ? 0 : (double) this.sum.get() / c;
+	}
+
+	/**
+	 * Returns the value below or equal to which the given percentage of the
+	 * recorded values fall.
+	 *
+	 * @param percentile Percentile from 0 to 100
+	 * @return Highest value of the bucket containing the percentile, 0 if
+	 *         nothing was recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long total = 0;
+		long[] counts = new long[BUCKET_COUNT];
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] = this.buckets.get(i);
+			total += counts[i];
+		}
+		if (total == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100.0 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts[i];
+			if (seen >= rank)
+				return Math.min(highestValueOf(i), this.max.get());
+		}
+		return this.max.get();
+	}
+
+	/**
+	 * Forgets all recorded values
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++)
+			this.buckets.set(i, 0);
+		this.count.set(0);
+		this.sum.set(0);
+		this.max.set(0);
+	}
+
+	static int indexOf(long value) {
+		if (value < LINEAR_LIMIT)
+			return (int) value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - 4;
+		int top = (int) (value >>> shift);
+		return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (top - SUB_BUCKETS);
+	}
+
+	static long highestValueOf(int index) {
+		if (index < LINEAR_LIMIT)
+			return index;
+		int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+		long top = (index - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+		if (shift + 5 >= 63 && top == 2 * SUB_BUCKETS - 1)
+			return Long.MAX_VALUE;
+		return ((top + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,227 @@
+package de.rcblum.stream.deck.device.report;
+
+import de.rcblum.stream.deck.device.descriptor.DeckDescriptor;
+import de.rcblum.stream.deck.event.KeyEvent.Type;
+
+/**
+ * Parses the input reports of one stream deck and reports the changes of the
+ * keys, dials and the touch screen to a {@link Handler}.
+ * <br><br>
+ * The report types, the key IDs of the dials and the touch screen are looked
+ * up in the tables compiled by the {@link DeckDescriptor}. Parsing a report
+ * does no string work, no boxing and allocates nothing, the handler receives
+ * primitive values only. Keys and dials are reported when their state
+ * changes, the parser keeps the pressed state of all keys.
+ * <br><br>
+ * The parser is used by the thread receiving the input reports only and is
+ * not thread safe.
+ *
+ * @author Roland von Werden
+ *
+ */
+public class InputReportParser {
+
+	/**
+	 * Report with the state of the keys
+	 */
+	public static final int REPORT_KEYS = DeckDescriptor.INPUT_REPORT_KEYS;
+
+	/**
+	 * Report of a touch or swipe on the touch screen
+	 */
+	public static final int REPORT_TOUCH_SCREEN = DeckDescriptor.INPUT_REPORT_TOUCH_SCREEN;
+
+	/**
+	 * Report with the rotation or the state of the dials
+	 */
+	public static final int REPORT_DIALS = DeckDescriptor.INPUT_REPORT_DIALS;
+
+	/**
+	 * Report ID of all input reports of the stream decks
+	 */
+	private static final byte INPUT_REPORT_ID = 0x01;
+
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+	private final DeckDescriptor descriptor;
+
+	/**
+	 * Offset of the key states in the report
+	 */
+	private final int byteOffset;
+
+	/**
+	 * Key ID of the first special key
+	 */
+	private final int specialKeyOffset;
+
+	private final boolean[] keysPressed;
+
+	private final boolean[] specialKeysPressed;
+
+	private final Handler handler;
+
+	/**
+	 * Creates the parser for the stream deck
+	 *
+	 * @param descriptor Descriptor of the stream deck
+	 * @param handler    Receives the changes found in the reports
+	 */
+	public InputReportParser(DeckDescriptor descriptor, Handler handler) {
+		this.descriptor = descriptor;
+		this.byteOffset = descriptor.keyEventInputReportOffset;
+		this.specialKeyOffset = descriptor.getSpecialKeyOffset();
+		this.keysPressed = new boolean[descriptor.getKeySize()];
+		this.specialKeysPressed = new boolean[descriptor.getSpecialKeySize()];
+		this.handler = handler;
+	}
+
+	/**
+	 * Parses the input report
+	 *
+	 * @param reportId     ID of the report
+	 * @param reportData   Data of the report without the report ID
+	 * @param reportLength Number of valid bytes in <code>reportData</code>
+	 * @return Type of the report, {@link #REPORT_KEYS},
+	 *         {@link #REPORT_TOUCH_SCREEN} or {@link #REPORT_DIALS}, 0 if the
+	 *         report is no input report
+	 */
+	public int parse(byte reportId, byte[] reportData, int reportLength) {
+		if (reportId != INPUT_REPORT_ID)
+			return 0;
+		int type = this.descriptor.getInputReportType(reportData, reportLength);
+		switch (type) {
+		case REPORT_TOUCH_SCREEN:
+			this.parseTouchScreen(reportData, reportLength);
+			break;
+		case REPORT_DIALS:
+			this.parseDials(reportData, reportLength);
+			break;
+		default:
+			this.parseKeys(reportData, reportLength);
+			break;
+		}
+		return type;
+	}
+
+	private void parseKeys(byte[] reportData, int reportLength) {
+		int end = Math.min(this.keysPressed.length + this.byteOffset, reportLength);
+		for (int i = this.byteOffset; i < end; i++) {
+			int keyIndex = i - this.byteOffset;
+			boolean pressed = reportData[i] == 0x01;
+			if (this.keysPressed[keyIndex] != pressed) {
+				this.keysPressed[keyIndex] = pressed;
+				this.handler.keyChanged(keyIndex, pressed);
+			}
+		}
+	}
+
+	private void parseDials(byte[] reportData, int reportLength) {
+		boolean isRotation = reportData[this.byteOffset] == 0x01;
+		int offset = this.byteOffset + 1;
+		int dials = Math.min(this.descriptor.getDialCount(), reportLength - offset);
+		for (int dial = 0; dial < dials; dial++) {
+			byte value = reportData[offset + dial];
+			int keyId = this.descriptor.getDialKeyId(dial);
+			if (isRotation) {
+				if (value != 0x00)
+					this.handler.dialRotated(keyId, value);
+			}
+			else if (this.specialKeysPressed[keyId - this.specialKeyOffset] != (value == 0x01)) {
+				boolean pressed = value == 0x01;
+				this.specialKeysPressed[keyId - this.specialKeyOffset] = pressed;
+				this.handler.keyChanged(keyId, pressed);
+			}
+		}
+	}
+
+	private void parseTouchScreen(byte[] reportData, int reportLength) {
+		if (reportLength < 12)
+			return;
+		byte kind = reportData[this.byteOffset];
+		int startX = ((reportData[6] & 0xFF) << 8) | (reportData[5] & 0xFF);
+		int startY = reportData[7] & 0xFF;
+		int endX = ((reportData[10] & 0xFF) << 8) | (reportData[9] & 0xFF);
+		int endY = reportData[11] & 0xFF;
+		if (kind == 0x01)
+			this.handler.touched(this.descriptor.getTouchScreenKeyId(), Type.TOUCHED, startX, startY, -1, -1);
+		else if (kind == 0x02)
+			this.handler.touched(this.descriptor.getTouchScreenKeyId(), Type.TOUCHED_LONG, startX, startY, -1, -1);
+		else if (kind == 0x03)
+			this.handler.touched(this.descriptor.getTouchScreenKeyId(), swipeType(startX, startY, endX, endY), startX, startY, endX, endY);
+	}
+
+	/**
+	 * Classifies a swipe on the touch screen
+	 *
+	 * @return {@link Type#SWIPE_LEFT}, {@link Type#SWIPE_RIGHT},
+	 *         {@link Type#SWIPE_UP}, {@link Type#SWIPE_DOWN} or
+	 *         {@link Type#SWIPED}
+	 */
+	static Type swipeType(int startX, int startY, int endX, int endY) {
+		int dx = Math.abs(startX - endX);
+		int dy = Math.abs(startY - endY);
+		if (startX <= 30 && endX > startX && dx > dy)
+			return Type.SWIPE_LEFT;
+		if (startX >= 770 && endX < startX && dx > dy)
+			return Type.SWIPE_RIGHT;
+		if (endY < startY && dx < dy)
+			return Type.SWIPE_UP;
+		if (endY > startY && dx < dy)
+			return Type.SWIPE_DOWN;
+		return Type.SWIPED;
+	}
+
+	/**
+	 * Appends a hex dump of the first bytes of the report, used for trace
+	 * logging only
+	 *
+	 * @param sb         Builder the dump is appended to
+	 * @param reportData Data of the report
+	 * @param length     Number of bytes to dump
+	 * @return The builder
+	 */
+	public static StringBuilder appendHex(StringBuilder sb, byte[] reportData, int length) {
+		for (int i = 0; i < length && i < reportData.length; i++) {
+			int b = reportData[i] & 0xFF;
+			sb.append(i % 8 == 0 ? (i == 0 ? "" : "\n") : " ");
+			sb.append("0x").append(HEX_DIGITS[b >> 4]).append(HEX_DIGITS[b & 0xF]);
+		}
+		return sb;
+	}
+
+	/**
+	 * Receives the changes found in the input reports
+	 */
+	public interface Handler {
+
+		/**
+		 * A key or the push button of a dial was pressed or released
+		 *
+		 * @param keyId   ID of the key
+		 * @param pressed <code>true</code> if pressed
+		 */
+		void keyChanged(int keyId, boolean pressed);
+
+		/**
+		 * A dial was rotated
+		 *
+		 * @param keyId ID of the dial
+		 * @param ticks Ticks rotated, negative to the left
+		 */
+		void dialRotated(int keyId, int ticks);
+
+		/**
+		 * The touch screen was touched or swiped
+		 *
+		 * @param keyId  ID of the touch screen
+		 * @param type   {@link Type#TOUCHED}, {@link Type#TOUCHED_LONG} or one
+		 *               of the swipe types
+		 * @param startX Horizontal position of the touch
+		 * @param startY Vertical position of the touch
+		 * @param endX   Horizontal end of the swipe, -1 for touches
+		 * @param endY   Vertical end of the swipe, -1 for touches
+		 */
+		void touched(int keyId, Type type, int startX, int startY, int endX, int endY);
+	}
+}
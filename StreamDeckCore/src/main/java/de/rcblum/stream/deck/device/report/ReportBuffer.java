@@ -0,0 +1,122 @@
+package de.rcblum.stream.deck.device.report;
+
+import purejavahidapi.HidDevice;
+
+/**
+ * Reusable buffer for one HID report. The report ID is kept outside of the
+ * payload, so the payload can be handed to the {@link HidDevice} as it is,
+ * without stripping the report ID from a copy of the report.
+ *
+ * @author Roland von Werden
+ *
+ */
+public final class ReportBuffer {
+
+	/**
+	 * ID of the report
+	 */
+	private byte reportId = 0;
+
+	/**
+	 * Payload of the report, without the report ID
+	 */
+	private final byte[] payload;
+
+	/**
+	 * Number of payload bytes to be sent
+	 */
+	private int length = 0;
+
+	/**
+	 * Creates a buffer for reports with up to the given number of bytes,
+	 * including the report ID.
+	 *
+	 * @param reportSize Maximum size of a report, including the report ID
+	 */
+	public ReportBuffer(int reportSize) {
+		this.payload = new byte[Math.max(0, reportSize - 1)];
+	}
+
+	/**
+	 * Loads a complete report, the first byte being the report ID.
+	 *
+	 * @param report Report to be loaded
+	 * @return this buffer
+	 */
+	public ReportBuffer load(byte[] report) {
+		return this.load(report, report.length);
+	}
+
+	/**
+	 * Loads a complete report, the first byte being the report ID.
+	 *
+	 * @param report Report to be loaded
+	 * @param reportLength Number of bytes to load, including the report ID
+	 * @return this buffer
+	 */
+	public ReportBuffer load(byte[] report, int reportLength) {
+		this.reportId = report[0];
+		this.length = reportLength - 1;
+		System.arraycopy(report, 1, this.payload, 0, this.length);
+		return this;
+	}
+
+	/**
+	 * Sets a byte of the report.
+	 *
+	 * @param reportIndex Index in the complete report, 0 being the report ID
+	 * @param value       Value to be set
+	 * @return this buffer
+	 */
+	public ReportBuffer patch(int reportIndex, byte value) {
+		if (reportIndex == 0)
+			this.reportId = value;
+		else
+			this.payload[reportIndex - 1] = value;
+		return this;
+	}
+
+	/**
+	 * Sends the buffer as output report to the device
+	 *
+	 * @param hidDevice Device to send the report to
+	 * @return Result of {@link HidDevice#setOutputReport(byte, byte[], int)},
+	 *         negative on error
+	 */
+	public int sendOutputReport(HidDevice hidDevice) {
+		return hidDevice.setOutputReport(this.reportId, this.payload, this.length);
+	}
+
+	/**
+	 * Sends the buffer as feature report to the device
+	 *
+	 * @param hidDevice Device to send the report to
+	 * @return Result of {@link HidDevice#setFeatureReport(byte, byte[], int)},
+	 *         negative on error
+	 */
+	public int sendFeatureReport(HidDevice hidDevice) {
+		return hidDevice.setFeatureReport(this.reportId, this.payload, this.length);
+	}
+
+	public byte getReportId() {
+		return reportId;
+	}
+
+	public byte[] getPayload() {
+		return payload;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Returns the maximum size of a report that fits into the buffer, including
+	 * the report ID.
+	 *
+	 * @return Maximum report size
+	 */
+	public int getCapacity() {
+		return this.payload.length + 1;
+	}
+}
@@ -0,0 +1,50 @@
+package de.rcblum.stream.deck.device.report;
+
+import java.util.ArrayDeque;
+
+/**
+ * Pool of {@link ReportBuffer}s for one device. Buffers are only allocated
+ * when no released buffer of the requested size is available, so after the
+ * first few reports sending does not create garbage.
+ *
+ * @author Roland von Werden
+ *
+ */
+public class ReportBufferPool {
+
+	/**
+	 * Maximum number of released buffers kept for reuse
+	 */
+	private static final int MAX_IDLE = 8;
+
+	private final ArrayDeque<ReportBuffer> idle = new ArrayDeque<>(MAX_IDLE);
+
+	/**
+	 * Returns a buffer that can hold a report of the given size. The buffer
+	 * has to be returned with {@link #release(ReportBuffer)} after the report
+	 * was sent.
+	 *
+	 * @param reportSize Size of the report, including the report ID
+	 * @return Buffer for the report
+	 */
+	public synchronized ReportBuffer acquire(int reportSize) {
+		int size = this.idle.size();
+		for (int i = 0; i < size; i++) {
+			ReportBuffer buffer = this.idle.pollFirst();
+			if (buffer.getCapacity() == reportSize)
+				return buffer;
+			this.idle.addLast(buffer);
+		}
+		return new ReportBuffer(reportSize);
+	}
+
+	/**
+	 * Returns the buffer to the pool
+	 *
+	 * @param buffer Buffer that is no longer used
+	 */
+	public synchronized void release(ReportBuffer buffer) {
+		if (buffer != null && this.idle.size() < MAX_IDLE)
+			this.idle.addFirst(buffer);
+	}
+}
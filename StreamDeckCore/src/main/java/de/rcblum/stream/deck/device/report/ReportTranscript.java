@@ -0,0 +1,184 @@
+package de.rcblum.stream.deck.device.report;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Append only binary transcript of the reports sent to a stream deck. Every
+ * output and feature report is recorded with its report ID, its payload and
+ * the {@link System#nanoTime()} it was sent at.
+ * <br><br>
+ * The file is written through a {@link MappedByteBuffer} that is mapped in
+ * segments of {@link #SEGMENT_SIZE} bytes, recording a report is a copy into
+ * memory. The transcript can be evaluated and replayed with the
+ * {@link TranscriptReader}.
+ * <br><br>
+ * Format: the file starts with {@link #MAGIC} and {@link #VERSION} as int,
+ * followed by the records. Each record consists of the time stamp (long), the
+ * kind of the report (byte), the report ID (byte), the length of the payload
+ * (int) and the payload. A kind of 0 marks the end of the transcript.
+ *
+ * @author Roland von Werden
+ *
+ */
+public class ReportTranscript implements Closeable {
+
+	private static final Logger LOGGER = LogManager.getLogger(ReportTranscript.class);
+
+	/**
+	 * First bytes of a transcript file, "SDTR"
+	 */
+	public static final int MAGIC = 0x53445452;
+
+	/**
+	 * Version of the file format
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * Kind of a record of an output report
+	 */
+	public static final byte OUTPUT_REPORT = 1;
+
+	/**
+	 * Kind of a record of a feature report
+	 */
+	public static final byte FEATURE_REPORT = 2;
+
+	/**
+	 * Size of the file header in bytes
+	 */
+	static final int HEADER_SIZE = 8;
+
+	/**
+	 * Size of a record without the payload in bytes
+	 */
+	static final int RECORD_HEADER_SIZE = 14;
+
+	/**
+	 * Number of bytes mapped at once
+	 */
+	public static final int SEGMENT_SIZE = 16 << 20;
+
+	private final Path file;
+
+	private final FileChannel channel;
+
+	/**
+	 * Mapped segment the records are written to, <code>null</code> after closing
+	 */
+	private MappedByteBuffer segment;
+
+	/**
+	 * Position of the mapped segment in the file
+	 */
+	private long segmentStart = 0;
+
+	private long records = 0;
+
+	/**
+	 * Creates a new transcript, an existing file is overwritten
+	 *
+	 * @param file File the transcript is written to
+	 * @throws IOException if the file could not be created
+	 */
+	public ReportTranscript(Path file) throws IOException {
+		this.file = file;
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.segment = this.channel.map(MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+		this.segment.putInt(MAGIC).putInt(VERSION);
+	}
+
+	/**
+	 * Records one report. If the transcript could not be extended, the report
+	 * is not recorded and the transcript is closed.
+	 *
+	 * @param kind       {@link #OUTPUT_REPORT} or {@link #FEATURE_REPORT}
+	 * @param timestamp  {@link System#nanoTime()} the report was sent at
+	 * @param reportId   ID of the report
+	 * @param payload    Payload without the report ID
+	 * @param length     Number of payload bytes
+	 */
+	public synchronized void record(byte kind, long timestamp, byte reportId, byte[] payload, int length) {
+		if (this.segment == null)
+			return;
+		int size = RECORD_HEADER_SIZE + length;
+		// Keep one byte for the end marker
+		if (this.segment.remaining() < size + 1 && !this.extend(size + 1))
+			return;
+		this.segment.putLong(timestamp).put(kind).put(reportId).putInt(length).put(payload, 0, length);
+		this.records++;
+	}
+
+	private boolean extend(int size) {
+		try {
+			this.segmentStart += this.segment.position();
+			this.segment = this.channel.map(MapMode.READ_WRITE, this.segmentStart, Math.max(SEGMENT_SIZE, size));
+			return true;
+		} catch (IOException e) {
+			LOGGER.warn("Transcript " + this.file + " could not be extended, recording stopped", e);
+			this.segment = null;
+			this.closeChannel(this.segmentStart);
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the number of recorded reports
+	 *
+	 * @return Number of records
+	 */
+	public synchronized long getRecordCount() {
+		return this.records;
+	}
+
+	/**
+	 * Returns the number of bytes written to the transcript
+	 *
+	 * @return Size of the transcript without the unused mapped space
+	 */
+	public synchronized long getSize() {
+		return this.segmentStart + (this.segment != null ? this.segment.position() : 0);
+	}
+
+	public Path getFile() {
+		return this.file;
+	}
+
+	/**
+	 * Stops recording and cuts the file to the recorded size
+	 */
+	@Override
+	public synchronized void close() {
+		if (this.segment == null)
+			return;
+		long end = this.segmentStart + this.segment.position();
+		this.segment.put((byte) 0);
+		this.segment.force();
+		this.segment = null;
+		this.closeChannel(end + 1);
+	}
+
+	private void closeChannel(long size) {
+		try {
+			// May fail while the segment is still mapped, the reader stops at the end marker
+			this.channel.truncate(size);
+		} catch (IOException e) {
+			LOGGER.debug("Transcript " + this.file + " could not be truncated", e);
+		}
+		try {
+			this.channel.close();
+		} catch (IOException e) {
+			LOGGER.warn("Transcript " + this.file + " could not be closed", e);
+		}
+	}
+}
@@ -0,0 +1,255 @@
+package de.rcblum.stream.deck.device.report;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.LockSupport;
+
+import de.rcblum.stream.deck.device.metrics.LatencyHistogram;
+import purejavahidapi.HidDevice;
+
+/**
+ * Reads a transcript written by {@link ReportTranscript}. The transcript can
+ * be evaluated offline with {@link #analyze()} or sent to another device
+ * with {@link #replay(HidDevice, boolean)}, e.g. to a mock device for
+ * benchmarks.
+ *
+ * @author Roland von Werden
+ *
+ */
+public class TranscriptReader {
+
+	/**
+	 * Content of the transcript, positioned after the file header
+	 */
+	private final ByteBuffer records;
+
+	/**
+	 * Opens a transcript
+	 *
+	 * @param file Transcript file
+	 * @throws IOException if the file could not be read or is no transcript
+	 */
+	public TranscriptReader(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			this.records = channel.map(MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (this.records.remaining() < ReportTranscript.HEADER_SIZE || this.records.getInt() != ReportTranscript.MAGIC)
+			throw new IOException(file + " is no report transcript");
+		int version = this.records.getInt();
+		if (version != ReportTranscript.VERSION)
+			throw new IOException("Unsupported transcript version " + version);
+	}
+
+	/**
+	 * Reads the records one after another
+	 *
+	 * @param consumer Receives each record, the payload is only valid during the call
+	 */
+	public void forEach(RecordConsumer consumer) {
+		ByteBuffer buffer = this.records.duplicate();
+		byte[] payload = new byte[0];
+		while (buffer.remaining() >= ReportTranscript.RECORD_HEADER_SIZE) {
+			long timestamp = buffer.getLong();
+			byte kind = buffer.get();
+			if (kind == 0)
+				return;
+			byte reportId = buffer.get();
+			int length = buffer.getInt();
+			if (length < 0 || length > buffer.remaining())
+				return;
+			if (payload.length < length)
+				payload = new byte[length];
+			buffer.get(payload, 0, length);
+			consumer.accept(kind, timestamp, reportId, payload, length);
+		}
+	}
+
+	/**
+	 * Evaluates the transcript
+	 *
+	 * @return Bandwidth, gaps between the reports and frame rates of the keys
+	 */
+	public Statistics analyze() {
+		Statistics statistics = new Statistics();
+		this.forEach(statistics::add);
+		return statistics;
+	}
+
+	/**
+	 * Sends all reports of the transcript to the device
+	 *
+	 * @param hidDevice  Device the reports are sent to
+	 * @param keepTiming <code>true</code> to wait between the reports like in
+	 *                   the transcript, <code>false</code> to send as fast as
+	 *                   the device accepts the reports
+	 * @return Time the replay took in ns
+	 */
+	public long replay(HidDevice hidDevice, boolean keepTiming) {
+		long start = System.nanoTime();
+		long[] first = new long[] { -1 };
+		this.forEach((kind, timestamp, reportId, payload, length) -> {
+			if (first[0] < 0)
+				first[0] = timestamp;
+			if (keepTiming) {
+				long due = start + (timestamp - first[0]);
+				long remaining;
+				while ((remaining = due - System.nanoTime()) > 0)
+					LockSupport.parkNanos(remaining);
+			}
+			if (kind == ReportTranscript.FEATURE_REPORT)
+				hidDevice.setFeatureReport(reportId, payload, length);
+			else
+				hidDevice.setOutputReport(reportId, payload, length);
+		});
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Returns the key whose image is completed by the report
+	 *
+	 * @param reportId ID of the report
+	 * @param payload  Payload of the report
+	 * @param length   Length of the payload
+	 * @return Index of the key as sent to the device, -1 if the report is not
+	 *         the last page of a key image
+	 */
+	static int completedKey(byte reportId, byte[] payload, int length) {
+		if (reportId != 0x02 || length < 5)
+			return -1;
+		// Rev2: 0x07, key, last page flag
+		if (payload[0] == 0x07 && payload[2] == 0x01)
+			return payload[1] & 0xFF;
+		// Rev1: 0x01, page number, 0x00, last page flag, key + 1
+		if (payload[0] == 0x01 && payload[1] == 0x02 && payload[3] == 0x01)
+			return (payload[4] & 0xFF) - 1;
+		return -1;
+	}
+
+	/**
+	 * Receives the records of a transcript
+	 */
+	@FunctionalInterface
+	public interface RecordConsumer {
+		void accept(byte kind, long timestamp, byte reportId, byte[] payload, int length);
+	}
+
+	/**
+	 * Evaluation of a transcript
+	 *
+	 * @author Roland von Werden
+	 *
+	 */
+	public static class Statistics {
+
+		private long outputReports = 0;
+
+		private long featureReports = 0;
+
+		/**
+		 * Output report bytes including the report IDs
+		 */
+		private long bytes = 0;
+
+		private long first = -1;
+
+		private long last = -1;
+
+		/**
+		 * Time between two consecutive reports in ns
+		 */
+		private final LatencyHistogram gaps = new LatencyHistogram();
+
+		/**
+		 * Completed images for each key
+		 */
+		private final Map<Integer, Long> keyFrames = new TreeMap<>();
+
+		void add(byte kind, long timestamp, byte reportId, byte[] payload, int length) {
+			if (this.first < 0)
+				this.first = timestamp;
+			else
+				this.gaps.record(timestamp - this.last);
+			this.last = timestamp;
+			if (kind == ReportTranscript.FEATURE_REPORT) {
+				this.featureReports++;
+				return;
+			}
+			this.outputReports++;
+			this.bytes += length + 1;
+			int key = completedKey(reportId, payload, length);
+			if (key >= 0)
+				this.keyFrames.merge(key, 1L, Long::sum);
+		}
+
+		public long getOutputReports() {
+			return this.outputReports;
+		}
+
+		public long getFeatureReports() {
+			return this.featureReports;
+		}
+
+		public long getBytes() {
+			return this.bytes;
+		}
+
+		/**
+		 * @return Time from the first to the last report in ns
+		 */
+		public long getDurationNanos() {
+			return this.first < 0 ? 0 : this.last - this.first;
+		}
+
+		/**
+		 * @return Output report bytes per second over the whole transcript
+		 */
+		public double getBytesPerSecond() {
+			long duration = this.getDurationNanos();
+			return duration == 0 ? 0 : this.bytes * 1e9 / duration;
+		}
+
+		/**
+		 * @return Time between two consecutive reports in ns
+		 */
+		public LatencyHistogram getGaps() {
+			return this.gaps;
+		}
+
+		/**
+		 * @return Number of completed images for each key
+		 */
+		public Map<Integer, Long> getKeyFrames() {
+			return this.keyFrames;
+		}
+
+		/**
+		 * Returns the mean frame rate of the key over the whole transcript
+		 *
+		 * @param key Index of the key as sent to the device
+		 * @return Images per second
+		 */
+		public double getFramesPerSecond(int key) {
+			long duration = this.getDurationNanos();
+			Long frames = this.keyFrames.get(key);
+			return duration == 0 || frames == null ? 0 : frames * 1e9 / duration;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(String.format("Reports: %d output, %d feature in %.3f s%n", this.outputReports, this.featureReports, this.getDurationNanos() / 1e9));
+			sb.append(String.format("Bandwidth: %.1f KiB/s%n", this.getBytesPerSecond() / 1024));
+			sb.append(String.format("Gaps: mean %.1f us, p50 %d us, p99 %d us, max %d us%n", this.gaps.getMean() / 1000,
+					this.gaps.getValueAtPercentile(50) / 1000, this.gaps.getValueAtPercentile(99) / 1000, this.gaps.getMax() / 1000));
+			for (Integer key : this.keyFrames.keySet())
+				sb.append(String.format("Key %d: %d frames, %.1f fps%n", key, this.keyFrames.get(key), this.getFramesPerSecond(key)));
+			return sb.toString();
+		}
+	}
+}
@@ -0,0 +1,212 @@
+package de.rcblum.stream.deck.device.worker;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sequences and wait strategy of a bounded ring buffer with one consumer.
+ * Subclasses store the events in their slots.
+ * <br><br>
+ * The consumer spins shortly when the ring is empty and then parks until an
+ * event is published, so it neither sleeps into a new event nor wakes up
+ * while the deck is idle. Publishing an event unparks the consumer only if it
+ * is parked.<br>
+ * The input report thread is the usual producer. Virtual key presses may come
+ * from any thread, so producers are serialized by a lock that is uncontended
+ * in the normal case. The consumer does not take the lock.
+ *
+ * @author Roland von Werden
+ *
+ */
+public abstract class AbstractEventRing {
+
+	/**
+	 * Default capacity of the ring
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * Number of times the consumer checks an empty ring before parking
+	 */
+	private static final int SPINS = 100;
+
+	/**
+	 * Time a producer waits before trying again to add to a full ring
+	 */
+	private static final long FULL_WAIT_NANOS = 50_000;
+
+	/**
+	 * Number of slots minus one, the number of slots is a power of two
+	 */
+	protected final int mask;
+
+	/**
+	 * Lock serializing the producers
+	 */
+	protected final Object producerLock = new Object();
+
+	/**
+	 * Sequence of the next event to take, written by the consumer only
+	 */
+	private volatile long head = 0;
+
+	/**
+	 * Sequence of the next event to add, written by the producers only
+	 */
+	private volatile long tail = 0;
+
+	/**
+	 * Consumer while it is parked, <code>null</code> otherwise
+	 */
+	private volatile Thread parked = null;
+
+	/**
+	 * Thread that took events last
+	 */
+	private volatile Thread consumer = null;
+
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates a ring
+	 *
+	 * @param capacity Capacity of the ring, rounded up to a power of two
+	 */
+	protected AbstractEventRing(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity)
+			size <<= 1;
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Returns the sequence of the next free slot. The caller must hold the
+	 * {@link #producerLock} until the slot is published.
+	 *
+	 * @return Sequence of the slot, -1 if the ring is full or closed
+	 */
+	protected final long claim() {
+		if (this.closed)
+			return -1;
+		long t = this.tail;
+		return t - this.head > this.mask ? -1 : t;
+	}
+
+	/**
+	 * Makes the claimed slot visible to the consumer. The caller must hold the
+	 * {@link #producerLock}.
+	 *
+	 * @param sequence Sequence returned by {@link #claim()}
+	 */
+	protected final void publish(long sequence) {
+		this.tail = sequence + 1;
+	}
+
+	/**
+	 * Unparks the consumer if it waits, called after the producer lock was
+	 * released
+	 */
+	protected final void signal() {
+		Thread waiting = this.parked;
+		if (waiting != null)
+			LockSupport.unpark(waiting);
+	}
+
+	/**
+	 * Waits while the ring is full. The consumer itself does not wait, it
+	 * would wait for itself.
+	 *
+	 * @return <code>false</code> if the event should be dropped because the
+	 *         ring was closed or the consumer is adding to its own ring
+	 */
+	protected final boolean waitWhileFull() {
+		Thread current = Thread.currentThread();
+		if (this.closed || current == this.consumer || current.isInterrupted())
+			return false;
+		LockSupport.parkNanos(this, FULL_WAIT_NANOS);
+		return true;
+	}
+
+	/**
+	 * Returns the sequence of the next event for the consumer
+	 *
+	 * @return Sequence of the event, -1 if the ring is empty
+	 */
+	protected final long next() {
+		Thread current = Thread.currentThread();
+		if (this.consumer != current)
+			this.consumer = current;
+		long h = this.head;
+		return h == this.tail ? -1 : h;
+	}
+
+	/**
+	 * Frees the slot of the event after the consumer read it
+	 *
+	 * @param sequence Sequence returned by {@link #next()}
+	 */
+	protected final void release(long sequence) {
+		this.head = sequence + 1;
+	}
+
+	/**
+	 * Waits until the ring holds an event. Must only be called by the
+	 * consumer.
+	 *
+	 * @return <code>false</code> if the ring was closed and is empty or the
+	 *         consumer was interrupted
+	 */
+	protected final boolean await() {
+		Thread current = Thread.currentThread();
+		while (true) {
+			for (int i = 0; i < SPINS; i++)
+				if (!this.isEmpty())
+					return true;
+			if (this.closed || current.isInterrupted())
+				return !this.isEmpty();
+			this.parked = current;
+			if (this.isEmpty() && !this.closed)
+				LockSupport.park(this);
+			this.parked = null;
+		}
+	}
+
+	/**
+	 * Closes the ring. No events are added afterwards, the consumer takes the
+	 * remaining events and then stops waiting.
+	 */
+	public void close() {
+		this.closed = true;
+		this.signal();
+	}
+
+	/**
+	 * @return <code>true</code> if {@link #close()} was called
+	 */
+	public boolean isClosed() {
+		return this.closed;
+	}
+
+	/**
+	 * @return <code>true</code> if the ring holds no events
+	 */
+	public boolean isEmpty() {
+		return this.head == this.tail;
+	}
+
+	/**
+	 * @return Number of events in the ring
+	 */
+	public int size() {
+		long h = this.head;
+		return (int) (this.tail - h);
+	}
+
+	/**
+	 * @return Maximum number of events in the ring
+	 */
+	public int getCapacity() {
+		return this.mask + 1;
+	}
+}
@@ -0,0 +1,280 @@
+package de.rcblum.stream.deck.device.worker;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fades the brightness of a stream deck from one level to another.
+ * <br><br>
+ * The ramp runs on a scheduler and sends at most one brightness level per
+ * interval, and only if the level changed since the last step. The last step
+ * always sends the target level, even if the scheduler was late. Starting a
+ * new ramp or cancelling the ramp stops the current one.<br>
+ * The levels are sent without holding the lock of the ramp, a separate send
+ * lock keeps them in order. The sink must not block, the steps of all decks
+ * share the scheduler thread.
+ *
+ * @author Roland von Werden
+ *
+ */
+public class BrightnessRamp implements Runnable {
+
+	/**
+	 * Minimum time between two steps of the ramp in ns, about 60 steps per second
+	 */
+	public static final long MIN_STEP_NANOS = 16_000_000;
+
+	/**
+	 * Receives the levels of the ramp
+	 */
+	@FunctionalInterface
+	public interface LevelSink {
+		/**
+		 * Sends one level of the ramp to the stream deck
+		 *
+		 * @param level Brightness from 0 .. 99
+		 * @param last  <code>true</code> for the target level of the ramp
+		 * @return Future completed when the level was written, may be
+		 *         <code>null</code> if <code>last</code> is <code>false</code>
+		 */
+		CompletableFuture<Void> send(int level, boolean last);
+	}
+
+	private final ScheduledExecutorService scheduler;
+
+	private final LevelSink sink;
+
+	/**
+	 * Time between two steps in ns
+	 */
+	private final long stepNanos;
+
+	/**
+	 * Held while a level is computed and sent, keeps the levels in order.
+	 * Taken before the lock of the ramp.
+	 */
+	private final Object sendLock = new Object();
+
+	private ScheduledFuture<?> task = null;
+
+	private CompletableFuture<Void> completion = null;
+
+	private int from = 0;
+
+	private int target = 0;
+
+	/**
+	 * Level sent by the last step
+	 */
+	private int current = -1;
+
+	private long startNanos = 0;
+
+	private long durationNanos = 0;
+
+	private Easing easing = Easing.LINEAR;
+
+	/**
+	 * Creates a ramp running on the given scheduler
+	 *
+	 * @param scheduler     Scheduler the steps are run on
+	 * @param sink          Receives the levels of the ramp
+	 * @param pacingNanos   Minimum time between two reports of the stream deck,
+	 *                      the steps are never closer than
+	 *                      {@link #MIN_STEP_NANOS}
+	 */
+	public BrightnessRamp(ScheduledExecutorService scheduler, LevelSink sink, long pacingNanos) {
+		this.scheduler = scheduler;
+		this.sink = sink;
+		this.stepNanos = Math.max(MIN_STEP_NANOS, pacingNanos);
+	}
+
+	/**
+	 * Starts fading from the current level to the target level. A running ramp
+	 * is cancelled.
+	 *
+	 * @param from           Current brightness from 0 .. 99
+	 * @param target         Target brightness from 0 .. 99
+	 * @param durationMillis Duration of the ramp in ms
+	 * @param easing         Curve of the ramp, <code>null</code> for {@link Easing#LINEAR}
+	 * @return Future completed when the target level was written
+	 */
+	public CompletableFuture<Void> start(int from, int target, long durationMillis, Easing easing) {
+		CompletableFuture<Void> future = this.start(from, target, durationMillis, easing, System.nanoTime());
+		synchronized (this) {
+			if (this.completion == future)
+				this.task = this.scheduler.scheduleAtFixedRate(this, this.stepNanos, this.stepNanos, TimeUnit.NANOSECONDS);
+		}
+		return future;
+	}
+
+	/**
+	 * Starts the ramp without scheduling the steps
+	 */
+	CompletableFuture<Void> start(int from, int target, long durationMillis, Easing easing, long now) {
+		CompletableFuture<Void> future;
+		boolean immediate;
+		long end;
+		synchronized (this) {
+			this.cancel();
+			this.from = clamp(from);
+			this.target = clamp(target);
+			this.current = this.from;
+			this.startNanos = now;
+			this.durationNanos = Math.max(0, TimeUnit.MILLISECONDS.toNanos(durationMillis));
+			this.easing = easing != null ? easing : Easing.LINEAR;
+			this.completion = new CompletableFuture<>();
+			future = this.completion;
+			immediate = this.durationNanos == 0 || this.from == this.target;
+			end = now + this.durationNanos;
+		}
+		if (immediate)
+			this.step(end);
+		return future;
+	}
+
+	/**
+	 * Stops the running ramp, the level stays where the ramp was. The future of
+	 * the ramp is cancelled.
+	 */
+	public synchronized void cancel() {
+		if (this.task != null) {
+			this.task.cancel(false);
+			this.task = null;
+		}
+		if (this.completion != null) {
+			this.completion.completeExceptionally(new CancellationException("Brightness ramp was cancelled"));
+			this.completion = null;
+		}
+	}
+
+	/**
+	 * Returns if a ramp is running
+	 *
+	 * @return <code>true</code> if the target level was not sent yet
+	 */
+	public synchronized boolean isRunning() {
+		return this.completion != null;
+	}
+
+	@Override
+	public void run() {
+		this.step(System.nanoTime());
+	}
+
+	/**
+	 * Sends the level of the ramp for the given point in time
+	 *
+	 * @param now {@link System#nanoTime()}
+	 * @return Level sent, -1 if no level was sent
+	 */
+	int step(long now) {
+		synchronized (this.sendLock) {
+			CompletableFuture<Void> future;
+			int level;
+			synchronized (this) {
+				if (this.completion == null)
+					return -1;
+				long elapsed = now - this.startNanos;
+				if (elapsed >= this.durationNanos) {
+					future = this.completion;
+					this.completion = null;
+					if (this.task != null) {
+						this.task.cancel(false);
+						this.task = null;
+					}
+					level = this.target;
+				}
+				else {
+					future = null;
+					level = levelAt(this.from, this.target, (double) elapsed / this.durationNanos, this.easing);
+					if (level == this.current)
+						return -1;
+				}
+				this.current = level;
+			}
+			if (future == null) {
+				this.sink.send(level, false);
+				return level;
+			}
+			CompletableFuture<Void> written = this.sink.send(level, true);
+			if (written != null) {
+				written.whenComplete((v, t) -> {
+					if (t != null)
+						future.completeExceptionally(t);
+					else
+						future.complete(null);
+				});
+			}
+			else {
+				future.complete(null);
+			}
+			return level;
+		}
+	}
+
+	/**
+	 * Returns the level of a ramp at the given progress
+	 *
+	 * @param from     Start level
+	 * @param target   Target level
+	 * @param progress Progress of the ramp from 0 to 1
+	 * @param easing   Curve of the ramp
+	 * @return Level at the given progress
+	 */
+	public static int levelAt(int from, int target, double progress, Easing easing) {
+		double p = easing.apply(Math.min(1, Math.max(0, progress)));
+		return (int) Math.round(from + (target - from) * p);
+	}
+
+	private static int clamp(int brightness) {
+		return brightness > 99 ? 99 : brightness < 0 ? 0 : brightness;
+	}
+
+	/**
+	 * Curve of a brightness ramp
+	 *
+	 * @author Roland von Werden
+	 *
+	 */
+	public enum Easing {
+		/**
+		 * Constant speed
+		 */
+		LINEAR,
+		/**
+		 * Starts slow and speeds up
+		 */
+		EASE_IN,
+		/**
+		 * Starts fast and slows down towards the target
+		 */
+		EASE_OUT,
+		/**
+		 * Starts and ends slow
+		 */
+		EASE_IN_OUT;
+
+		/**
+		 * Maps the progress of the ramp to the progress of the level
+		 *
+		 * @param t Progress of the ramp from 0 to 1
+		 * @return Progress of the level from 0 to 1
+		 */
+		public double apply(double t) {
+			switch (this) {
+			case EASE_IN:
+				return t * t;
+			case EASE_OUT:
+				return 1 - (1 - t) * (1 - t);
+			case EASE_IN_OUT:
+				return t * t * (3 - 2 * t);
+			default:
+				return t;
+			}
+		}
+	}
+}
@@ -0,0 +1,714 @@
+package de.rcblum.stream.deck.device.worker;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Latest-wins store for the commands that are waiting to be sent to the ESD.
+ * <br><br>
+ * Every key has one slot, as well as the full panel image. Touch screen
+ * commands are held per drawn region. Queuing a new image for an occupied
+ * slot replaces the stale image, so only the newest frame for a key is ever
+ * sent. Reset and brightness commands are kept in an ordered lane, a waiting
+ * brightness command is replaced by a newer one unless a reset lies between
+ * them.<br>
+ * Commands are handed out by their {@link DeckUpdater.Priority} and then in the
+ * order they were queued. A replaced command takes the position and priority
+ * of the newer command. A command waiting longer than {@link #AGING_NANOS}
+ * is handed out like an {@link DeckUpdater.Priority#INTERACTIVE} command, so
+ * steady traffic of a more urgent priority cannot starve it. Resets and full images act as barriers, nothing queued
+ * after them is sent before them.<br>
+ * The store holds at most {@link #getCapacity()} commands. What happens to a
+ * command that would exceed the capacity is defined by the {@link Policy}.
+ * Replacing a waiting command never exceeds the capacity, so the policy only
+ * applies to commands that add a waiting command. Brightness commands are
+ * never rejected and never wait for capacity, at most one of them waits
+ * between two resets.
+ *
+ * @author Roland von Werden
+ *
+ */
+public class DeckCommandStore {
+
+	/**
+	 * Pending image for each key index
+	 */
+	private final DeckUpdater[] keySlots;
+
+	/**
+	 * Pending image for the complete display
+	 */
+	private DeckUpdater fullImageSlot = null;
+
+	/**
+	 * Pending images for the touch screen, one per drawn region
+	 */
+	private final List<DeckUpdater> touchScreenSlots = new ArrayList<>(4);
+
+	/**
+	 * Reset and brightness commands in the order they were queued
+	 */
+	private final ArrayDeque<DeckUpdater> orderedLane = new ArrayDeque<>();
+
+	/**
+	 * Command handed out by {@link #poll()} that was not yet reported as done
+	 */
+	private DeckUpdater inFlight = null;
+
+	/**
+	 * Sequence for the next queued command
+	 */
+	private long sequence = 0;
+
+	/**
+	 * Number of commands currently waiting
+	 */
+	private int size = 0;
+
+	/**
+	 * Number of commands that were replaced by a newer command before being sent
+	 */
+	private long superseded = 0;
+
+	/**
+	 * Set while the worker is waiting for new commands
+	 */
+	private boolean waiting = false;
+
+	/**
+	 * Maximum number of waiting commands
+	 */
+	private int capacity = DEFAULT_CAPACITY;
+
+	/**
+	 * Behavior if the store is full
+	 */
+	private Policy policy = Policy.REJECT;
+
+	/**
+	 * Informed about waiting commands that are removed without being sent or
+	 * superseded
+	 */
+	private Consumer<DeckUpdater> evictionListener = null;
+
+	/**
+	 * Number of producers waiting for free capacity
+	 */
+	private int blockedProducers = 0;
+
+	/**
+	 * Number of times a producer had to wait for free capacity
+	 */
+	private long blocked = 0;
+
+	/**
+	 * Time producers waited for free capacity in ns
+	 */
+	private long blockedNanos = 0;
+
+	/**
+	 * Number of animation frames dropped because the store was full
+	 */
+	private long droppedAnimationFrames = 0;
+
+	/**
+	 * Number of brightness commands merged into a waiting brightness command
+	 */
+	private long coalesced = 0;
+
+	/**
+	 * Number of commands rejected because the store was full
+	 */
+	private long rejected = 0;
+
+	/**
+	 * Default maximum number of waiting commands
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	/**
+	 * Time in ns after that a waiting command is sent like an
+	 * {@link DeckUpdater.Priority#INTERACTIVE} command
+	 */
+	public static final long AGING_NANOS = 250_000_000;
+
+	/**
+	 * Creates a store with one slot for every key index
+	 *
+	 * @param keySlots Number of key indices that can be addressed, including the
+	 *                 offset used for sending images to the stream deck
+	 */
+	public DeckCommandStore(int keySlots) {
+		this.keySlots = new DeckUpdater[Math.max(0, keySlots)];
+	}
+
+	/**
+	 * Sets the capacity of the store and the behavior if it is full.
+	 *
+	 * @param policy   Behavior if the store is full
+	 * @param capacity Maximum number of waiting commands, at least 1
+	 */
+	public synchronized void setPolicy(Policy policy, int capacity) {
+		if (policy == null)
+			throw new IllegalArgumentException("Policy must not be null");
+		this.policy = policy;
+		this.capacity = Math.max(1, capacity);
+		this.notifyAll();
+	}
+
+	/**
+	 * Sets the listener informed about waiting commands that are removed
+	 * without being sent, e.g. animation frames dropped because the store was
+	 * full.
+	 *
+	 * @param evictionListener Listener, called while the store is locked
+	 */
+	public synchronized void setEvictionListener(Consumer<DeckUpdater> evictionListener) {
+		this.evictionListener = evictionListener;
+	}
+
+	public synchronized Policy getPolicy() {
+		return this.policy;
+	}
+
+	public synchronized int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * Waits until the command can be queued without exceeding the capacity.
+	 * Only used with {@link Policy#BLOCK}, the caller must not hold a lock the
+	 * worker needs.
+	 *
+	 * @param command       Command to be queued
+	 * @param timeoutMillis Maximum time to wait
+	 * @return <code>true</code> if the command can be queued
+	 * @throws InterruptedException if the waiting thread was interrupted
+	 */
+	public synchronized boolean awaitCapacity(DeckUpdater command, long timeoutMillis) throws InterruptedException {
+		if (this.policy != Policy.BLOCK || this.size < this.capacity || !this.grows(command) || command.type == DeckUpdater.Type.BRIGHTNESS)
+			return true;
+		long start = System.nanoTime();
+		long deadline = start + timeoutMillis * 1_000_000L;
+		this.blocked++;
+		this.blockedProducers++;
+		try {
+			long remaining;
+			while (this.policy == Policy.BLOCK && this.size >= this.capacity && this.grows(command) 
+					&& (remaining = deadline - System.nanoTime()) > 0) {
+				this.wait(Math.max(1, remaining / 1_000_000L));
+			}
+		}
+		finally {
+			this.blockedProducers--;
+			this.blockedNanos += System.nanoTime() - start;
+		}
+		return this.policy != Policy.BLOCK || this.size < this.capacity || !this.grows(command);
+	}
+
+	/**
+	 * Queues the command. Pending commands that would be overwritten by it are
+	 * dropped. If the store is full, the {@link Policy} decides what happens.
+	 *
+	 * @param command Command to be queued
+	 * @return {@link Status#QUEUED} if the command was queued
+	 */
+	public synchronized Status offer(DeckUpdater command) {
+		if (this.coalesce(command))
+			return Status.QUEUED;
+		// A brightness command that could not be merged is the only one waiting
+		if (this.size >= this.capacity && this.grows(command) && command.type != DeckUpdater.Type.BRIGHTNESS) {
+			switch (this.policy) {
+			case DROP_OLDEST_ANIMATION:
+				DeckUpdater oldest = this.oldestAnimationFrame();
+				if (oldest != null) {
+					this.remove(oldest);
+					this.droppedAnimationFrames++;
+					if (this.evictionListener != null)
+						this.evictionListener.accept(oldest);
+					oldest.complete();
+				}
+				else if (command.getPriority() == DeckUpdater.Priority.ANIMATION) {
+					this.droppedAnimationFrames++;
+					command.complete();
+					return Status.DROPPED;
+				}
+				else {
+					this.rejected++;
+					return Status.REJECTED;
+				}
+				break;
+			case BLOCK:
+				// Producers waited in awaitCapacity, the capacity is only exceeded by concurrent producers
+				break;
+			default:
+				this.rejected++;
+				return Status.REJECTED;
+			}
+		}
+		this.offerUnchecked(command);
+		return Status.QUEUED;
+	}
+
+	private void offerUnchecked(DeckUpdater command) {
+		command.sequence = this.sequence++;
+		command.queuedNanos = System.nanoTime();
+		switch (command.type) {
+		case KEY_IMAGE:
+			if (command.keyIndex >= 0 && command.keyIndex < this.keySlots.length) {
+				if (this.keySlots[command.keyIndex] != null)
+					this.drop(this.keySlots[command.keyIndex]);
+				this.keySlots[command.keyIndex] = command;
+				this.size++;
+			}
+			else {
+				this.orderedLane.add(command);
+				this.size++;
+			}
+			break;
+		case FULL_IMAGE:
+			this.clearImages(false);
+			this.fullImageSlot = command;
+			this.size++;
+			break;
+		case TOUCH_SCREEN:
+			for (Iterator<DeckUpdater> iterator = this.touchScreenSlots.iterator(); iterator.hasNext();) {
+				DeckUpdater pending = iterator.next();
+				if (command.covers(pending)) {
+					iterator.remove();
+					this.drop(pending);
+				}
+			}
+			this.touchScreenSlots.add(command);
+			this.size++;
+			break;
+		case RESET:
+			this.clearImages(true);
+			this.orderedLane.add(command);
+			this.size++;
+			break;
+		default:
+			this.orderedLane.add(command);
+			this.size++;
+			break;
+		}
+		if (this.waiting)
+			this.notifyAll();
+	}
+
+	/**
+	 * Returns if queuing the command increases the number of waiting commands
+	 */
+	private boolean grows(DeckUpdater command) {
+		int replaced = 0;
+		switch (command.type) {
+		case KEY_IMAGE:
+			return command.keyIndex < 0 || command.keyIndex >= this.keySlots.length || this.keySlots[command.keyIndex] == null;
+		case FULL_IMAGE:
+			replaced = this.pendingImages();
+			break;
+		case TOUCH_SCREEN:
+			for (DeckUpdater t : this.touchScreenSlots) {
+				if (command.covers(t))
+					replaced++;
+			}
+			break;
+		case RESET:
+			replaced = this.pendingImages() + this.touchScreenSlots.size();
+			break;
+		default:
+			break;
+		}
+		return replaced == 0;
+	}
+
+	private int pendingImages() {
+		int images = this.fullImageSlot != null ? 1 : 0;
+		for (DeckUpdater k : this.keySlots) {
+			if (k != null)
+				images++;
+		}
+		return images;
+	}
+
+	/**
+	 * Replaces a waiting brightness command queued after the last reset with the
+	 * given brightness command.
+	 */
+	private boolean coalesce(DeckUpdater command) {
+		if (command.type != DeckUpdater.Type.BRIGHTNESS)
+			return false;
+		for (Iterator<DeckUpdater> iterator = this.orderedLane.descendingIterator(); iterator.hasNext();) {
+			DeckUpdater pending = iterator.next();
+			if (pending.type == DeckUpdater.Type.RESET)
+				return false;
+			if (pending.type == DeckUpdater.Type.BRIGHTNESS) {
+				iterator.remove();
+				this.drop(pending);
+				this.coalesced++;
+				this.offerUnchecked(command);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the oldest waiting animation frame
+	 */
+	private DeckUpdater oldestAnimationFrame() {
+		DeckUpdater oldest = null;
+		for (DeckUpdater k : this.keySlots) {
+			if (k != null && k.getPriority() == DeckUpdater.Priority.ANIMATION && (oldest == null || k.sequence < oldest.sequence))
+				oldest = k;
+		}
+		for (DeckUpdater t : this.touchScreenSlots) {
+			if (t.getPriority() == DeckUpdater.Priority.ANIMATION && (oldest == null || t.sequence < oldest.sequence))
+				oldest = t;
+		}
+		for (DeckUpdater c : this.orderedLane) {
+			if (c.getPriority() == DeckUpdater.Priority.ANIMATION && (oldest == null || c.sequence < oldest.sequence))
+				oldest = c;
+		}
+		return oldest;
+	}
+
+	/**
+	 * Removes a waiting command without counting it as superseded
+	 */
+	private void remove(DeckUpdater command) {
+		boolean removed = false;
+		for (int i = 0; i < this.keySlots.length && !removed; i++) {
+			if (this.keySlots[i] == command) {
+				this.keySlots[i] = null;
+				removed = true;
+			}
+		}
+		if (!removed && this.fullImageSlot == command) {
+			this.fullImageSlot = null;
+			removed = true;
+		}
+		if (!removed)
+			removed = this.touchScreenSlots.remove(command) || this.orderedLane.remove(command);
+		if (removed)
+			this.size--;
+	}
+
+	/**
+	 * Removes and returns the command that was queued first. Waits for a command
+	 * to be queued if the store is empty.
+	 *
+	 * @param timeoutMillis Maximum time to wait, 0 to wait until woken up
+	 * @return The oldest command or <code>null</code> if no command was queued in
+	 *         time or the store was woken up through {@link #wakeUp()}
+	 * @throws InterruptedException if the waiting thread was interrupted
+	 */
+	public synchronized DeckUpdater take(long timeoutMillis) throws InterruptedException {
+		if (this.size == 0) {
+			this.waiting = true;
+			try {
+				this.wait(timeoutMillis);
+			}
+			finally {
+				this.waiting = false;
+			}
+		}
+		return this.poll();
+	}
+
+	/**
+	 * Wakes up a thread waiting in {@link #take(long)}.
+	 */
+	public synchronized void wakeUp() {
+		this.notifyAll();
+	}
+
+	/**
+	 * Removes and returns the next command to be sent. This is the oldest
+	 * command of the most urgent {@link DeckUpdater.Priority}. Commands are never
+	 * moved in front of an earlier reset or full image, or in front of an
+	 * earlier touch screen image overlapping them.
+	 *
+	 * @return The next command or <code>null</code> if no command is waiting
+	 */
+	public synchronized DeckUpdater poll() {
+		if (this.size == 0)
+			return null;
+		long barrier = this.barrier();
+		long now = System.nanoTime();
+		DeckUpdater next = null;
+		DeckUpdater laneHead = this.orderedLane.peek();
+		if (laneHead != null && laneHead.sequence <= barrier)
+			next = laneHead;
+		int keySlot = -1;
+		for (int i = 0; i < this.keySlots.length; i++) {
+			DeckUpdater k = this.keySlots[i];
+			if (k != null && k.sequence <= barrier && isBefore(k, next, now)) {
+				next = k;
+				keySlot = i;
+			}
+		}
+		if (this.fullImageSlot != null && this.fullImageSlot.sequence <= barrier && isBefore(this.fullImageSlot, next, now)) {
+			next = this.fullImageSlot;
+			keySlot = -1;
+		}
+		int touchSlot = -1;
+		for (int i = 0; i < this.touchScreenSlots.size(); i++) {
+			DeckUpdater t = this.touchScreenSlots.get(i);
+			if (t.sequence <= barrier && isBefore(t, next, now) && !this.hasOverlappingPredecessor(t)) {
+				next = t;
+				touchSlot = i;
+				keySlot = -1;
+			}
+		}
+		if (touchSlot >= 0)
+			this.touchScreenSlots.remove(touchSlot);
+		else if (keySlot >= 0)
+			this.keySlots[keySlot] = null;
+		else if (next == this.fullImageSlot)
+			this.fullImageSlot = null;
+		else
+			this.orderedLane.poll();
+		this.size--;
+		this.inFlight = next;
+		if (this.blockedProducers > 0)
+			this.notifyAll();
+		return next;
+	}
+
+	/**
+	 * Reports that the command handed out by {@link #poll()} was written or
+	 * failed.
+	 *
+	 * @param command Command that is done
+	 */
+	public synchronized void done(DeckUpdater command) {
+		if (this.inFlight == command)
+			this.inFlight = null;
+	}
+
+	/**
+	 * Returns all waiting commands and the command currently being written
+	 *
+	 * @return Commands that are not done yet
+	 */
+	public synchronized List<DeckUpdater> pending() {
+		List<DeckUpdater> pending = new ArrayList<>(this.size + 1);
+		if (this.inFlight != null)
+			pending.add(this.inFlight);
+		for (DeckUpdater k : this.keySlots) {
+			if (k != null)
+				pending.add(k);
+		}
+		if (this.fullImageSlot != null)
+			pending.add(this.fullImageSlot);
+		pending.addAll(this.touchScreenSlots);
+		pending.addAll(this.orderedLane);
+		return pending;
+	}
+
+	/**
+	 * Returns the sequence of the oldest waiting reset or full image. No
+	 * command queued after it may be sent before it.
+	 */
+	private long barrier() {
+		long barrier = this.fullImageSlot != null ? this.fullImageSlot.sequence : Long.MAX_VALUE;
+		for (DeckUpdater command : this.orderedLane) {
+			if (command.type == DeckUpdater.Type.RESET) {
+				barrier = Math.min(barrier, command.sequence);
+				break;
+			}
+		}
+		return barrier;
+	}
+
+	/**
+	 * Returns if an older touch screen image overlapping the given one is waiting
+	 */
+	private boolean hasOverlappingPredecessor(DeckUpdater touch) {
+		for (int i = 0; i < this.touchScreenSlots.size(); i++) {
+			DeckUpdater other = this.touchScreenSlots.get(i);
+			if (other.sequence < touch.sequence && other.overlaps(touch))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns if command a has to be sent before command b
+	 */
+	private static boolean isBefore(DeckUpdater a, DeckUpdater b, long now) {
+		if (b == null)
+			return true;
+		int priority = priorityAt(a, now).compareTo(priorityAt(b, now));
+		return priority < 0 || priority == 0 && a.sequence < b.sequence;
+	}
+
+	/**
+	 * Returns the priority of the command, raised to
+	 * {@link DeckUpdater.Priority#INTERACTIVE} once it waited longer than
+	 * {@link #AGING_NANOS}
+	 */
+	private static DeckUpdater.Priority priorityAt(DeckUpdater command, long now) {
+		return now - command.queuedNanos > AGING_NANOS ? DeckUpdater.Priority.INTERACTIVE : command.getPriority();
+	}
+
+	/**
+	 * Returns if no command is waiting
+	 *
+	 * @return <code>true</code> if empty
+	 */
+	public synchronized boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Returns the number of waiting commands
+	 *
+	 * @return Number of waiting commands
+	 */
+	public synchronized int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the number of commands that were replaced by a newer command
+	 * before they were sent.
+	 *
+	 * @return Number of superseded commands
+	 */
+	public synchronized long getSupersededCount() {
+		return this.superseded;
+	}
+
+	/**
+	 * Returns how often a producer had to wait for free capacity
+	 *
+	 * @return Number of blocked producers
+	 */
+	public synchronized long getBlockedCount() {
+		return this.blocked;
+	}
+
+	/**
+	 * Returns the time producers waited for free capacity
+	 *
+	 * @return Time in ns
+	 */
+	public synchronized long getBlockedNanos() {
+		return this.blockedNanos;
+	}
+
+	/**
+	 * Returns the number of animation frames dropped because the store was full
+	 *
+	 * @return Number of dropped animation frames
+	 */
+	public synchronized long getDroppedAnimationFrameCount() {
+		return this.droppedAnimationFrames;
+	}
+
+	/**
+	 * Returns the number of brightness commands merged into a waiting one
+	 *
+	 * @return Number of coalesced commands
+	 */
+	public synchronized long getCoalescedCount() {
+		return this.coalesced;
+	}
+
+	/**
+	 * Returns the number of commands rejected because the store was full
+	 *
+	 * @return Number of rejected commands
+	 */
+	public synchronized long getRejectedCount() {
+		return this.rejected;
+	}
+
+	/**
+	 * Drops the pending images, they will be overwritten by a newer command.
+	 *
+	 * @param touchScreen <code>true</code> if the touch screen images should be
+	 *                    dropped as well
+	 */
+	private void clearImages(boolean touchScreen) {
+		for (int i = 0; i < this.keySlots.length; i++) {
+			if (this.keySlots[i] != null) {
+				this.drop(this.keySlots[i]);
+				this.keySlots[i] = null;
+			}
+		}
+		if (this.fullImageSlot != null) {
+			this.drop(this.fullImageSlot);
+			this.fullImageSlot = null;
+		}
+		if (touchScreen) {
+			for (DeckUpdater t : this.touchScreenSlots)
+				this.drop(t);
+			this.touchScreenSlots.clear();
+		}
+	}
+
+	/**
+	 * Drops a waiting command that was superseded by a newer one
+	 */
+	private void drop(DeckUpdater command) {
+		this.size--;
+		this.superseded++;
+		command.complete();
+	}
+
+	/**
+	 * Behavior of the store if a command would exceed its capacity. Images for a
+	 * key that already has a waiting image and brightness commands merged into a
+	 * waiting one never exceed the capacity, they replace the waiting command
+	 * under every policy.
+	 * 
+	 * @author Roland von Werden
+	 *
+	 */
+	public enum Policy {
+		/**
+		 * The producer waits until the worker has sent enough commands
+		 */
+		BLOCK,
+		/**
+		 * The oldest waiting animation frame is dropped. If there is none, an
+		 * animation frame is dropped and other commands are rejected.
+		 */
+		DROP_OLDEST_ANIMATION,
+		/**
+		 * The command is rejected
+		 */
+		REJECT;
+	}
+
+	/**
+	 * Result of queuing a command
+	 * 
+	 * @author Roland von Werden
+	 *
+	 */
+	public enum Status {
+		/**
+		 * The command was queued
+		 */
+		QUEUED,
+		/**
+		 * The command was not queued, the image is already displayed
+		 */
+		SKIPPED,
+		/**
+		 * The animation frame was dropped because the store was full
+		 */
+		DROPPED,
+		/**
+		 * The command was rejected because the store was full
+		 */
+		REJECTED;
+	}
+}
@@ -0,0 +1,39 @@
+package de.rcblum.stream.deck.device.worker;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Scheduler shared by all stream decks for short periodic housekeeping tasks,
+ * e.g. brightness ramps. The tasks only queue commands, the commands are sent
+ * by the {@link DeckWorker} of each stream deck.
+ * <br><br>
+ * The scheduler runs on a single daemon thread that is created when it is
+ * first used.
+ *
+ * @author Roland von Werden
+ *
+ */
+public final class DeckScheduler {
+
+	private static ScheduledExecutorService scheduler = null;
+
+	private DeckScheduler() {
+	}
+
+	/**
+	 * Returns the shared scheduler
+	 *
+	 * @return Scheduler for periodic tasks of the stream decks
+	 */
+	public static synchronized ScheduledExecutorService get() {
+		if (scheduler == null) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "StreamDeck-Scheduler");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return scheduler;
+	}
+}
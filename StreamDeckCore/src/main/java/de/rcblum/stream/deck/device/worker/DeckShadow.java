@@ -0,0 +1,335 @@
+package de.rcblum.stream.deck.device.worker;
+
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Shadow of what the keys and the touch screen of a stream deck currently
+ * show. An image that is already displayed, or that is already waiting to be
+ * displayed, does not have to be sent again.
+ * <br><br>
+ * Every key and every drawn touch screen region has a slot, holding the last
+ * command acknowledged as written and the newest command that is still
+ * waiting. Queuing a reset or a full image invalidates all slots, unless the
+ * full image was composed from the known key and touch screen images.
+ *
+ * @author Roland von Werden
+ *
+ */
+public class DeckShadow {
+
+	/**
+	 * Maximum number of touch screen regions that are remembered, if more regions
+	 * overlap the touch screen is forgotten except for the newest region
+	 */
+	public static final int MAX_TOUCH_SCREEN_REGIONS = 32;
+
+	/**
+	 * Shadow of each key index
+	 */
+	private final Slot[] keySlots;
+
+	/**
+	 * Shadow of the touch screen, one slot per drawn region
+	 */
+	private final List<Slot> touchScreenSlots = new ArrayList<>(4);
+
+	/**
+	 * Number of commands that were not sent because the image is already displayed
+	 */
+	private long skipped = 0;
+
+	/**
+	 * Creates a shadow with one slot for every key index
+	 *
+	 * @param keySlots Number of key indices that can be addressed, including the
+	 *                 offset used for sending images to the stream deck
+	 */
+	public DeckShadow(int keySlots) {
+		this.keySlots = new Slot[Math.max(0, keySlots)];
+		for (int i = 0; i < this.keySlots.length; i++)
+			this.keySlots[i] = new Slot(null);
+	}
+
+	/**
+	 * Checks if the command has to be sent and records it as waiting.
+	 *
+	 * @param command Command to be queued
+	 * @return <code>false</code> if the command would draw an image that is
+	 *         already displayed or waiting to be displayed
+	 */
+	public synchronized boolean accept(DeckUpdater command) {
+		Slot slot = null;
+		switch (command.type) {
+		case KEY_IMAGE:
+			slot = this.keySlot(command.keyIndex);
+			break;
+		case TOUCH_SCREEN:
+			slot = this.touchScreenSlot(command);
+			break;
+		case FULL_IMAGE:
+			if (command.getComposedOf() != null) {
+				for (DeckUpdater keyImage : command.getComposedOf()) {
+					Slot s = this.keySlot(keyImage.keyIndex);
+					if (s != null)
+						s.pending = keyImage;
+				}
+			}
+			else {
+				// The full image covers the touch screen as well
+				this.invalidate();
+			}
+			return true;
+		case RESET:
+			this.invalidate();
+			return true;
+		default:
+			return true;
+		}
+		if (slot == null)
+			return true;
+		DeckUpdater expected = slot.expected();
+		if (expected != null && shows(expected, command)) {
+			this.skipped++;
+			return false;
+		}
+		slot.pending = command;
+		return true;
+	}
+
+	/**
+	 * Returns if the key image of the command is already displayed or waiting to
+	 * be displayed, without recording the command.
+	 *
+	 * @param command Key image command
+	 * @return <code>true</code> if the command would not change the key
+	 */
+	public synchronized boolean isDisplayed(DeckUpdater command) {
+		Slot slot = command.type == DeckUpdater.Type.KEY_IMAGE ? this.keySlot(command.keyIndex) : null;
+		return slot != null && slot.expected() != null && shows(slot.expected(), command);
+	}
+
+	/**
+	 * Returns the command for the image the key shows or will show
+	 *
+	 * @param keyIndex Index of the key, including the offset used for sending images
+	 * @return Command of the image or <code>null</code> if the content is unknown
+	 */
+	public synchronized DeckUpdater getExpected(int keyIndex) {
+		Slot slot = this.keySlot(keyIndex);
+		return slot != null ? slot.expected() : null;
+	}
+
+	/**
+	 * Returns the commands for the images the touch screen shows or will show
+	 *
+	 * @return Commands of the touch screen regions, to be drawn in this order
+	 */
+	public synchronized List<DeckUpdater> getExpectedTouchScreen() {
+		List<DeckUpdater> commands = new ArrayList<>(this.touchScreenSlots.size());
+		for (Slot s : this.touchScreenSlots) {
+			if (s.expected() != null)
+				commands.add(s.expected());
+		}
+		return commands;
+	}
+
+	/**
+	 * Acknowledges that the command was written to the stream deck.
+	 *
+	 * @param command Command that was written
+	 */
+	public synchronized void written(DeckUpdater command) {
+		if (command.getComposedOf() != null) {
+			for (DeckUpdater keyImage : command.getComposedOf())
+				this.written(keyImage);
+			return;
+		}
+		Slot slot = this.slotOf(command);
+		if (slot != null && slot.pending == command) {
+			slot.written = command;
+			slot.pending = null;
+		}
+	}
+
+	/**
+	 * Forgets what the area of the failed command shows.
+	 *
+	 * @param command Command that could not be written
+	 */
+	public synchronized void failed(DeckUpdater command) {
+		if (command.getComposedOf() != null) {
+			for (DeckUpdater keyImage : command.getComposedOf())
+				this.failed(keyImage);
+			return;
+		}
+		Slot slot = this.slotOf(command);
+		if (slot != null && slot.pending == command)
+			slot.invalidate();
+	}
+
+	/**
+	 * Forgets the content of all keys and the touch screen, the next image for
+	 * every key will be sent.
+	 */
+	public synchronized void invalidate() {
+		for (Slot s : this.keySlots)
+			s.invalidate();
+		this.touchScreenSlots.clear();
+	}
+
+	/**
+	 * Forgets the content of all keys and the touch screen and returns the
+	 * commands for the images that should be displayed.
+	 *
+	 * @return Commands to redraw the keys and the touch screen
+	 */
+	public synchronized List<DeckUpdater> invalidateAndCollect() {
+		List<DeckUpdater> commands = new ArrayList<>(this.keySlots.length + this.touchScreenSlots.size());
+		for (Slot s : this.keySlots) {
+			if (s.expected() != null)
+				commands.add(s.expected());
+		}
+		for (Slot s : this.touchScreenSlots) {
+			if (s.expected() != null)
+				commands.add(s.expected());
+		}
+		this.invalidate();
+		return commands;
+	}
+
+	/**
+	 * Returns the number of commands that were not sent because the image was
+	 * already displayed.
+	 *
+	 * @return Number of skipped commands
+	 */
+	public synchronized long getSkippedCount() {
+		return this.skipped;
+	}
+
+	private Slot keySlot(int keyIndex) {
+		return keyIndex >= 0 && keyIndex < this.keySlots.length ? this.keySlots[keyIndex] : null;
+	}
+
+	/**
+	 * Returns the slot for the region of the command, moved on top of the other
+	 * regions. Regions covered completely by newer regions are dropped, regions
+	 * overlapping them are kept to know the rest of their image, but are no
+	 * longer used to skip commands.
+	 */
+	private Slot touchScreenSlot(DeckUpdater command) {
+		if (command.startPoint == null || command.imageSize == null)
+			return null;
+		Rectangle region = new Rectangle(command.startPoint, command.imageSize);
+		Slot slot = null;
+		for (Iterator<Slot> iterator = this.touchScreenSlots.iterator(); iterator.hasNext();) {
+			Slot s = iterator.next();
+			if (s.region.equals(region)) {
+				slot = s.overdrawn ? null : s;
+				iterator.remove();
+			}
+			else if (region.contains(s.region)) {
+				iterator.remove();
+			}
+			else if (s.region.intersects(region)) {
+				s.overdrawn = true;
+			}
+		}
+		if (slot == null)
+			slot = new Slot(region);
+		this.touchScreenSlots.add(slot);
+		this.pruneTouchScreen();
+		return slot;
+	}
+
+	/**
+	 * Drops the regions covered completely by the union of the newer regions. If
+	 * still too many regions are left, only the newest one is kept.
+	 */
+	private void pruneTouchScreen() {
+		Area covered = new Area();
+		for (int i = this.touchScreenSlots.size() - 1; i >= 0; i--) {
+			Slot s = this.touchScreenSlots.get(i);
+			if (s.overdrawn && covered.contains(s.region))
+				this.touchScreenSlots.remove(i);
+			else
+				covered.add(new Area(s.region));
+		}
+		if (this.touchScreenSlots.size() > MAX_TOUCH_SCREEN_REGIONS) {
+			Slot newest = this.touchScreenSlots.get(this.touchScreenSlots.size() - 1);
+			this.touchScreenSlots.clear();
+			this.touchScreenSlots.add(newest);
+		}
+	}
+
+	private Slot slotOf(DeckUpdater command) {
+		switch (command.type) {
+		case KEY_IMAGE:
+			return this.keySlot(command.keyIndex);
+		case TOUCH_SCREEN:
+			for (Slot s : this.touchScreenSlots) {
+				if (s.pending == command)
+					return s;
+			}
+			return null;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Returns if both commands show the same image at the same place
+	 */
+	private static boolean shows(DeckUpdater a, DeckUpdater b) {
+		if (a.type != b.type || a.img == null || b.img == null)
+			return false;
+		if (a.imageSize == null ? b.imageSize != null : !a.imageSize.equals(b.imageSize))
+			return false;
+		if (a.startPoint == null ? b.startPoint != null : !a.startPoint.equals(b.startPoint))
+			return false;
+		return a.img.hasSameContent(b.img);
+	}
+
+	/**
+	 * Shadow of one key or touch screen region
+	 */
+	private static class Slot {
+
+		/**
+		 * Region on the touch screen, <code>null</code> for keys
+		 */
+		final Rectangle region;
+
+		/**
+		 * If parts of the region were drawn over by other regions
+		 */
+		boolean overdrawn = false;
+
+		/**
+		 * Last command that was written to the stream deck
+		 */
+		DeckUpdater written = null;
+
+		/**
+		 * Newest command that is waiting to be written
+		 */
+		DeckUpdater pending = null;
+
+		Slot(Rectangle region) {
+			this.region = region;
+		}
+
+		DeckUpdater expected() {
+			return this.pending != null ? this.pending : this.written;
+		}
+
+		void invalidate() {
+			this.written = null;
+			this.pending = null;
+		}
+	}
+}
@@ -2,6 +2,7 @@ package de.rcblum.stream.deck.device.worker;
 
 import java.awt.Dimension;
 import java.awt.Point;
+import java.util.concurrent.CompletableFuture;
 
 import de.rcblum.stream.deck.device.descriptor.hidfunctions.DrawImageInterface;
 import de.rcblum.stream.deck.device.descriptor.hidfunctions.DrawTouchscreenInterface;
@@ -17,6 +18,7 @@ import purejavahidapi.HidDevice;
  */
 public class DeckUpdater implements Runnable {
 
+	public final Type type;
 	public final Point startPoint;
 	public final Dimension imageSize;
 	public final int keyIndex;
@@ -29,7 +31,60 @@ public class DeckUpdater implements Runnable {
 	public final FeatureReportIntegerInterface featureReportIntInterface;
 	public final int brightness;
 
+	/**
+	 * Lane the command is sent in, commands of a more urgent lane are sent first
+	 */
+	private Priority priority;
+
+	/**
+	 * Key images a composed full image was created from
+	 */
+	private DeckUpdater[] composedOf = null;
+
+	/**
+	 * Completed when the command was written or superseded, created on demand
+	 */
+	private CompletableFuture<Void> completion = null;
+
+	/**
+	 * Set once the command was written, superseded or failed
+	 */
+	private boolean done = false;
+
+	/**
+	 * Reason the command failed, <code>null</code> if it did not fail
+	 */
+	private Throwable failure = null;
+
+	/**
+	 * Position in the order the command was queued, assigned by the {@link DeckCommandStore}
+	 */
+	long sequence = -1;
+
+	/**
+	 * Value of {@link System#nanoTime()} when the command was queued, assigned by the {@link DeckCommandStore}
+	 */
+	long queuedNanos = 0;
+
+	/**
+	 * {@link System#nanoTime()} when the input report arrived that caused the
+	 * command, 0 if it was not queued while handling input
+	 */
+	private long inputArrivalNanos = 0;
+
+	/**
+	 * {@link System#nanoTime()} when the event that caused the command was
+	 * dispatched
+	 */
+	private long inputDispatchedNanos = 0;
+
 	public DeckUpdater(HidDevice hidDevice, DrawImageInterface drawImageInterface, int keyIndex, SDImage img, Dimension imageSize) {
+		this(hidDevice, drawImageInterface, keyIndex, img, imageSize, Type.KEY_IMAGE);
+	}
+
+	public DeckUpdater(HidDevice hidDevice, DrawImageInterface drawImageInterface, int keyIndex, SDImage img, Dimension imageSize, Type type) {
+		this.type = type;
+		this.priority = Priority.STATIC;
 		this.keyIndex = keyIndex;
 		this.img = img;
 		this.hidDevice = hidDevice;
@@ -43,6 +98,8 @@ public class DeckUpdater implements Runnable {
 	}
 
 	public DeckUpdater(HidDevice hidDevice, DrawTouchscreenInterface drawTouchIface, Point startPoint, SDImage img, Dimension imageSize) {
+		this.type = Type.TOUCH_SCREEN;
+		this.priority = Priority.STATIC;
 		this.keyIndex = -1;
 		this.img = img;
 		this.hidDevice = hidDevice;
@@ -56,6 +113,8 @@ public class DeckUpdater implements Runnable {
 	}
 	
 	public DeckUpdater(HidDevice hidDevice, FeatureReportInterface featureReportInterface) {
+		this.type = Type.RESET;
+		this.priority = Priority.HOUSEKEEPING;
 		this.hidDevice = hidDevice;
 		this.featureReportInterface = featureReportInterface;
 		this.keyIndex = -1;
@@ -70,6 +129,8 @@ public class DeckUpdater implements Runnable {
 
 	
 	public DeckUpdater(HidDevice hidDevice, FeatureReportIntegerInterface featureReportIntInterface, int brightness) {
+		this.type = Type.BRIGHTNESS;
+		this.priority = Priority.HOUSEKEEPING;
 		this.hidDevice = hidDevice;
 		this.featureReportIntInterface = featureReportIntInterface;
 		this.featureReportInterface = null;
@@ -94,4 +155,238 @@ public class DeckUpdater implements Runnable {
 			drawTouchscreenInterface.drawImage(hidDevice, startPoint, imageSize, img);
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Sets the lane the command is sent in
+	 * 
+	 * @param priority Priority of the command
+	 * @return this command
+	 */
+	public DeckUpdater withPriority(Priority priority) {
+		this.priority = priority != null ? priority : this.priority;
+		return this;
+	}
+
+	public Priority getPriority() {
+		return this.priority;
+	}
+
+	/**
+	 * Traces the command back to the input event it was queued for, see
+	 * {@link de.rcblum.stream.deck.device.metrics.InputTrace}
+	 * 
+	 * @param arrivalNanos    {@link System#nanoTime()} when the input report
+	 *                        arrived
+	 * @param dispatchedNanos {@link System#nanoTime()} when the event was
+	 *                        dispatched
+	 * @return this command
+	 */
+	public DeckUpdater withInputTrace(long arrivalNanos, long dispatchedNanos) {
+		this.inputArrivalNanos = arrivalNanos;
+		this.inputDispatchedNanos = dispatchedNanos;
+		return this;
+	}
+
+	/**
+	 * @return {@link System#nanoTime()} when the input report arrived that
+	 *         caused the command, 0 if it was not queued while handling input
+	 */
+	public long getInputArrivalNanos() {
+		return this.inputArrivalNanos;
+	}
+
+	/**
+	 * @return {@link System#nanoTime()} when the event that caused the command
+	 *         was dispatched, 0 if it was not queued while handling input
+	 */
+	public long getInputDispatchedNanos() {
+		return this.inputDispatchedNanos;
+	}
+
+	/**
+	 * Marks this full image as composed from the given key images. When the full
+	 * image is written, the key images count as written.
+	 * 
+	 * @param keyImages Key images shown by this full image
+	 * @return this command
+	 */
+	public DeckUpdater composedOf(DeckUpdater[] keyImages) {
+		this.composedOf = keyImages;
+		return this;
+	}
+
+	/**
+	 * Returns the key images this full image was composed from
+	 * 
+	 * @return Key images or <code>null</code> if this command was not composed
+	 */
+	public DeckUpdater[] getComposedOf() {
+		return this.composedOf;
+	}
+
+	/**
+	 * Returns a future that is completed when the command was written to the
+	 * stream deck or was superseded by a newer command. If the command could not
+	 * be written, the future is completed exceptionally.<br>
+	 * The future may be completed while the locks of the stream deck are held,
+	 * dependent actions should use the async methods of the future.
+	 * 
+	 * @return Completion of this command
+	 */
+	public synchronized CompletableFuture<Void> getCompletion() {
+		if (this.completion == null) {
+			this.completion = new CompletableFuture<>();
+			if (this.done && this.failure != null)
+				this.completion.completeExceptionally(this.failure);
+			else if (this.done)
+				this.completion.complete(null);
+		}
+		return this.completion;
+	}
+
+	/**
+	 * Returns if the command was written, superseded or failed
+	 * 
+	 * @return <code>true</code> if the command is done
+	 */
+	public synchronized boolean isDone() {
+		return this.done;
+	}
+
+	/**
+	 * Marks the command as written or superseded. The key images of a composed
+	 * full image are completed as well.
+	 */
+	public void complete() {
+		CompletableFuture<Void> f;
+		synchronized (this) {
+			if (this.done)
+				return;
+			this.done = true;
+			f = this.completion;
+		}
+		if (f != null)
+			f.complete(null);
+		if (this.composedOf != null) {
+			for (DeckUpdater keyImage : this.composedOf)
+				keyImage.complete();
+		}
+	}
+
+	/**
+	 * Marks the command as failed. The key images of a composed full image fail
+	 * as well.
+	 * 
+	 * @param cause Reason the command failed
+	 */
+	public void fail(Throwable cause) {
+		CompletableFuture<Void> f;
+		synchronized (this) {
+			if (this.done)
+				return;
+			this.done = true;
+			this.failure = cause;
+			f = this.completion;
+		}
+		if (f != null)
+			f.completeExceptionally(cause);
+		if (this.composedOf != null) {
+			for (DeckUpdater keyImage : this.composedOf)
+				keyImage.fail(cause);
+		}
+	}
+
+	/**
+	 * Creates a new command doing the same as this one, to be queued again
+	 * 
+	 * @return Copy of this command
+	 */
+	public DeckUpdater copy() {
+		switch (this.type) {
+		case KEY_IMAGE:
+		case FULL_IMAGE:
+			return new DeckUpdater(this.hidDevice, this.drawImageInterface, this.keyIndex, this.img, this.imageSize, this.type).withPriority(this.priority);
+		case TOUCH_SCREEN:
+			return new DeckUpdater(this.hidDevice, this.drawTouchscreenInterface, this.startPoint, this.img, this.imageSize).withPriority(this.priority);
+		case RESET:
+			return new DeckUpdater(this.hidDevice, this.featureReportInterface).withPriority(this.priority);
+		default:
+			return new DeckUpdater(this.hidDevice, this.featureReportIntInterface, this.brightness).withPriority(this.priority);
+		}
+	}
+
+	/**
+	 * Returns if this command draws to the same area of the display as the given
+	 * command, meaning the given command would be completely overwritten by this one.
+	 * 
+	 * @param other Command that was queued earlier
+	 * @return <code>true</code> if other is covered by this command
+	 */
+	public boolean covers(DeckUpdater other) {
+		if (other == null || other.type != this.type)
+			return false;
+		switch (this.type) {
+		case KEY_IMAGE:
+			return this.keyIndex == other.keyIndex;
+		case FULL_IMAGE:
+			return true;
+		case TOUCH_SCREEN:
+			if (this.startPoint == null || this.imageSize == null || other.startPoint == null || other.imageSize == null)
+				return false;
+			return this.startPoint.x <= other.startPoint.x 
+					&& this.startPoint.y <= other.startPoint.y
+					&& this.startPoint.x + this.imageSize.width >= other.startPoint.x + other.imageSize.width
+					&& this.startPoint.y + this.imageSize.height >= other.startPoint.y + other.imageSize.height;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Returns if both commands are touch screen images drawing to a common area
+	 * 
+	 * @param other Other command
+	 * @return <code>true</code> if the drawn areas overlap
+	 */
+	public boolean overlaps(DeckUpdater other) {
+		if (other == null || this.type != Type.TOUCH_SCREEN || other.type != Type.TOUCH_SCREEN
+				|| this.startPoint == null || this.imageSize == null || other.startPoint == null || other.imageSize == null)
+			return false;
+		return this.startPoint.x < other.startPoint.x + other.imageSize.width
+				&& other.startPoint.x < this.startPoint.x + this.imageSize.width
+				&& this.startPoint.y < other.startPoint.y + other.imageSize.height
+				&& other.startPoint.y < this.startPoint.y + this.imageSize.height;
+	}
+
+	/**
+	 * Type of command that is sent to the stream deck
+	 * @author Roland von Werden
+	 *
+	 */
+	public enum Type {
+		KEY_IMAGE, FULL_IMAGE, TOUCH_SCREEN, RESET, BRIGHTNESS;
+	}
+
+	/**
+	 * Lanes of the commands sent to the stream deck, from the most to the least urgent.
+	 * @author Roland von Werden
+	 *
+	 */
+	public enum Priority {
+		/**
+		 * Direct feedback to the user, e.g. icon changes after a key press or folder navigation
+		 */
+		INTERACTIVE, 
+		/**
+		 * Icon updates not triggered by the user
+		 */
+		STATIC, 
+		/**
+		 * Frames of an animation
+		 */
+		ANIMATION, 
+		/**
+		 * Brightness and other maintenance commands
+		 */
+		HOUSEKEEPING;
+	}
+}
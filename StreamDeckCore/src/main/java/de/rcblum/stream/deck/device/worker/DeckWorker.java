@@ -1,90 +1,165 @@
 package de.rcblum.stream.deck.device.worker;
 
+import java.util.concurrent.locks.LockSupport;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import de.rcblum.stream.deck.device.StreamDeck;
+import de.rcblum.stream.deck.device.descriptor.DeckDescriptor;
+import de.rcblum.stream.deck.device.encoder.DeckEncoder;
 
 /**
- * Dispatches all commands asynchronously queued up in {@link StreamDeck#addToSendPool(DeckUpdater)} to the ESD.
- * Send rate is limited to 500 commands per second.
- * If the execution of one command is completed in less tha on ms the thread is put to sleep for 1 ms.
- * As long as one loop takes up less then 2 ms the rest of the time is actively wated
- * 
+ * Dispatches all commands asynchronously queued up in the {@link StreamDeck} to the ESD.
+ * Stale images for a key are superseded by the {@link DeckCommandStore} before they reach the worker.
+ * <br><br>
+ * The worker waits without using the CPU while no command is queued and is woken up as soon as a new command arrives.
+ * Between two commands at least {@link DeckDescriptor#reportPacingNanos} have to pass. Additionally every command
+ * is charged by the bytes it wrote against the budget of the {@link UsbPacer}. Longer pauses are parked,
+ * only the last few microseconds are yielded.
+ *
  * @author Roland von Werden
  *
  */
 public class DeckWorker implements Runnable {
-	
+
 	private static final Logger LOGGER = LogManager.getLogger(DeckWorker.class);
-	
+
+	/**
+	 * Maximum time in ms the worker waits for a new command before checking if the stream deck is still running
+	 */
+	private static final long IDLE_WAIT = 1_000;
+
+	/**
+	 * Remaining pacing time in ns below which the worker yields instead of parking, parking is not precise enough
+	 */
+	private static final long SPIN_THRESHOLD = 50_000;
+
 	StreamDeck streamDeck;
-	
+
+	/**
+	 * Number of commands sent to the ESD
+	 */
+	private volatile long commandsSent = 0;
+
+	/**
+	 * Id of the thread the worker runs on
+	 */
+	private volatile long threadId = -1;
+
+	/**
+	 * Byte budget for the commands sent to the ESD
+	 */
+	private final UsbPacer pacer;
+
 	public DeckWorker(StreamDeck streamDeck) {
 		this.streamDeck = streamDeck;
+		this.pacer = new UsbPacer(streamDeck.getDescriptor().maxBytesPerSecond);
 	}
-	
-	@SuppressWarnings("unused")
+
 	@Override
 	public void run() {
+		this.threadId = Thread.currentThread().getId();
+		long pacing = this.streamDeck.getDescriptor().reportPacingNanos;
+		DeckEncoder encoder = this.streamDeck.getEncoder();
 		long actions = 0;
 		long time = System.currentTimeMillis();
-		long t = 0;
 		while (this.streamDeck.isRunning() || !this.streamDeck.isRunning() && !this.streamDeck.isSendPoolEmpty()) {
-			// Cleanup clogged send pool
-			if(this.streamDeck.getSendPoolSize() > 100) {
-				DeckUpdater[] payloads = new DeckUpdater[this.streamDeck.getKeySize()];
-				DeckUpdater resetTask = null;
-				DeckUpdater brightnessTask = null;
-				DeckUpdater task = null;
-				while ((task = this.streamDeck.pollSendPool()) != null) {
-					if (task.drawImageInterface != null) {
-						payloads[task.keyIndex] = task;
-					}
-					else if(task.featureReportInterface != null)
-						resetTask = task;
-					else if (task.featureReportIntInterface != null) 
-						brightnessTask = task;
-				}
-				if(brightnessTask != null)
-					this.streamDeck.addToSendPool(brightnessTask);
-				if(resetTask != null)
-					this.streamDeck.addToSendPool(resetTask);
-				for (int i = 0; i < payloads.length; i++) {
-					if(payloads[i] != null)
-						this.streamDeck.addToSendPool(payloads[i]);
-				}
+			DeckUpdater task = null;
+			try {
+				task = this.streamDeck.takeSendPool(IDLE_WAIT);
+			} catch (InterruptedException e) {
+				LOGGER.error("DeckWorker interrupted", e);
+				Thread.currentThread().interrupt();
+				return;
 			}
-			t = System.nanoTime();
-			Runnable task = this.streamDeck.pollSendPool();
-			if (task != null) {
-				try {
-					task.run();
-				} catch (Exception e) {
-					LOGGER.error("Error sending the following command-class th the esd: " + task.getClass() );
-					LOGGER.error(e);
-				}
+			if (task == null) {
+				this.sample(encoder);
+				continue;
 			}
-			if (System.nanoTime()-t < 1_000)
-				try {
-					Thread.sleep(1);
-				} catch (InterruptedException e) {
-					LOGGER.error("DeckWorker interrupted", e);
-					Thread.currentThread().interrupt();
-				}
+			long t = System.nanoTime();
+			long bytes = encoder != null ? encoder.getBytesWritten() : 0;
+			long writeNanos = encoder != null ? encoder.getWriteNanos() : 0;
+			try {
+				task.run();
+				long written = System.nanoTime();
+				this.streamDeck.getMetrics().commandWritten(task.queuedNanos, written, encoder != null ? encoder.getWriteNanos() - writeNanos : 0);
+				if (task.getInputArrivalNanos() != 0)
+					this.streamDeck.getMetrics().inputDrawn(task.getInputArrivalNanos(), task.getInputDispatchedNanos(), written);
+				this.streamDeck.commandWritten(task);
+			} catch (Exception e) {
+				this.streamDeck.getMetrics().commandFailed();
+				this.streamDeck.commandFailed(task, e);
+				LOGGER.error("Error sending the following command-class th the esd: " + task.getClass() );
+				LOGGER.error(e);
+			}
+			this.commandsSent++;
 			if(LOGGER.isDebugEnabled()) {
 				actions++;
 				if(System.currentTimeMillis() - time > 30_000) {
 					LOGGER.debug("Commands send per one second: " + (actions/30));
 					LOGGER.debug("Commands send per 30 seconds: " + actions);
 					LOGGER.debug("Send Pool Backlog: " + this.streamDeck.getSendPoolSize());
+					LOGGER.debug("Superseded commands: " + this.streamDeck.getSupersededCount());
+					LOGGER.debug("Skipped commands: " + this.streamDeck.getSkippedCount());
+					LOGGER.debug("Byte budget per second: " + this.pacer.getBytesPerSecond() + " (measured: " + this.pacer.getMeasuredBytesPerSecond() + ")");
+					LOGGER.debug("Queue latency p99 (us): " + this.streamDeck.getMetrics().getQueueLatencyP99Micros());
+					LOGGER.debug("Press to pixel p99 (us): " + this.streamDeck.getMetrics().getPressToPixelP99Micros());
 					time = System.currentTimeMillis();
 					actions = 0;
 				}
 			}
-			while(System.nanoTime()-t < 2_000) {
-				Math.subtractExact(2, 1);
-			}
+			long deadline = t + pacing;
+			if (encoder != null)
+				deadline = Math.max(deadline, this.pacer.charge(t, encoder.getBytesWritten() - bytes, encoder.getWriteNanos() - writeNanos));
+			pace(deadline);
+			this.sample(encoder);
+		}
+	}
+
+	/**
+	 * Updates the rates of the metrics
+	 */
+	private void sample(DeckEncoder encoder) {
+		if (encoder != null)
+			this.streamDeck.getMetrics().sample(System.nanoTime(), encoder.getPagesWritten(), encoder.getBytesWritten());
+	}
+
+	/**
+	 * Waits until the given point in time is reached.
+	 * @param deadline Value of {@link System#nanoTime()} to wait for
+	 */
+	private static void pace(long deadline) {
+		long remaining;
+		while ((remaining = deadline - System.nanoTime()) > 0) {
+			if (remaining > SPIN_THRESHOLD)
+				LockSupport.parkNanos(remaining - SPIN_THRESHOLD);
+			else
+				Thread.yield();
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Returns the number of commands sent to the ESD since the worker was started
+	 * @return Number of commands sent
+	 */
+	public long getCommandsSent() {
+		return this.commandsSent;
+	}
+
+	/**
+	 * Returns the byte budget the commands are paced with
+	 * @return Pacer of this worker
+	 */
+	public UsbPacer getPacer() {
+		return this.pacer;
+	}
+
+	/**
+	 * Returns the id of the thread the worker runs on
+	 * @return Thread id or -1 if the worker was not yet started
+	 */
+	public long getThreadId() {
+		return this.threadId;
+	}
+}
@@ -1,19 +1,29 @@
 package de.rcblum.stream.deck.device.worker;
 
+import java.util.List;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import de.rcblum.stream.deck.device.StreamDeck;
+import de.rcblum.stream.deck.device.components.DialKey;
 import de.rcblum.stream.deck.device.descriptor.KeyType;
+import de.rcblum.stream.deck.device.metrics.InputTrace;
 import de.rcblum.stream.deck.event.KeyEvent;
+import de.rcblum.stream.deck.event.RawKeyListener;
 import de.rcblum.stream.deck.event.StreamKeyListener;
 
 /**
  * Dispatcher that asynchronously sends out all issued {@link KeyEvent}s.
+ * The dispatcher waits parked on the {@link RawEventRing} of the stream deck
+ * while no events arrive and ends when the stream deck is stopped.<br>
+ * Events are taken as primitive values and passed to the
+ * {@link RawKeyListener}s first. A {@link KeyEvent} is created only if a
+ * {@link StreamKeyListener} receives the event.
  * @author Roland von Werden
  *
  */
-public class EventDispatcher implements Runnable {
+public class EventDispatcher implements Runnable, RawKeyListener {
 	
 	private static final Logger LOGGER = LogManager.getLogger(EventDispatcher.class);
 	
@@ -25,35 +35,81 @@ public class EventDispatcher implements Runnable {
 
 	@Override
 	public void run() {
-		while (streamDeck.isRunning() || !streamDeck.isRunning() && !streamDeck.isRecievePoolEmpty()) {
-			if (!streamDeck.isRecievePoolEmpty()) {
-				KeyEvent event = streamDeck.pollRecievePool();
-				if (event == null)
-					continue;
-				int i = event.getKeyId();
-				if (i < this.streamDeck.getKeySize() && this.streamDeck.getKey(i) != null) {
-					dispatchEvent(this.streamDeck.getKey(i), event);
-				}
-				else if (this.streamDeck.getDescriptor().getKey(i).equals(KeyType.TOUCH_SCREEN)) {
-					dispatchEvent(this.streamDeck.getTouchScreen(), event);
-				}
-				else if (this.streamDeck.getDescriptor().getKey(i).equals(KeyType.ROTARY_ENCODER)) {
-							dispatchEvent(this.streamDeck.getDial(i), event);
-				}
-				this.streamDeck.getListeners().stream().forEach(l -> {
-						dispatchEvent(l, event);
-					}
-				);
+		while (this.streamDeck.takeRecievePool(this)) {
+			// Events are dispatched by onRawKeyEvent
+		}
+	}
+
+	@Override
+	public void onRawKeyEvent(int deviceId, int keyId, int type, long nanos, int value1, int value2) {
+		long dispatched = System.nanoTime();
+		this.streamDeck.getMetrics().inputDispatched(dispatched - nanos);
+		// Images drawn by the listeners are traced back to the input report
+		InputTrace.set(nanos, dispatched);
+		try {
+			this.dispatch(deviceId, keyId, type, nanos, dispatched, value1, value2);
+		}
+		finally {
+			InputTrace.clear();
+		}
+	}
+
+	private void dispatch(int deviceId, int keyId, int type, long nanos, long dispatched, int value1, int value2) {
+		RawKeyListener[] rawListeners = this.streamDeck.getRawListeners();
+		for (int i = 0; i < rawListeners.length; i++) {
+			try {
+				rawListeners[i].onRawKeyEvent(deviceId, keyId, type, nanos, value1, value2);
 			}
-			if (streamDeck.isRecievePoolEmpty()) {
+			catch (Exception e) {
+				LOGGER.error("Error sending out raw key events", e);
+			}
+		}
+		ListenerExecutor executor = this.streamDeck.getListenerExecutor();
+		StreamKeyListener target = null;
+		switch (this.streamDeck.getDescriptor().getComponentType(keyId)) {
+		case KeyType.TOUCH_SCREEN_T:
+			target = this.streamDeck.getTouchScreen();
+			break;
+		case KeyType.ROTARY_ENCODER_T:
+			DialKey dial = this.streamDeck.getDial(keyId);
+			if (dial != null && executor == null) {
+				// The dial creates the event only if it has listeners
 				try {
-					Thread.sleep(1);
-				} catch (InterruptedException e) {
-					LOGGER.error("EventDispatcher sleep interrupted", e);
-					Thread.currentThread().interrupt();
+					dial.onRawKeyEvent(deviceId, keyId, type, nanos, value1, value2);
 				}
+				catch (Exception e) {
+					LOGGER.error("Error sending out KeyEvents", e);
+				}
+			}
+			else {
+				target = dial;
 			}
+			break;
+		default:
+			if (keyId < this.streamDeck.getKeySize())
+				target = this.streamDeck.getKey(keyId);
+			break;
 		}
+		List<StreamKeyListener> listeners = this.streamDeck.getListeners();
+		if (target == null && listeners.isEmpty())
+			return;
+		KeyEvent event = KeyEvent.fromRaw(this.streamDeck, keyId, type, nanos, value1, value2);
+		event.setDispatchedNanos(dispatched);
+		dispatchKeyEvent(executor, target, event);
+		for (StreamKeyListener listener : listeners) {
+			if (executor != null)
+				executor.executeForListener(listener, event);
+			else
+				dispatchEvent(listener, event);
+		}
+	}
+	private void dispatchKeyEvent(ListenerExecutor executor, StreamKeyListener listener, KeyEvent event) {
+		if (listener == null)
+			return;
+		if (executor != null)
+			executor.executeForKey(listener, event);
+		else
+			dispatchEvent(listener, event);
 	}
 
 	private void dispatchEvent(StreamKeyListener listener, KeyEvent event) {
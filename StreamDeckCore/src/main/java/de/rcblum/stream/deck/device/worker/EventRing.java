@@ -0,0 +1,101 @@
+package de.rcblum.stream.deck.device.worker;
+
+/**
+ * Bounded ring buffer handing the received {@link de.rcblum.stream.deck.event.KeyEvent}s
+ * from the threads creating them to the event dispatcher. See
+ * {@link AbstractEventRing} for the wait strategy.
+ *
+ * @author Roland von Werden
+ *
+ * @param <E> Type of the events
+ */
+public class EventRing<E> extends AbstractEventRing {
+
+	private final Object[] slots;
+
+	/**
+	 * Creates a ring with the {@link #DEFAULT_CAPACITY}
+	 */
+	public EventRing() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a ring
+	 *
+	 * @param capacity Capacity of the ring, rounded up to a power of two
+	 */
+	public EventRing(int capacity) {
+		super(capacity);
+		this.slots = new Object[this.mask + 1];
+	}
+
+	/**
+	 * Adds the event if the ring is not full
+	 *
+	 * @param event Event to add
+	 * @return <code>true</code> if the event was added, <code>false</code> if
+	 *         the ring is full or closed
+	 */
+	public boolean offer(E event) {
+		if (event == null)
+			throw new NullPointerException("event");
+		synchronized (this.producerLock) {
+			long sequence = this.claim();
+			if (sequence < 0)
+				return false;
+			this.slots[(int) sequence & this.mask] = event;
+			this.publish(sequence);
+		}
+		this.signal();
+		return true;
+	}
+
+	/**
+	 * Adds the event, waiting while the ring is full. The consumer itself
+	 * does not wait for a full ring, it would wait for itself.
+	 *
+	 * @param event Event to add
+	 * @return <code>true</code> if the event was added, <code>false</code> if
+	 *         the ring was closed or the event was dropped
+	 */
+	public boolean put(E event) {
+		while (!this.offer(event)) {
+			if (!this.waitWhileFull())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Takes the next event without waiting. Must only be called by the
+	 * consumer.
+	 *
+	 * @return Next event, <code>null</code> if the ring is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public E poll() {
+		long sequence = this.next();
+		if (sequence < 0)
+			return null;
+		int index = (int) sequence & this.mask;
+		E event = (E) this.slots[index];
+		this.slots[index] = null;
+		this.release(sequence);
+		return event;
+	}
+
+	/**
+	 * Takes the next event, waiting until one is added. Must only be called by
+	 * the consumer.
+	 *
+	 * @return Next event, <code>null</code> if the ring was closed and all
+	 *         events were taken or the consumer was interrupted
+	 */
+	public E take() {
+		E event = this.poll();
+		while (event == null && this.await())
+			event = this.poll();
+		return event;
+	}
+}
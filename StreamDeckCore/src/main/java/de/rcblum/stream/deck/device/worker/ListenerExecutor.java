@@ -0,0 +1,378 @@
+package de.rcblum.stream.deck.device.worker;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.rcblum.stream.deck.device.metrics.DeckMetrics;
+import de.rcblum.stream.deck.device.metrics.InputTrace;
+import de.rcblum.stream.deck.event.KeyEvent;
+import de.rcblum.stream.deck.event.StreamKeyListener;
+
+/**
+ * Runs the listeners of the {@link KeyEvent}s of one stream deck on an
+ * executor instead of the thread of the {@link EventDispatcher}, so a slow
+ * listener, e.g. one starting a program, does not stall the input of the
+ * whole deck.
+ * <br><br>
+ * Events keep their order in lanes. The items, dials and the touch screen
+ * have one lane per key, every registered listener has its own lane. A lane
+ * runs its events one after another, different lanes run in parallel.<br>
+ * The executor uses virtual threads if the Java runtime has them, otherwise a
+ * bounded pool of daemon threads. If the pool and its queue are full, the
+ * dispatcher runs the lane itself, which slows down the input instead of
+ * losing events.
+ * <br><br>
+ * Listeners running longer than the slow threshold are counted in the
+ * {@link DeckMetrics}. Listeners running longer than the timeout are logged
+ * and counted and, if configured, interrupted. A listener that does not end
+ * still blocks its own lane, events are never run out of order.
+ *
+ * @author Roland von Werden
+ *
+ */
+public class ListenerExecutor {
+
+	private static final Logger LOGGER = LogManager.getLogger(ListenerExecutor.class);
+
+	/**
+	 * Default time after that a running listener is reported in ms
+	 */
+	public static final long DEFAULT_TIMEOUT_MILLIS = 5_000;
+
+	/**
+	 * Default time after that a listener is counted as slow in ms
+	 */
+	public static final long DEFAULT_SLOW_MILLIS = 10;
+
+	/**
+	 * Number of events a lane runs before it gives its thread back
+	 */
+	private static final int LANE_BATCH = 16;
+
+	/**
+	 * States of a listener watched for its timeout
+	 */
+	private static final int RUNNING = 0;
+
+	private static final int FINISHED = 1;
+
+	private static final int FIRING = 2;
+
+	private static final int FIRED = 3;
+
+	private static ExecutorService defaultExecutor = null;
+
+	/**
+	 * Set while a thread runs a listener
+	 */
+	private static final ThreadLocal<Boolean> RUNNING_LISTENER = new ThreadLocal<>();
+
+	private final Executor executor;
+
+	private final DeckMetrics metrics;
+
+	/**
+	 * Lanes of the keys, created when first used
+	 */
+	private final Lane[] keyLanes;
+
+	/**
+	 * Lanes of the registered listeners, only accessed by the dispatcher
+	 */
+	private final Map<StreamKeyListener, Lane> listenerLanes = new WeakHashMap<>();
+
+	private volatile long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIMEOUT_MILLIS);
+
+	private volatile long slowNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_MILLIS);
+
+	private volatile boolean interruptOnTimeout = false;
+
+	/**
+	 * Creates the executor for a stream deck using the
+	 * {@link #getDefaultExecutor()}
+	 *
+	 * @param keys    Number of keys including the dials and the touch screen
+	 * @param metrics Metrics of the stream deck
+	 */
+	public ListenerExecutor(int keys, DeckMetrics metrics) {
+		this(getDefaultExecutor(), keys, metrics);
+	}
+
+	/**
+	 * Creates the executor for a stream deck
+	 *
+	 * @param executor Executor running the lanes
+	 * @param keys     Number of keys including the dials and the touch screen
+	 * @param metrics  Metrics of the stream deck
+	 */
+	public ListenerExecutor(Executor executor, int keys, DeckMetrics metrics) {
+		this.executor = executor;
+		this.keyLanes = new Lane[keys];
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Returns the executor shared by the stream decks. It uses a virtual
+	 * thread per task if the runtime supports virtual threads, otherwise a
+	 * bounded pool of daemon threads.
+	 *
+	 * @return Shared executor for the listeners
+	 */
+	public static synchronized ExecutorService getDefaultExecutor() {
+		if (defaultExecutor == null) {
+			defaultExecutor = createVirtualThreadExecutor();
+			if (defaultExecutor == null)
+				defaultExecutor = createPool(Math.max(2, Runtime.getRuntime().availableProcessors()), 256);
+		}
+		return defaultExecutor;
+	}
+
+	/**
+	 * Creates an executor with a virtual thread per task
+	 *
+	 * @return Executor or <code>null</code> if the runtime has no virtual
+	 *         threads
+	 */
+	static ExecutorService createVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			LOGGER.debug("Virtual threads are not available, using a thread pool for the listeners");
+			return null;
+		}
+	}
+
+	/**
+	 * Creates a bounded pool of daemon threads. Tasks exceeding the queue are
+	 * run by the thread submitting them.
+	 *
+	 * @param threads  Maximum number of threads
+	 * @param capacity Capacity of the queue
+	 * @return Pool for the listeners
+	 */
+	static ExecutorService createPool(int threads, int capacity) {
+		AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = r -> {
+			Thread thread = new Thread(r, "StreamDeck-Listener-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(capacity), factory, new ThreadPoolExecutor.CallerRunsPolicy());
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	/**
+	 * Runs the item, dial or touch screen of the key. Events of the same key
+	 * are run in order.
+	 *
+	 * @param listener Item, dial or touch screen of the key
+	 * @param event    Event of the key
+	 */
+	public void executeForKey(StreamKeyListener listener, KeyEvent event) {
+		int keyId = event.getKeyId();
+		Lane lane;
+		if (keyId >= 0 && keyId < this.keyLanes.length) {
+			lane = this.keyLanes[keyId];
+			if (lane == null) {
+				lane = new Lane();
+				this.keyLanes[keyId] = lane;
+			}
+		}
+		else {
+			lane = this.listenerLane(listener);
+		}
+		lane.submit(listener, event);
+	}
+
+	/**
+	 * Runs a registered listener. Events of the same listener are run in
+	 * order.
+	 *
+	 * @param listener Registered listener
+	 * @param event    Event to send
+	 */
+	public void executeForListener(StreamKeyListener listener, KeyEvent event) {
+		this.listenerLane(listener).submit(listener, event);
+	}
+
+	private Lane listenerLane(StreamKeyListener listener) {
+		return this.listenerLanes.computeIfAbsent(listener, l -> new Lane());
+	}
+
+	/**
+	 * Returns if the current thread is running a listener for a
+	 * {@link ListenerExecutor}, images drawn by it are feedback to the user
+	 *
+	 * @return <code>true</code> if the thread runs a listener
+	 */
+	public static boolean isRunningListener() {
+		return RUNNING_LISTENER.get() != null;
+	}
+
+	/**
+	 * Sets the time after that a running listener is reported
+	 *
+	 * @param timeout Timeout, 0 for none
+	 * @param unit    Unit of the timeout
+	 */
+	public void setTimeout(long timeout, TimeUnit unit) {
+		this.timeoutNanos = unit.toNanos(timeout);
+	}
+
+	/**
+	 * @return Time after that a running listener is reported in ms
+	 */
+	public long getTimeoutMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(this.timeoutNanos);
+	}
+
+	/**
+	 * Sets the time after that a listener is counted as slow
+	 *
+	 * @param threshold Threshold
+	 * @param unit      Unit of the threshold
+	 */
+	public void setSlowThreshold(long threshold, TimeUnit unit) {
+		this.slowNanos = unit.toNanos(threshold);
+	}
+
+	/**
+	 * @return Time after that a listener is counted as slow in ms
+	 */
+	public long getSlowThresholdMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(this.slowNanos);
+	}
+
+	/**
+	 * Sets if a listener running longer than the timeout is interrupted
+	 *
+	 * @param interruptOnTimeout <code>true</code> to interrupt the listener
+	 */
+	public void setInterruptOnTimeout(boolean interruptOnTimeout) {
+		this.interruptOnTimeout = interruptOnTimeout;
+	}
+
+	public boolean isInterruptOnTimeout() {
+		return this.interruptOnTimeout;
+	}
+
+	/**
+	 * Calls the listener and measures the time it took
+	 */
+	private void run(StreamKeyListener listener, KeyEvent event) {
+		long timeout = this.timeoutNanos;
+		ScheduledFuture<?> watchdog = null;
+		AtomicInteger state = null;
+		// The watchdog and the cleanup have to agree on interrupting
+		boolean interrupt = this.interruptOnTimeout;
+		if (timeout > 0) {
+			Thread thread = Thread.currentThread();
+			AtomicInteger watched = new AtomicInteger(RUNNING);
+			state = watched;
+			watchdog = DeckScheduler.get().schedule(() -> {
+				// The listener may have finished while the watchdog was started
+				if (!watched.compareAndSet(RUNNING, FIRING))
+					return;
+				if (interrupt)
+					thread.interrupt();
+				this.metrics.handlerTimedOut();
+				watched.set(FIRED);
+				LOGGER.warn("Listener {} is running for more than {} ms on key {}", listener, TimeUnit.NANOSECONDS.toMillis(timeout), event.getKeyId());
+			}, timeout, TimeUnit.NANOSECONDS);
+		}
+		long start = System.nanoTime();
+		RUNNING_LISTENER.set(Boolean.TRUE);
+		// A listener run by the calling thread restores the trace of the caller
+		long arrival = InputTrace.getArrivalNanos();
+		long dispatched = InputTrace.getDispatchedNanos();
+		InputTrace.set(event);
+		try {
+			listener.onKeyEvent(event);
+		}
+		catch (Exception e) {
+			LOGGER.error("Error sending out KeyEvents", e);
+		}
+		finally {
+			InputTrace.set(arrival, dispatched);
+			RUNNING_LISTENER.remove();
+			long duration = System.nanoTime() - start;
+			if (watchdog != null && !state.compareAndSet(RUNNING, FINISHED)) {
+				// Do not carry an interrupt of the watchdog into the next event,
+				// other interrupts are kept
+				while (state.get() != FIRED)
+					Thread.yield();
+				if (interrupt)
+					Thread.interrupted();
+			}
+			else if (watchdog != null) {
+				watchdog.cancel(false);
+			}
+			this.metrics.handlerCompleted(duration, duration > this.slowNanos);
+		}
+	}
+
+	/**
+	 * Events of one key or listener, run one after another
+	 */
+	private final class Lane implements Runnable {
+
+		private final ConcurrentLinkedQueue<Pending> events = new ConcurrentLinkedQueue<>();
+
+		private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+		void submit(StreamKeyListener listener, KeyEvent event) {
+			this.events.add(new Pending(listener, event));
+			if (this.scheduled.compareAndSet(false, true))
+				ListenerExecutor.this.executor.execute(this);
+		}
+
+		@Override
+		public void run() {
+			try {
+				for (int i = 0; i < LANE_BATCH; i++) {
+					Pending next = this.events.poll();
+					if (next == null)
+						break;
+					ListenerExecutor.this.run(next.listener, next.event);
+				}
+			}
+			finally {
+				// Also reached if a listener threw an error, the lane must not stay scheduled
+				this.scheduled.set(false);
+				// Events added while the lane was ending, or left from the batch
+				if (!this.events.isEmpty() && this.scheduled.compareAndSet(false, true))
+					ListenerExecutor.this.executor.execute(this);
+			}
+		}
+	}
+
+	/**
+	 * Event waiting in a lane
+	 */
+	private static final class Pending {
+
+		final StreamKeyListener listener;
+
+		final KeyEvent event;
+
+		Pending(StreamKeyListener listener, KeyEvent event) {
+			this.listener = listener;
+			this.event = event;
+		}
+	}
+}
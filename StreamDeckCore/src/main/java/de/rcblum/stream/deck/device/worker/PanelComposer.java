@@ -0,0 +1,106 @@
+package de.rcblum.stream.deck.device.worker;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import de.rcblum.stream.deck.device.descriptor.DeckDescriptor;
+import de.rcblum.stream.deck.device.descriptor.hidfunctions.DrawImageInterface;
+import de.rcblum.stream.deck.device.worker.DeckUpdater.Priority;
+import de.rcblum.stream.deck.util.IconHelper;
+import de.rcblum.stream.deck.util.SDImage;
+import purejavahidapi.HidDevice;
+
+/**
+ * Renders the images of all keys and the touch screen into one image for the
+ * full display. If most keys change at once, one full image is sent in a
+ * single transfer instead of one transfer per key.
+ * <br><br>
+ * The full image remembers the key images it was composed from, so the
+ * {@link DeckShadow} still knows what each key shows.
+ *
+ * @author Roland von Werden
+ *
+ */
+public class PanelComposer {
+
+	/**
+	 * Descriptor of the stream deck, provides the layout of the full display
+	 */
+	private final DeckDescriptor descriptor;
+
+	/**
+	 * Creates a composer for the layout of the given stream deck
+	 *
+	 * @param descriptor Descriptor of the stream deck
+	 */
+	public PanelComposer(DeckDescriptor descriptor) {
+		this.descriptor = descriptor;
+	}
+
+	/**
+	 * Returns if the stream deck can be drawn with one full image
+	 *
+	 * @return <code>true</code> if the stream deck has a full display
+	 */
+	public boolean isSupported() {
+		return this.descriptor.fullDisplaySize != null && this.descriptor.drawFullImageInterface != null;
+	}
+
+	/**
+	 * Returns if sending a full image is cheaper than sending the changed keys
+	 * one by one.
+	 *
+	 * @param changedKeys Number of keys with a new image
+	 * @return <code>true</code> if more than half of the keys changed
+	 */
+	public boolean isWorthComposing(int changedKeys) {
+		return this.isSupported() && changedKeys * 2 > this.descriptor.getKeySize();
+	}
+
+	/**
+	 * Composes one full image command from the images of all keys and the touch
+	 * screen.
+	 *
+	 * @param hidDevice     Device the command is sent to
+	 * @param drawFullImage Function to send the full image
+	 * @param keyImages     Key image command for every key, indexed by key id
+	 *                      without the offset for sending images
+	 * @param touchScreen   Commands of the regions currently shown on the touch
+	 *                      screen
+	 * @return Full image command, marked as composed from the key images
+	 */
+	public DeckUpdater compose(HidDevice hidDevice, DrawImageInterface drawFullImage, DeckUpdater[] keyImages, List<DeckUpdater> touchScreen) {
+		BufferedImage panel = new BufferedImage(this.descriptor.fullDisplaySize.width, this.descriptor.fullDisplaySize.height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = panel.createGraphics();
+		try {
+			g.setColor(Color.BLACK);
+			g.fillRect(0, 0, panel.getWidth(), panel.getHeight());
+			Priority priority = Priority.HOUSEKEEPING;
+			for (int keyId = 0; keyId < keyImages.length; keyId++) {
+				DeckUpdater keyImage = keyImages[keyId];
+				Rectangle bounds = this.descriptor.getKeyBounds(keyId);
+				if (keyImage.getPriority().compareTo(priority) < 0)
+					priority = keyImage.getPriority();
+				if (bounds != null && keyImage.img != null)
+					g.drawImage(keyImage.img.getVariant(bounds.getSize()).image, bounds.x, bounds.y, null);
+			}
+			Rectangle touchScreenBounds = this.descriptor.getTouchScreenBounds();
+			if (touchScreenBounds != null) {
+				for (DeckUpdater region : touchScreen) {
+					if (region.img != null && region.startPoint != null)
+						g.drawImage(region.img.image, touchScreenBounds.x + region.startPoint.x, touchScreenBounds.y + region.startPoint.y, null);
+				}
+			}
+			SDImage fullImage = IconHelper.convertImage(panel, this.descriptor.fullDisplaySize);
+			return new DeckUpdater(hidDevice, drawFullImage, 0, fullImage, this.descriptor.fullDisplaySize, DeckUpdater.Type.FULL_IMAGE)
+					.withPriority(priority)
+					.composedOf(keyImages);
+		}
+		finally {
+			g.dispose();
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package de.rcblum.stream.deck.device.worker;
+
+import de.rcblum.stream.deck.event.RawKeyListener;
+
+/**
+ * Bounded ring buffer handing the received key events as primitive values
+ * from the input report thread to the event dispatcher. The values are stored
+ * in preallocated arrays, adding and taking an event allocates nothing. See
+ * {@link AbstractEventRing} for the wait strategy.
+ *
+ * @author Roland von Werden
+ *
+ */
+public class RawEventRing extends AbstractEventRing {
+
+	private final int[] keyIds;
+
+	private final int[] types;
+
+	private final long[] nanos;
+
+	private final int[] values1;
+
+	private final int[] values2;
+
+	/**
+	 * Creates a ring with the {@link #DEFAULT_CAPACITY}
+	 */
+	public RawEventRing() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a ring
+	 *
+	 * @param capacity Capacity of the ring, rounded up to a power of two
+	 */
+	public RawEventRing(int capacity) {
+		super(capacity);
+		int size = this.mask + 1;
+		this.keyIds = new int[size];
+		this.types = new int[size];
+		this.nanos = new long[size];
+		this.values1 = new int[size];
+		this.values2 = new int[size];
+	}
+
+	/**
+	 * Adds the event if the ring is not full, see
+	 * {@link RawKeyListener#onRawKeyEvent(int, int, int, long, int, int)} for
+	 * the values
+	 *
+	 * @return <code>true</code> if the event was added, <code>false</code> if
+	 *         the ring is full or closed
+	 */
+	public boolean offer(int keyId, int type, long nanos, int value1, int value2) {
+		synchronized (this.producerLock) {
+			long sequence = this.claim();
+			if (sequence < 0)
+				return false;
+			int index = (int) sequence & this.mask;
+			this.keyIds[index] = keyId;
+			this.types[index] = type;
+			this.nanos[index] = nanos;
+			this.values1[index] = value1;
+			this.values2[index] = value2;
+			this.publish(sequence);
+		}
+		this.signal();
+		return true;
+	}
+
+	/**
+	 * Adds the event, waiting while the ring is full. The consumer itself
+	 * does not wait for a full ring, it would wait for itself.
+	 *
+	 * @return <code>true</code> if the event was added, <code>false</code> if
+	 *         the ring was closed or the event was dropped
+	 */
+	public boolean put(int keyId, int type, long nanos, int value1, int value2) {
+		while (!this.offer(keyId, type, nanos, value1, value2)) {
+			if (!this.waitWhileFull())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Passes the next event to the listener without waiting. Must only be
+	 * called by the consumer.
+	 *
+	 * @param deviceId ID of the stream deck passed to the listener
+	 * @param listener Listener receiving the event
+	 * @return <code>true</code> if an event was passed, <code>false</code> if
+	 *         the ring is empty
+	 */
+	public boolean poll(int deviceId, RawKeyListener listener) {
+		long sequence = this.next();
+		if (sequence < 0)
+			return false;
+		int index = (int) sequence & this.mask;
+		int keyId = this.keyIds[index];
+		int type = this.types[index];
+		long time = this.nanos[index];
+		int value1 = this.values1[index];
+		int value2 = this.values2[index];
+		this.release(sequence);
+		listener.onRawKeyEvent(deviceId, keyId, type, time, value1, value2);
+		return true;
+	}
+
+	/**
+	 * Passes the next event to the listener, waiting until one is added. Must
+	 * only be called by the consumer.
+	 *
+	 * @param deviceId ID of the stream deck passed to the listener
+	 * @param listener Listener receiving the event
+	 * @return <code>false</code> if the ring was closed and all events were
+	 *         taken or the consumer was interrupted
+	 */
+	public boolean take(int deviceId, RawKeyListener listener) {
+		while (!this.poll(deviceId, listener)) {
+			if (!this.await())
+				return this.poll(deviceId, listener);
+		}
+		return true;
+	}
+}
@@ -0,0 +1,118 @@
+package de.rcblum.stream.deck.device.worker;
+
+import de.rcblum.stream.deck.device.descriptor.DeckDescriptor;
+
+/**
+ * Paces the commands sent to the ESD by the number of bytes they emitted
+ * instead of by the number of commands. A key image of one page costs less
+ * than a touch screen image of many pages.
+ * <br><br>
+ * The budget starts at the estimate {@link DeckDescriptor#maxBytesPerSecond}
+ * and is calibrated from the measured time the device needs to accept the
+ * output reports. The budget follows what the device sustains, lower or higher
+ * than the estimate, but never below a tenth and never above
+ * {@link #CEILING_FACTOR} times the estimate.
+ *
+ * @author Roland von Werden
+ *
+ */
+public class UsbPacer {
+
+	/**
+	 * Fraction of the measured throughput that is used as budget
+	 */
+	private static final double HEADROOM = 0.9;
+
+	/**
+	 * Weight of a new measurement in the moving average of the throughput
+	 */
+	private static final double SMOOTHING = 0.1;
+
+	/**
+	 * Minimum number of bytes written by a command to be used for calibration
+	 */
+	private static final long MIN_SAMPLE_BYTES = 1024;
+
+	/**
+	 * Highest budget as multiple of the estimate, bounds the budget if write
+	 * times are measured too short
+	 */
+	public static final int CEILING_FACTOR = 4;
+
+	/**
+	 * Estimated throughput in bytes per second, 0 for no limit
+	 */
+	private final long initialBytesPerSecond;
+
+	/**
+	 * Measured throughput of the device in bytes per second, 0 until measured
+	 */
+	private double measuredBytesPerSecond = 0;
+
+	/**
+	 * Current budget in bytes per second
+	 */
+	private long bytesPerSecond;
+
+	/**
+	 * Point in time ({@link System#nanoTime()}) the bytes charged so far are paid for
+	 */
+	private long paidUntil = 0;
+
+	/**
+	 * Creates a pacer starting with the given budget
+	 *
+	 * @param initialBytesPerSecond Estimated bytes per second, 0 for no limit
+	 */
+	public UsbPacer(long initialBytesPerSecond) {
+		this.initialBytesPerSecond = Math.max(0, initialBytesPerSecond);
+		this.bytesPerSecond = this.initialBytesPerSecond;
+	}
+
+	/**
+	 * Charges the bytes written by one command and returns when the next command
+	 * may be sent.
+	 *
+	 * @param start      Value of {@link System#nanoTime()} when the command was started
+	 * @param bytes      Number of bytes the command wrote to the device
+	 * @param writeNanos Time the device needed to accept the bytes
+	 * @return Value of {@link System#nanoTime()} the next command may be sent at
+	 */
+	public synchronized long charge(long start, long bytes, long writeNanos) {
+		if (this.initialBytesPerSecond == 0 || bytes <= 0)
+			return start;
+		this.calibrate(bytes, writeNanos);
+		long cost = bytes * 1_000_000_000L / this.bytesPerSecond;
+		this.paidUntil = Math.max(this.paidUntil, start) + cost;
+		return this.paidUntil;
+	}
+
+	private void calibrate(long bytes, long writeNanos) {
+		if (bytes < MIN_SAMPLE_BYTES || writeNanos <= 0)
+			return;
+		double sample = bytes * 1_000_000_000.0 / writeNanos;
+		this.measuredBytesPerSecond = this.measuredBytesPerSecond == 0
+				? sample
+				: this.measuredBytesPerSecond + SMOOTHING * (sample - this.measuredBytesPerSecond);
+		long calibrated = (long) (this.measuredBytesPerSecond * HEADROOM);
+		this.bytesPerSecond = Math.max(this.initialBytesPerSecond / 10, Math.min(this.initialBytesPerSecond * CEILING_FACTOR, calibrated));
+	}
+
+	/**
+	 * Returns the current budget
+	 *
+	 * @return Bytes per second, 0 if not limited
+	 */
+	public synchronized long getBytesPerSecond() {
+		return this.bytesPerSecond;
+	}
+
+	/**
+	 * Returns the measured throughput of the device
+	 *
+	 * @return Bytes per second, 0 if not yet measured
+	 */
+	public synchronized long getMeasuredBytesPerSecond() {
+		return (long) this.measuredBytesPerSecond;
+	}
+}
@@ -1,5 +1,6 @@
 package de.rcblum.stream.deck.event;
 
+import java.awt.Point;
 import java.util.EventObject;
 
 import de.rcblum.stream.deck.device.general.IStreamDeck;
@@ -41,6 +42,11 @@ public class KeyEvent extends EventObject {
 	 * 
 	 */
 	private static final long serialVersionUID = 82319643971116963L;
+
+	/**
+	 * Types of the events by their ordinal
+	 */
+	private static final Type[] TYPES = Type.values();
 	
 	/**
 	 * Id of the key
@@ -62,16 +68,117 @@ public class KeyEvent extends EventObject {
 	 */
 	private Object oldValue = null;
 
+	/**
+	 * New value of the key if it was created as int, boxed on request
+	 */
+	private int newIntValue = -1;
+
+	/**
+	 * Old value of the key if it was created as int, boxed on request
+	 */
+	private int oldIntValue = -1;
+
+	/**
+	 * <code>true</code> if the values are stored as int
+	 */
+	private boolean intValues = false;
+
+	/**
+	 * Value of {@link System#nanoTime()} when the event was created, for
+	 * received events when the input report arrived
+	 */
+	private final long createdNanos;
+
+	/**
+	 * Value of {@link System#nanoTime()} when the event was dispatched to the
+	 * listeners, 0 if it was not dispatched from an input report
+	 */
+	private long dispatchedNanos = 0;
+
 	public KeyEvent(IStreamDeck source, int keyId, Type type) {
 		this(source, keyId, type, -1, -1);
 	}
 
+	/**
+	 * Creates an event with int values, e.g. the ticks of a dial. The values are
+	 * only boxed if {@link #getOldValue()} or {@link #getNewValue()} is called.
+	 * 
+	 * @param source   Stream deck the event was created for
+	 * @param keyId    ID of the key
+	 * @param type     Type of the event
+	 * @param oldValue Old value of the key
+	 * @param newValue New value of the key
+	 */
+	public KeyEvent(IStreamDeck source, int keyId, Type type, int oldValue, int newValue) {
+		this(source, keyId, type, oldValue, newValue, System.nanoTime());
+	}
+
+	/**
+	 * Creates an event with int values that was received before
+	 * 
+	 * @param source       Stream deck the event was created for
+	 * @param keyId        ID of the key
+	 * @param type         Type of the event
+	 * @param oldValue     Old value of the key
+	 * @param newValue     New value of the key
+	 * @param createdNanos {@link System#nanoTime()} when the event was received
+	 */
+	public KeyEvent(IStreamDeck source, int keyId, Type type, int oldValue, int newValue, long createdNanos) {
+		super(source);
+		this.keyId = keyId;
+		this.type = type;
+		this.oldIntValue = oldValue;
+		this.newIntValue = newValue;
+		this.intValues = true;
+		this.createdNanos = createdNanos;
+	}
+
 	public KeyEvent(IStreamDeck source, int keyId, Type type, Object oldValue, Object newValue) {
+		this(source, keyId, type, oldValue, newValue, System.nanoTime());
+	}
+
+	private KeyEvent(IStreamDeck source, int keyId, Type type, Object oldValue, Object newValue, long createdNanos) {
 		super(source);
 		this.keyId =  keyId;
 		this.type = type;
 		this.newValue = newValue;
 		this.oldValue = oldValue;
+		this.createdNanos = createdNanos;
+	}
+
+	/**
+	 * Creates the event for the primitive values passed to a
+	 * {@link RawKeyListener}. Points of touch events are unpacked.
+	 * 
+	 * @param source Stream deck the event was created for
+	 * @param keyId  ID of the key
+	 * @param type   Ordinal of the type of the event
+	 * @param nanos  {@link System#nanoTime()} when the event was received
+	 * @param value1 Old value of the key
+	 * @param value2 New value of the key
+	 * @return Event with the values
+	 */
+	public static KeyEvent fromRaw(IStreamDeck source, int keyId, int type, long nanos, int value1, int value2) {
+		Type t = TYPES[type];
+		switch (t) {
+		case ROTATE_LEFT:
+		case ROTATE_RIGHT:
+			return new KeyEvent(source, keyId, t, value1, value2, nanos);
+		case TOUCHED:
+		case TOUCHED_LONG:
+		case SWIPE_LEFT:
+		case SWIPE_RIGHT:
+		case SWIPE_DOWN:
+		case SWIPE_UP:
+		case SWIPED:
+			return new KeyEvent(source, keyId, t, toPoint(value1), toPoint(value2), nanos);
+		default:
+			return new KeyEvent(source, keyId, t, -1, -1, nanos);
+		}
+	}
+
+	private static Point toPoint(int point) {
+		return point == RawKeyListener.NO_POINT ? null : new Point(RawKeyListener.unpackX(point), RawKeyListener.unpackY(point));
 	}
 
 	/**
@@ -103,7 +210,15 @@ public class KeyEvent extends EventObject {
 	 * @return null if not set else a positive integer
 	 */
 	public Object getNewValue() {
-		return newValue;
+		return intValues ? Integer.valueOf(newIntValue) : newValue;
+	}
+
+	/**
+	 * New value of the key without boxing
+	 * @return Value if the event was created with int values, else -1
+	 */
+	public int getNewIntValue() {
+		return newIntValue;
 	}
 
 	/**
@@ -111,7 +226,41 @@ public class KeyEvent extends EventObject {
 	 * @return null if not set else a positive integer
 	 */
 	public Object getOldValue() {
-		return oldValue;
+		return intValues ? Integer.valueOf(oldIntValue) : oldValue;
+	}
+
+	/**
+	 * Old value of the key without boxing
+	 * @return Value if the event was created with int values, else -1
+	 */
+	public int getOldIntValue() {
+		return oldIntValue;
+	}
+	
+	/**
+	 * Returns when the event was created
+	 * @return Value of {@link System#nanoTime()} when the event was created
+	 */
+	public long getCreatedNanos() {
+		return createdNanos;
+	}
+
+	/**
+	 * Returns when the event was dispatched to the listeners
+	 * @return Value of {@link System#nanoTime()} when the event was dispatched,
+	 *         0 if it was not dispatched from an input report
+	 */
+	public long getDispatchedNanos() {
+		return dispatchedNanos;
+	}
+
+	/**
+	 * Sets when the event was dispatched, called by the event dispatcher
+	 * @param dispatchedNanos Value of {@link System#nanoTime()} when the event
+	 *                        was dispatched
+	 */
+	public void setDispatchedNanos(long dispatchedNanos) {
+		this.dispatchedNanos = dispatchedNanos;
 	}
 	
 	/**
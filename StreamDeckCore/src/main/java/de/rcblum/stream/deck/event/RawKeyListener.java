@@ -0,0 +1,74 @@
+package de.rcblum.stream.deck.event;
+
+import de.rcblum.stream.deck.event.KeyEvent.Type;
+
+/**
+ * Low level listener receiving the events of a stream deck as primitive
+ * values. No {@link KeyEvent} is created for a raw listener, so high rate
+ * input like the rotation of dials produces no garbage.
+ * <br><br>
+ * Raw listeners are called by the thread dispatching the events, before the
+ * {@link StreamKeyListener}s, and must return quickly.
+ * <br><br>
+ * The payload depends on the type of the event:
+ * <ul>
+ * <li>{@link Type#ROTATE_LEFT}, {@link Type#ROTATE_RIGHT}: 0 and the number
+ * of ticks</li>
+ * <li>{@link Type#TOUCHED}, {@link Type#TOUCHED_LONG}: {@link #NO_POINT} and
+ * the touched point</li>
+ * <li>Swipes: start and end point of the swipe</li>
+ * <li>Other types: 0 and 0</li>
+ * </ul>
+ * Points are packed into one int, see {@link #packPoint(int, int)}.
+ *
+ * @author Roland von Werden
+ *
+ */
+@FunctionalInterface
+public interface RawKeyListener {
+
+	/**
+	 * Payload for a missing point
+	 */
+	public static final int NO_POINT = -1;
+
+	/**
+	 * Called for every event of the stream deck
+	 *
+	 * @param deviceId ID of the stream deck, see
+	 *                 {@link de.rcblum.stream.deck.device.general.IStreamDeck#getDeviceId()}
+	 * @param keyId    ID of the key
+	 * @param type     Ordinal of the {@link Type} of the event
+	 * @param nanos    {@link System#nanoTime()} when the event was received
+	 * @param value1   First value, the old value of the key
+	 * @param value2   Second value, the new value of the key
+	 */
+	void onRawKeyEvent(int deviceId, int keyId, int type, long nanos, int value1, int value2);
+
+	/**
+	 * Packs a point on the touch screen into one int
+	 *
+	 * @param x Horizontal position, 0 - 65535
+	 * @param y Vertical position, 0 - 65535
+	 * @return Packed point
+	 */
+	public static int packPoint(int x, int y) {
+		return ((x & 0xFFFF) << 16) | (y & 0xFFFF);
+	}
+
+	/**
+	 * @param point Packed point
+	 * @return Horizontal position of the point
+	 */
+	public static int unpackX(int point) {
+		return point >>> 16;
+	}
+
+	/**
+	 * @param point Packed point
+	 * @return Vertical position of the point
+	 */
+	public static int unpackY(int point) {
+		return point & 0xFFFF;
+	}
+}
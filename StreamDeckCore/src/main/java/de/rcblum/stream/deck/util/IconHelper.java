@@ -130,6 +130,12 @@ public class IconHelper {
 	 */	
 	private static int textBoxAlphaValue = 200;
 
+	/**
+	 * Page budget for the JPEG data of key images, <code>null</code> to encode
+	 * with a fixed quality of 85%
+	 */
+	private static volatile JpegBudget jpegBudget = null;
+
 	/**
 	 * Cache for loaded images
 	 */
@@ -198,6 +204,22 @@ public class IconHelper {
 	public static void setRollingTextPadding(int rollingTextPadding) {
 		IconHelper.rollingTextPadding = rollingTextPadding;
 	}
+
+	public static JpegBudget getJpegBudget() {
+		return jpegBudget;
+	}
+
+	/**
+	 * Sets the page budget for key images converted from now on. Already
+	 * converted images keep their encoding.
+	 * 
+	 * @param jpegBudget
+	 *            Budget for the JPEG data of key images, <code>null</code> to
+	 *            encode with a fixed quality of 85%
+	 */
+	public static void setJpegBudget(JpegBudget jpegBudget) {
+		IconHelper.jpegBudget = jpegBudget;
+	}
 		
 	public static SDImage createFolderImage(Color background, boolean applyFrame, Color frameColor) {
 		String folderKey = FOLDER_IMAGE_PREFIX
@@ -411,8 +433,8 @@ public class IconHelper {
 	public static AnimationStack createRollingTextAnimation(SDImage imgData, String text, int pos, float fontSize) {
 		AnimationStack animation = new AnimationStack(AnimationStack.REPEAT_PING_PONG, true, AnimationStack.FRAME_RATE_30, AnimationStack.TRIGGER_AUTO, new SDImage[0]);
 		BufferedImage baseImage = new BufferedImage((int)imgData.image.getWidth(), (int)imgData.image.getHeight(), imgData.image.getType());
-		System.out.println("Create Rolling Animation image Width: " + (int)imgData.image.getWidth());
-		System.out.println("Create Rolling Animation image Height: " + (int)imgData.image.getHeight());
+		logger.debug("Create Rolling Animation image Width: " + (int)imgData.image.getWidth());
+		logger.debug("Create Rolling Animation image Height: " + (int)imgData.image.getHeight());
 		BufferedImage drawOn = new BufferedImage((int)imgData.image.getWidth(), (int)imgData.image.getHeight(), imgData.image.getType());
 		List<SDImage> frames = new LinkedList<>();
 		Graphics2D g2d = baseImage.createGraphics();
@@ -555,12 +577,7 @@ public class IconHelper {
 			imgData[imgDataCount++] = (byte) (pixels[i] & 0xFF);
 			imgData[imgDataCount++] = (byte) ((pixels[i] >> 8) & 0xFF);
 		}
-		byte[] jpegData = null;
-		try {
-		    jpegData = writeToByteArrayOutputStreamAsJpeg85(img).toByteArray();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		byte[] jpegData = encodeJpeg(img);
 		SDImage sdImage = new SDImage(imgData, jpegData, img);
 		cache(path, sdImage);
 		return sdImage.copy();
@@ -608,13 +625,29 @@ public class IconHelper {
 				imgData[imgDataCount++] = (byte) c.getGreen();
 			}
 		}
-		byte[] jpegData = null;
+		byte[] jpegData = encodeJpeg(imgSrc);
+		return new SDImage(imgData, jpegData, imgSrc);
+	}
+
+	/**
+	 * Encodes the image as JPEG for the stream deck. Key images are encoded with
+	 * the {@link #setJpegBudget(JpegBudget) page budget} if one is set, all
+	 * other images with a quality of 85%.
+	 * 
+	 * @param img
+	 *            Image to be encoded
+	 * @return JPEG data or <code>null</code> if the image could not be encoded
+	 */
+	private static byte[] encodeJpeg(BufferedImage img) {
+		JpegBudget budget = jpegBudget;
 		try {
-		    jpegData = writeToByteArrayOutputStreamAsJpeg85(imgSrc).toByteArray();
+			if (budget != null && budget.appliesTo(new Dimension(img.getWidth(), img.getHeight())))
+				return budget.encode(img);
+			return writeToByteArrayOutputStreamAsJpeg85(img).toByteArray();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
-		return new SDImage(imgData, jpegData, imgSrc);
+		return null;
 	}
 
 	public static ByteArrayOutputStream writeToByteArrayOutputStreamAsJpeg(final BufferedImage image) throws IOException {
@@ -0,0 +1,233 @@
+package de.rcblum.stream.deck.util;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import de.rcblum.stream.deck.device.encoder.Rev2Encoder;
+
+/**
+ * Encodes key images as JPEG so that they fit into a given number of pages of
+ * the second generation stream decks. Each page carries
+ * {@link Rev2Encoder#KEY_PAGE_PAYLOAD} bytes of the image, so halving the pages
+ * of an image halves the time it occupies the USB connection.
+ * <br><br>
+ * The quality is searched between {@link #getMinQuality()} and
+ * {@link #getMaxQuality()}, first without and then with chroma subsampling
+ * (4:4:4, 4:2:0). The encoding with the highest quality that fits the budget is
+ * used, on equal quality the one without subsampling. If no encoding fits, the
+ * smallest one is used and the image takes more pages than the budget.
+ * <br><br>
+ * Only images with the size of a key are encoded with the budget, larger
+ * images like touch screen strips or full images are not affected. The budget
+ * is set with {@link IconHelper#setJpegBudget(JpegBudget)}.
+ *
+ * @author Roland von Werden
+ *
+ */
+public class JpegBudget {
+
+	/**
+	 * Largest width and height of a key image, images exceeding it are not
+	 * encoded with the budget
+	 */
+	public static final int MAX_KEY_EDGE = 120;
+
+	/**
+	 * Quality used without a budget
+	 */
+	public static final float DEFAULT_QUALITY = 0.85f;
+
+	/**
+	 * Steps the quality is searched in
+	 */
+	private static final float QUALITY_STEP = 0.05f;
+
+	private static final String JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+
+	private final int pages;
+
+	private final float minQuality;
+
+	private final float maxQuality;
+
+	/**
+	 * Creates a budget searching the quality between <code>minQuality</code> and
+	 * {@link #DEFAULT_QUALITY}
+	 *
+	 * @param pages      Pages each key image should fit in, at least 1
+	 * @param minQuality Lowest quality used, 0.0 .. 1.0
+	 */
+	public JpegBudget(int pages, float minQuality) {
+		this(pages, minQuality, DEFAULT_QUALITY);
+	}
+
+	/**
+	 * Creates a budget
+	 *
+	 * @param pages      Pages each key image should fit in, at least 1
+	 * @param minQuality Lowest quality used, 0.0 .. 1.0
+	 * @param maxQuality Highest quality used, 0.0 .. 1.0
+	 */
+	public JpegBudget(int pages, float minQuality, float maxQuality) {
+		if (pages < 1)
+			throw new IllegalArgumentException("At least one page is needed: " + pages);
+		if (minQuality < 0 || maxQuality > 1 || minQuality > maxQuality)
+			throw new IllegalArgumentException("Invalid quality range: " + minQuality + " .. " + maxQuality);
+		this.pages = pages;
+		this.minQuality = minQuality;
+		this.maxQuality = maxQuality;
+	}
+
+	public int getPages() {
+		return this.pages;
+	}
+
+	public float getMinQuality() {
+		return this.minQuality;
+	}
+
+	public float getMaxQuality() {
+		return this.maxQuality;
+	}
+
+	/**
+	 * @return Maximum size of the JPEG data in bytes
+	 */
+	public int getMaxBytes() {
+		return this.pages * Rev2Encoder.KEY_PAGE_PAYLOAD;
+	}
+
+	/**
+	 * Returns if images of the given size are encoded with the budget
+	 *
+	 * @param size Size of the image
+	 * @return <code>true</code> for key images
+	 */
+	public boolean appliesTo(Dimension size) {
+		return size.width <= MAX_KEY_EDGE && size.height <= MAX_KEY_EDGE;
+	}
+
+	/**
+	 * Encodes the image with the highest quality that fits the budget
+	 *
+	 * @param image Image to be encoded
+	 * @return JPEG data
+	 * @throws IOException if the image could not be encoded
+	 */
+	public byte[] encode(BufferedImage image) throws IOException {
+		BufferedImage withoutAlpha = removeAlpha(image);
+		int maxBytes = this.getMaxBytes();
+		int steps = Math.round((this.maxQuality - this.minQuality) / QUALITY_STEP);
+		byte[] best = null;
+		int bestStep = -1;
+		byte[] smallest = null;
+		for (boolean subsampling : new boolean[] { false, true }) {
+			// Highest step that fits, only steps above the best so far are of interest
+			int low = bestStep + 1;
+			int high = steps;
+			while (low <= high) {
+				int step = (low + high) >>> 1;
+				byte[] data = write(withoutAlpha, this.qualityAt(step, steps), subsampling);
+				if (smallest == null || data.length < smallest.length)
+					smallest = data;
+				if (data.length <= maxBytes) {
+					best = data;
+					bestStep = step;
+					low = step + 1;
+				}
+				else {
+					high = step - 1;
+				}
+			}
+			if (bestStep == steps)
+				break;
+		}
+		if (best != null)
+			return best;
+		// Nothing fits, the lowest quality with subsampling is the smallest encoding
+		byte[] floor = write(withoutAlpha, this.minQuality, true);
+		return floor.length < smallest.length ? floor : smallest;
+	}
+
+	private float qualityAt(int step, int steps) {
+		return step == steps ? this.maxQuality : this.minQuality + step * QUALITY_STEP;
+	}
+
+	@Override
+	public String toString() {
+		return "JpegBudget [pages=" + this.pages + ", minQuality=" + this.minQuality + ", maxQuality=" + this.maxQuality + "]";
+	}
+
+	/**
+	 * Encodes the image as JPEG
+	 *
+	 * @param image       Image to be encoded
+	 * @param quality     Compression quality 0.0 .. 1.0
+	 * @param subsampling <code>true</code> for 4:2:0 chroma subsampling,
+	 *                    <code>false</code> for 4:4:4
+	 * @return JPEG data
+	 * @throws IOException if the image could not be encoded
+	 */
+	public static byte[] writeJpeg(BufferedImage image, float quality, boolean subsampling) throws IOException {
+		return write(removeAlpha(image), quality, subsampling);
+	}
+
+	private static byte[] write(BufferedImage image, float quality, boolean subsampling) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		Iterator<ImageWriter> iter = ImageIO.getImageWritersByFormatName("jpeg");
+		ImageWriter writer = iter.next();
+		try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(os)) {
+			writer.setOutput(output);
+			ImageWriteParam param = writer.getDefaultWriteParam();
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			param.setCompressionQuality(quality);
+			IIOMetadata metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(image), param);
+			setChromaSubsampling(metadata, subsampling);
+			writer.write(null, new IIOImage(image, null, metadata), param);
+		}
+		finally {
+			writer.dispose();
+		}
+		return os.toByteArray();
+	}
+
+	/**
+	 * Sets the sampling factors of the luminance component. The chroma
+	 * components are sampled once per block, so 2x2 luminance samples result in
+	 * 4:2:0 and 1x1 in 4:4:4.
+	 */
+	private static void setChromaSubsampling(IIOMetadata metadata, boolean subsampling) throws IOException {
+		Element tree = (Element) metadata.getAsTree(JPEG_METADATA_FORMAT);
+		NodeList components = tree.getElementsByTagName("componentSpec");
+		if (components.getLength() == 0)
+			return;
+		String factor = subsampling ? "2" : "1";
+		Element luminance = (Element) components.item(0);
+		luminance.setAttribute("HsamplingFactor", factor);
+		luminance.setAttribute("VsamplingFactor", factor);
+		metadata.setFromTree(JPEG_METADATA_FORMAT, tree);
+	}
+
+	private static BufferedImage removeAlpha(BufferedImage image) {
+		if (image.getType() == BufferedImage.TYPE_INT_RGB)
+			return image;
+		BufferedImage withoutAlpha = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+		withoutAlpha.createGraphics().drawImage(image, 0, 0, Color.WHITE, null);
+		return withoutAlpha;
+	}
+}
@@ -2,8 +2,11 @@ package de.rcblum.stream.deck.util;
 
 import java.awt.Dimension;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 /**
  * Class that contains the image data for the StreamDeck and the Image in a
@@ -58,6 +61,21 @@ public class SDImage {
 	public final BufferedImage image;
 	
 	private Map<Dimension, SDImage> variants = new HashMap<Dimension, SDImage>();
+	
+	/**
+	 * Fully paginated HID reports of this image, ready to be sent to the stream deck
+	 */
+	private Map<ReportKey, byte[][]> reports = new ConcurrentHashMap<>();
+	
+	/**
+	 * Last requested reports, served without creating a lookup key
+	 */
+	private volatile ReportKey lastReportKey = null;
+
+	/**
+	 * Hash of the image data, 0 until it is first requested
+	 */
+	private int contentHash = 0;
 
 	public SDImage(byte[] sdImage, byte[] sdImageJpeg, BufferedImage image) {
 		super();
@@ -67,11 +85,19 @@ public class SDImage {
 		this.image = image;
 	}
 	
-	public void putVariant(Dimension imageSize, SDImage image) {
+	public synchronized void putVariant(Dimension imageSize, SDImage image) {
 		this.variants.put(imageSize, image);
 	}
 	
-	public SDImage getVariant(Dimension imageSize) {
+	/**
+	 * Returns this image converted to the given size. The conversion is done
+	 * once and shared by all callers, also by the workers of different stream
+	 * decks drawing the same image.
+	 * 
+	 * @param imageSize Size of the variant
+	 * @return This image if it has the size, otherwise the converted image
+	 */
+	public synchronized SDImage getVariant(Dimension imageSize) {
 		if (this.imageSize.equals(imageSize))
 			return this;
 		if (!variants.containsKey(imageSize)) {
@@ -92,4 +118,108 @@ public class SDImage {
 		return new SDImage(sdImage, sdImageJpeg, IconHelper.copyBufferedImage(this.image));
 	}
 
+	/**
+	 * Returns a hash of the image data. Images with different hashes never show
+	 * the same content.
+	 * 
+	 * @return Hash of the image data
+	 */
+	public int contentHash() {
+		int hash = this.contentHash;
+		if (hash == 0) {
+			hash = Arrays.hashCode(this.sdImageJpeg != null ? this.sdImageJpeg : this.sdImage);
+			hash = hash == 0 ? 1 : hash;
+			this.contentHash = hash;
+		}
+		return hash;
+	}
+
+	/**
+	 * Returns if the given image shows the same content as this image, either
+	 * because it is the same instance or because the image data is equal.
+	 * 
+	 * @param other Image to be compared
+	 * @return <code>true</code> if both images show the same content
+	 */
+	public boolean hasSameContent(SDImage other) {
+		if (this == other)
+			return true;
+		if (other == null || !this.imageSize.equals(other.imageSize) || this.contentHash() != other.contentHash())
+			return false;
+		return Arrays.equals(this.sdImageJpeg, other.sdImageJpeg) && Arrays.equals(this.sdImage, other.sdImage);
+	}
+
+	/**
+	 * Returns the HID reports for this image as they are sent to the stream deck.
+	 * The reports are generated once for every protocol and then served from
+	 * the cache. Key specific bytes have to be patched by the caller in a copy
+	 * of the reports, the returned arrays must not be modified.
+	 * 
+	 * @param revision   Protocol revision of the stream deck
+	 * @param command    Command id of the reports, e.g. key image or full image
+	 * @param pageSize   Size of one report
+	 * @param targetSize Dimension of the image the reports were generated for
+	 * @param generator  Generates the reports if they are not yet cached
+	 * @return Reports for this image
+	 */
+	public byte[][] getReports(int revision, int command, int pageSize, Dimension targetSize, Function<SDImage, byte[][]> generator) {
+		ReportKey last = this.lastReportKey;
+		if (last != null && last.matches(revision, command, pageSize, targetSize))
+			return last.reports;
+		ReportKey key = new ReportKey(revision, command, pageSize, targetSize);
+		key.reports = this.reports.computeIfAbsent(key, k -> generator.apply(this));
+		this.lastReportKey = key;
+		return key.reports;
+	}
+
+	/**
+	 * Key for the report cache
+	 */
+	private static final class ReportKey {
+		
+		private final int revision;
+		
+		private final int command;
+		
+		private final int pageSize;
+		
+		private final int width;
+		
+		private final int height;
+		
+		private byte[][] reports = null;
+
+		private ReportKey(int revision, int command, int pageSize, Dimension targetSize) {
+			this.revision = revision;
+			this.command = command;
+			this.pageSize = pageSize;
+			this.width = targetSize != null ? targetSize.width : -1;
+			this.height = targetSize != null ? targetSize.height : -1;
+		}
+		
+		private boolean matches(int revision, int command, int pageSize, Dimension targetSize) {
+			return this.revision == revision && this.command == command && this.pageSize == pageSize
+					&& (targetSize != null ? this.width == targetSize.width && this.height == targetSize.height : this.width == -1);
+		}
+		
+		@Override
+		public int hashCode() {
+			int result = revision;
+			result = 31 * result + command;
+			result = 31 * result + pageSize;
+			result = 31 * result + width;
+			return 31 * result + height;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof ReportKey))
+				return false;
+			ReportKey other = (ReportKey) obj;
+			return revision == other.revision && command == other.command && pageSize == other.pageSize
+					&& width == other.width && height == other.height;
+		}
+	}
 }
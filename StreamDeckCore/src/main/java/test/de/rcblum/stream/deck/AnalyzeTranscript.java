@@ -0,0 +1,29 @@
+package test.de.rcblum.stream.deck;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import de.rcblum.stream.deck.device.StreamDeck;
+import de.rcblum.stream.deck.device.report.ReportTranscript;
+import de.rcblum.stream.deck.device.report.TranscriptReader;
+
+/**
+ * Prints bandwidth, gaps between reports and frame rates of the keys of a
+ * transcript recorded with {@link StreamDeck#startTranscript(Path)}.
+ *
+ * @author Roland von Werden
+ *
+ * @see ReportTranscript
+ */
+public class AnalyzeTranscript {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: AnalyzeTranscript <transcript>");
+			return;
+		}
+		TranscriptReader reader = new TranscriptReader(Paths.get(args[0]));
+		System.out.print(reader.analyze());
+	}
+}
@@ -0,0 +1,90 @@
+package test.de.rcblum.stream.deck;
+
+import java.awt.Color;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import de.rcblum.stream.deck.device.StreamDeck;
+import de.rcblum.stream.deck.device.StreamDeckDevices;
+import de.rcblum.stream.deck.device.descriptor.DeckDescriptor;
+import de.rcblum.stream.deck.device.general.IStreamDeck;
+import de.rcblum.stream.deck.device.loopback.LoopbackHidDevice;
+import de.rcblum.stream.deck.device.worker.DeckWorker;
+import de.rcblum.stream.deck.util.IconHelper;
+import de.rcblum.stream.deck.util.SDImage;
+
+/**
+ * Measures the CPU time the {@link DeckWorker} uses while the stream deck is
+ * idle and the number of commands per second it sends under full load.
+ * Without a connected stream deck a {@link LoopbackHidDevice} emulating a
+ * Stream Deck Classic Rev2 is used.
+ *
+ * @author Roland von Werden
+ *
+ */
+public class BenchmarkDeckWorker {
+
+	private static final long PHASE_MS = 10_000;
+
+	/**
+	 * Latency of each page of the loopback device in ns
+	 */
+	private static final long LOOPBACK_PAGE_LATENCY = 100_000;
+
+	public static void main(String[] args) throws InterruptedException {
+		System.setProperty("log4j.configurationFile", BenchmarkDeckWorker.class.getResource("/resources/log4j.xml").getFile());
+		StreamDeckDevices.disableSoftwareStreamDeck();
+		IStreamDeck sd = StreamDeckDevices.getStreamDeck();
+		StreamDeck streamDeck;
+		if (sd instanceof StreamDeck) {
+			streamDeck = (StreamDeck) sd;
+		}
+		else {
+			System.out.println("No stream deck connected, using loopback device");
+			DeckDescriptor descriptor = DeckDescriptor.getDescriptorByName("Stream Deck Classic Rev2");
+			LoopbackHidDevice device = new LoopbackHidDevice(descriptor);
+			device.setTiming(LOOPBACK_PAGE_LATENCY, descriptor.maxBytesPerSecond);
+			device.setDecodeImages(false);
+			streamDeck = new StreamDeck(descriptor, device, 99);
+		}
+		DeckWorker worker = streamDeck.getDeckWorker();
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		streamDeck.reset();
+		streamDeck.setBrightness(50);
+		Thread.sleep(1_000);
+
+		// Idle: nothing is queued, the worker should not use any CPU
+		long cpuStart = threads.getThreadCpuTime(worker.getThreadId());
+		Thread.sleep(PHASE_MS);
+		long idleCpu = threads.getThreadCpuTime(worker.getThreadId()) - cpuStart;
+		System.out.println(String.format("Idle:  %.3f %% of one core (%d us CPU in %d ms)",
+				idleCpu / (PHASE_MS * 10_000.0), idleCpu / 1_000, PHASE_MS));
+
+		// Load: keep every key busy with alternating images
+		SDImage[] frames = new SDImage[] {
+				IconHelper.createColoredFrame(Color.RED),
+				IconHelper.createColoredFrame(Color.BLUE)
+		};
+		long sentStart = worker.getCommandsSent();
+		cpuStart = threads.getThreadCpuTime(worker.getThreadId());
+		long start = System.currentTimeMillis();
+		int frame = 0;
+		while (System.currentTimeMillis() - start < PHASE_MS) {
+			if (streamDeck.getSendPoolSize() < streamDeck.getKeySize()) {
+				frame = (frame + 1) % frames.length;
+				for (int i = 0; i < streamDeck.getKeySize(); i++)
+					streamDeck.drawImage(i, frames[frame]);
+			}
+			else {
+				Thread.yield();
+			}
+		}
+		long sent = worker.getCommandsSent() - sentStart;
+		long loadCpu = threads.getThreadCpuTime(worker.getThreadId()) - cpuStart;
+		System.out.println(String.format("Load:  %d commands/s, %.1f %% of one core",
+				sent * 1_000 / PHASE_MS, loadCpu / (PHASE_MS * 10_000.0)));
+		System.out.println("Superseded commands: " + streamDeck.getSupersededCount());
+		streamDeck.stop();
+		System.exit(0);
+	}
+}
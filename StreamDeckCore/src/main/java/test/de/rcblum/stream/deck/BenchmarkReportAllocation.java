@@ -0,0 +1,95 @@
+package test.de.rcblum.stream.deck;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.lang.management.ManagementFactory;
+
+import de.rcblum.stream.deck.device.StreamDeckConstants;
+import de.rcblum.stream.deck.util.IconHelper;
+import de.rcblum.stream.deck.util.SDImage;
+import purejavahidapi.HidDevice;
+import purejavahidapi.HidDeviceInfo;
+
+/**
+ * Measures the bytes allocated per sent page when drawing key images. The
+ * reports are sent to a device that discards them, so only the allocations of
+ * the output path are measured. After the warm up no garbage should be created.
+ *
+ * @author Roland von Werden
+ *
+ */
+public class BenchmarkReportAllocation {
+
+	private static final int WARM_UP = 10_000;
+
+	private static final int ITERATIONS = 100_000;
+
+	public static void main(String[] args) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		CountingDevice device = new CountingDevice("benchmark", (short) 0x006d);
+		Dimension iconSize = new Dimension(72, 72);
+		SDImage[] frames = new SDImage[] {
+				IconHelper.createColoredFrame(Color.RED),
+				IconHelper.createColoredFrame(Color.BLUE)
+		};
+		for (int i = 0; i < WARM_UP; i++)
+			StreamDeckConstants.internalDrawImageRev2(device, i % 15, iconSize, frames[i % 2]);
+		long pagesStart = device.pages;
+		long allocStart = threads.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++)
+			StreamDeckConstants.internalDrawImageRev2(device, i % 15, iconSize, frames[i % 2]);
+		long time = System.nanoTime() - start;
+		long allocated = threads.getThreadAllocatedBytes(threadId) - allocStart;
+		long pages = device.pages - pagesStart;
+		System.out.println(String.format("Pages sent:         %d", pages));
+		System.out.println(String.format("Bytes allocated:    %d", allocated));
+		System.out.println(String.format("Bytes per page:     %.3f", allocated / (double) pages));
+		System.out.println(String.format("Time per page (ns): %d", time / pages));
+	}
+
+	/**
+	 * Device that only counts the reports sent to it
+	 */
+	private static class CountingDevice extends HidDevice {
+
+		long pages = 0;
+
+		CountingDevice(String path, short productId) {
+			this.m_HidDeviceInfo = new HidDeviceInfo() {
+				{
+					this.m_Path = path;
+					this.m_VendorId = (short) 0x0fd9;
+					this.m_ProductId = productId;
+				}
+			};
+		}
+
+		@Override
+		public int setOutputReport(byte reportID, byte[] data, int length) {
+			this.pages++;
+			return length;
+		}
+
+		@Override
+		public int setFeatureReport(byte reportId, byte[] data, int length) {
+			return length;
+		}
+
+		@Override
+		@Deprecated
+		public int setFeatureReport(byte[] data, int length) {
+			return length;
+		}
+
+		@Override
+		public int getFeatureReport(byte[] data, int length) {
+			return 0;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package de.rcblum.stream.deck.device.components;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TouchScreenSurfaceTest {
+
+	private static final int WIDTH = 800;
+
+	private static final int HEIGHT = 100;
+
+	private static void fill(int[] pixels, Rectangle area, int color) {
+		for (int y = area.y; y < area.y + area.height; y++)
+			for (int x = area.x; x < area.x + area.width; x++)
+				pixels[y * WIDTH + x] = color;
+	}
+
+	@Test
+	void testEqualFramesHaveNoChanges() {
+		int[] current = new int[WIDTH * HEIGHT];
+		int[] next = new int[WIDTH * HEIGHT];
+		assertTrue(TouchScreenSurface.findChangedRegions(current, next, WIDTH, HEIGHT, 4).isEmpty());
+	}
+
+	@Test
+	void testChangeUnderOneDial() {
+		int[] current = new int[WIDTH * HEIGHT];
+		int[] next = new int[WIDTH * HEIGHT];
+		fill(next, new Rectangle(240, 60, 50, 20), 0xFFFFFF);
+		List<Rectangle> regions = TouchScreenSurface.findChangedRegions(current, next, WIDTH, HEIGHT, 4);
+		assertEquals(1, regions.size());
+		Rectangle region = regions.get(0);
+		assertTrue(region.contains(new Rectangle(240, 60, 50, 20)));
+		assertTrue(region.width * region.height * 4 < WIDTH * HEIGHT);
+		// Last row of tiles is clipped to the touch screen
+		assertTrue(new Rectangle(WIDTH, HEIGHT).contains(region));
+	}
+
+	@Test
+	void testRegionsAreLimited() {
+		int[] current = new int[WIDTH * HEIGHT];
+		int[] next = new int[WIDTH * HEIGHT];
+		for (int x = 0; x < WIDTH; x += 100)
+			fill(next, new Rectangle(x, 0, 10, 10), 0x00FF00);
+		List<Rectangle> regions = TouchScreenSurface.findChangedRegions(current, next, WIDTH, HEIGHT, 4);
+		assertTrue(regions.size() <= 4);
+		for (int x = 0; x < WIDTH; x += 100) {
+			Rectangle changed = new Rectangle(x, 0, 10, 10);
+			assertTrue(regions.stream().anyMatch(r -> r.contains(changed)));
+		}
+	}
+
+	@Test
+	void testAlphaIsIgnored() {
+		int[] current = new int[WIDTH * HEIGHT];
+		int[] next = new int[WIDTH * HEIGHT];
+		fill(next, new Rectangle(WIDTH, HEIGHT), 0xFF000000);
+		assertTrue(TouchScreenSurface.findChangedRegions(current, next, WIDTH, HEIGHT, 4).isEmpty());
+	}
+}
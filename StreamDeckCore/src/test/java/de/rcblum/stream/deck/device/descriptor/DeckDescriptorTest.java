@@ -0,0 +1,48 @@
+package de.rcblum.stream.deck.device.descriptor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class DeckDescriptorTest {
+
+	@Test
+	void testDescriptorByName() {
+		assertEquals("Stream Deck Plus", DeckDescriptor.getDescriptorByName("Stream Deck Plus").deviceName);
+		assertNull(DeckDescriptor.getDescriptorByName("Stream Deck Unknown"));
+	}
+
+	@Test
+	void testComponentsOfPlus() {
+		DeckDescriptor plus = DeckDescriptor.getDescriptorByName("Stream Deck Plus");
+		assertEquals(KeyType.IMAGE_BUTTON_T, plus.getComponentType(0));
+		assertEquals(KeyType.IMAGE_BUTTON_T, plus.getComponentType(7));
+		assertEquals(KeyType.TOUCH_SCREEN_T, plus.getComponentType(8));
+		assertEquals(KeyType.ROTARY_ENCODER_T, plus.getComponentType(9));
+		assertEquals(0, plus.getComponentType(13));
+		assertEquals(0, plus.getComponentType(-1));
+		assertEquals(8, plus.getTouchScreenKeyId());
+		assertEquals(4, plus.getDialCount());
+		for (int dial = 0; dial < plus.getDialCount(); dial++) {
+			assertEquals(9 + dial, plus.getDialKeyId(dial));
+			assertEquals(dial, plus.getDialIndex(9 + dial));
+		}
+		assertEquals(-1, plus.getDialIndex(3));
+		assertEquals(-1, plus.getDialIndex(8));
+	}
+
+	@Test
+	void testInputReportTypes() {
+		DeckDescriptor plus = DeckDescriptor.getDescriptorByName("Stream Deck Plus");
+		assertEquals(DeckDescriptor.INPUT_REPORT_KEYS, plus.getInputReportType(new byte[] { 0x00, 0x08, 0x00, 1 }, 4));
+		assertEquals(DeckDescriptor.INPUT_REPORT_TOUCH_SCREEN, plus.getInputReportType(new byte[] { 0x02, 0x0E, 0x00, 1 }, 4));
+		assertEquals(DeckDescriptor.INPUT_REPORT_DIALS, plus.getInputReportType(new byte[] { 0x03, 0x05, 0x00, 1 }, 4));
+		// Unknown or truncated reports are treated as key reports
+		assertEquals(DeckDescriptor.INPUT_REPORT_KEYS, plus.getInputReportType(new byte[] { 0x03, 0x06, 0x00, 1 }, 4));
+		assertEquals(DeckDescriptor.INPUT_REPORT_KEYS, plus.getInputReportType(new byte[] { 0x03, 0x05, 0x00 }, 2));
+		DeckDescriptor rev1 = DeckDescriptor.getDescriptorByName("Stream Deck Classic Rev1");
+		assertEquals(DeckDescriptor.INPUT_REPORT_KEYS, rev1.getInputReportType(new byte[] { 0x03, 0x05, 0x00, 1 }, 4));
+		assertEquals(0, rev1.getDialCount());
+		assertEquals(-1, rev1.getTouchScreenKeyId());
+	}
+}
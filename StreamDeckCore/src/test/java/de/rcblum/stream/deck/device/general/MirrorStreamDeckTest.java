@@ -0,0 +1,80 @@
+package de.rcblum.stream.deck.device.general;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import de.rcblum.stream.deck.device.StreamDeck;
+import de.rcblum.stream.deck.device.StreamDeckConstants;
+import de.rcblum.stream.deck.device.descriptor.DeckDescriptor;
+import de.rcblum.stream.deck.device.loopback.LoopbackHidDevice;
+import de.rcblum.stream.deck.event.KeyEvent;
+import de.rcblum.stream.deck.util.SDImage;
+import de.rcblum.stream.deck.util.TestImages;
+
+class MirrorStreamDeckTest {
+
+	@Test
+	void testDrawIsSharedByAllDecks() throws Exception {
+		String[] names = { "Stream Deck Classic Rev2", "Stream Deck Classic Rev2", "Stream Deck Classic Rev1" };
+		List<LoopbackHidDevice> devices = new ArrayList<>();
+		List<StreamDeck> decks = new ArrayList<>();
+		for (String name : names) {
+			LoopbackHidDevice device = new LoopbackHidDevice(DeckDescriptor.getDescriptorByName(name));
+			devices.add(device);
+			decks.add(new StreamDeck(device.getDescriptor(), device, 50));
+		}
+		MirrorStreamDeck mirror = new MirrorStreamDeck(decks);
+		try {
+			SDImage image = TestImages.filled(Color.GREEN, 144);
+			mirror.drawImageAsync(5, image).get(10, TimeUnit.SECONDS);
+			for (LoopbackHidDevice device : devices) {
+				BufferedImage drawn = device.getKeyImage(5);
+				assertNotNull(drawn, device.getDescriptor().deviceName);
+				Color color = new Color(drawn.getRGB(36, 36));
+				assertTrue(color.getGreen() > 200 && color.getRed() < 40, "color " + color);
+			}
+			// One variant for all decks, its reports were generated before the decks drew it
+			Dimension iconSize = new Dimension(72, 72);
+			SDImage variant = image.getVariant(iconSize);
+			assertNotNull(variant.getReports(StreamDeckConstants.PROTOCOL_REV2, 0x07, StreamDeckConstants.PAGE_PACKET_SIZE_REV2, iconSize, i -> null));
+			assertNotNull(variant.getReports(StreamDeckConstants.PROTOCOL_REV1, 0x01, StreamDeckConstants.PAGE_PACKET_SIZE_REV1, iconSize, i -> null));
+			assertEquals(3, mirror.getDecks().size());
+			assertSame(decks.get(0).getDescriptor(), mirror.getDescriptor());
+		}
+		finally {
+			mirror.stop();
+		}
+	}
+
+	@Test
+	void testEventsOfAllDecks() throws Exception {
+		LoopbackHidDevice first = new LoopbackHidDevice(DeckDescriptor.getDescriptorByName("Stream Deck Classic Rev2"));
+		LoopbackHidDevice second = new LoopbackHidDevice(DeckDescriptor.getDescriptorByName("Stream Deck Classic Rev2"));
+		MirrorStreamDeck mirror = new MirrorStreamDeck(new StreamDeck(first.getDescriptor(), first, 50), new StreamDeck(second.getDescriptor(), second, 50));
+		try {
+			BlockingQueue<KeyEvent> events = new ArrayBlockingQueue<>(10);
+			assertTrue(mirror.addKeyListener(events::add));
+			second.pressKey(2);
+			KeyEvent pressed = events.poll(10, TimeUnit.SECONDS);
+			assertNotNull(pressed);
+			assertEquals(2, pressed.getKeyId());
+			assertSame(mirror.getDecks().get(1), pressed.getSource());
+			mirror.setBrightnessAsync(30).get(10, TimeUnit.SECONDS);
+			assertEquals(30, first.getBrightness());
+			assertEquals(30, second.getBrightness());
+		}
+		finally {
+			mirror.stop();
+		}
+	}
+}
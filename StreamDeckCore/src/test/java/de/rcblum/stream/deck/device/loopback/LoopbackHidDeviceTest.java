@@ -0,0 +1,119 @@
+package de.rcblum.stream.deck.device.loopback;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import de.rcblum.stream.deck.device.StreamDeck;
+import de.rcblum.stream.deck.device.descriptor.DeckDescriptor;
+import de.rcblum.stream.deck.device.encoder.DeckEncoder;
+import de.rcblum.stream.deck.device.worker.DeckUpdater;
+import de.rcblum.stream.deck.event.KeyEvent;
+import de.rcblum.stream.deck.util.IconHelper;
+import de.rcblum.stream.deck.util.SDImage;
+import de.rcblum.stream.deck.util.TestImages;
+
+class LoopbackHidDeviceTest {
+
+	private static void assertColor(Color expected, int rgb) {
+		Color actual = new Color(rgb);
+		assertTrue(Math.abs(expected.getRed() - actual.getRed()) < 16, "red of " + actual);
+		assertTrue(Math.abs(expected.getGreen() - actual.getGreen()) < 16, "green of " + actual);
+		assertTrue(Math.abs(expected.getBlue() - actual.getBlue()) < 16, "blue of " + actual);
+	}
+
+	@Test
+	void testKeyImagesAreDecoded() throws Exception {
+		for (String name : new String[] { "Stream Deck Classic Rev1", "Stream Deck Classic Rev2" }) {
+			LoopbackHidDevice device = new LoopbackHidDevice(DeckDescriptor.getDescriptorByName(name));
+			StreamDeck streamDeck = new StreamDeck(device.getDescriptor(), device, 50);
+			try {
+				streamDeck.drawImageAsync(3, IconHelper.convertImage(TestImages.filledImage(Color.RED, 72))).get(10, TimeUnit.SECONDS);
+				streamDeck.setBrightnessAsync(40).get(10, TimeUnit.SECONDS);
+				BufferedImage image = device.getKeyImage(3);
+				assertNotNull(image, name);
+				assertEquals(device.getDescriptor().iconSize.width, image.getWidth());
+				assertColor(Color.RED, image.getRGB(36, 36));
+				assertNull(device.getKeyImage(2));
+				assertEquals(40, device.getBrightness());
+			}
+			finally {
+				streamDeck.stop();
+			}
+		}
+	}
+
+	@Test
+	void testSendPoolCommandsAreRecorded() throws Exception {
+		LoopbackHidDevice device = new LoopbackHidDevice(DeckDescriptor.getDescriptorByName("Stream Deck Classic Rev2"));
+		StreamDeck streamDeck = new StreamDeck(device.getDescriptor(), device, 50);
+		try {
+			SDImage red = IconHelper.convertImage(TestImages.filledImage(Color.RED, 72));
+			streamDeck.drawImageAsync(3, red).get(10, TimeUnit.SECONDS);
+			DeckDescriptor descriptor = device.getDescriptor();
+			streamDeck.addToSendPool(new DeckUpdater(device, descriptor.drawImageInterface, 3 + descriptor.drawImageKeyOffset,
+					IconHelper.convertImage(TestImages.filledImage(Color.BLUE, 72)), descriptor.iconSize));
+			streamDeck.flush().get(10, TimeUnit.SECONDS);
+			assertColor(Color.BLUE, device.getKeyImage(3).getRGB(36, 36));
+			// The shadow knows the key shows blue, so red is sent again
+			streamDeck.drawImageAsync(3, red).get(10, TimeUnit.SECONDS);
+			assertColor(Color.RED, device.getKeyImage(3).getRGB(36, 36));
+		}
+		finally {
+			streamDeck.stop();
+		}
+	}
+
+	@Test
+	void testInjectedKeyPress() throws Exception {
+		LoopbackHidDevice device = new LoopbackHidDevice(DeckDescriptor.getDescriptorByName("Stream Deck Classic Rev2"));
+		StreamDeck streamDeck = new StreamDeck(device.getDescriptor(), device, 50);
+		try {
+			BlockingQueue<KeyEvent> events = new ArrayBlockingQueue<>(10);
+			streamDeck.addKeyListener(events::add);
+			device.pressKey(4);
+			device.releaseKey(4);
+			KeyEvent pressed = events.poll(10, TimeUnit.SECONDS);
+			KeyEvent released = events.poll(10, TimeUnit.SECONDS);
+			assertNotNull(released);
+			assertEquals(4, pressed.getKeyId());
+			assertEquals(KeyEvent.Type.PRESSED, pressed.getType());
+			assertEquals(4, released.getKeyId());
+			assertEquals(KeyEvent.Type.RELEASED_CLICKED, released.getType());
+		}
+		finally {
+			streamDeck.stop();
+		}
+	}
+
+	@Test
+	void testEncoderIsReleasedOnStop() {
+		LoopbackHidDevice device = new LoopbackHidDevice(DeckDescriptor.getDescriptorByName("Stream Deck Classic Rev2"));
+		StreamDeck streamDeck = new StreamDeck(device.getDescriptor(), device, 50);
+		assertNotNull(DeckEncoder.forDevice(device, d -> null));
+		streamDeck.stop();
+		assertNull(DeckEncoder.forDevice(device, d -> null));
+		DeckEncoder.release(device);
+	}
+
+	@Test
+	void testTimingIsEmulated() {
+		LoopbackHidDevice device = new LoopbackHidDevice(DeckDescriptor.getDescriptorByName("Stream Deck Classic Rev2"));
+		byte[] page = new byte[1023];
+		device.setTiming(1_000_000, 1024 * 1000);
+		long start = System.nanoTime();
+		for (int i = 0; i < 5; i++)
+			device.setOutputReport((byte) 0x02, page, page.length);
+		long elapsed = System.nanoTime() - start;
+		// 1 ms latency and 1 ms transfer for each page
+		assertTrue(elapsed >= 10_000_000, "elapsed " + elapsed);
+		assertEquals(5, device.getOutputReportCount());
+		assertEquals(5 * 1024, device.getBytesReceived());
+	}
+}
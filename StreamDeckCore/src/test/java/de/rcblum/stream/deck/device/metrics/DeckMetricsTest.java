@@ -0,0 +1,83 @@
+package de.rcblum.stream.deck.device.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import de.rcblum.stream.deck.device.StreamDeck;
+import de.rcblum.stream.deck.device.descriptor.DeckDescriptor;
+import de.rcblum.stream.deck.device.loopback.LoopbackHidDevice;
+import de.rcblum.stream.deck.event.KeyEvent.Type;
+import de.rcblum.stream.deck.util.SDImage;
+import de.rcblum.stream.deck.util.TestImages;
+
+class DeckMetricsTest {
+
+	@Test
+	void testRatesAreSampledPerSecond() {
+		DeckMetrics metrics = new DeckMetrics(null);
+		metrics.sample(1_000, 0, 0);
+		metrics.sample(500_000_000, 10, 10_000);
+		assertEquals(0, metrics.getPagesPerSecond());
+		metrics.sample(2_000_001_000L, 40, 40_000);
+		assertEquals(20, metrics.getPagesPerSecond(), 0.001);
+		assertEquals(20_000, metrics.getBytesPerSecond(), 0.001);
+	}
+
+	@Test
+	void testCommandLatencies() {
+		DeckMetrics metrics = new DeckMetrics(null);
+		metrics.commandWritten(1_000, 3_001_000, 500_000);
+		metrics.commandWritten(0, 10_000, 500_000);
+		metrics.commandFailed();
+		assertEquals(2, metrics.getCommandsWritten());
+		assertEquals(1, metrics.getCommandsFailed());
+		// Commands without queue time are not part of the queue latency
+		assertEquals(1, metrics.getQueueLatency().getCount());
+		assertEquals(3_000, metrics.getQueueLatencyMaxMicros());
+		assertEquals(500, metrics.getOutputReportMeanMicros(), 0.001);
+	}
+
+	@Test
+	void testPressToPixel() throws Exception {
+		DeckDescriptor descriptor = DeckDescriptor.getDescriptorByName("Stream Deck Plus");
+		LoopbackHidDevice device = new LoopbackHidDevice(descriptor);
+		StreamDeck deck = new StreamDeck(descriptor, device, 50);
+		try {
+			SDImage[] images = { TestImages.filled(Color.RED, 120), TestImages.filled(Color.GREEN, 120), TestImages.filled(Color.BLUE, 120) };
+			// Not caused by input
+			deck.drawImageAsync(1, images[0]).get(10, TimeUnit.SECONDS);
+			assertEquals(0, deck.getMetrics().getPressToPixel().getCount());
+			deck.addKeyListener(e -> {
+				if (e.getType() == Type.PRESSED) {
+					assertTrue(e.getDispatchedNanos() - e.getCreatedNanos() >= 0);
+					assertEquals(e.getCreatedNanos(), InputTrace.getArrivalNanos());
+					deck.drawImage(e.getKeyId(), images[e.getKeyId()]);
+				}
+			});
+			device.pressKey(1);
+			device.releaseKey(1);
+			waitForPressToPixel(deck.getMetrics(), 1);
+			// Listeners run by the executor trace their images as well
+			deck.setAsyncDispatch(true);
+			device.pressKey(2);
+			device.releaseKey(2);
+			waitForPressToPixel(deck.getMetrics(), 2);
+			assertEquals(2, deck.getMetrics().getDispatchToPixel().getCount());
+			assertTrue(deck.getMetrics().getPressToPixelMaxMicros() >= deck.getMetrics().getDispatchToPixel().getMax() / 1000);
+		}
+		finally {
+			deck.stop();
+		}
+	}
+
+	private static void waitForPressToPixel(DeckMetrics metrics, long count) throws InterruptedException {
+		long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (metrics.getPressToPixel().getCount() < count && System.nanoTime() < end)
+			Thread.sleep(1);
+		assertEquals(count, metrics.getPressToPixel().getCount());
+	}
+}
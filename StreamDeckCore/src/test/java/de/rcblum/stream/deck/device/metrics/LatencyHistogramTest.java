@@ -0,0 +1,47 @@
+package de.rcblum.stream.deck.device.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+	@Test
+	void testSmallValuesAreExact() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 10; i++)
+			histogram.record(i);
+		assertEquals(10, histogram.getCount());
+		assertEquals(5.5, histogram.getMean(), 0.001);
+		assertEquals(5, histogram.getValueAtPercentile(50));
+		assertEquals(10, histogram.getValueAtPercentile(100));
+		assertEquals(10, histogram.getMax());
+	}
+
+	@Test
+	void testRelativeErrorOfLargeValues() {
+		for (long value = 33; value < Long.MAX_VALUE / 3; value = value * 3 + 7) {
+			int index = LatencyHistogram.indexOf(value);
+			long highest = LatencyHistogram.highestValueOf(index);
+			assertTrue(highest >= value, "Bucket of " + value + " ends at " + highest);
+			assertTrue(highest - value <= value / 16, "Bucket of " + value + " ends at " + highest);
+			assertEquals(index, LatencyHistogram.indexOf(highest));
+		}
+	}
+
+	@Test
+	void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 990; i++)
+			histogram.record(1_000_000);
+		for (int i = 0; i < 10; i++)
+			histogram.record(50_000_000);
+		long p50 = histogram.getValueAtPercentile(50);
+		long p999 = histogram.getValueAtPercentile(99.9);
+		assertTrue(p50 >= 1_000_000 && p50 < 1_070_000);
+		assertEquals(50_000_000, p999);
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getValueAtPercentile(99));
+	}
+}
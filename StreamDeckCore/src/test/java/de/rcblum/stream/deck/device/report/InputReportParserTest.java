@@ -0,0 +1,113 @@
+package de.rcblum.stream.deck.device.report;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import de.rcblum.stream.deck.device.descriptor.DeckDescriptor;
+import de.rcblum.stream.deck.event.KeyEvent.Type;
+
+class InputReportParserTest {
+
+	private static final DeckDescriptor PLUS = DeckDescriptor.getDescriptorByName("Stream Deck Plus");
+
+	private static byte[] report(int... bytes) {
+		byte[] report = new byte[64];
+		for (int i = 0; i < bytes.length; i++)
+			report[i] = (byte) bytes[i];
+		return report;
+	}
+
+	/**
+	 * Records the calls as strings
+	 */
+	private static class Recorder implements InputReportParser.Handler {
+
+		final List<String> calls = new ArrayList<>();
+
+		@Override
+		public void keyChanged(int keyId, boolean pressed) {
+			this.calls.add("key " + keyId + " " + pressed);
+		}
+
+		@Override
+		public void dialRotated(int keyId, int ticks) {
+			this.calls.add("dial " + keyId + " " + ticks);
+		}
+
+		@Override
+		public void touched(int keyId, Type type, int startX, int startY, int endX, int endY) {
+			this.calls.add(type + " " + keyId + " " + startX + "," + startY + " " + endX + "," + endY);
+		}
+	}
+
+	@Test
+	void testKeysAndDials() {
+		Recorder recorder = new Recorder();
+		InputReportParser parser = new InputReportParser(PLUS, recorder);
+		assertEquals(InputReportParser.REPORT_KEYS, parser.parse((byte) 1, report(0x00, 0x08, 0x00, 0, 1, 0, 1), 64));
+		// Unchanged keys are not reported again
+		parser.parse((byte) 1, report(0x00, 0x08, 0x00, 0, 1, 0, 0), 64);
+		assertEquals(InputReportParser.REPORT_DIALS, parser.parse((byte) 1, report(0x03, 0x05, 0x00, 1, 0, -2, 0, 3), 64));
+		parser.parse((byte) 1, report(0x03, 0x05, 0x00, 0, 1, 0, 0, 0), 64);
+		// Other report IDs are ignored
+		assertEquals(0, parser.parse((byte) 2, report(0x00, 0x08, 0x00, 1, 1, 1, 1), 64));
+		int dial = PLUS.getSpecialKeyOffset() + 1;
+		assertEquals(
+				"[key 1 true, key 3 true, key 3 false, dial " + (dial + 1) + " -2, dial " + (dial + 3) + " 3, key " + dial + " true]",
+				recorder.calls.toString());
+	}
+
+	@Test
+	void testTouchScreen() {
+		Recorder recorder = new Recorder();
+		InputReportParser parser = new InputReportParser(PLUS, recorder);
+		int touchScreen = PLUS.getSpecialKeyOffset();
+		parser.parse((byte) 1, report(0x02, 0x0E, 0x00, 0x01, 0, 0x2C, 0x01, 50), 64);
+		parser.parse((byte) 1, report(0x02, 0x0E, 0x00, 0x03, 0, 10, 0, 50, 0, 0x2C, 0x01, 55), 64);
+		assertEquals("[TOUCHED " + touchScreen + " 300,50 -1,-1, SWIPE_LEFT " + touchScreen + " 10,50 300,55]", recorder.calls.toString());
+		assertEquals(Type.SWIPE_RIGHT, InputReportParser.swipeType(790, 50, 400, 40));
+		assertEquals(Type.SWIPE_UP, InputReportParser.swipeType(400, 90, 410, 10));
+		assertEquals(Type.SWIPE_DOWN, InputReportParser.swipeType(400, 10, 410, 90));
+		assertEquals(Type.SWIPED, InputReportParser.swipeType(400, 50, 500, 50));
+	}
+
+	@Test
+	void testNoAllocation() {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		int[] events = new int[1];
+		InputReportParser parser = new InputReportParser(PLUS, new InputReportParser.Handler() {
+			@Override
+			public void keyChanged(int keyId, boolean pressed) {
+				events[0]++;
+			}
+
+			@Override
+			public void dialRotated(int keyId, int ticks) {
+				events[0]++;
+			}
+
+			@Override
+			public void touched(int keyId, Type type, int startX, int startY, int endX, int endY) {
+				events[0]++;
+			}
+		});
+		byte[] down = report(0x00, 0x08, 0x00, 1);
+		byte[] up = report(0x00, 0x08, 0x00, 0);
+		byte[] rotate = report(0x03, 0x05, 0x00, 1, 1);
+		long threadId = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < 100_000; i++) {
+			parser.parse((byte) 1, down, 64);
+			parser.parse((byte) 1, up, 64);
+			parser.parse((byte) 1, rotate, 64);
+		}
+		long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+		assertEquals(300_000, events[0]);
+		assertTrue(allocated < 4096, "allocated " + allocated);
+	}
+}
@@ -0,0 +1,118 @@
+package de.rcblum.stream.deck.device.report;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import purejavahidapi.HidDevice;
+
+class ReportTranscriptTest {
+
+	private static final long MS = 1_000_000;
+
+	private static byte[] keyPage(int key, boolean last) {
+		byte[] payload = new byte[1023];
+		payload[0] = 0x07;
+		payload[1] = (byte) key;
+		payload[2] = (byte) (last ? 1 : 0);
+		return payload;
+	}
+
+	private static Path record() throws IOException {
+		Path file = Files.createTempFile("transcript", ".sdtr");
+		try (ReportTranscript transcript = new ReportTranscript(file)) {
+			transcript.record(ReportTranscript.FEATURE_REPORT, 0, (byte) 0x03, new byte[] { 0x08, 50 }, 2);
+			for (int frame = 0; frame < 10; frame++) {
+				transcript.record(ReportTranscript.OUTPUT_REPORT, (frame * 100 + 10) * MS, (byte) 0x02, keyPage(4, false), 1023);
+				transcript.record(ReportTranscript.OUTPUT_REPORT, (frame * 100 + 20) * MS, (byte) 0x02, keyPage(4, true), 1023);
+			}
+			transcript.record(ReportTranscript.OUTPUT_REPORT, 1000 * MS, (byte) 0x02, keyPage(7, true), 1023);
+			assertEquals(22, transcript.getRecordCount());
+		}
+		return file;
+	}
+
+	@Test
+	void testStatistics() throws IOException {
+		Path file = record();
+		try {
+			assertEquals(8 + 22 * 14 + 2 + 21 * 1023 + 1, Files.size(file));
+			TranscriptReader.Statistics statistics = new TranscriptReader(file).analyze();
+			assertEquals(21, statistics.getOutputReports());
+			assertEquals(1, statistics.getFeatureReports());
+			assertEquals(21 * 1024, statistics.getBytes());
+			assertEquals(1000 * MS, statistics.getDurationNanos());
+			assertEquals(21 * 1024, statistics.getBytesPerSecond(), 0.001);
+			assertEquals(10, statistics.getKeyFrames().get(4).longValue());
+			assertEquals(10.0, statistics.getFramesPerSecond(4), 0.001);
+			assertEquals(1.0, statistics.getFramesPerSecond(7), 0.001);
+			assertEquals(21, statistics.getGaps().getCount());
+			assertEquals(90 * MS, statistics.getGaps().getMax(), 90 * MS / 16);
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	void testReplay() throws IOException {
+		Path file = record();
+		try {
+			List<Byte> reports = new ArrayList<>();
+			HidDevice device = new HidDevice() {
+				@Override
+				public int setOutputReport(byte reportId, byte[] data, int length) {
+					reports.add(data[1]);
+					return length;
+				}
+
+				@Override
+				public int setFeatureReport(byte reportId, byte[] data, int length) {
+					reports.add(reportId);
+					return length;
+				}
+
+				@Override
+				@Deprecated
+				public int setFeatureReport(byte[] data, int length) {
+					return length;
+				}
+
+				@Override
+				public int getFeatureReport(byte[] data, int length) {
+					return 0;
+				}
+
+				@Override
+				public void close() {
+				}
+			};
+			new TranscriptReader(file).replay(device, false);
+			assertEquals(22, reports.size());
+			assertEquals(0x03, reports.get(0).byteValue());
+			assertEquals(4, reports.get(1).byteValue());
+			assertEquals(7, reports.get(21).byteValue());
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	void testNoTranscript() throws IOException {
+		Path file = Files.createTempFile("transcript", ".sdtr");
+		try {
+			Files.write(file, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 });
+			assertThrows(IOException.class, () -> new TranscriptReader(file));
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+}
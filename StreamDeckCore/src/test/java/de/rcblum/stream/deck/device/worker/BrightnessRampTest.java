@@ -0,0 +1,89 @@
+package de.rcblum.stream.deck.device.worker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import de.rcblum.stream.deck.device.worker.BrightnessRamp.Easing;
+
+class BrightnessRampTest {
+
+	private static final long MS = 1_000_000;
+
+	private final List<Integer> levels = new ArrayList<>();
+
+	private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+	private BrightnessRamp ramp() {
+		return new BrightnessRamp(DeckScheduler.get(), (level, last) -> {
+			this.levels.add(level);
+			return last ? this.written : null;
+		}, 0);
+	}
+
+	@Test
+	void testRampLandsOnTarget() {
+		BrightnessRamp ramp = ramp();
+		CompletableFuture<Void> future = ramp.start(0, 80, 100, Easing.LINEAR, 0);
+		assertEquals(40, ramp.step(50 * MS));
+		// The last step is sent even if the scheduler is late
+		assertEquals(80, ramp.step(250 * MS));
+		assertFalse(ramp.isRunning());
+		assertEquals(-1, ramp.step(300 * MS));
+		assertFalse(future.isDone());
+		this.written.complete(null);
+		assertTrue(future.isDone());
+		assertEquals(2, this.levels.size());
+	}
+
+	@Test
+	void testUnchangedLevelIsNotSent() {
+		BrightnessRamp ramp = ramp();
+		ramp.start(10, 12, 1000, Easing.LINEAR, 0);
+		assertEquals(-1, ramp.step(100 * MS));
+		assertEquals(11, ramp.step(500 * MS));
+		assertEquals(-1, ramp.step(600 * MS));
+		assertEquals(1, this.levels.size());
+	}
+
+	@Test
+	void testNewRampCancelsRunningRamp() {
+		BrightnessRamp ramp = ramp();
+		CompletableFuture<Void> first = ramp.start(0, 99, 1000, Easing.EASE_IN_OUT, 0);
+		CompletableFuture<Void> second = ramp.start(50, 0, 0, Easing.EASE_OUT, 0);
+		assertTrue(first.isCancelled());
+		assertEquals(0, this.levels.get(0).intValue());
+		this.written.complete(null);
+		assertTrue(second.isDone());
+		assertFalse(ramp.isRunning());
+	}
+
+	@Test
+	void testEasingCurves() {
+		for (Easing easing : Easing.values()) {
+			assertEquals(0.0, easing.apply(0), 1e-9);
+			assertEquals(1.0, easing.apply(1), 1e-9);
+		}
+		assertTrue(Easing.EASE_IN.apply(0.5) < 0.5);
+		assertTrue(Easing.EASE_OUT.apply(0.5) > 0.5);
+		assertEquals(50, BrightnessRamp.levelAt(100, 0, 0.5, Easing.EASE_IN_OUT));
+	}
+
+	@Test
+	void testLevelsAreSentWithoutRampLock() {
+		BrightnessRamp[] ramp = new BrightnessRamp[1];
+		List<Boolean> locked = new ArrayList<>();
+		ramp[0] = new BrightnessRamp(DeckScheduler.get(), (level, last) -> {
+			locked.add(Thread.holdsLock(ramp[0]));
+			return null;
+		}, 0);
+		ramp[0].start(0, 80, 100, Easing.LINEAR, 0);
+		ramp[0].step(50 * MS);
+		ramp[0].step(100 * MS);
+		assertEquals("[false, false]", locked.toString());
+	}
+}
@@ -0,0 +1,240 @@
+package de.rcblum.stream.deck.device.worker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+class DeckCommandStoreTest {
+
+	private static DeckUpdater key(int keyIndex) {
+		return new DeckUpdater(null, (d, k, s, i) -> {}, keyIndex, null, new Dimension(72, 72));
+	}
+
+	private static DeckUpdater touch(int x, int y, int w, int h) {
+		return new DeckUpdater(null, (d, p, s, i) -> {}, new Point(x, y), null, new Dimension(w, h));
+	}
+
+	@Test
+	void testNewerFrameSupersedesStaleFrame() {
+		DeckCommandStore store = new DeckCommandStore(15);
+		DeckUpdater first = key(3);
+		DeckUpdater second = key(3);
+		store.offer(first);
+		store.offer(second);
+		assertEquals(1, store.size());
+		assertEquals(1, store.getSupersededCount());
+		assertSame(second, store.poll());
+		assertNull(store.poll());
+		assertTrue(store.isEmpty());
+	}
+
+	@Test
+	void testCommandsKeepQueuedOrder() {
+		DeckCommandStore store = new DeckCommandStore(15);
+		DeckUpdater brightness = new DeckUpdater(null, (d, v) -> {}, 50).withPriority(DeckUpdater.Priority.STATIC);
+		DeckUpdater key5 = key(5);
+		DeckUpdater key1 = key(1);
+		store.offer(brightness);
+		store.offer(key5);
+		store.offer(key1);
+		assertSame(brightness, store.poll());
+		assertSame(key5, store.poll());
+		assertSame(key1, store.poll());
+	}
+
+	@Test
+	void testResetDropsPendingImages() {
+		DeckCommandStore store = new DeckCommandStore(15);
+		store.offer(key(0));
+		store.offer(touch(0, 0, 800, 100));
+		DeckUpdater reset = new DeckUpdater(null, d -> {});
+		DeckUpdater key0 = key(0);
+		store.offer(reset);
+		store.offer(key0);
+		assertEquals(2, store.size());
+		assertSame(reset, store.poll());
+		assertSame(key0, store.poll());
+	}
+
+	@Test
+	void testTouchScreenRegionCoversSmallerRegion() {
+		DeckCommandStore store = new DeckCommandStore(8);
+		DeckUpdater left = touch(0, 0, 200, 100);
+		DeckUpdater right = touch(600, 0, 200, 100);
+		store.offer(left);
+		store.offer(right);
+		assertEquals(2, store.size());
+		DeckUpdater full = touch(0, 0, 800, 100);
+		store.offer(full);
+		assertEquals(1, store.size());
+		assertSame(full, store.poll());
+	}
+
+	@Test
+	void testUrgentLaneIsSentFirst() {
+		DeckCommandStore store = new DeckCommandStore(15);
+		DeckUpdater brightness = new DeckUpdater(null, (d, v) -> {}, 50);
+		DeckUpdater frame = key(1).withPriority(DeckUpdater.Priority.ANIMATION);
+		DeckUpdater icon = key(2);
+		DeckUpdater press = key(3).withPriority(DeckUpdater.Priority.INTERACTIVE);
+		store.offer(brightness);
+		store.offer(frame);
+		store.offer(icon);
+		store.offer(press);
+		assertSame(press, store.poll());
+		assertSame(icon, store.poll());
+		assertSame(frame, store.poll());
+		assertSame(brightness, store.poll());
+	}
+
+	@Test
+	void testResetIsBarrier() {
+		DeckCommandStore store = new DeckCommandStore(15);
+		DeckUpdater brightness = new DeckUpdater(null, (d, v) -> {}, 50);
+		DeckUpdater reset = new DeckUpdater(null, d -> {});
+		DeckUpdater press = key(3).withPriority(DeckUpdater.Priority.INTERACTIVE);
+		store.offer(brightness);
+		store.offer(reset);
+		store.offer(press);
+		assertSame(brightness, store.poll());
+		assertSame(reset, store.poll());
+		assertSame(press, store.poll());
+	}
+
+	@Test
+	void testOverlappingTouchRegionsKeepOrder() {
+		DeckCommandStore store = new DeckCommandStore(15);
+		DeckUpdater background = touch(0, 0, 400, 100).withPriority(DeckUpdater.Priority.ANIMATION);
+		DeckUpdater overlay = touch(200, 0, 400, 100).withPriority(DeckUpdater.Priority.INTERACTIVE);
+		store.offer(background);
+		store.offer(overlay);
+		assertSame(background, store.poll());
+		assertSame(overlay, store.poll());
+	}
+
+	@Test
+	void testSupersededCommandIsCompleted() {
+		DeckCommandStore store = new DeckCommandStore(15);
+		DeckUpdater first = key(3);
+		CompletableFuture<Void> completion = first.getCompletion();
+		store.offer(first);
+		assertFalse(completion.isDone());
+		store.offer(key(3));
+		assertTrue(completion.isDone());
+		assertFalse(completion.isCompletedExceptionally());
+	}
+
+	@Test
+	void testPendingIncludesCommandInFlight() {
+		DeckCommandStore store = new DeckCommandStore(15);
+		DeckUpdater key1 = key(1);
+		DeckUpdater key2 = key(2);
+		store.offer(key1);
+		store.offer(key2);
+		assertSame(key1, store.poll());
+		assertEquals(2, store.pending().size());
+		store.done(key1);
+		assertEquals(1, store.pending().size());
+		assertSame(key2, store.pending().get(0));
+	}
+
+	@Test
+	void testCompletionCreatedAfterCommandWasDone() {
+		DeckUpdater failed = key(1);
+		failed.fail(new IllegalStateException());
+		assertTrue(failed.getCompletion().isCompletedExceptionally());
+		DeckUpdater written = key(1);
+		written.complete();
+		assertTrue(written.getCompletion().isDone());
+		assertFalse(written.getCompletion().isCompletedExceptionally());
+	}
+
+	@Test
+	void testRejectWhenFull() {
+		DeckCommandStore store = new DeckCommandStore(15);
+		store.setPolicy(DeckCommandStore.Policy.REJECT, 2);
+		DeckUpdater third = key(2);
+		assertEquals(DeckCommandStore.Status.QUEUED, store.offer(key(0)));
+		assertEquals(DeckCommandStore.Status.QUEUED, store.offer(key(1)));
+		assertEquals(DeckCommandStore.Status.REJECTED, store.offer(third));
+		assertEquals(DeckCommandStore.Status.QUEUED, store.offer(key(1)));
+		assertEquals(2, store.size());
+		assertEquals(1, store.getRejectedCount());
+	}
+
+	@Test
+	void testDropOldestAnimationFrame() {
+		DeckCommandStore store = new DeckCommandStore(15);
+		store.setPolicy(DeckCommandStore.Policy.DROP_OLDEST_ANIMATION, 2);
+		List<DeckUpdater> evicted = new ArrayList<>();
+		store.setEvictionListener(evicted::add);
+		DeckUpdater frame = key(0).withPriority(DeckUpdater.Priority.ANIMATION);
+		DeckUpdater icon = key(1);
+		DeckUpdater next = key(2);
+		store.offer(frame);
+		store.offer(icon);
+		assertEquals(DeckCommandStore.Status.QUEUED, store.offer(next));
+		assertEquals(1, evicted.size());
+		assertSame(frame, evicted.get(0));
+		assertTrue(frame.isDone());
+		assertEquals(1, store.getDroppedAnimationFrameCount());
+		assertEquals(DeckCommandStore.Status.REJECTED, store.offer(key(3)));
+		assertEquals(DeckCommandStore.Status.DROPPED, store.offer(key(4).withPriority(DeckUpdater.Priority.ANIMATION)));
+		assertSame(icon, store.poll());
+		assertSame(next, store.poll());
+	}
+
+	@Test
+	void testCoalesceBrightness() {
+		DeckCommandStore store = new DeckCommandStore(15);
+		// Merging does not need capacity, whatever the policy
+		store.setPolicy(DeckCommandStore.Policy.REJECT, 1);
+		DeckUpdater first = new DeckUpdater(null, (d, v) -> {}, 10);
+		DeckUpdater second = new DeckUpdater(null, (d, v) -> {}, 90);
+		store.offer(first);
+		store.offer(second);
+		assertEquals(1, store.size());
+		assertEquals(1, store.getCoalescedCount());
+		assertTrue(first.isDone());
+		assertSame(second, store.poll());
+	}
+
+	@Test
+	void testBlockWaitsForCapacity() throws InterruptedException {
+		DeckCommandStore store = new DeckCommandStore(15);
+		store.setPolicy(DeckCommandStore.Policy.BLOCK, 1);
+		store.offer(key(0));
+		DeckUpdater next = key(1);
+		assertFalse(store.awaitCapacity(next, 10));
+		assertEquals(1, store.getBlockedCount());
+		assertTrue(store.awaitCapacity(key(0), 10));
+		store.poll();
+		assertTrue(store.awaitCapacity(next, 10));
+		assertEquals(DeckCommandStore.Status.QUEUED, store.offer(next));
+	}
+
+	@Test
+	void testBrightnessIsNeverStarved() throws InterruptedException {
+		DeckCommandStore store = new DeckCommandStore(15);
+		store.setPolicy(DeckCommandStore.Policy.BLOCK, 1);
+		store.offer(key(0));
+		DeckUpdater brightness = new DeckUpdater(null, (d, v) -> {}, 10);
+		// Brightness neither waits for nor is rejected by a full store
+		assertTrue(store.awaitCapacity(brightness, 0));
+		assertEquals(DeckCommandStore.Status.QUEUED, store.offer(brightness));
+		assertEquals(0, store.getBlockedCount());
+		assertEquals(2, store.size());
+		// Static images are sent first until the brightness waited too long
+		store.offer(key(1));
+		assertEquals(0, store.poll().keyIndex);
+		brightness.queuedNanos -= DeckCommandStore.AGING_NANOS + 1;
+		assertSame(brightness, store.poll());
+		assertEquals(1, store.poll().keyIndex);
+	}
+}
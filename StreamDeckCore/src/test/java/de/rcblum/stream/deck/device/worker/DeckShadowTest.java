@@ -0,0 +1,152 @@
+package de.rcblum.stream.deck.device.worker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+
+import de.rcblum.stream.deck.util.SDImage;
+
+class DeckShadowTest {
+
+	private static SDImage image(int content) {
+		return new SDImage(new byte[] { (byte) content }, new byte[] { (byte) content, 1, 2 }, new BufferedImage(72, 72, BufferedImage.TYPE_INT_RGB));
+	}
+
+	private static DeckUpdater key(int keyIndex, SDImage img) {
+		return new DeckUpdater(null, (d, k, s, i) -> {}, keyIndex, img, new Dimension(72, 72));
+	}
+
+	private static DeckUpdater touch(int x, SDImage img) {
+		return new DeckUpdater(null, (d, p, s, i) -> {}, new Point(x, 0), img, new Dimension(200, 100));
+	}
+
+	@Test
+	void testWrittenImageIsSkipped() {
+		DeckShadow shadow = new DeckShadow(15);
+		DeckUpdater first = key(2, image(1));
+		assertTrue(shadow.accept(first));
+		shadow.written(first);
+		assertFalse(shadow.accept(key(2, image(1))));
+		assertTrue(shadow.accept(key(2, image(2))));
+		assertTrue(shadow.accept(key(3, image(1))));
+		assertEquals(1, shadow.getSkippedCount());
+	}
+
+	@Test
+	void testPendingImageIsCompared() {
+		DeckShadow shadow = new DeckShadow(15);
+		SDImage a = image(1);
+		SDImage b = image(2);
+		DeckUpdater drawA = key(0, a);
+		shadow.accept(drawA);
+		shadow.written(drawA);
+		// B is waiting, so A has to be sent again
+		assertTrue(shadow.accept(key(0, b)));
+		assertTrue(shadow.accept(key(0, a)));
+		assertFalse(shadow.accept(key(0, a)));
+	}
+
+	@Test
+	void testResetInvalidatesShadow() {
+		DeckShadow shadow = new DeckShadow(15);
+		SDImage a = image(1);
+		DeckUpdater inFlight = key(0, a);
+		shadow.accept(inFlight);
+		assertTrue(shadow.accept(new DeckUpdater(null, d -> {})));
+		// Acknowledged after the reset was queued, the reset clears it again
+		shadow.written(inFlight);
+		assertTrue(shadow.accept(key(0, a)));
+	}
+
+	@Test
+	void testOverlappingTouchRegionInvalidates() {
+		DeckShadow shadow = new DeckShadow(15);
+		SDImage a = image(1);
+		DeckUpdater left = touch(0, a);
+		shadow.accept(left);
+		shadow.written(left);
+		assertFalse(shadow.accept(touch(0, a)));
+		shadow.accept(touch(100, image(2)));
+		assertTrue(shadow.accept(touch(0, a)));
+	}
+
+	@Test
+	void testInvalidateAndCollect() {
+		DeckShadow shadow = new DeckShadow(15);
+		DeckUpdater k1 = key(1, image(1));
+		DeckUpdater k2 = key(2, image(2));
+		shadow.accept(k1);
+		shadow.written(k1);
+		shadow.accept(k2);
+		assertEquals(2, shadow.invalidateAndCollect().size());
+		assertTrue(shadow.accept(key(1, image(1))));
+	}
+
+	@Test
+	void testComposedFullImageUpdatesKeys() {
+		DeckShadow shadow = new DeckShadow(15);
+		DeckUpdater k1 = key(1, image(1));
+		DeckUpdater k2 = key(2, image(2));
+		DeckUpdater full = new DeckUpdater(null, (d, k, s, i) -> {}, 0, image(3), new Dimension(800, 480), DeckUpdater.Type.FULL_IMAGE)
+				.composedOf(new DeckUpdater[] { k1, k2 });
+		assertTrue(shadow.accept(full));
+		assertTrue(shadow.isDisplayed(key(1, image(1))));
+		shadow.written(full);
+		assertFalse(shadow.accept(key(1, image(1))));
+		assertFalse(shadow.accept(key(2, image(2))));
+		// A full image of unknown content invalidates the keys
+		shadow.accept(new DeckUpdater(null, (d, k, s, i) -> {}, 0, image(3), new Dimension(800, 480), DeckUpdater.Type.FULL_IMAGE));
+		assertTrue(shadow.accept(key(1, image(1))));
+	}
+
+	@Test
+	void testFullImageInvalidatesTouchScreen() {
+		DeckShadow shadow = new DeckShadow(15);
+		DeckUpdater strip = touch(0, image(1));
+		shadow.accept(strip);
+		shadow.written(strip);
+		assertFalse(shadow.accept(touch(0, image(1))));
+		shadow.accept(new DeckUpdater(null, (d, k, s, i) -> {}, 0, image(3), new Dimension(800, 480), DeckUpdater.Type.FULL_IMAGE));
+		assertTrue(shadow.getExpectedTouchScreen().isEmpty());
+		assertTrue(shadow.accept(touch(0, image(1))));
+	}
+
+	@Test
+	void testTouchRegionsAreLayered() {
+		DeckShadow shadow = new DeckShadow(15);
+		DeckUpdater strip = new DeckUpdater(null, (d, p, s, i) -> {}, new Point(0, 0), image(1), new Dimension(800, 100));
+		DeckUpdater readout = touch(100, image(2));
+		shadow.accept(strip);
+		shadow.accept(readout);
+		assertEquals(2, shadow.getExpectedTouchScreen().size());
+		assertSame(readout, shadow.getExpectedTouchScreen().get(1));
+		// The strip was drawn over, it has to be sent again
+		assertTrue(shadow.accept(new DeckUpdater(null, (d, p, s, i) -> {}, new Point(0, 0), image(1), new Dimension(800, 100))));
+		assertEquals(1, shadow.getExpectedTouchScreen().size());
+	}
+
+	@Test
+	void testRegionCoveredByNewerRegionsIsDropped() {
+		DeckShadow shadow = new DeckShadow(15);
+		shadow.accept(touch(100, image(1)));
+		shadow.accept(touch(0, image(2)));
+		assertEquals(2, shadow.getExpectedTouchScreen().size());
+		// Together with the left region the right one covers the middle region
+		DeckUpdater right = touch(200, image(3));
+		shadow.accept(right);
+		assertEquals(2, shadow.getExpectedTouchScreen().size());
+		assertSame(right, shadow.getExpectedTouchScreen().get(1));
+	}
+
+	@Test
+	void testTouchRegionsAreBounded() {
+		DeckShadow shadow = new DeckShadow(15);
+		for (int i = 0; i < 1000; i++)
+			shadow.accept(new DeckUpdater(null, (d, p, s, img) -> {}, new Point(i % 600, i % 50), image(i), new Dimension(10 + i % 190, 50)));
+		assertTrue(shadow.getExpectedTouchScreen().size() <= DeckShadow.MAX_TOUCH_SCREEN_REGIONS);
+	}
+}
@@ -0,0 +1,52 @@
+package de.rcblum.stream.deck.device.worker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class EventRingTest {
+
+	@Test
+	void testOrderAndCapacity() {
+		EventRing<Integer> ring = new EventRing<>(3);
+		assertEquals(4, ring.getCapacity());
+		for (int i = 0; i < 4; i++)
+			assertTrue(ring.offer(i));
+		assertFalse(ring.offer(4));
+		assertEquals(4, ring.size());
+		assertEquals(Integer.valueOf(0), ring.poll());
+		assertTrue(ring.offer(4));
+		for (int i = 1; i <= 4; i++)
+			assertEquals(Integer.valueOf(i), ring.poll());
+		assertNull(ring.poll());
+		assertTrue(ring.isEmpty());
+	}
+
+	@Test
+	void testTakeWaitsAndEndsOnClose() throws Exception {
+		EventRing<Integer> ring = new EventRing<>(16);
+		List<Integer> taken = new ArrayList<>();
+		Thread consumer = new Thread(() -> {
+			Integer event;
+			while ((event = ring.take()) != null)
+				taken.add(event);
+		});
+		consumer.start();
+		// Let the consumer park on the empty ring
+		Thread.sleep(50);
+		assertEquals(Thread.State.WAITING, consumer.getState());
+		for (int i = 0; i < 1000; i++)
+			assertTrue(ring.put(i));
+		ring.close();
+		consumer.join(TimeUnit.SECONDS.toMillis(10));
+		assertFalse(consumer.isAlive());
+		assertEquals(1000, taken.size());
+		for (int i = 0; i < 1000; i++)
+			assertEquals(Integer.valueOf(i), taken.get(i));
+		assertFalse(ring.offer(1));
+	}
+}
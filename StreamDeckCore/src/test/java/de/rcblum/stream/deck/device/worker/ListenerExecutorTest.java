@@ -0,0 +1,189 @@
+package de.rcblum.stream.deck.device.worker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import de.rcblum.stream.deck.device.general.IStreamDeck;
+import de.rcblum.stream.deck.device.metrics.DeckMetrics;
+import de.rcblum.stream.deck.event.KeyEvent;
+import de.rcblum.stream.deck.event.KeyEvent.Type;
+import de.rcblum.stream.deck.event.StreamKeyListener;
+
+class ListenerExecutorTest {
+
+	/**
+	 * Source of the events, the listeners do not use it
+	 */
+	private static final IStreamDeck DECK = (IStreamDeck) Proxy.newProxyInstance(IStreamDeck.class.getClassLoader(), new Class<?>[] { IStreamDeck.class }, (proxy, method, args) -> null);
+
+	@Test
+	void testSlowKeyDoesNotBlockOthers() throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			ListenerExecutor executor = new ListenerExecutor(pool, 15, new DeckMetrics(null));
+			CountDownLatch release = new CountDownLatch(1);
+			CountDownLatch slowStarted = new CountDownLatch(1);
+			CountDownLatch fastDone = new CountDownLatch(1);
+			List<String> slowEvents = new CopyOnWriteArrayList<>();
+			StreamKeyListener slow = e -> {
+				slowEvents.add(e.getType().name());
+				slowStarted.countDown();
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+				}
+			};
+			executor.executeForKey(slow, new KeyEvent(DECK, 1, Type.PRESSED));
+			executor.executeForKey(slow, new KeyEvent(DECK, 1, Type.RELEASED_CLICKED));
+			executor.executeForKey(e -> fastDone.countDown(), new KeyEvent(DECK, 2, Type.PRESSED));
+			assertTrue(fastDone.await(10, TimeUnit.SECONDS));
+			assertTrue(slowStarted.await(10, TimeUnit.SECONDS));
+			// The second event of the slow key waits for the first one
+			assertEquals(1, slowEvents.size());
+			release.countDown();
+			long end = System.currentTimeMillis() + 10_000;
+			while (slowEvents.size() < 2 && System.currentTimeMillis() < end)
+				Thread.sleep(5);
+			assertEquals("[PRESSED, RELEASED_CLICKED]", slowEvents.toString());
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void testListenerOrderAndMetrics() throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			DeckMetrics metrics = new DeckMetrics(null);
+			ListenerExecutor executor = new ListenerExecutor(pool, 15, metrics);
+			executor.setSlowThreshold(30, TimeUnit.MILLISECONDS);
+			executor.setTimeout(80, TimeUnit.MILLISECONDS);
+			List<Integer> keys = new CopyOnWriteArrayList<>();
+			CountDownLatch done = new CountDownLatch(100);
+			StreamKeyListener listener = e -> {
+				assertTrue(ListenerExecutor.isRunningListener());
+				keys.add(e.getKeyId());
+				done.countDown();
+			};
+			for (int i = 0; i < 100; i++)
+				executor.executeForListener(listener, new KeyEvent(DECK, i % 15, Type.PRESSED));
+			CountDownLatch slowDone = new CountDownLatch(1);
+			executor.executeForListener(e -> {
+				try {
+					Thread.sleep(150);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+				}
+				slowDone.countDown();
+			}, new KeyEvent(DECK, 0, Type.PRESSED));
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+			assertTrue(slowDone.await(10, TimeUnit.SECONDS));
+			for (int i = 0; i < 100; i++)
+				assertEquals(i % 15, keys.get(i).intValue());
+			assertFalse(ListenerExecutor.isRunningListener());
+			long end = System.currentTimeMillis() + 10_000;
+			while (metrics.getSlowHandlers() < 1 && System.currentTimeMillis() < end)
+				Thread.sleep(5);
+			assertEquals(1, metrics.getSlowHandlers());
+			assertEquals(1, metrics.getHandlerTimeouts());
+			assertEquals(101, metrics.getHandlerTime().getCount());
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void testErrorDoesNotStopLane() throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			ListenerExecutor executor = new ListenerExecutor(pool, 15, new DeckMetrics(null));
+			CountDownLatch done = new CountDownLatch(1);
+			executor.executeForKey(e -> {
+				throw new AssertionError("listener failed");
+			}, new KeyEvent(DECK, 3, Type.PRESSED));
+			executor.executeForKey(e -> done.countDown(), new KeyEvent(DECK, 3, Type.RELEASED_CLICKED));
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void testTimeoutInterruptStaysWithListener() throws Exception {
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		try {
+			DeckMetrics metrics = new DeckMetrics(null);
+			ListenerExecutor executor = new ListenerExecutor(pool, 15, metrics);
+			executor.setTimeout(20, TimeUnit.MILLISECONDS);
+			executor.setInterruptOnTimeout(true);
+			List<Boolean> interrupted = new CopyOnWriteArrayList<>();
+			CountDownLatch done = new CountDownLatch(2);
+			StreamKeyListener listener = e -> {
+				if (e.getType() == Type.PRESSED) {
+					try {
+						Thread.sleep(5_000);
+					} catch (InterruptedException ie) {
+						interrupted.add(Boolean.TRUE);
+					}
+				}
+				else {
+					interrupted.add(Thread.currentThread().isInterrupted());
+				}
+				done.countDown();
+			};
+			executor.executeForKey(listener, new KeyEvent(DECK, 4, Type.PRESSED));
+			executor.executeForKey(listener, new KeyEvent(DECK, 4, Type.RELEASED_CLICKED));
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+			assertEquals("[true, false]", interrupted.toString());
+			assertEquals(1, metrics.getHandlerTimeouts());
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void testTimeoutInterruptIsClearedAfterSettingChanged() throws Exception {
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		try {
+			DeckMetrics metrics = new DeckMetrics(null);
+			ListenerExecutor executor = new ListenerExecutor(pool, 15, metrics);
+			executor.setTimeout(20, TimeUnit.MILLISECONDS);
+			executor.setInterruptOnTimeout(true);
+			List<Boolean> interrupted = new CopyOnWriteArrayList<>();
+			CountDownLatch done = new CountDownLatch(2);
+			StreamKeyListener listener = e -> {
+				if (e.getType() == Type.PRESSED) {
+					// Busy listener, ignoring the interrupt of the watchdog
+					while (metrics.getHandlerTimeouts() == 0)
+						Thread.yield();
+					executor.setInterruptOnTimeout(false);
+				}
+				else {
+					interrupted.add(Thread.currentThread().isInterrupted());
+				}
+				done.countDown();
+			};
+			executor.executeForKey(listener, new KeyEvent(DECK, 4, Type.PRESSED));
+			executor.executeForKey(listener, new KeyEvent(DECK, 4, Type.RELEASED_CLICKED));
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+			assertEquals("[false]", interrupted.toString());
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+}
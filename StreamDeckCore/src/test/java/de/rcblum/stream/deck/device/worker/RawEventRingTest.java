@@ -0,0 +1,79 @@
+package de.rcblum.stream.deck.device.worker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import de.rcblum.stream.deck.device.StreamDeck;
+import de.rcblum.stream.deck.device.descriptor.DeckDescriptor;
+import de.rcblum.stream.deck.device.loopback.LoopbackHidDevice;
+import de.rcblum.stream.deck.event.KeyEvent.Type;
+import de.rcblum.stream.deck.event.RawKeyListener;
+
+class RawEventRingTest {
+
+	@Test
+	void testValuesAndOrder() {
+		RawEventRing ring = new RawEventRing(2);
+		assertTrue(ring.offer(3, Type.ROTATE_LEFT.ordinal(), 42L, 0, 5));
+		assertTrue(ring.offer(8, Type.SWIPED.ordinal(), 43L, RawKeyListener.packPoint(10, 20), RawKeyListener.packPoint(700, 90)));
+		assertFalse(ring.offer(1, 0, 0, 0, 0));
+		List<String> events = new ArrayList<>();
+		RawKeyListener listener = (deviceId, keyId, type, nanos, value1, value2) -> events.add(deviceId + ":" + keyId + ":" + Type.values()[type] + ":" + nanos + ":"
+				+ RawKeyListener.unpackX(value1) + "," + RawKeyListener.unpackY(value1) + ":" + RawKeyListener.unpackX(value2) + "," + RawKeyListener.unpackY(value2));
+		assertTrue(ring.poll(7, listener));
+		assertTrue(ring.poll(7, listener));
+		assertFalse(ring.poll(7, listener));
+		assertEquals("[7:3:ROTATE_LEFT:42:0,0:0,5, 7:8:SWIPED:43:10,20:700,90]", events.toString());
+		ring.close();
+		assertFalse(ring.take(7, listener));
+	}
+
+	@Test
+	void testDialInputWithoutGarbage() throws Exception {
+		DeckDescriptor descriptor = DeckDescriptor.getDescriptorByName("Stream Deck Plus");
+		LoopbackHidDevice device = new LoopbackHidDevice(descriptor);
+		StreamDeck deck = new StreamDeck(descriptor, device, 50);
+		try {
+			AtomicInteger ticks = new AtomicInteger();
+			AtomicLong dispatcher = new AtomicLong();
+			RawKeyListener listener = (deviceId, keyId, type, nanos, value1, value2) -> {
+				assertEquals(deck.getDeviceId(), deviceId);
+				if (type == Type.ROTATE_RIGHT.ordinal() && keyId == descriptor.getDialKeyId(1)) {
+					dispatcher.set(Thread.currentThread().getId());
+					ticks.addAndGet(value2);
+				}
+			};
+			assertTrue(deck.addRawKeyListener(listener));
+			assertFalse(deck.addRawKeyListener(listener));
+			rotate(device, deck, ticks, 1_000);
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+			long before = threads.getThreadAllocatedBytes(dispatcher.get());
+			rotate(device, deck, ticks, 20_000);
+			long allocated = threads.getThreadAllocatedBytes(dispatcher.get()) - before;
+			assertTrue(allocated < 4096, "allocated " + allocated + " bytes");
+			assertTrue(deck.removeRawKeyListener(listener));
+			assertEquals(0, deck.getRawListeners().length);
+		}
+		finally {
+			deck.stop();
+		}
+	}
+
+	private static void rotate(LoopbackHidDevice device, StreamDeck deck, AtomicInteger ticks, int count) throws InterruptedException {
+		ticks.set(0);
+		for (int i = 0; i < count; i++)
+			device.rotateDial(1, 2);
+		long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (ticks.get() < 2 * count && System.nanoTime() < end)
+			Thread.sleep(1);
+		assertEquals(2 * count, ticks.get());
+	}
+}
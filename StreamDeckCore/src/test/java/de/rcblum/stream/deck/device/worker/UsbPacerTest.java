@@ -0,0 +1,56 @@
+package de.rcblum.stream.deck.device.worker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class UsbPacerTest {
+
+	@Test
+	void testCommandsAreChargedByBytes() {
+		UsbPacer pacer = new UsbPacer(1_000_000);
+		// Small writes are not used for calibration
+		long next = pacer.charge(0, 1_000, 1);
+		assertEquals(1_000_000, next);
+		// A bigger command costs more and queues up behind the previous one,
+		// the device accepted it at the estimated rate, leaving a budget of 900 kB/s
+		next = pacer.charge(0, 27_000, 27_000_000);
+		assertEquals(31_000_000, next);
+		// Once the budget is paid, the next command starts from its own start time
+		next = pacer.charge(100_000_000, 900, 1);
+		assertEquals(101_000_000, next);
+	}
+
+	@Test
+	void testBudgetIsCalibratedFromSlowWrites() {
+		UsbPacer pacer = new UsbPacer(1_000_000);
+		// Device needs 4 ms for 2000 bytes => 500 kB/s
+		pacer.charge(0, 2_000, 4_000_000);
+		assertEquals(500_000, pacer.getMeasuredBytesPerSecond());
+		assertEquals(450_000, pacer.getBytesPerSecond());
+		// Never below a tenth of the estimate
+		for (int i = 0; i < 100; i++)
+			pacer.charge(0, 2_000, 2_000_000_000L);
+		assertEquals(100_000, pacer.getBytesPerSecond());
+	}
+
+	@Test
+	void testBudgetIsRaisedFromFastWrites() {
+		UsbPacer pacer = new UsbPacer(1_000_000);
+		// Device needs 1 ms for 2000 bytes => 2 MB/s, more than estimated
+		pacer.charge(0, 2_000, 1_000_000);
+		assertEquals(2_000_000, pacer.getMeasuredBytesPerSecond());
+		assertEquals(1_800_000, pacer.getBytesPerSecond());
+		// Never above the ceiling
+		for (int i = 0; i < 200; i++)
+			pacer.charge(0, 2_000, 1);
+		assertEquals(1_000_000L * UsbPacer.CEILING_FACTOR, pacer.getBytesPerSecond());
+	}
+
+	@Test
+	void testUnlimitedPacer() {
+		UsbPacer pacer = new UsbPacer(0);
+		assertEquals(42, pacer.charge(42, 1_000_000, 1));
+		assertEquals(0, pacer.getBytesPerSecond());
+	}
+}
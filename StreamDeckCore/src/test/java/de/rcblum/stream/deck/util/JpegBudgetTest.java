@@ -0,0 +1,100 @@
+package de.rcblum.stream.deck.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+import de.rcblum.stream.deck.device.StreamDeck;
+import de.rcblum.stream.deck.device.descriptor.DeckDescriptor;
+import de.rcblum.stream.deck.device.encoder.Rev2Encoder;
+import de.rcblum.stream.deck.device.loopback.LoopbackHidDevice;
+
+class JpegBudgetTest {
+
+	/**
+	 * Noise is the worst case for JPEG, at 85% it takes several pages
+	 */
+	private static BufferedImage noise(int size) {
+		BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+		Random random = new Random(42);
+		for (int y = 0; y < size; y++)
+			for (int x = 0; x < size; x++)
+				image.setRGB(x, y, random.nextInt(0x1000000));
+		return image;
+	}
+
+	/**
+	 * Soft gradient, fits into two pages at the maximum quality
+	 */
+	private static BufferedImage gradient(int size) {
+		BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < size; y++)
+			for (int x = 0; x < size; x++)
+				image.setRGB(x, y, (x * 255 / size) << 16 | (y * 255 / size));
+		return image;
+	}
+
+	@Test
+	void testEncodingFitsBudget() throws IOException {
+		BufferedImage image = noise(72);
+		assertTrue(JpegBudget.writeJpeg(image, JpegBudget.DEFAULT_QUALITY, false).length > 2 * Rev2Encoder.KEY_PAGE_PAYLOAD);
+		JpegBudget budget = new JpegBudget(2, 0.05f);
+		byte[] jpeg = budget.encode(image);
+		assertTrue(jpeg.length <= budget.getMaxBytes(), "size " + jpeg.length);
+		BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(jpeg));
+		assertEquals(72, decoded.getWidth());
+	}
+
+	@Test
+	void testSimpleImageKeepsMaximumQuality() throws IOException {
+		BufferedImage image = gradient(96);
+		byte[] best = JpegBudget.writeJpeg(image, JpegBudget.DEFAULT_QUALITY, false);
+		assertTrue(best.length <= 2 * Rev2Encoder.KEY_PAGE_PAYLOAD);
+		assertArrayEquals(best, new JpegBudget(2, 0.3f).encode(image));
+		// Without subsampling one page is out of reach, the chroma is subsampled instead
+		assertTrue(new JpegBudget(1, 0.3f).encode(image).length <= Rev2Encoder.KEY_PAGE_PAYLOAD);
+	}
+
+	@Test
+	void testQualityFloor() throws IOException {
+		BufferedImage image = noise(120);
+		JpegBudget budget = new JpegBudget(1, 0.6f);
+		byte[] jpeg = budget.encode(image);
+		// The budget can not be met above the floor, the smallest encoding is used
+		assertTrue(jpeg.length > budget.getMaxBytes());
+		assertEquals(JpegBudget.writeJpeg(image, 0.6f, true).length, jpeg.length);
+		assertThrows(IllegalArgumentException.class, () -> new JpegBudget(0, 0.5f));
+		assertThrows(IllegalArgumentException.class, () -> new JpegBudget(1, 0.9f, 0.5f));
+		assertFalse(budget.appliesTo(new Dimension(800, 100)));
+	}
+
+	@Test
+	void testPagesPerFrame() throws Exception {
+		DeckDescriptor descriptor = DeckDescriptor.getDescriptorByName("Stream Deck Classic Rev2");
+		LoopbackHidDevice device = new LoopbackHidDevice(descriptor);
+		StreamDeck streamDeck = new StreamDeck(device.getDescriptor(), device, 50);
+		try {
+			streamDeck.drawImageAsync(0, IconHelper.convertImage(noise(72), descriptor.iconSize)).get(10, TimeUnit.SECONDS);
+			int fixedQualityPages = streamDeck.getMetrics().getLastFramePages();
+			assertTrue(fixedQualityPages > 1);
+			IconHelper.setJpegBudget(new JpegBudget(1, 0.05f));
+			streamDeck.drawImageAsync(1, IconHelper.convertImage(noise(72), descriptor.iconSize)).get(10, TimeUnit.SECONDS);
+			assertEquals(1, streamDeck.getMetrics().getLastFramePages());
+			assertEquals(2, streamDeck.getMetrics().getFramesWritten());
+			assertEquals((fixedQualityPages + 1) / 2.0, streamDeck.getMetrics().getPagesPerFrame(), 0.001);
+		}
+		finally {
+			IconHelper.setJpegBudget(null);
+			streamDeck.stop();
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package de.rcblum.stream.deck.util;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Images filled with one color, shared by the tests.
+ *
+ * @author Roland von Werden
+ *
+ */
+public final class TestImages {
+
+	private TestImages() {
+	}
+
+	/**
+	 * Creates a square image filled with the color
+	 *
+	 * @param color Color of the image
+	 * @param size  Width and height of the image
+	 * @return Filled image
+	 */
+	public static BufferedImage filledImage(Color color, int size) {
+		BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		g.setColor(color);
+		g.fillRect(0, 0, size, size);
+		g.dispose();
+		return image;
+	}
+
+	/**
+	 * Creates a square image filled with the color, converted for the stream
+	 * deck
+	 *
+	 * @param color Color of the image
+	 * @param size  Width and height of the image
+	 * @return Filled image
+	 */
+	public static SDImage filled(Color color, int size) {
+		return IconHelper.convertImage(filledImage(color, size), new Dimension(size, size));
+	}
+}